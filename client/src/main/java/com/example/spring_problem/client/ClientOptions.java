@@ -0,0 +1,188 @@
+package com.example.spring_problem.client;
+
+import java.net.http.HttpClient;
+
+/**
+ * Настройки клиента {@link DatabaseClient}
+ */
+public class ClientOptions {
+    /**
+     * Адрес сервера
+     */
+    private String baseUri = "http://localhost:8080";
+    /**
+     * Версия протокола: HTTP/1.1 с пулом постоянных соединений либо HTTP/2, который передаёт все
+     * запросы потоками одного соединения, если сервер его поддерживает
+     */
+    private HttpClient.Version protocol = HttpClient.Version.HTTP_1_1;
+    /**
+     * Время ожидания подключения в миллисекундах
+     */
+    private long connectTimeout = 1000L;
+    /**
+     * Время ожидания ответа в миллисекундах
+     */
+    private long requestTimeout = 5000L;
+    /**
+     * Наибольшее число одновременно отправленных запросов чтения. Чтения сверх этого числа ждут в очереди
+     * и уходят одним пакетным запросом, когда освобождается место
+     */
+    private int maxInFlight = 8;
+    /**
+     * Наибольшее число ключей одного пакетного запроса чтения
+     */
+    private int maxBatchSize = 128;
+    /**
+     * Число записей локального кеша, 0 - кеш выключен
+     */
+    private int nearCacheSize;
+    /**
+     * Наибольшее время хранения записи в локальном кеше в миллисекундах, даже если её время жизни на
+     * сервере больше: ограничивает время, в течение которого не видны изменения других клиентов
+     */
+    private long nearCacheMaxAge = 1000L;
+
+    /**
+     * Метод, возвращающий адрес сервера
+     * @return адрес сервера, например http://localhost:8080
+     */
+    public String getBaseUri() {
+        return baseUri;
+    }
+
+    /**
+     * Метод, устанавливающий адрес сервера
+     * @param baseUri адрес сервера, например http://localhost:8080
+     * @return эти настройки
+     */
+    public ClientOptions setBaseUri(String baseUri) {
+        this.baseUri = baseUri;
+        return this;
+    }
+
+    /**
+     * Метод, возвращающий версию протокола
+     * @return версия протокола
+     */
+    public HttpClient.Version getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Метод, устанавливающий версию протокола
+     * @param protocol версия протокола
+     * @return эти настройки
+     */
+    public ClientOptions setProtocol(HttpClient.Version protocol) {
+        this.protocol = protocol;
+        return this;
+    }
+
+    /**
+     * Метод, возвращающий время ожидания подключения
+     * @return время в миллисекундах
+     */
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Метод, устанавливающий время ожидания подключения
+     * @param connectTimeout время в миллисекундах
+     * @return эти настройки
+     */
+    public ClientOptions setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * Метод, возвращающий время ожидания ответа
+     * @return время в миллисекундах
+     */
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Метод, устанавливающий время ожидания ответа
+     * @param requestTimeout время в миллисекундах
+     * @return эти настройки
+     */
+    public ClientOptions setRequestTimeout(long requestTimeout) {
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    /**
+     * Метод, возвращающий наибольшее число одновременно отправленных запросов чтения
+     * @return число запросов
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Метод, устанавливающий наибольшее число одновременно отправленных запросов чтения
+     * @param maxInFlight число запросов
+     * @return эти настройки
+     */
+    public ClientOptions setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Метод, возвращающий наибольшее число ключей пакетного запроса чтения
+     * @return число ключей
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Метод, устанавливающий наибольшее число ключей пакетного запроса чтения
+     * @param maxBatchSize число ключей
+     * @return эти настройки
+     */
+    public ClientOptions setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Метод, возвращающий число записей локального кеша
+     * @return число записей, 0 - кеш выключен
+     */
+    public int getNearCacheSize() {
+        return nearCacheSize;
+    }
+
+    /**
+     * Метод, устанавливающий число записей локального кеша
+     * @param nearCacheSize число записей, 0 - кеш выключен
+     * @return эти настройки
+     */
+    public ClientOptions setNearCacheSize(int nearCacheSize) {
+        this.nearCacheSize = nearCacheSize;
+        return this;
+    }
+
+    /**
+     * Метод, возвращающий наибольшее время хранения записи в локальном кеше
+     * @return время в миллисекундах
+     */
+    public long getNearCacheMaxAge() {
+        return nearCacheMaxAge;
+    }
+
+    /**
+     * Метод, устанавливающий наибольшее время хранения записи в локальном кеше
+     * @param nearCacheMaxAge время в миллисекундах
+     * @return эти настройки
+     */
+    public ClientOptions setNearCacheMaxAge(long nearCacheMaxAge) {
+        this.nearCacheMaxAge = nearCacheMaxAge;
+        return this;
+    }
+}
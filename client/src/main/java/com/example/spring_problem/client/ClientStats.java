@@ -0,0 +1,87 @@
+package com.example.spring_problem.client;
+
+/**
+ * Счётчики клиента {@link DatabaseClient} с момента его создания
+ */
+public class ClientStats {
+    /**
+     * Число запросов чтения, отправленных серверу, одиночных и пакетных
+     */
+    private final long getRequests;
+    /**
+     * Число ключей, прочитанных с сервера
+     */
+    private final long keysFetched;
+    /**
+     * Число чтений, обслуженных локальным кешем
+     */
+    private final long nearCacheHits;
+    /**
+     * Число чтений, не найденных в локальном кеше
+     */
+    private final long nearCacheMisses;
+
+    /**
+     * Создаёт счётчики клиента
+     * @param getRequests число запросов чтения
+     * @param keysFetched число прочитанных с сервера ключей
+     * @param nearCacheHits число попаданий в локальный кеш
+     * @param nearCacheMisses число промахов локального кеша
+     */
+    public ClientStats(long getRequests, long keysFetched, long nearCacheHits, long nearCacheMisses) {
+        this.getRequests = getRequests;
+        this.keysFetched = keysFetched;
+        this.nearCacheHits = nearCacheHits;
+        this.nearCacheMisses = nearCacheMisses;
+    }
+
+    /**
+     * Метод, возвращающий число запросов чтения, отправленных серверу
+     * @return число запросов
+     */
+    public long getGetRequests() {
+        return getRequests;
+    }
+
+    /**
+     * Метод, возвращающий число прочитанных с сервера ключей
+     * @return число ключей
+     */
+    public long getKeysFetched() {
+        return keysFetched;
+    }
+
+    /**
+     * Метод, возвращающий среднее число ключей одного запроса чтения
+     * @return среднее число ключей, 0 - запросов не было
+     */
+    public double getAverageBatchSize() {
+        return getRequests == 0 ? 0.0 : (double) keysFetched / getRequests;
+    }
+
+    /**
+     * Метод, возвращающий число попаданий в локальный кеш
+     * @return число попаданий
+     */
+    public long getNearCacheHits() {
+        return nearCacheHits;
+    }
+
+    /**
+     * Метод, возвращающий число промахов локального кеша
+     * @return число промахов
+     */
+    public long getNearCacheMisses() {
+        return nearCacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientStats{" +
+                "getRequests=" + getRequests +
+                ", keysFetched=" + keysFetched +
+                ", nearCacheHits=" + nearCacheHits +
+                ", nearCacheMisses=" + nearCacheMisses +
+                '}';
+    }
+}
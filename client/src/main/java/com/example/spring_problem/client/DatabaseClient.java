@@ -0,0 +1,450 @@
+package com.example.spring_problem.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Клиент HTTP API хранилища. Запросы отправляются асинхронно через {@link HttpClient}: по HTTP/1.1 клиент
+ * держит пул постоянных соединений, по HTTP/2 передаёт запросы потоками одного соединения, и в обоих случаях
+ * следующий запрос уходит, не дожидаясь ответа на предыдущий. Одновременно отправляется не больше
+ * {@link ClientOptions#getMaxInFlight()} запросов чтения; чтения, пришедшие, пока все места заняты,
+ * копятся в очереди и уходят одним запросом "/database/batch/get", как только место освобождается. Поэтому
+ * при низкой нагрузке чтение не ждёт пакета, а при высокой число запросов растёт медленнее числа чтений.
+ * С локальным кешем {@link ClientOptions#getNearCacheSize()} чтения запрашивают у сервера оставшееся время
+ * жизни записей и повторно читают запись из кеша, пока оно не истекло. Потокобезопасен
+ */
+public class DatabaseClient implements AutoCloseable {
+    /**
+     * Тип тела запросов
+     */
+    private static final String JSON = "application/json";
+
+    /**
+     * Настройки клиента
+     */
+    private final ClientOptions options;
+
+    /**
+     * Адрес сервера без завершающей косой черты
+     */
+    private final String baseUri;
+
+    /**
+     * Потоки, завершающие запросы
+     */
+    private final ExecutorService executor;
+
+    /**
+     * HTTP клиент
+     */
+    private final HttpClient client;
+
+    /**
+     * Преобразователь JSON
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Локальный кеш, null - кеш выключен
+     */
+    private final NearCache nearCache;
+
+    /**
+     * Чтения, ждущие отправки
+     */
+    private final ConcurrentLinkedQueue<PendingGet> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Число отправленных запросов чтения без ответа
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Число отправленных запросов чтения
+     */
+    private final LongAdder getRequests = new LongAdder();
+
+    /**
+     * Число прочитанных с сервера ключей
+     */
+    private final LongAdder keysFetched = new LongAdder();
+
+    /**
+     * Число попаданий в локальный кеш
+     */
+    private final LongAdder nearCacheHits = new LongAdder();
+
+    /**
+     * Число промахов локального кеша
+     */
+    private final LongAdder nearCacheMisses = new LongAdder();
+
+    /**
+     * Создаёт клиент
+     * @param options настройки клиента
+     */
+    public DatabaseClient(ClientOptions options) {
+        this.options = options;
+        this.baseUri = options.getBaseUri().endsWith("/")
+                ? options.getBaseUri().substring(0, options.getBaseUri().length() - 1) : options.getBaseUri();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "database-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(options.getProtocol())
+                .connectTimeout(Duration.ofMillis(options.getConnectTimeout()))
+                .executor(executor)
+                .build();
+        this.nearCache = options.getNearCacheSize() > 0
+                ? new NearCache(options.getNearCacheSize(), options.getNearCacheMaxAge()) : null;
+    }
+
+    /**
+     * Возвращает данные по ключу, ожидая ответа
+     * @param key значение ключа для хранилища
+     * @return данные либо null, если ключ отсутствует
+     * @throws DatabaseClientException если сервер недоступен или ответил ошибкой
+     */
+    public String get(int key) {
+        return await(getAsync(key));
+    }
+
+    /**
+     * Запрашивает данные по ключу. Запрос уходит сразу либо, если заняты все места для одновременных
+     * запросов чтения, вместе с другими ожидающими чтениями одним пакетным запросом
+     * @param key значение ключа для хранилища
+     * @return данные либо null, если ключ отсутствует
+     */
+    public CompletableFuture<String> getAsync(int key) {
+        if (nearCache != null) {
+            String cached = nearCache.get(key, System.currentTimeMillis());
+            if (cached != null) {
+                nearCacheHits.increment();
+                return CompletableFuture.completedFuture(cached);
+            }
+            nearCacheMisses.increment();
+        }
+        PendingGet get = new PendingGet(key);
+        pending.add(get);
+        dispatch();
+        return get.future;
+    }
+
+    /**
+     * Возвращает данные по нескольким ключам пакетными запросами не больше
+     * {@link ClientOptions#getMaxBatchSize()} ключей, отправленными одновременно
+     * @param keys ключи для хранилища
+     * @return данные найденных ключей в порядке запроса
+     * @throws DatabaseClientException если сервер недоступен или ответил ошибкой
+     */
+    public Map<Integer, String> getAll(int... keys) {
+        List<CompletableFuture<String[]>> batches = new ArrayList<>();
+        for (int from = 0; from < keys.length; from += options.getMaxBatchSize()) {
+            batches.add(fetch(Arrays.copyOfRange(keys, from, Math.min(keys.length, from + options.getMaxBatchSize()))));
+        }
+
+        Map<Integer, String> result = new LinkedHashMap<>();
+        for (int batch = 0; batch < batches.size(); batch++) {
+            String[] data = await(batches.get(batch));
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] != null) {
+                    result.put(keys[batch * options.getMaxBatchSize() + i], data[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Помещает данные по ключу со временем жизни по умолчанию
+     * @param key значение ключа для хранилища
+     * @param data данные
+     * @throws DatabaseClientException если сервер недоступен или отклонил запись
+     */
+    public void put(int key, String data) {
+        put(key, data, 0L);
+    }
+
+    /**
+     * Помещает данные по ключу с заданным временем жизни
+     * @param key значение ключа для хранилища
+     * @param data данные
+     * @param ttl время жизни в секундах, 0 - время жизни по умолчанию
+     * @throws DatabaseClientException если сервер недоступен или отклонил запись
+     */
+    public void put(int key, String data, long ttl) {
+        await(putAsync(key, data, ttl, 0L));
+    }
+
+    /**
+     * Помещает данные по ключу со временем простоя: запись удаляется, если её не читали дольше idle секунд
+     * @param key значение ключа для хранилища
+     * @param data данные
+     * @param idle время простоя в секундах
+     * @throws DatabaseClientException если сервер недоступен или отклонил запись
+     */
+    public void putIdle(int key, String data, long idle) {
+        await(putAsync(key, data, 0L, idle));
+    }
+
+    /**
+     * Асинхронно помещает данные по ключу
+     * @param key значение ключа для хранилища
+     * @param data данные
+     * @param ttl время жизни в секундах, 0 - время жизни по умолчанию
+     * @param idle время простоя в секундах, 0 - запись без времени простоя
+     * @return завершение записи
+     */
+    public CompletableFuture<Void> putAsync(int key, String data, long ttl, long idle) {
+        ObjectNode body = mapper.createObjectNode().put("data", data);
+        if (ttl != 0) {
+            body.put("ttl", ttl);
+        }
+        if (idle != 0) {
+            body.put("idle", idle);
+        }
+        invalidate(key);
+        return send(request("/database/" + key)
+                .header("Content-Type", JSON)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(json(body)))
+                .build())
+                .thenApply(this::body)
+                .whenComplete((response, e) -> invalidate(key))
+                .thenApply(response -> null);
+    }
+
+    /**
+     * Удаляет данные по ключу
+     * @param key значение ключа для хранилища
+     * @return удалённые данные либо null, если ключ отсутствует
+     * @throws DatabaseClientException если сервер недоступен или ответил ошибкой
+     */
+    public String remove(int key) {
+        invalidate(key);
+        try {
+            return await(send(request("/database/" + key).DELETE().build()).thenApply(this::body));
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Возвращает счётчики клиента
+     * @return счётчики
+     */
+    public ClientStats getStats() {
+        return new ClientStats(getRequests.sum(), keysFetched.sum(), nearCacheHits.sum(), nearCacheMisses.sum());
+    }
+
+    /**
+     * Останавливает потоки клиента. Отправленные запросы, не получившие ответа, могут не завершиться
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Отправляет ждущие чтения, пока есть свободные места для одновременных запросов. Вызывается при
+     * новом чтении и при завершении запроса чтения
+     */
+    private void dispatch() {
+        while (!pending.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= options.getMaxInFlight()) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            List<PendingGet> batch = new ArrayList<>();
+            PendingGet next;
+            while (batch.size() < options.getMaxBatchSize() && (next = pending.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            fetch(batch).whenComplete((result, e) -> {
+                inFlight.decrementAndGet();
+                dispatch();
+            });
+        }
+    }
+
+    /**
+     * Отправляет чтения одним запросом и завершает их ответом
+     * @param batch ждущие чтения
+     * @return завершение запроса
+     */
+    private CompletableFuture<Void> fetch(List<PendingGet> batch) {
+        if (batch.size() == 1 && nearCache == null) {
+            PendingGet get = batch.get(0);
+            getRequests.increment();
+            keysFetched.increment();
+            return send(request("/database/" + get.key).GET().build())
+                    .thenApply(this::body)
+                    .handle((data, e) -> e == null ? get.future.complete(data) : get.future.completeExceptionally(e))
+                    .thenApply(completed -> null);
+        }
+
+        int[] keys = new int[batch.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = batch.get(i).key;
+        }
+        return fetch(keys).handle((data, e) -> {
+            for (int i = 0; i < keys.length; i++) {
+                if (e == null) {
+                    batch.get(i).future.complete(data[i]);
+                } else {
+                    batch.get(i).future.completeExceptionally(e);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Отправляет пакетный запрос чтения и помещает найденные записи в локальный кеш
+     * @param keys ключи для хранилища
+     * @return данные в порядке ключей, null - ключ отсутствует
+     */
+    private CompletableFuture<String[]> fetch(int[] keys) {
+        long version = nearCache != null ? nearCache.version() : 0L;
+        HttpRequest request = request(nearCache != null ? "/database/batch/get?ttl=true" : "/database/batch/get")
+                .header("Content-Type", JSON)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json(keys)))
+                .build();
+        getRequests.increment();
+        keysFetched.add(keys.length);
+
+        return send(request).thenApply(response -> {
+            JsonNode results = tree(body(response));
+            String[] data = new String[keys.length];
+            long now = System.currentTimeMillis();
+
+            for (int i = 0; i < keys.length; i++) {
+                JsonNode result = results.get(i);
+                if (result.path("status").asInt() != 200) {
+                    continue;
+                }
+                data[i] = result.path("data").asText();
+                if (nearCache != null) {
+                    nearCache.put(keys[i], data[i], result.path("ttl").asLong(), version, now);
+                }
+            }
+            return data;
+        });
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path))
+                .timeout(Duration.ofMillis(options.getRequestTimeout()));
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Возвращает тело успешного ответа
+     * @param response ответ сервера
+     * @return тело ответа либо null при статусе 404
+     * @throws DatabaseClientException если сервер ответил ошибкой
+     */
+    private String body(HttpResponse<String> response) {
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new DatabaseClientException(response.statusCode(), response.body());
+        }
+        return response.body();
+    }
+
+    private void invalidate(int key) {
+        if (nearCache != null) {
+            nearCache.invalidate(key);
+        }
+    }
+
+    private byte[] json(Object value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonNode tree(String body) {
+        try {
+            return mapper.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Ожидает завершения запроса
+     * @param future запрос
+     * @param <T> тип результата
+     * @return результат запроса
+     * @throws DatabaseClientException если запрос не удался
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseClientException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof DatabaseClientException
+                    ? (DatabaseClientException) cause : new DatabaseClientException(cause);
+        }
+    }
+
+    /**
+     * Чтение, ждущее отправки
+     */
+    private static final class PendingGet {
+        /**
+         * Значение ключа для хранилища
+         */
+        private final int key;
+
+        /**
+         * Результат чтения
+         */
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private PendingGet(int key) {
+            this.key = key;
+        }
+    }
+}
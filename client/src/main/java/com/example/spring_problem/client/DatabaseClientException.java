@@ -0,0 +1,38 @@
+package com.example.spring_problem.client;
+
+/**
+ * Исключение, даёт знать о том, что сервер недоступен или отклонил запрос
+ */
+public class DatabaseClientException extends RuntimeException {
+    /**
+     * HTTP статус ответа, 0 - ответ не получен
+     */
+    private final int status;
+
+    /**
+     * Создаёт исключение об ответе сервера с ошибкой
+     * @param status HTTP статус ответа
+     * @param message тело ответа
+     */
+    public DatabaseClientException(int status, String message) {
+        super("Server responded with status " + status + ": " + message);
+        this.status = status;
+    }
+
+    /**
+     * Создаёт исключение о том, что ответ не получен
+     * @param cause причина
+     */
+    public DatabaseClientException(Throwable cause) {
+        super("Request failed: " + cause, cause);
+        this.status = 0;
+    }
+
+    /**
+     * Метод, возвращающий HTTP статус ответа
+     * @return статус, 0 - ответ не получен
+     */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.spring_problem.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный локальный кеш записей сервера. Запись хранится до истечения её оставшегося на сервере
+ * времени жизни, но не дольше заданного наибольшего времени. Кеш разделён на сегменты по ключу, каждый
+ * сегмент - отдельный LRU под своей блокировкой. Изменение записи этим клиентом удаляет её из кеша и
+ * увеличивает номер изменения: ответ на чтение, отправленное до изменения, в кеш не попадает
+ */
+final class NearCache {
+    /**
+     * Сегменты кеша
+     */
+    private final Segment[] segments;
+
+    /**
+     * Наибольшее время хранения записи в миллисекундах
+     */
+    private final long maxAge;
+
+    /**
+     * Номер последнего изменения записей этим клиентом
+     */
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * Создаёт кеш
+     * @param capacity наибольшее число записей
+     * @param maxAge наибольшее время хранения записи в миллисекундах
+     */
+    NearCache(int capacity, long maxAge) {
+        int count = Math.min(16, Integer.highestOneBit(Math.max(1, capacity / 64)));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(Math.max(1, capacity / count));
+        }
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Возвращает данные записи, если она есть в кеше и её время не истекло
+     * @param key значение ключа
+     * @param now текущее время в миллисекундах
+     * @return данные либо null
+     */
+    String get(int key, long now) {
+        Segment segment = segmentFor(key);
+
+        synchronized (segment) {
+            Entry entry = segment.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now >= entry.expiresAt) {
+                segment.remove(key);
+                return null;
+            }
+            return entry.data;
+        }
+    }
+
+    /**
+     * Возвращает номер последнего изменения, который нужно запомнить перед отправкой чтения
+     * @return номер изменения
+     */
+    long version() {
+        return writes.get();
+    }
+
+    /**
+     * Помещает прочитанную запись в кеш, если после отправки чтения этот клиент ничего не изменял
+     * @param key значение ключа
+     * @param data данные
+     * @param ttl оставшееся время жизни на сервере в миллисекундах
+     * @param version номер изменения, полученный {@link #version()} перед отправкой чтения
+     * @param now текущее время в миллисекундах
+     */
+    void put(int key, String data, long ttl, long version, long now) {
+        if (ttl <= 0 || writes.get() != version) {
+            return;
+        }
+        Segment segment = segmentFor(key);
+
+        synchronized (segment) {
+            if (writes.get() == version) {
+                segment.put(key, new Entry(data, now + Math.min(ttl, maxAge)));
+            }
+        }
+    }
+
+    /**
+     * Удаляет запись из кеша перед её изменением
+     * @param key значение ключа
+     */
+    void invalidate(int key) {
+        Segment segment = segmentFor(key);
+
+        synchronized (segment) {
+            writes.incrementAndGet();
+            segment.remove(key);
+        }
+    }
+
+    private Segment segmentFor(int key) {
+        int hash = key * 0x9e3779b9;
+        return segments[(hash >>> 16) & (segments.length - 1)];
+    }
+
+    /**
+     * Запись кеша
+     */
+    private static final class Entry {
+        /**
+         * Данные
+         */
+        private final String data;
+        /**
+         * Момент, после которого запись нельзя отдавать из кеша
+         */
+        private final long expiresAt;
+
+        private Entry(String data, long expiresAt) {
+            this.data = data;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Сегмент кеша: LinkedHashMap в порядке обращений, вытесняющий самую давнюю запись при переполнении
+     */
+    private static final class Segment extends LinkedHashMap<Integer, Entry> {
+        /**
+         * Наибольшее число записей сегмента
+         */
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, NearCache.Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.spring_problem.client;
+
+import com.example.spring_problem.SpringProblemApplication;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+
+public class DatabaseClientTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ConfigurableApplicationContext application;
+
+    private String url;
+
+    @Before
+    public void startApplication() {
+        application = SpringApplication.run(SpringProblemApplication.class, "--server.port=0",
+                "--database.snapshot.path=" + folder.getRoot().toPath().resolve("data.dat"));
+        url = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+    }
+
+    @After
+    public void stopApplication() {
+        application.close();
+    }
+
+    /**
+     * Тест проверяет запись, чтение, пакетное чтение и удаление через клиент, а также ошибку сервера
+     */
+    @Test
+    public void clientShouldRoundTrip() {
+        try (DatabaseClient client = new DatabaseClient(new ClientOptions().setBaseUri(url))) {
+            client.put(1, "first");
+            client.put(2, "second", 60L);
+
+            Assert.assertEquals("first", client.get(1));
+            Assert.assertNull(client.get(3));
+            Map<Integer, String> all = client.getAll(3, 2, 1);
+            Assert.assertEquals(List.of(2, 1), new ArrayList<>(all.keySet()));
+            Assert.assertEquals("second", all.get(2));
+            Assert.assertEquals("first", client.remove(1));
+            Assert.assertNull(client.remove(1));
+
+            try {
+                client.put(4, "bad", -1L);
+                Assert.fail("Negative ttl must be rejected");
+            } catch (DatabaseClientException e) {
+                Assert.assertEquals(400, e.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Тест проверяет, что чтения, пришедшие, пока все места для запросов заняты, уходят пакетными
+     * запросами и получают свои данные
+     */
+    @Test
+    public void concurrentGetsShouldBeBatched() {
+        try (DatabaseClient client = new DatabaseClient(new ClientOptions().setBaseUri(url).setMaxInFlight(1))) {
+            for (int key = 0; key < 100; key++) {
+                client.put(key, "value " + key);
+            }
+
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                futures.add(client.getAsync(i % 200));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                Assert.assertEquals(i % 200 < 100 ? "value " + i % 200 : null, futures.get(i).join());
+            }
+            ClientStats stats = client.getStats();
+            Assert.assertEquals(500, stats.getKeysFetched());
+            Assert.assertTrue(stats.toString(), stats.getGetRequests() < 500);
+            Assert.assertTrue(stats.toString(), stats.getAverageBatchSize() > 1.0);
+        }
+    }
+
+    /**
+     * Тест проверяет, что локальный кеш отдаёт запись до истечения её времени, а запись этим клиентом
+     * удаляет её из кеша
+     */
+    @Test
+    public void nearCacheShouldExpireAndInvalidate() throws InterruptedException {
+        ClientOptions options = new ClientOptions().setBaseUri(url).setNearCacheSize(1000).setNearCacheMaxAge(60_000L);
+        try (DatabaseClient client = new DatabaseClient(options)) {
+            client.put(1, "short", 1L);
+            client.put(2, "long", 60L);
+
+            Assert.assertEquals("short", client.get(1));
+            Assert.assertEquals("long", client.get(2));
+            Assert.assertEquals("short", client.get(1));
+            Assert.assertEquals("long", client.get(2));
+            Assert.assertEquals(2, client.getStats().getNearCacheHits());
+
+            client.put(2, "changed", 60L);
+            Assert.assertEquals("changed", client.get(2));
+
+            Thread.sleep(1200L);
+            Assert.assertNull(client.get(1));
+            Assert.assertEquals("changed", client.get(2));
+            Assert.assertEquals(3, client.getStats().getNearCacheHits());
+            Assert.assertEquals(4, client.getStats().getNearCacheMisses());
+        }
+    }
+}
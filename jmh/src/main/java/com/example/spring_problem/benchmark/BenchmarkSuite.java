@@ -0,0 +1,61 @@
+package com.example.spring_problem.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Набор бенчмарков для сравнения между версиями: {@link DatabaseBenchmark} на 1, 2, 4 и 8 потоках,
+ * {@link ExpiryBenchmark} и {@link SnapshotBenchmark}, все с профилировщиком сборщика мусора. Результаты
+ * всех запусков записываются одним файлом в формате JSON, по умолчанию jmh-result.json, путь можно передать
+ * первым аргументом: java -cp target/benchmarks.jar com.example.spring_problem.benchmark.BenchmarkSuite result.json.
+ * Файлы двух версий сравниваются по полю primaryMetric.score, выделения памяти на операцию - в поле
+ * secondaryMetrics."·gc.alloc.rate.norm". Отдельные бенчмарки запускаются как обычно:
+ * java -jar target/benchmarks.jar DatabaseBenchmark -t 4 -prof gc -rf json
+ */
+public final class BenchmarkSuite {
+
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    private BenchmarkSuite() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String result = args.length > 0 ? args[0] : "jmh-result.json";
+        List<RunResult> results = new ArrayList<>();
+
+        for (int threads : THREADS) {
+            results.addAll(run(DatabaseBenchmark.class, threads));
+        }
+        results.addAll(run(ExpiryBenchmark.class, 1));
+        results.addAll(run(SnapshotBenchmark.class, 1));
+
+        try (PrintStream out = new PrintStream(new FileOutputStream(result), true, StandardCharsets.UTF_8)) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        System.out.println("results: " + result);
+    }
+
+    private static Collection<RunResult> run(Class<?> benchmark, int threads) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(benchmark.getName() + "\\.")
+                .threads(threads)
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        return new Runner(options).run();
+    }
+}
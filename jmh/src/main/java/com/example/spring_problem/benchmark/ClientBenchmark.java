@@ -0,0 +1,101 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.SpringProblemApplication;
+import com.example.spring_problem.client.ClientOptions;
+import com.example.spring_problem.client.DatabaseClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность чтения по HTTP из нескольких потоков: RAW - по запросу GET на каждое чтение
+ * через {@link HttpClient}, как читает приложение без клиентской библиотеки; CLIENT - через
+ * {@link DatabaseClient}, который объединяет чтения, ждущие свободного места, в пакетные запросы;
+ * NEAR_CACHE - то же с локальным кешем на все ключи. Приложение запускается в этом же процессе на
+ * свободном порту. Запуск: java -jar target/benchmarks.jar ClientBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class ClientBenchmark {
+
+    public enum Mode {
+        RAW, CLIENT, NEAR_CACHE
+    }
+
+    private static final int SIZE = 10_000;
+
+    @Param({"RAW", "CLIENT", "NEAR_CACHE"})
+    public Mode mode;
+
+    private Path snapshot;
+
+    private ConfigurableApplicationContext application;
+
+    private String url;
+
+    private HttpClient http;
+
+    private DatabaseClient client;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        snapshot = Files.createTempFile("client-benchmark", ".dat");
+        application = SpringApplication.run(SpringProblemApplication.class,
+                "--server.port=0", "--database.snapshot.path=" + snapshot);
+        url = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+        http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        client = new DatabaseClient(new ClientOptions()
+                .setBaseUri(url)
+                .setNearCacheSize(mode == Mode.NEAR_CACHE ? SIZE : 0)
+                .setNearCacheMaxAge(60_000L));
+        for (int key = 0; key < SIZE; key++) {
+            client.put(key, "value " + key, 3600L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        System.out.println(client.getStats());
+        client.close();
+        application.close();
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public String get() throws Exception {
+        int key = ThreadLocalRandom.current().nextInt(SIZE);
+        if (mode == Mode.RAW) {
+            return http.send(HttpRequest.newBuilder(URI.create(url + "/database/" + key)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+        }
+        return client.get(key);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость чтения и записи JSON-подобных данных длиной около length символов со сжатием и без него.
+ * getStored - чтение без распаковки, как при ответе клиенту с кодированием deflate. Степень сжатия
+ * печатается после прогона
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CompressionBenchmark {
+
+    private static final int KEYS = 20_000;
+
+    @Param({"2048", "16384"})
+    public int length;
+
+    @Param({"true", "false"})
+    public boolean compressed;
+
+    private Database database;
+
+    private String[] values;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(StorageEngine.INT_HASH);
+        properties.getCompression().setEnabled(compressed);
+        database = new Database(properties);
+        values = new String[16];
+        for (int i = 0; i < values.length; i++) {
+            StringBuilder value = new StringBuilder();
+            for (int item = 0; value.length() < length; item++) {
+                value.append("{\"id\":").append(i * 100_000 + item)
+                        .append(",\"name\":\"item ").append(item)
+                        .append("\",\"price\":").append(item * 37 % 1000)
+                        .append(",\"tags\":[\"sale\",\"new\"]},");
+            }
+            values[i] = value.toString();
+        }
+        for (int key = 0; key < KEYS; key++) {
+            database.put(key, values[key % values.length], 3_600_000L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        System.out.println("\ncompression ratio " + database.getCompressionMetrics().getCompressionRatio());
+        database.shutdown();
+    }
+
+    @Benchmark
+    public String get() {
+        return database.getIfPresent(ThreadLocalRandom.current().nextInt(KEYS));
+    }
+
+    @Benchmark
+    public Object getStored() {
+        return database.getStoredIfPresent(ThreadLocalRandom.current().nextInt(KEYS));
+    }
+
+    @Benchmark
+    public void put() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        database.put(random.nextInt(KEYS), values[random.nextInt(values.length)], 3_600_000L);
+    }
+}
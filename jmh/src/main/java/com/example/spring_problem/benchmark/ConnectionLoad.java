@@ -0,0 +1,254 @@
+package com.example.spring_problem.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузка большим числом одновременных соединений на запущенное приложение: каждое из N постоянных
+ * соединений в замкнутом цикле отправляет GET /database/{key} и ждёт ответа. Все соединения обслуживает
+ * один поток через {@link Selector}, поэтому 10 тыс. соединений не требуют 10 тыс. потоков клиента.
+ * Дополнительно можно открыть S соединений, запрашивающих GET /database/dump и не читающих ответ:
+ * на сервлетном стеке каждое из них удерживает поток Tomcat, на реактивном - только буфер.
+ * <p>
+ * Запуск: java -cp target/benchmarks.jar com.example.spring_problem.benchmark.ConnectionLoad
+ * [host] [port] [connections] [seconds] [keys] [slowDumps], по умолчанию localhost 8080 10000 30 1000 0.
+ * Приложение сравнивается в двух режимах: по умолчанию (Tomcat, для 10 тыс. соединений нужно
+ * --server.tomcat.max-connections=20000) и с --spring.profiles.active=reactive (Netty). Клиенту и
+ * серверу нужен лимит открытых файлов больше числа соединений (ulimit -n 65536)
+ */
+public final class ConnectionLoad {
+
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private static final byte[] LAST_CHUNK = {'\r', '\n', '0', '\r', '\n', '\r', '\n'};
+
+    private ConnectionLoad() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int keys = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+        int slowDumps = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+
+        fill(host, port, keys);
+        List<Socket> dumps = openSlowDumps(host, port, slowDumps);
+        try {
+            run(host, port, connections, seconds, keys);
+        } finally {
+            for (Socket socket : dumps) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Заполняет ключи 0..keys-1, чтобы чтения попадали в хранилище
+     */
+    private static void fill(String host, int port, int keys) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        for (int key = 0; key < keys; key++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + host + ":" + port + "/database/" + key))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString("{\"data\":\"data " + key + "\"}"))
+                    .build();
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    /**
+     * Открывает соединения, запрашивающие выгрузку хранилища и не читающие ответ
+     */
+    private static List<Socket> openSlowDumps(String host, int port, int count) throws IOException {
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Socket socket = new Socket();
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress(host, port));
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /database/dump HTTP/1.1\r\nHost: " + host + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            sockets.add(socket);
+        }
+        return sockets;
+    }
+
+    private static void run(String host, int port, int connections, int seconds, int keys) throws IOException {
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.min(5, seconds / 3));
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+        long[] latencies = new long[1 << 20];
+        int recorded = 0;
+        long errors = 0;
+        int connected = 0;
+
+        try (Selector selector = Selector.open()) {
+            InetSocketAddress address = new InetSocketAddress(host, port);
+            for (int i = 0; i < connections; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.connect(address);
+                channel.register(selector, SelectionKey.OP_CONNECT, new Client(channel, host, keys));
+            }
+
+            while (System.nanoTime() < end) {
+                selector.select(100);
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            client.channel.finishConnect();
+                            connected++;
+                            client.send(key);
+                        } else if (key.isWritable()) {
+                            client.flush(key);
+                        } else if (key.isReadable()) {
+                            int status = client.read();
+                            if (status == 0) {
+                                continue;
+                            }
+                            long now = System.nanoTime();
+                            if (now >= warmupEnd) {
+                                if (status != 200) {
+                                    errors++;
+                                }
+                                if (recorded == latencies.length) {
+                                    latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                                }
+                                latencies[recorded++] = now - client.sentAt;
+                            }
+                            client.send(key);
+                        }
+                    } catch (IOException e) {
+                        errors++;
+                        key.cancel();
+                        client.channel.close();
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+        }
+
+        Arrays.sort(latencies, 0, recorded);
+        System.out.printf("connections %d/%d, requests %d, errors %d, %.0f ops/s%n",
+                connected, connections, recorded, errors, recorded / (double) seconds);
+        if (recorded > 0) {
+            System.out.printf("latency us: p50 %d, p99 %d, p99.9 %d, max %d%n",
+                    percentile(latencies, recorded, 0.5), percentile(latencies, recorded, 0.99),
+                    percentile(latencies, recorded, 0.999), latencies[recorded - 1] / 1000);
+        }
+    }
+
+    private static long percentile(long[] sorted, int count, double quantile) {
+        return sorted[Math.max(0, (int) Math.ceil(count * quantile) - 1)] / 1000;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, byte[] pattern) {
+        for (int i = from; i + pattern.length <= buffer.position(); i++) {
+            int matched = 0;
+            while (matched < pattern.length && buffer.get(i + matched) == pattern[matched]) {
+                matched++;
+            }
+            if (matched == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Соединение клиента с одним запросом в полёте
+     */
+    private static final class Client {
+        private final SocketChannel channel;
+
+        private final String host;
+
+        private final int keys;
+
+        private ByteBuffer in = ByteBuffer.allocate(4096);
+
+        private ByteBuffer out;
+
+        private long sentAt;
+
+        private Client(SocketChannel channel, String host, int keys) {
+            this.channel = channel;
+            this.host = host;
+            this.keys = keys;
+        }
+
+        private void send(SelectionKey key) throws IOException {
+            int next = ThreadLocalRandom.current().nextInt(keys);
+            out = ByteBuffer.wrap(("GET /database/" + next + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            sentAt = System.nanoTime();
+            flush(key);
+        }
+
+        private void flush(SelectionKey key) throws IOException {
+            channel.write(out);
+            key.interestOps(out.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        /**
+         * Читает ответ
+         * @return HTTP статус полностью прочитанного ответа либо 0, если ответ ещё не получен целиком
+         */
+        private int read() throws IOException {
+            if (!in.hasRemaining()) {
+                in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+            }
+            if (channel.read(in) < 0) {
+                throw new IOException("Connection closed");
+            }
+            int headerEnd = indexOf(in, 0, HEADER_END);
+            if (headerEnd < 0) {
+                return 0;
+            }
+            byte[] header = new byte[headerEnd];
+            for (int i = 0; i < headerEnd; i++) {
+                header[i] = in.get(i);
+            }
+            String headers = new String(header, StandardCharsets.US_ASCII).toLowerCase();
+            int bodyStart = headerEnd + HEADER_END.length;
+            int lengthAt = headers.indexOf("content-length:");
+            if (lengthAt >= 0) {
+                int lineEnd = headers.indexOf('\r', lengthAt);
+                int length = Integer.parseInt(headers.substring(lengthAt + 15, lineEnd < 0 ? headers.length() : lineEnd).trim());
+                if (in.position() < bodyStart + length) {
+                    return 0;
+                }
+            } else if (indexOf(in, bodyStart - 2, LAST_CHUNK) < 0) {
+                return 0;
+            }
+            in.clear();
+            return Integer.parseInt(headers.substring(9, 12));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import com.example.spring_problem.metrics.DatabaseMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность {@link Database#put(int, String)}, {@link Database#get(int)} и
+ * {@link Database#remove(int)} по случайным ключам при разном размере хранилища. Число потоков задаётся
+ * параметром -t, перебор нескольких значений выполняет {@link BenchmarkSuite}. С параметром metrics=true
+ * к хранилищу подключены метрики {@link DatabaseMetrics}, как в приложении: разница с metrics=false -
+ * накладные расходы метрик на операцию
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class DatabaseBenchmark {
+
+    private static final String VALUE = "value";
+
+    @Param({"MAP", "INT_HASH"})
+    public StorageEngine engine;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(engine);
+        database = new Database(properties);
+        if (metrics) {
+            new DatabaseMetrics(database, new DataDAOImpl(database, properties))
+                    .bindTo(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        }
+        for (int key = 0; key < size; key++) {
+            database.put(key, VALUE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public String get() {
+        return database.get(ThreadLocalRandom.current().nextInt(size));
+    }
+
+    @Benchmark
+    public void put() {
+        database.put(ThreadLocalRandom.current().nextInt(size), VALUE);
+    }
+
+    /**
+     * Удаление с возвратом записи на место, чтобы размер хранилища не менялся за время измерения.
+     * Другой поток может успеть удалить тот же ключ, поэтому удаление не выбрасывает исключение
+     */
+    @Benchmark
+    public String remove() {
+        int key = ThreadLocalRandom.current().nextInt(size);
+        String data = database.removeIfPresent(key);
+
+        database.put(key, VALUE);
+        return data;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.ExpiryMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Стоимость цикла удаления {@link Database#update()} в зависимости от размера хранилища. idleUpdate -
+ * цикл, в котором ни одна запись не истекла: его время не должно расти с размером хранилища. sweep -
+ * удаление всех size записей после истечения их времени жизни, пропускная способность в записях в
+ * секунду равна size, делённому на время операции. Время задаётся вручную, а период database.expiry.period
+ * равен часу, чтобы собственные циклы хранилища не выполнялись во время измерения
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExpiryBenchmark {
+
+    private static final long PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    private static final long NEVER = Long.MAX_VALUE / 4;
+
+    private static final String VALUE = "value";
+
+    @Param({"WHEEL", "SAMPLED"})
+    public ExpiryMode mode;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void create() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.getExpiry().setMode(mode);
+        properties.getExpiry().setPeriod(PERIOD);
+        database = new Database(properties, clock::get);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public int idleUpdate(Living living) {
+        clock.addAndGet(PERIOD);
+        return database.update();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public int sweep(Expiring expiring) {
+        int reaped = 0;
+
+        clock.addAndGet(2 * PERIOD);
+        do {
+            reaped += database.update();
+        } while (database.size() > 0);
+        return reaped;
+    }
+
+    /**
+     * Заполнение для idleUpdate: записи не истекают за всё время измерения
+     */
+    @State(Scope.Benchmark)
+    public static class Living {
+
+        @Setup(Level.Trial)
+        public void fill(ExpiryBenchmark benchmark) {
+            for (int key = 0; key < benchmark.size; key++) {
+                benchmark.database.put(key, VALUE, NEVER);
+            }
+        }
+    }
+
+    /**
+     * Заполнение для sweep перед каждым вызовом: записи истекают через минуту
+     */
+    @State(Scope.Thread)
+    public static class Expiring {
+
+        @Setup(Level.Invocation)
+        public void fill(ExpiryBenchmark benchmark) {
+            benchmark.database.clear();
+            for (int key = 0; key < benchmark.size; key++) {
+                benchmark.database.put(key, VALUE, TimeUnit.MINUTES.toMillis(1));
+            }
+        }
+    }
+}
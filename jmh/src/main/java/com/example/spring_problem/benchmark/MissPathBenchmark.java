@@ -0,0 +1,101 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.controller.DataControllers;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.EvictionPolicy;
+import com.example.spring_problem.database.StorageEngine;
+import com.example.spring_problem.exception.MissedDataException;
+import com.example.spring_problem.service.DataServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость промаха чтения и удаления через контроллер, сервис, DAO и хранилище. Запуск с профилировщиком
+ * сборщика мусора: java -jar target/benchmarks.jar MissPath -prof gc. Для getMiss и deleteMiss на движках
+ * INT_HASH и OFF_HEAP значение gc.alloc.rate.norm должно быть около 0 байт на операцию, на MAP остаются
+ * 16 байт упаковки ключа в Integer для ConcurrentHashMap. throwingGetMiss показывает прежний путь через
+ * исключение {@link MissedDataException} со стеком. Промахи идут по ключам больше 127, чтобы упаковка
+ * ключа не попадала в кеш {@link Integer#valueOf(int)}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MissPathBenchmark {
+
+    private static final int SIZE = 100_000;
+
+    private static final int MISS_BASE = 1_000_000;
+
+    @Param({"MAP", "INT_HASH", "OFF_HEAP"})
+    public StorageEngine engine;
+
+    @Param({"NONE", "LRU"})
+    public EvictionPolicy policy;
+
+    private Database database;
+
+    private DataControllers controller;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(engine);
+        properties.getEviction().setPolicy(policy);
+        properties.getEviction().setMaxEntries(2L * SIZE);
+        database = new Database(properties);
+        controller = new DataControllers(new DataServiceImpl(new DataDAOImpl(database, properties)));
+        for (int key = 0; key < SIZE; key++) {
+            database.put(key, "value " + key);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> getMiss() {
+        return controller.getData(missKey());
+    }
+
+    @Benchmark
+    public ResponseEntity<?> deleteMiss() {
+        return controller.removeData(missKey());
+    }
+
+    @Benchmark
+    public Object throwingGetMiss() {
+        try {
+            return database.get(missKey());
+        } catch (MissedDataException e) {
+            return e;
+        }
+    }
+
+    private int missKey() {
+        next = (next + 1) & 0xFFFF;
+        return MISS_BASE + next;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение хранения данных в куче ({@link StorageEngine#INT_HASH}) и вне кучи ({@link StorageEngine#OFF_HEAP})
+ * на 5 млн записей по ~200 байт. Нагрузка - 80% чтений и 20% перезаписей новыми строками. По окончании
+ * прогона в stdout печатается строка "gc/rss": число и суммарная длительность сборок мусора за время
+ * измерений, занятая куча и резидентная память процесса (VmRSS, только Linux)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "-XX:MaxDirectMemorySize=8g", "-XX:+UseG1GC"})
+public class OffHeapBenchmark {
+
+    @Param({"INT_HASH", "OFF_HEAP"})
+    public StorageEngine engine;
+
+    @Param({"5000000"})
+    public int size;
+
+    @Param({"200"})
+    public int valueLength;
+
+    private Database database;
+
+    private String[] values;
+
+    private long gcCount;
+
+    private long gcMillis;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(engine);
+        database = new Database(properties);
+
+        values = new String[64];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = String.valueOf((char) ('a' + i % 26)).repeat(valueLength);
+        }
+        for (int key = 0; key < size; key++) {
+            database.put(key, newValue(key));
+        }
+
+        System.gc();
+        gcCount = totalGcCount();
+        gcMillis = totalGcMillis();
+    }
+
+    @TearDown(Level.Trial)
+    public void report() throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("%ngc/rss: engine=%s size=%d gcCount=%d gcMillis=%d heapUsedMb=%d rss=%s%n",
+                engine, size, totalGcCount() - gcCount, totalGcMillis() - gcMillis,
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20, residentSetSize());
+        database.shutdown();
+    }
+
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int key = random.nextInt(size);
+
+        if (random.nextInt(5) == 0) {
+            database.put(key, newValue(key));
+            return null;
+        }
+        return database.get(key);
+    }
+
+    /**
+     * Создаёт новый экземпляр строки, чтобы перезапись порождала мусор в куче, как реальные запросы
+     */
+    private String newValue(int key) {
+        return new String(values[key & (values.length - 1)]);
+    }
+
+    private static long totalGcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long totalGcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static String residentSetSize() throws IOException {
+        if (!Files.exists(Paths.get("/proc/self/status"))) {
+            return "n/a";
+        }
+        return Files.readAllLines(Paths.get("/proc/self/status")).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> line.substring("VmRSS:".length()).trim())
+                .findFirst().orElse("n/a");
+    }
+}
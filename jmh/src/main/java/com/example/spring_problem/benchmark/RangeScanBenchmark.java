@@ -0,0 +1,77 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость страницы обхода диапазона из {@value #PAGE} записей и вставки с упорядоченным индексом ключей
+ * и без него. Время страницы не должно расти с числом записей size. Запуск с большим размером требует кучи
+ * под записи: java -Xmx8g -jar target/benchmarks.jar RangeScan -p size=10000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RangeScanBenchmark {
+
+    private static final int PAGE = 100;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(StorageEngine.INT_HASH);
+        properties.getIndex().setEnabled(indexed);
+        database = new Database(properties);
+        for (int key = 0; key < size; key++) {
+            database.put(key * 2, "value " + key, 3_600_000L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public long scanPage(Blackhole blackhole) {
+        if (!indexed) {
+            return 0L;
+        }
+        int from = ThreadLocalRandom.current().nextInt(2 * size);
+        return database.scan(from, Integer.MAX_VALUE, PAGE, (key, data, ttl) -> blackhole.consume(data));
+    }
+
+    @Benchmark
+    public void put() {
+        int key = ThreadLocalRandom.current().nextInt(2 * size);
+        database.put(key, "value", 3_600_000L);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import com.example.spring_problem.snapshot.LoadProgress;
+import com.example.spring_problem.snapshot.SnapshotLoader;
+import com.example.spring_problem.snapshot.SnapshotWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Время перезапуска хранилища: от создания {@link Database} до готовности обслуживать запросы.
+ * Сравнивается восстановление индекса по сегментам движка {@link StorageEngine#MAPPED} и загрузка
+ * сохранённого файла хранилища в пустое хранилище {@link StorageEngine#MAP}, как при POST /database/load.
+ * По умолчанию 1 млн записей по 1000 байт, 10 ГБ - параметры -p size=10000000 -p valueLength=1000 и
+ * соответствующий -Xmx. Файлы остаются в кеше страниц ОС после записи, поэтому измеряется тёплый
+ * перезапуск; для холодного между итерациями нужно сбрасывать кеш (echo 3 > /proc/sys/vm/drop_caches)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class RestartBenchmark {
+
+    private static final long TTL = 24 * 60 * 60 * 1000L;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"1000"})
+    public int valueLength;
+
+    private Path directory;
+
+    private Path snapshot;
+
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        directory = Files.createTempDirectory("restart");
+        snapshot = directory.resolve("data.dat");
+        String value = "v".repeat(valueLength);
+
+        Database mapped = new Database(properties(StorageEngine.MAPPED));
+        try (SnapshotWriter writer = new SnapshotWriter(Files.newOutputStream(snapshot), true)) {
+            for (int key = 0; key < size; key++) {
+                mapped.put(key, value, TTL);
+                writer.write(key, value, TTL);
+            }
+        } finally {
+            mapped.shutdown();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int mappedRestart() {
+        database = new Database(properties(StorageEngine.MAPPED));
+        return database.size();
+    }
+
+    @Benchmark
+    public int snapshotLoad() throws IOException {
+        database = new Database(properties(StorageEngine.MAP));
+        Database.Staging staging = database.stage();
+        try (InputStream in = Files.newInputStream(snapshot)) {
+            new SnapshotLoader(0).load(in, staging, new LoadProgress());
+        }
+        staging.commit();
+        return database.size();
+    }
+
+    private DatabaseProperties properties(StorageEngine engine) {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(engine);
+        properties.getMapped().setDirectory(directory.resolve("segments").toString());
+        return properties;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование хранилища по числу потоков при смешанной нагрузке: 80% чтений и 20% записей по
+ * случайным ключам. Сравнивается одиночный шард и шарды по числу процессоров (database.shards=0).
+ * JMH не умеет перебирать число потоков параметром, поэтому перебор 1-64 потоков выполняет
+ * {@link #main(String[])}: java -cp target/benchmarks.jar com.example.spring_problem.benchmark.ShardScalingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ShardScalingBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private static final String VALUE = "value";
+
+    @Param({"MAP", "INT_HASH"})
+    public StorageEngine engine;
+
+    @Param({"1", "0"})
+    public int shards;
+
+    @Param({"1000000"})
+    public int size;
+
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(engine);
+        properties.setShards(shards);
+        database = new Database(properties);
+        for (int key = 0; key < size; key++) {
+            database.put(key, VALUE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int key = random.nextInt(size);
+
+        if (random.nextInt(10) < 8) {
+            return database.get(key);
+        }
+        database.put(key, VALUE);
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        StringBuilder summary = new StringBuilder("\nthreads engine shards ops/s\n");
+
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(ShardScalingBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+
+            for (RunResult result : results) {
+                summary.append(String.format("%7d %6s %6s %.0f%n", threads,
+                        result.getParams().getParam("engine"),
+                        result.getParams().getParam("shards"),
+                        result.getPrimaryResult().getScore()));
+            }
+        }
+        System.out.println(summary);
+    }
+}
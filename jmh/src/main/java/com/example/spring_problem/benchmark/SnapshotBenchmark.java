@@ -0,0 +1,127 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.LoadMode;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность сохранения и загрузки хранилища через {@link DataDAOImpl}, как при
+ * GET /database/dump и POST /database/load. Сохранение пишет в поток, который только считает байты,
+ * загрузка читает заранее сохранённый массив, поэтому диск не участвует в измерении. Кроме операций
+ * в секунду выводится вспомогательный результат megabytes - мегабайты потока в секунду
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SnapshotBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"100", "1000"})
+    public int valueLength;
+
+    private Database database;
+
+    private DataDAOImpl dataDAO;
+
+    private byte[] snapshot;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        DatabaseProperties properties = new DatabaseProperties();
+        String value = "v".repeat(valueLength);
+
+        database = new Database(properties);
+        dataDAO = new DataDAOImpl(database, properties);
+        for (int key = 0; key < size; key++) {
+            database.put(key, value);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dataDAO.dump(out);
+        snapshot = out.toByteArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public long dump(Bytes bytes) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+
+        dataDAO.dump(out);
+        bytes.count += out.count;
+        return out.count;
+    }
+
+    @Benchmark
+    public int load(Bytes bytes) {
+        dataDAO.load(new ByteArrayInputStream(snapshot), LoadMode.REPLACE);
+        bytes.count += snapshot.length;
+        return database.size();
+    }
+
+    /**
+     * Счётчик байтов потока, JMH переводит его в мегабайты в секунду
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+
+        private long count;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            count = 0;
+        }
+
+        public double megabytes() {
+            return count / 1e6;
+        }
+    }
+
+    /**
+     * Поток, который только считает записанные байты
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение движков хранения {@link StorageEngine#MAP} и {@link StorageEngine#INT_HASH} по
+ * пропускной способности get/put и по занимаемой в куче памяти. Все записи ссылаются на одну и ту же
+ * строку, поэтому размер кучи после заполнения показывает накладные расходы самого движка.
+ * Размер кучи печатается в stdout строкой "heap footprint" при заполнении хранилища
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class StorageEngineBenchmark {
+
+    private static final String VALUE = "value";
+
+    @Param({"MAP", "INT_HASH"})
+    public StorageEngine engine;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        long before = usedHeap();
+
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(engine);
+        database = new Database(properties);
+        for (int key = 0; key < size; key++) {
+            database.put(key, VALUE);
+        }
+
+        long footprint = usedHeap() - before;
+        System.out.printf("%nheap footprint: engine=%s size=%d bytes=%d bytes/entry=%.1f%n",
+                engine, size, footprint, (double) footprint / size);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public String get() {
+        return database.get(ThreadLocalRandom.current().nextInt(size));
+    }
+
+    @Benchmark
+    public void put() {
+        database.put(ThreadLocalRandom.current().nextInt(size), VALUE);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.spring_problem.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Сравнение чтения через HTTP и через TCP сервер протокола memcached на запущенном приложении: несколько
+ * потоков, каждый со своим соединением, читают ключи в замкнутом цикле сначала по HTTP, затем по TCP.
+ * Выводит пропускную способность и 99-й перцентиль задержки каждого пути, ответы проверяются.
+ * <p>
+ * Запуск: java -cp target/benchmarks.jar com.example.spring_problem.benchmark.TcpLoadComparison
+ * [host] [httpPort] [tcpPort] [threads] [requests] [keys], по умолчанию localhost 8080 11211 4 2000 1000.
+ * Приложение запускается с --database.tcp.enabled=true
+ */
+public final class TcpLoadComparison {
+
+    private TcpLoadComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int httpPort = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int tcpPort = args.length > 2 ? Integer.parseInt(args[2]) : 11211;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int requests = args.length > 4 ? Integer.parseInt(args[4]) : 2000;
+        int keys = args.length > 5 ? Integer.parseInt(args[5]) : 1000;
+        String base = "http://" + host + ":" + httpPort + "/database/";
+
+        try (TcpWorker filler = new TcpWorker(host, tcpPort)) {
+            for (int key = 0; key < keys; key++) {
+                filler.set(key, "data " + key);
+            }
+        }
+        run("HTTP", () -> new HttpWorker(base), threads, requests / 4, keys);
+        run("TCP", () -> new TcpWorker(host, tcpPort), threads, requests / 4, keys);
+        System.out.println(run("HTTP", () -> new HttpWorker(base), threads, requests, keys));
+        System.out.println(run("TCP", () -> new TcpWorker(host, tcpPort), threads, requests, keys));
+    }
+
+    private static String run(String name, WorkerFactory factory, int threads, int requests, int keys)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    long[] latencies = new long[requests];
+                    try (Worker worker = factory.create()) {
+                        for (int i = 0; i < requests; i++) {
+                            int key = (seed * 7919 + i * 31) % keys;
+                            long begin = System.nanoTime();
+                            String data = worker.get(key);
+                            latencies[i] = System.nanoTime() - begin;
+                            if (!("data " + key).equals(data)) {
+                                throw new IllegalStateException(name + " returned " + data + " for key " + key);
+                            }
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+            long[] all = new long[threads * requests];
+            for (int t = 0; t < threads; t++) {
+                System.arraycopy(futures.get(t).get(), 0, all, t * requests, requests);
+            }
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(all);
+            long p99 = all[(int) Math.ceil(all.length * 0.99) - 1];
+            return String.format("%s: %d requests, %.0f ops/s, p99 %d us", name, all.length,
+                    all.length * 1e9 / elapsed, p99 / 1000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface Worker extends AutoCloseable {
+        String get(int key) throws IOException, InterruptedException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private interface WorkerFactory {
+        Worker create() throws IOException;
+    }
+
+    private static final class HttpWorker implements Worker {
+        private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        private final String base;
+
+        private HttpWorker(String base) {
+            this.base = base;
+        }
+
+        @Override
+        public String get(int key) throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + key)).GET().build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP status " + response.statusCode() + " for key " + key);
+            }
+            return response.body();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class TcpWorker implements Worker {
+        private final Socket socket;
+
+        private final OutputStream out;
+
+        private final BufferedReader in;
+
+        private TcpWorker(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        private void set(int key, String data) throws IOException {
+            byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+            out.write(("set " + key + " 0 0 " + bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(bytes);
+            out.write(new byte[]{'\r', '\n'});
+            out.flush();
+            expect("STORED", in.readLine());
+        }
+
+        @Override
+        public String get(int key) throws IOException {
+            out.write(("get " + key + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String header = in.readLine();
+            if (header == null || !header.startsWith("VALUE " + key + " ")) {
+                throw new IOException("Unexpected response " + header + " for key " + key);
+            }
+            String data = in.readLine();
+            expect("END", in.readLine());
+            return data;
+        }
+
+        private static void expect(String expected, String line) throws IOException {
+            if (!expected.equals(line)) {
+                throw new IOException("Expected " + expected + ", got " + line);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
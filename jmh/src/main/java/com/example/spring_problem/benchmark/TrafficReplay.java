@@ -0,0 +1,459 @@
+package com.example.spring_problem.benchmark;
+
+import com.example.spring_problem.SpringProblemApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Воспроизведение нагрузки на /database/* с заданной частотой запросов в открытом цикле: момент отправки
+ * каждого запроса назначается заранее по частоте rate и не зависит от того, как быстро отвечает сервер.
+ * Время ответа отсчитывается от назначенного момента, а не от фактической отправки, поэтому задержка
+ * в очереди клиента, пока все соединения заняты, входит в измерение (поправка на coordinated omission,
+ * как в wrk2). Для сравнения выводится и время обслуживания - от фактической отправки, как его видит
+ * клиент в замкнутом цикле. Гистограммы строятся HdrHistogram в микросекундах.
+ * <p>
+ * Операции берутся из файла трассы JSONL по одной на строку, трасса повторяется по кругу:
+ * {"op":"get","key":1}, {"op":"put","key":1,"data":"value","ttl":60}, {"op":"delete","key":1}.
+ * Без трассы операции генерируются: ключи 0..keys-1 по распределению Ципфа с параметром zipf, доля
+ * чтений reads, остальное - поровну записи и удаления; перед запуском все ключи заполняются.
+ * <p>
+ * Запуск: java -cp target/benchmarks.jar com.example.spring_problem.benchmark.TrafficReplay [name=value...].
+ * Параметры и значения по умолчанию: url=http://localhost:8080, local=false - запустить приложение в этом
+ * же процессе на свободном порту (аргументы вида --database.engine=INT_HASH передаются приложению),
+ * trace - файл трассы, rate=10000 запросов в секунду, seconds=60, warmup=10, connections=64, keys=100000,
+ * zipf=0.99, reads=0.9, valueLength=100, seed=1, hgrm - файл для полной гистограммы времени ответа.
+ * С параметром write=файл и count=N генератор записывает N операций в файл трассы и завершается
+ */
+public final class TrafficReplay {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private TrafficReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                applicationArgs.add(arg);
+            } else {
+                int separator = arg.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Expected name=value: " + arg);
+                }
+                options.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+
+        Workload workload = options.containsKey("trace")
+                ? Trace.read(options.get("trace"))
+                : new Generator(Integer.parseInt(options.getOrDefault("keys", "100000")),
+                        Double.parseDouble(options.getOrDefault("zipf", "0.99")),
+                        Double.parseDouble(options.getOrDefault("reads", "0.9")),
+                        Integer.parseInt(options.getOrDefault("valueLength", "100")));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        if (options.containsKey("write")) {
+            write(workload, options.get("write"), Integer.parseInt(options.getOrDefault("count", "1000000")), seed);
+            return;
+        }
+
+        ConfigurableApplicationContext application = null;
+        String url = options.getOrDefault("url", "http://localhost:8080");
+        if (Boolean.parseBoolean(options.getOrDefault("local", "false"))) {
+            applicationArgs.add("--server.port=0");
+            application = SpringApplication.run(SpringProblemApplication.class, applicationArgs.toArray(new String[0]));
+            url = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            Driver driver = new Driver(url, workload, seed,
+                    Integer.parseInt(options.getOrDefault("rate", "10000")),
+                    Integer.parseInt(options.getOrDefault("seconds", "60")),
+                    Integer.parseInt(options.getOrDefault("warmup", "10")),
+                    Integer.parseInt(options.getOrDefault("connections", "64")));
+            if (workload instanceof Generator) {
+                driver.fill(((Generator) workload).keys);
+            }
+            driver.run();
+            driver.report(System.out);
+            if (options.containsKey("hgrm")) {
+                try (PrintStream out = new PrintStream(Files.newOutputStream(Paths.get(options.get("hgrm"))),
+                        false, StandardCharsets.UTF_8)) {
+                    driver.responseTime.outputPercentileDistribution(out, 1.0);
+                }
+            }
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+
+    private static void write(Workload workload, String path, int count, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(path))) {
+            for (int i = 0; i < count; i++) {
+                writer.write(MAPPER.writeValueAsString(workload.next(i, random).toJson()));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Тип операции трассы
+     */
+    enum Op {
+        GET, PUT, DELETE
+    }
+
+    /**
+     * Одна операция над хранилищем
+     */
+    static final class Operation {
+        private final Op op;
+
+        private final int key;
+
+        private final String data;
+
+        private final Long ttl;
+
+        Operation(Op op, int key, String data, Long ttl) {
+            this.op = op;
+            this.key = key;
+            this.data = data;
+            this.ttl = ttl;
+        }
+
+        static Operation parse(JsonNode node) {
+            Op op = Op.valueOf(node.path("op").asText().toUpperCase());
+            if (!node.hasNonNull("key")) {
+                throw new IllegalArgumentException("Operation without key: " + node);
+            }
+            return new Operation(op, node.get("key").asInt(), node.path("data").asText(null),
+                    node.hasNonNull("ttl") ? node.get("ttl").asLong() : null);
+        }
+
+        Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("op", op.name().toLowerCase());
+            json.put("key", key);
+            if (data != null) {
+                json.put("data", data);
+            }
+            if (ttl != null) {
+                json.put("ttl", ttl);
+            }
+            return json;
+        }
+
+        HttpRequest toRequest(String url) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url + "/database/" + key))
+                    .timeout(Duration.ofSeconds(30));
+            switch (op) {
+                case PUT:
+                    Map<String, Object> body = new HashMap<>();
+                    body.put("data", data);
+                    if (ttl != null) {
+                        body.put("ttl", ttl);
+                    }
+                    try {
+                        return builder.header("Content-Type", "application/json")
+                                .PUT(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(body)))
+                                .build();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                case DELETE:
+                    return builder.DELETE().build();
+                default:
+                    return builder.GET().build();
+            }
+        }
+    }
+
+    /**
+     * Источник операций: i - порядковый номер операции, random - генератор случайных чисел соединения
+     */
+    interface Workload {
+        Operation next(long i, Random random);
+    }
+
+    /**
+     * Операции из файла трассы, повторяемые по кругу
+     */
+    static final class Trace implements Workload {
+        private final Operation[] operations;
+
+        private Trace(Operation[] operations) {
+            this.operations = operations;
+        }
+
+        static Trace read(String path) throws IOException {
+            List<Operation> operations = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(path))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        operations.add(Operation.parse(MAPPER.readTree(line)));
+                    }
+                }
+            }
+            if (operations.isEmpty()) {
+                throw new IllegalArgumentException("Trace " + path + " has no operations");
+            }
+            return new Trace(operations.toArray(new Operation[0]));
+        }
+
+        @Override
+        public Operation next(long i, Random random) {
+            return operations[(int) (i % operations.length)];
+        }
+    }
+
+    /**
+     * Генератор операций с ключами по распределению Ципфа
+     */
+    static final class Generator implements Workload {
+        private final int keys;
+
+        private final Zipf zipf;
+
+        private final double reads;
+
+        private final String value;
+
+        Generator(int keys, double skew, double reads, int valueLength) {
+            this.keys = keys;
+            this.zipf = new Zipf(keys, skew);
+            this.reads = reads;
+            this.value = "v".repeat(valueLength);
+        }
+
+        @Override
+        public Operation next(long i, Random random) {
+            int key = zipf.next(random);
+            double p = random.nextDouble();
+            if (p < reads) {
+                return new Operation(Op.GET, key, null, null);
+            }
+            return p < reads + (1 - reads) / 2
+                    ? new Operation(Op.PUT, key, value, null)
+                    : new Operation(Op.DELETE, key, null, null);
+        }
+    }
+
+    /**
+     * Распределение Ципфа на 0..n-1, ключ 0 самый частый. Выборка за O(1) по методу Грея и др.
+     * ("Quickly generating billion-record synthetic databases"), как ZipfianGenerator в YCSB
+     */
+    static final class Zipf {
+        private final int n;
+
+        private final double theta;
+
+        private final double alpha;
+
+        private final double zetan;
+
+        private final double eta;
+
+        Zipf(int n, double theta) {
+            if (n < 2 || theta <= 0 || theta >= 1) {
+                throw new IllegalArgumentException("Zipf needs n >= 2 and 0 < theta < 1");
+            }
+            this.n = n;
+            this.theta = theta;
+            this.alpha = 1 / (1 - theta);
+            this.zetan = zeta(n, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        int next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            return Math.min(n - 1, (int) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+
+    /**
+     * Отправляет запросы по расписанию: операция i назначена на start + i / rate и выполняется
+     * соединением i % connections, у каждого соединения свой поток и свои гистограммы
+     */
+    static final class Driver {
+        private final String url;
+
+        private final Workload workload;
+
+        private final long seed;
+
+        private final int rate;
+
+        private final int seconds;
+
+        private final int warmup;
+
+        private final int connections;
+
+        private final HttpClient client;
+
+        private final Histogram responseTime = new Histogram(3);
+
+        private final Histogram serviceTime = new Histogram(3);
+
+        private final AtomicLong misses = new AtomicLong();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private long measured;
+
+        Driver(String url, Workload workload, long seed, int rate, int seconds, int warmup, int connections) {
+            this.url = url;
+            this.workload = workload;
+            this.seed = seed;
+            this.rate = rate;
+            this.seconds = seconds;
+            this.warmup = warmup;
+            this.connections = connections;
+            this.client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+        }
+
+        /**
+         * Заполняет ключи 0..keys-1 пакетами через PUT /database/batch, чтобы чтения попадали в хранилище
+         */
+        void fill(int keys) throws IOException, InterruptedException {
+            String value = MAPPER.writeValueAsString("v");
+            for (int from = 0; from < keys; from += 1000) {
+                StringBuilder body = new StringBuilder("[");
+                for (int key = from; key < Math.min(keys, from + 1000); key++) {
+                    body.append(key > from ? "," : "").append("{\"key\":").append(key)
+                            .append(",\"data\":").append(value).append('}');
+                }
+                HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/database/batch"))
+                        .header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString(body.append(']').toString()))
+                        .build();
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    throw new IOException("Fill failed with status " + response.statusCode());
+                }
+            }
+        }
+
+        void run() throws InterruptedException {
+            long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+            long total = (long) rate * (warmup + seconds);
+            long measuredFrom = (long) rate * warmup;
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            Histogram[] responses = new Histogram[connections];
+            Histogram[] services = new Histogram[connections];
+            Thread[] threads = new Thread[connections];
+
+            for (int c = 0; c < connections; c++) {
+                int connection = c;
+                responses[c] = new Histogram(3);
+                services[c] = new Histogram(3);
+                threads[c] = new Thread(() -> {
+                    Random random = new Random(seed + connection);
+                    for (long i = connection; i < total; i += connections) {
+                        HttpRequest request = workload.next(i, random).toRequest(url);
+                        long intended = start + i * interval;
+                        long now;
+                        while ((now = System.nanoTime()) < intended) {
+                            LockSupport.parkNanos(intended - now);
+                        }
+                        int status = send(request);
+                        long done = System.nanoTime();
+                        if (i >= measuredFrom) {
+                            responses[connection].recordValue((done - intended) / 1000);
+                            services[connection].recordValue((done - now) / 1000);
+                            if (status == 404) {
+                                misses.incrementAndGet();
+                            } else if (status != 200) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                }, "replay-" + c);
+                threads[c].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (int c = 0; c < connections; c++) {
+                responseTime.add(responses[c]);
+                serviceTime.add(services[c]);
+            }
+            measured = total - measuredFrom;
+            long elapsed = System.nanoTime() - start - TimeUnit.SECONDS.toNanos(warmup);
+            System.out.printf("target %d ops/s, achieved %.0f ops/s%n", rate, measured / (elapsed / 1e9));
+        }
+
+        private int send(HttpRequest request) {
+            try {
+                return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                return -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+
+        void report(PrintStream out) {
+            out.printf("requests %d, misses %d, errors %d%n", measured, misses.get(), errors.get());
+            print(out, "response time (from intended start)", responseTime);
+            print(out, "service time (from actual send)    ", serviceTime);
+        }
+
+        private static void print(PrintStream out, String name, Histogram histogram) {
+            out.printf("%s us: p50 %d, p90 %d, p99 %d, p99.9 %d, p99.99 %d, max %d%n", name,
+                    histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                    histogram.getValueAtPercentile(99.99), histogram.getMaxValue());
+        }
+    }
+}
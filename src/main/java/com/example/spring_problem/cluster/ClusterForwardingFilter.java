@@ -0,0 +1,71 @@
+package com.example.spring_problem.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+/**
+ * Фильтр сервлетного стека, пересылающий запросы "/database/{key}" и "/database/{key}/{ttl}" к ключам
+ * других участников кластера их владельцам и возвращающий ответ владельца как есть. Запросы к своим ключам
+ * и уже пересланные запросы передаются контроллерам без изменений
+ */
+@Component
+@ConditionalOnProperty(prefix = "database.cluster", name = "enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ClusterForwardingFilter extends OncePerRequestFilter {
+    /**
+     * Узел кластера
+     */
+    private final ClusterRouter router;
+
+    /**
+     * Конструктор фильтра
+     * @param router узел кластера
+     */
+    public ClusterForwardingFilter(ClusterRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long key = ClusterRouter.keyOf(request.getRequestURI());
+        String owner = key == ClusterRouter.NOT_A_KEY || request.getHeader(ClusterRouter.FORWARDED_HEADER) != null
+                ? null : router.remoteOwnerOf((int) key);
+        if (owner == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String query = request.getQueryString();
+        byte[] body = request.getInputStream().readAllBytes();
+        HttpResponse<byte[]> forwarded;
+        try {
+            forwarded = router.forward(owner, request.getMethod(),
+                    query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query,
+                    request.getContentType(), body);
+        } catch (IOException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            response.setStatus(HttpStatus.BAD_GATEWAY.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getOutputStream().write(ClusterRouter.unavailable(owner, e));
+            return;
+        }
+        response.setStatus(forwarded.statusCode());
+        forwarded.headers().firstValue("Content-Type").ifPresent(response::setContentType);
+        response.setContentLength(forwarded.body().length);
+        response.getOutputStream().write(forwarded.body());
+    }
+}
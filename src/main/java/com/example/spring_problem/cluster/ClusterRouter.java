@@ -0,0 +1,477 @@
+package com.example.spring_problem.cluster;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.exception.ReturnEMessage;
+import com.example.spring_problem.snapshot.SnapshotReader;
+import com.example.spring_problem.snapshot.SnapshotWriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Узел кластера, делящего ключи между участниками по кольцу согласованного хеширования {@link HashRing}.
+ * Запросы к ключам чужих участников пересылаются владельцу через {@link HttpClient}, который держит
+ * открытыми соединения HTTP/1.1 с каждым участником и использует их повторно. После смены списка участников
+ * узел в отдельном потоке одним обходом хранилища передаёт новым владельцам только сменившие владельца
+ * ключи, потоком в формате снимка, и удаляет переданные ключи у себя. Пока передача не закончена, новый
+ * владелец может не находить ещё не полученные ключи, а запись, пришедшая на прежнего владельца в момент
+ * смены кольца, может потеряться. Время простоя записи при передаче превращается в оставшееся время жизни.
+ * Запускается при database.cluster.enabled=true
+ */
+@Component
+@ConditionalOnProperty(prefix = "database.cluster", name = "enabled", havingValue = "true")
+public class ClusterRouter {
+    /**
+     * Заголовок пересланного запроса со значением адреса переславшего узла. Получивший такой запрос узел
+     * обслуживает его сам, даже если по его кольцу ключ принадлежит другому участнику, чтобы узлы с
+     * разными списками участников не пересылали запрос друг другу по кругу
+     */
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+    /**
+     * Путь приёма переданных ключей
+     */
+    public static final String TRANSFER_PATH = "/database/cluster/transfer";
+
+    /**
+     * Возвращается {@link #keyOf(String)}, если путь не обращается к одному ключу
+     */
+    public static final long NOT_A_KEY = Long.MIN_VALUE;
+
+    /**
+     * Префикс пути запросов к одному ключу
+     */
+    private static final String KEY_PATH = "/database/";
+
+    /**
+     * Размер части тела при передаче ключей в байтах
+     */
+    private static final int TRANSFER_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Преобразователь сообщений об ошибках в JSON
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Хранилище
+     */
+    private final Database database;
+
+    /**
+     * Адрес этого узла
+     */
+    private final String self;
+
+    /**
+     * Настройки кластера
+     */
+    private final DatabaseProperties.Cluster properties;
+
+    /**
+     * Клиент пересылки запросов с пулом постоянных соединений
+     */
+    private final HttpClient client;
+
+    /**
+     * Поток перераспределения ключей
+     */
+    private final ExecutorService rebalancer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-rebalance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Текущее кольцо
+     */
+    private volatile HashRing ring;
+
+    /**
+     * Число запланированных и выполняющихся перераспределений
+     */
+    private final AtomicInteger rebalances = new AtomicInteger();
+
+    /**
+     * Число переданных другим узлам записей
+     */
+    private final AtomicLong keysSent = new AtomicLong();
+
+    /**
+     * Число полученных от других узлов записей
+     */
+    private final AtomicLong keysReceived = new AtomicLong();
+
+    /**
+     * Ошибка последнего перераспределения, null - ошибки не было
+     */
+    private volatile String lastError;
+
+    /**
+     * Конструктор узла, список участников читается из database.cluster.members-file, если он задан, иначе
+     * берётся из database.cluster.members
+     * @param database хранилище
+     * @param properties настройки хранилища, используются свойства database.cluster
+     * @throws IOException если файл участников не удалось прочитать
+     * @throws IllegalArgumentException если список участников пуст
+     */
+    public ClusterRouter(Database database, DatabaseProperties properties) throws IOException {
+        this.database = database;
+        this.properties = properties.getCluster();
+        this.self = normalize(this.properties.getSelf());
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(this.properties.getConnectTimeout()))
+                .build();
+
+        List<String> members = this.properties.getMembers();
+        if (!this.properties.getMembersFile().isEmpty()) {
+            members = Files.readAllLines(Paths.get(this.properties.getMembersFile())).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.startsWith("#"))
+                    .collect(Collectors.toList());
+        }
+        this.ring = new HashRing(normalize(members), this.properties.getVirtualNodes());
+    }
+
+    /**
+     * Останавливает поток перераспределения, не дожидаясь конца передачи
+     */
+    @PreDestroy
+    public void stop() {
+        rebalancer.shutdownNow();
+    }
+
+    /**
+     * Возвращает ключ запроса к одному ключу вида "/database/{key}" или "/database/{key}/{ttl}"
+     * @param path путь запроса
+     * @return ключ либо {@link #NOT_A_KEY}, если путь не обращается к одному ключу
+     */
+    public static long keyOf(String path) {
+        if (!path.startsWith(KEY_PATH)) {
+            return NOT_A_KEY;
+        }
+        int start = KEY_PATH.length();
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        } else if (!isNumber(path, end + 1, path.length())) {
+            return NOT_A_KEY;
+        }
+        if (!isNumber(path, start, end) || end - start > 11) {
+            return NOT_A_KEY;
+        }
+        long key = Long.parseLong(path.substring(start, end));
+        return key == (int) key ? key : NOT_A_KEY;
+    }
+
+    /**
+     * Возвращает владельца ключа по текущему кольцу
+     * @param key значение ключа для хранилища
+     * @return адрес владельца либо null, если ключ принадлежит этому узлу
+     */
+    public String remoteOwnerOf(int key) {
+        String owner = ring.ownerOf(key);
+        return owner.equals(self) ? null : owner;
+    }
+
+    /**
+     * Пересылает запрос владельцу ключа и ждёт ответа
+     * @param owner адрес владельца
+     * @param method метод запроса
+     * @param pathAndQuery путь и строка параметров запроса
+     * @param contentType тип тела запроса либо null
+     * @param body тело запроса, пустой массив - без тела
+     * @return ответ владельца
+     * @throws IOException если владелец недоступен
+     * @throws InterruptedException если ожидание прервано
+     */
+    public HttpResponse<byte[]> forward(String owner, String method, String pathAndQuery, String contentType,
+                                        byte[] body) throws IOException, InterruptedException {
+        return client.send(request(owner, method, pathAndQuery, contentType, body),
+                HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Асинхронный вариант {@link #forward(String, String, String, String, byte[])}, не занимающий поток
+     * на время ожидания ответа
+     * @param owner адрес владельца
+     * @param method метод запроса
+     * @param pathAndQuery путь и строка параметров запроса
+     * @param contentType тип тела запроса либо null
+     * @param body тело запроса, пустой массив - без тела
+     * @return ответ владельца
+     */
+    public CompletableFuture<HttpResponse<byte[]>> forwardAsync(String owner, String method, String pathAndQuery,
+                                                                String contentType, byte[] body) {
+        return client.sendAsync(request(owner, method, pathAndQuery, contentType, body),
+                HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Возвращает тело ответа со статусом 502, когда владелец ключа недоступен
+     * @param owner адрес владельца
+     * @param cause причина
+     * @return сообщение об ошибке в JSON
+     */
+    public static byte[] unavailable(String owner, Throwable cause) {
+        ReturnEMessage message = new ReturnEMessage();
+        message.setMessage("Cluster member " + owner + " is unavailable: " + cause);
+
+        try {
+            return MAPPER.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Заменяет список участников и запускает передачу сменивших владельца ключей. Узел, которого нет в
+     * новом списке, передаёт все свои ключи. Список нужно заменить на всех узлах, включая новые
+     * @param members адреса участников
+     * @return состояние узла
+     * @throws IllegalArgumentException если список участников пуст
+     */
+    public synchronized ClusterStatus changeMembers(Collection<String> members) {
+        ring = new HashRing(normalize(members), properties.getVirtualNodes());
+        rebalances.incrementAndGet();
+        rebalancer.execute(this::rebalance);
+        return getStatus();
+    }
+
+    /**
+     * Принимает ключи, переданные другим узлом, и помещает их в хранилище с оставшимся временем жизни
+     * @param in тело запроса в формате снимка
+     * @return число полученных записей
+     * @throws IOException если чтение не удалось
+     */
+    public long receive(InputStream in) throws IOException {
+        long records = new SnapshotReader(in).read(database::put);
+
+        keysReceived.addAndGet(records);
+        return records;
+    }
+
+    /**
+     * Возвращает состояние узла
+     * @return состояние узла кластера
+     */
+    public ClusterStatus getStatus() {
+        HashRing current = ring;
+
+        return new ClusterStatus(true, self, current.getMembers(), current.getVirtualNodes(), database.size(),
+                rebalances.get() > 0, keysSent.get(), keysReceived.get(), lastError);
+    }
+
+    /**
+     * Одним обходом хранилища передаёт каждому участнику ключи, которые принадлежат ему по текущему кольцу,
+     * и после подтверждения приёма удаляет их у себя. Ключи, передача которых не удалась, остаются на узле
+     * до следующего перераспределения
+     */
+    private void rebalance() {
+        HashRing current = ring;
+        Map<String, Transfer> transfers = new HashMap<>();
+        List<String> errors = new ArrayList<>();
+
+        try {
+            database.dump((key, data, ttl) -> {
+                String owner = current.ownerOf(key);
+                if (owner.equals(self)) {
+                    return;
+                }
+                try {
+                    Transfer transfer = transfers.get(owner);
+                    if (transfer == null) {
+                        transfer = new Transfer(owner);
+                        transfers.put(owner, transfer);
+                    }
+                    transfer.write(key, data, ttl);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(owner + ": " + e.getMessage(), e);
+                }
+            });
+        } catch (RuntimeException e) {
+            errors.add(e.toString());
+        }
+        try {
+            for (Transfer transfer : transfers.values()) {
+                try {
+                    transfer.complete(errors.isEmpty());
+                } catch (IOException e) {
+                    errors.add(transfer.owner + ": " + e);
+                }
+            }
+            lastError = errors.isEmpty() ? null : String.join("; ", errors);
+            if (!errors.isEmpty()) {
+                System.err.println("Cluster rebalance failed: " + lastError);
+            }
+        } finally {
+            rebalances.decrementAndGet();
+        }
+    }
+
+    /**
+     * Собирает запрос к другому узлу
+     * @param owner адрес узла
+     * @param method метод запроса
+     * @param pathAndQuery путь и строка параметров запроса
+     * @param contentType тип тела запроса либо null
+     * @param body тело запроса
+     * @return запрос
+     */
+    private HttpRequest request(String owner, String method, String pathAndQuery, String contentType, byte[] body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(owner + pathAndQuery))
+                .timeout(Duration.ofMillis(properties.getRequestTimeout()))
+                .header(FORWARDED_HEADER, self)
+                .method(method, body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+        if (contentType != null) {
+            builder.header("Content-Type", contentType);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Приводит адреса участников к одному виду: без пробелов и завершающей косой черты, без пустых строк
+     * @param members адреса участников
+     * @return адреса участников
+     */
+    private static List<String> normalize(Collection<String> members) {
+        return members.stream()
+                .map(ClusterRouter::normalize)
+                .filter(member -> !member.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static String normalize(String member) {
+        String trimmed = member.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    private static boolean isNumber(String path, int start, int end) {
+        if (start < end && path.charAt(start) == '-') {
+            start++;
+        }
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Передача ключей одному участнику: тело запроса к {@link #TRANSFER_PATH} записывается частями прямо
+     * в соединение по мере обхода хранилища
+     */
+    private final class Transfer {
+        /**
+         * Адрес участника
+         */
+        private final String owner;
+
+        /**
+         * Соединение с участником
+         */
+        private final HttpURLConnection connection;
+
+        /**
+         * Запись ключей в тело запроса
+         */
+        private final SnapshotWriter writer;
+
+        /**
+         * Переданные ключи
+         */
+        private int[] keys = new int[1024];
+
+        /**
+         * Число переданных ключей
+         */
+        private int count;
+
+        Transfer(String owner) throws IOException {
+            this.owner = owner;
+            connection = (HttpURLConnection) URI.create(owner + TRANSFER_PATH).toURL().openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(TRANSFER_CHUNK_SIZE);
+            connection.setConnectTimeout((int) properties.getConnectTimeout());
+            connection.setReadTimeout((int) properties.getRequestTimeout());
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty(FORWARDED_HEADER, self);
+            writer = new SnapshotWriter(connection.getOutputStream(), false);
+        }
+
+        void write(int key, String data, long ttl) throws IOException {
+            writer.write(key, data, ttl);
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+            }
+            keys[count++] = key;
+        }
+
+        /**
+         * Завершает передачу и, если участник подтвердил приём, удаляет переданные ключи, которые по
+         * текущему кольцу по-прежнему принадлежат другим участникам
+         * @param succeeded правдивость утверждения о том, что обход хранилища завершился без ошибок
+         * @throws IOException если передача не удалась
+         */
+        void complete(boolean succeeded) throws IOException {
+            if (!succeeded) {
+                connection.disconnect();
+                return;
+            }
+            try {
+                writer.close();
+                int status = connection.getResponseCode();
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Transfer rejected with status " + status);
+                }
+                try (InputStream in = connection.getInputStream()) {
+                    in.readAllBytes();
+                }
+            } catch (IOException e) {
+                connection.disconnect();
+                throw e;
+            }
+            keysSent.addAndGet(count);
+            for (int i = 0; i < count; i++) {
+                if (remoteOwnerOf(keys[i]) != null) {
+                    database.removeIfPresent(keys[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.spring_problem.cluster;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Состояние узла кластера: его адрес, участники кольца, число ключей на узле и ход перераспределения ключей
+ */
+public class ClusterStatus {
+    /**
+     * Правдивость утверждения о том, что режим кластера включён
+     */
+    private final boolean enabled;
+    /**
+     * Адрес узла
+     */
+    private final String self;
+    /**
+     * Участники кольца
+     */
+    private final List<String> members;
+    /**
+     * Число виртуальных узлов каждого участника
+     */
+    private final int virtualNodes;
+    /**
+     * Число записей, хранящихся на узле
+     */
+    private final long localKeys;
+    /**
+     * Правдивость утверждения о том, что узел передаёт ключи новым владельцам
+     */
+    private final boolean rebalancing;
+    /**
+     * Число записей, переданных другим узлам
+     */
+    private final long keysSent;
+    /**
+     * Число записей, полученных от других узлов
+     */
+    private final long keysReceived;
+    /**
+     * Ошибка последнего перераспределения, null - перераспределение прошло успешно или не выполнялось
+     */
+    private final String lastError;
+
+    /**
+     * Создаёт состояние узла кластера
+     * @param enabled правдивость утверждения о том, что режим кластера включён
+     * @param self адрес узла
+     * @param members участники кольца
+     * @param virtualNodes число виртуальных узлов каждого участника
+     * @param localKeys число записей на узле
+     * @param rebalancing правдивость утверждения о том, что узел передаёт ключи
+     * @param keysSent число переданных записей
+     * @param keysReceived число полученных записей
+     * @param lastError ошибка последнего перераспределения либо null
+     */
+    public ClusterStatus(boolean enabled, String self, List<String> members, int virtualNodes, long localKeys,
+                         boolean rebalancing, long keysSent, long keysReceived, String lastError) {
+        this.enabled = enabled;
+        this.self = self;
+        this.members = members;
+        this.virtualNodes = virtualNodes;
+        this.localKeys = localKeys;
+        this.rebalancing = rebalancing;
+        this.keysSent = keysSent;
+        this.keysReceived = keysReceived;
+        this.lastError = lastError;
+    }
+
+    /**
+     * Создаёт состояние экземпляра вне кластера
+     * @return состояние с выключенным режимом кластера
+     */
+    public static ClusterStatus none() {
+        return new ClusterStatus(false, null, Collections.emptyList(), 0, 0L, false, 0L, 0L, null);
+    }
+
+    /**
+     * Метод, возвращающий признак режима кластера
+     * @return правдивость утверждения о том, что режим кластера включён
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Метод, возвращающий адрес узла
+     * @return адрес узла
+     */
+    public String getSelf() {
+        return self;
+    }
+
+    /**
+     * Метод, возвращающий участников кольца
+     * @return адреса участников
+     */
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Метод, возвращающий число виртуальных узлов каждого участника
+     * @return число виртуальных узлов
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * Метод, возвращающий число записей на узле
+     * @return число записей
+     */
+    public long getLocalKeys() {
+        return localKeys;
+    }
+
+    /**
+     * Метод, возвращающий признак перераспределения ключей
+     * @return правдивость утверждения о том, что узел передаёт ключи
+     */
+    public boolean isRebalancing() {
+        return rebalancing;
+    }
+
+    /**
+     * Метод, возвращающий число переданных другим узлам записей
+     * @return число записей
+     */
+    public long getKeysSent() {
+        return keysSent;
+    }
+
+    /**
+     * Метод, возвращающий число полученных от других узлов записей
+     * @return число записей
+     */
+    public long getKeysReceived() {
+        return keysReceived;
+    }
+
+    /**
+     * Метод, возвращающий ошибку последнего перераспределения
+     * @return описание ошибки либо null
+     */
+    public String getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.spring_problem.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Кольцо согласованного хеширования: каждый участник занимает на кольце заданное число виртуальных узлов,
+ * ключ принадлежит участнику первого виртуального узла не меньше хеша ключа. При добавлении участника
+ * владельца меняют только ключи, попавшие на дуги перед его виртуальными узлами, в среднем 1/n всех ключей,
+ * и все они переходят к новому участнику. Участники упорядочиваются, поэтому кольцо не зависит от порядка
+ * перечисления участников. Неизменяемо
+ */
+public final class HashRing {
+    /**
+     * Участники по возрастанию
+     */
+    private final List<String> members;
+
+    /**
+     * Число виртуальных узлов каждого участника
+     */
+    private final int virtualNodes;
+
+    /**
+     * Хеши виртуальных узлов по возрастанию
+     */
+    private final int[] points;
+
+    /**
+     * Участники виртуальных узлов в порядке {@link #points}
+     */
+    private final String[] owners;
+
+    /**
+     * Строит кольцо
+     * @param members адреса участников, повторы не учитываются
+     * @param virtualNodes число виртуальных узлов каждого участника
+     * @throws IllegalArgumentException если участников нет или число виртуальных узлов не положительно
+     */
+    public HashRing(Collection<String> members, int virtualNodes) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("Cluster needs at least one member");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Number of virtual nodes must be positive");
+        }
+        this.members = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(members)));
+        this.virtualNodes = virtualNodes;
+
+        long[] nodes = new long[this.members.size() * virtualNodes];
+        int count = 0;
+        for (int member = 0; member < this.members.size(); member++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                int point = hash(this.members.get(member) + "#" + node);
+                nodes[count++] = ((long) point << 32) | member;
+            }
+        }
+        Arrays.sort(nodes);
+
+        points = new int[nodes.length];
+        owners = new String[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            points[i] = (int) (nodes[i] >> 32);
+            owners[i] = this.members.get((int) nodes[i]);
+        }
+    }
+
+    /**
+     * Возвращает участника, которому принадлежит ключ
+     * @param key значение ключа для хранилища
+     * @return адрес участника
+     */
+    public String ownerOf(int key) {
+        int hash = mix(key);
+        int low = 0;
+        int high = points.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (points[middle] < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    /**
+     * Метод, возвращающий участников кольца
+     * @return адреса участников по возрастанию
+     */
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Метод, возвращающий число виртуальных узлов каждого участника
+     * @return число виртуальных узлов
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * Хеш виртуального узла: FNV-1a над байтами имени с перемешиванием результата
+     * @param name имя виртуального узла
+     * @return хеш
+     */
+    private static int hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) (hash >>> 32);
+    }
+
+    /**
+     * Хеш ключа: финальное перемешивание MurmurHash3, чтобы соседние ключи расходились по кольцу
+     * @param key значение ключа для хранилища
+     * @return хеш
+     */
+    private static int mix(int key) {
+        int hash = key;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
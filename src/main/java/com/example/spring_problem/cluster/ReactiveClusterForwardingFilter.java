@@ -0,0 +1,88 @@
+package com.example.spring_problem.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.http.HttpResponse;
+
+/**
+ * Реактивный вариант {@link ClusterForwardingFilter}: пересылка выполняется асинхронно и не занимает
+ * поток обработки событий на время ожидания ответа владельца
+ */
+@Component
+@ConditionalOnProperty(prefix = "database.cluster", name = "enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveClusterForwardingFilter implements WebFilter {
+    /**
+     * Пустое тело запроса
+     */
+    private static final byte[] NO_BODY = new byte[0];
+
+    /**
+     * Узел кластера
+     */
+    private final ClusterRouter router;
+
+    /**
+     * Конструктор фильтра
+     * @param router узел кластера
+     */
+    public ReactiveClusterForwardingFilter(ClusterRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        long key = ClusterRouter.keyOf(path);
+        String owner = key == ClusterRouter.NOT_A_KEY || request.getHeaders().containsKey(ClusterRouter.FORWARDED_HEADER)
+                ? null : router.remoteOwnerOf((int) key);
+        if (owner == null) {
+            return chain.filter(exchange);
+        }
+
+        String query = request.getURI().getRawQuery();
+        MediaType contentType = request.getHeaders().getContentType();
+        ServerHttpResponse response = exchange.getResponse();
+        return DataBufferUtils.join(request.getBody())
+                .map(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .defaultIfEmpty(NO_BODY)
+                .flatMap(body -> Mono.fromFuture(router.forwardAsync(owner, request.getMethodValue(),
+                        query == null ? path : path + "?" + query,
+                        contentType == null ? null : contentType.toString(), body)))
+                .flatMap(forwarded -> {
+                    response.setRawStatusCode(forwarded.statusCode());
+                    forwarded.headers().firstValue("Content-Type")
+                            .ifPresent(type -> response.getHeaders().set("Content-Type", type));
+                    return write(response, forwarded.body());
+                })
+                .onErrorResume(e -> {
+                    response.setStatusCode(HttpStatus.BAD_GATEWAY);
+                    response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    return write(response, ClusterRouter.unavailable(owner, e));
+                });
+    }
+
+    private static Mono<Void> write(ServerHttpResponse response, byte[] body) {
+        DataBuffer buffer = response.bufferFactory().wrap(body);
+        response.getHeaders().setContentLength(body.length);
+        return response.writeWith(Mono.just(buffer));
+    }
+}
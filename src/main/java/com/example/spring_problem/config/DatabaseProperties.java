@@ -0,0 +1,1240 @@
+package com.example.spring_problem.config;
+
+import com.example.spring_problem.database.EvictionPolicy;
+import com.example.spring_problem.database.ExpiryMode;
+import com.example.spring_problem.database.FsyncPolicy;
+import com.example.spring_problem.database.ReplicationRole;
+import com.example.spring_problem.database.StorageEngine;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки хранилища, задаются в application.properties с префиксом "database"
+ */
+@Component
+@ConfigurationProperties(prefix = "database")
+public class DatabaseProperties {
+    /**
+     * Движок хранения записей
+     */
+    private StorageEngine engine = StorageEngine.MAP;
+    /**
+     * Число шардов хранилища, 0 - по числу доступных процессоров
+     */
+    private int shards;
+    /**
+     * Настройки удаления записей с истекшим временем жизни
+     */
+    private final Expiry expiry = new Expiry();
+    /**
+     * Настройки движка {@link StorageEngine#OFF_HEAP}
+     */
+    private final OffHeap offHeap = new OffHeap();
+    /**
+     * Настройки движка {@link StorageEngine#MAPPED}
+     */
+    private final Mapped mapped = new Mapped();
+    /**
+     * Настройки вытеснения записей при превышении ёмкости
+     */
+    private final Eviction eviction = new Eviction();
+    /**
+     * Настройки сохранения хранилища в файл
+     */
+    private final Snapshot snapshot = new Snapshot();
+    /**
+     * Настройки загрузки сохранённого хранилища
+     */
+    private final Load load = new Load();
+    /**
+     * Настройки журнала изменений
+     */
+    private final Wal wal = new Wal();
+    /**
+     * Настройки TCP сервера с текстовым протоколом memcached
+     */
+    private final Tcp tcp = new Tcp();
+    /**
+     * Настройки журнала медленных операций
+     */
+    private final SlowLog slowLog = new SlowLog();
+    /**
+     * Настройки репликации хранилища
+     */
+    private final Replication replication = new Replication();
+    /**
+     * Настройки режима кластера
+     */
+    private final Cluster cluster = new Cluster();
+    /**
+     * Настройки упорядоченного индекса ключей
+     */
+    private final Index index = new Index();
+    /**
+     * Настройки сжатия данных записей
+     */
+    private final Compression compression = new Compression();
+
+    /**
+     * Метод, возвращающий движок хранения записей
+     * @return движок хранения
+     */
+    public StorageEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Метод, устанавливающий движок хранения записей
+     * @param engine движок хранения
+     */
+    public void setEngine(StorageEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Метод, возвращающий число шардов хранилища
+     * @return число шардов, 0 - по числу доступных процессоров
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Метод, устанавливающий число шардов хранилища
+     * @param shards число шардов, 0 - по числу доступных процессоров
+     */
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Метод, возвращающий настройки удаления записей с истекшим временем жизни
+     * @return настройки удаления записей
+     */
+    public Expiry getExpiry() {
+        return expiry;
+    }
+
+    /**
+     * Метод, возвращающий настройки движка {@link StorageEngine#OFF_HEAP}
+     * @return настройки движка
+     */
+    public OffHeap getOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Метод, возвращающий настройки движка {@link StorageEngine#MAPPED}
+     * @return настройки движка
+     */
+    public Mapped getMapped() {
+        return mapped;
+    }
+
+    /**
+     * Метод, возвращающий настройки вытеснения записей при превышении ёмкости
+     * @return настройки вытеснения
+     */
+    public Eviction getEviction() {
+        return eviction;
+    }
+
+    /**
+     * Метод, возвращающий настройки сохранения хранилища в файл
+     * @return настройки сохранения
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Метод, возвращающий настройки загрузки сохранённого хранилища
+     * @return настройки загрузки
+     */
+    public Load getLoad() {
+        return load;
+    }
+
+    /**
+     * Метод, возвращающий настройки журнала изменений
+     * @return настройки журнала
+     */
+    public Wal getWal() {
+        return wal;
+    }
+
+    /**
+     * Метод, возвращающий настройки TCP сервера с текстовым протоколом memcached
+     * @return настройки сервера
+     */
+    public Tcp getTcp() {
+        return tcp;
+    }
+
+    /**
+     * Метод, возвращающий настройки журнала медленных операций
+     * @return настройки журнала
+     */
+    public SlowLog getSlowLog() {
+        return slowLog;
+    }
+
+    /**
+     * Метод, возвращающий настройки репликации хранилища
+     * @return настройки репликации
+     */
+    public Replication getReplication() {
+        return replication;
+    }
+
+    /**
+     * Метод, возвращающий настройки режима кластера
+     * @return настройки кластера
+     */
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Метод, возвращающий настройки упорядоченного индекса ключей
+     * @return настройки индекса
+     */
+    public Index getIndex() {
+        return index;
+    }
+
+    /**
+     * Метод, возвращающий настройки сжатия данных записей
+     * @return настройки сжатия
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Настройки удаления записей с истекшим временем жизни, префикс "database.expiry"
+     */
+    public static class Expiry {
+        /**
+         * Режим активного удаления записей
+         */
+        private ExpiryMode mode = ExpiryMode.WHEEL;
+        /**
+         * Период запуска цикла удаления в миллисекундах, он же длительность тика колеса сроков жизни
+         */
+        private long period = 100L;
+        /**
+         * Число записей, просматриваемых за один проход цикла в режиме {@link ExpiryMode#SAMPLED}
+         */
+        private int sampleSize = 20;
+        /**
+         * Доля истекших записей в выборке, при превышении которой проход повторяется
+         */
+        private double expiredThreshold = 0.1;
+        /**
+         * Максимальная длительность одного цикла удаления в миллисекундах
+         */
+        private long timeBudget = 25L;
+        /**
+         * Число потоков, выполняющих циклы удаления шардов, не больше числа шардов
+         */
+        private int workers = 2;
+
+        /**
+         * Метод, возвращающий режим активного удаления записей
+         * @return режим удаления
+         */
+        public ExpiryMode getMode() {
+            return mode;
+        }
+
+        /**
+         * Метод, устанавливающий режим активного удаления записей
+         * @param mode режим удаления
+         */
+        public void setMode(ExpiryMode mode) {
+            this.mode = mode;
+        }
+
+        /**
+         * Метод, возвращающий период запуска цикла удаления
+         * @return период в миллисекундах
+         */
+        public long getPeriod() {
+            return period;
+        }
+
+        /**
+         * Метод, устанавливающий период запуска цикла удаления
+         * @param period период в миллисекундах
+         */
+        public void setPeriod(long period) {
+            this.period = period;
+        }
+
+        /**
+         * Метод, возвращающий число записей в одной выборке
+         * @return размер выборки
+         */
+        public int getSampleSize() {
+            return sampleSize;
+        }
+
+        /**
+         * Метод, устанавливающий число записей в одной выборке
+         * @param sampleSize размер выборки
+         */
+        public void setSampleSize(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+
+        /**
+         * Метод, возвращающий порог доли истекших записей для повторения прохода
+         * @return доля от 0 до 1
+         */
+        public double getExpiredThreshold() {
+            return expiredThreshold;
+        }
+
+        /**
+         * Метод, устанавливающий порог доли истекших записей для повторения прохода
+         * @param expiredThreshold доля от 0 до 1
+         */
+        public void setExpiredThreshold(double expiredThreshold) {
+            this.expiredThreshold = expiredThreshold;
+        }
+
+        /**
+         * Метод, возвращающий максимальную длительность цикла удаления
+         * @return длительность в миллисекундах
+         */
+        public long getTimeBudget() {
+            return timeBudget;
+        }
+
+        /**
+         * Метод, устанавливающий максимальную длительность цикла удаления
+         * @param timeBudget длительность в миллисекундах
+         */
+        public void setTimeBudget(long timeBudget) {
+            this.timeBudget = timeBudget;
+        }
+
+        /**
+         * Метод, возвращающий число потоков, выполняющих циклы удаления шардов
+         * @return число потоков
+         */
+        public int getWorkers() {
+            return workers;
+        }
+
+        /**
+         * Метод, устанавливающий число потоков, выполняющих циклы удаления шардов
+         * @param workers число потоков
+         */
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+    }
+
+    /**
+     * Настройки движка {@link StorageEngine#OFF_HEAP}, префикс "database.off-heap"
+     */
+    public static class OffHeap {
+        /**
+         * Размер слэба арены в байтах, округляется вниз до степени двойки
+         */
+        private int slabSize = 1 << 20;
+        /**
+         * Доля освобождённых, но не переиспользованных блоков арены, при превышении которой сегмент дефрагментируется
+         */
+        private double defragmentThreshold = 0.5;
+
+        /**
+         * Метод, возвращающий размер слэба арены
+         * @return размер в байтах
+         */
+        public int getSlabSize() {
+            return slabSize;
+        }
+
+        /**
+         * Метод, устанавливающий размер слэба арены
+         * @param slabSize размер в байтах
+         */
+        public void setSlabSize(int slabSize) {
+            this.slabSize = slabSize;
+        }
+
+        /**
+         * Метод, возвращающий порог фрагментации арены
+         * @return доля от 0 до 1
+         */
+        public double getDefragmentThreshold() {
+            return defragmentThreshold;
+        }
+
+        /**
+         * Метод, устанавливающий порог фрагментации арены
+         * @param defragmentThreshold доля от 0 до 1
+         */
+        public void setDefragmentThreshold(double defragmentThreshold) {
+            this.defragmentThreshold = defragmentThreshold;
+        }
+    }
+
+    /**
+     * Настройки движка {@link StorageEngine#MAPPED}, префикс "database.mapped"
+     */
+    public static class Mapped {
+        /**
+         * Каталог файлов сегментов, в нём для каждого шарда создаётся свой подкаталог
+         */
+        private String directory = "data-segments";
+        /**
+         * Размер файла сегмента в байтах, запись большего размера получает сегмент по своему размеру
+         */
+        private int segmentSize = 64 * 1024 * 1024;
+        /**
+         * Доля устаревших версий записей в сегменте, при превышении которой сегмент уплотняется
+         */
+        private double compactThreshold = 0.5;
+
+        /**
+         * Метод, возвращающий каталог файлов сегментов
+         * @return путь к каталогу
+         */
+        public String getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Метод, устанавливающий каталог файлов сегментов
+         * @param directory путь к каталогу
+         */
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Метод, возвращающий размер файла сегмента
+         * @return размер в байтах
+         */
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        /**
+         * Метод, устанавливающий размер файла сегмента
+         * @param segmentSize размер в байтах
+         */
+        public void setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        /**
+         * Метод, возвращающий порог уплотнения сегмента
+         * @return доля от 0 до 1
+         */
+        public double getCompactThreshold() {
+            return compactThreshold;
+        }
+
+        /**
+         * Метод, устанавливающий порог уплотнения сегмента
+         * @param compactThreshold доля от 0 до 1
+         */
+        public void setCompactThreshold(double compactThreshold) {
+            this.compactThreshold = compactThreshold;
+        }
+    }
+
+    /**
+     * Настройки вытеснения записей при превышении ёмкости, префикс "database.eviction". Ёмкость
+     * задаётся числом записей и/или оценочным объёмом, вытеснение начинается при превышении любой из них.
+     * Ёмкость делится между шардами поровну, каждый шард вытесняет записи независимо
+     */
+    public static class Eviction {
+        /**
+         * Политика вытеснения
+         */
+        private EvictionPolicy policy = EvictionPolicy.NONE;
+        /**
+         * Максимальное число записей, 0 - без ограничения
+         */
+        private long maxEntries;
+        /**
+         * Максимальный оценочный объём записей в байтах, 0 - без ограничения
+         */
+        private long maxBytes;
+        /**
+         * Размер выборки кандидатов на вытеснение для политики {@link EvictionPolicy#SAMPLED_LRU}
+         */
+        private int sampleSize = 5;
+
+        /**
+         * Метод, возвращающий политику вытеснения
+         * @return политика вытеснения
+         */
+        public EvictionPolicy getPolicy() {
+            return policy;
+        }
+
+        /**
+         * Метод, устанавливающий политику вытеснения
+         * @param policy политика вытеснения
+         */
+        public void setPolicy(EvictionPolicy policy) {
+            this.policy = policy;
+        }
+
+        /**
+         * Метод, возвращающий максимальное число записей
+         * @return число записей, 0 - без ограничения
+         */
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        /**
+         * Метод, устанавливающий максимальное число записей
+         * @param maxEntries число записей, 0 - без ограничения
+         */
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * Метод, возвращающий максимальный оценочный объём записей
+         * @return объём в байтах, 0 - без ограничения
+         */
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        /**
+         * Метод, устанавливающий максимальный оценочный объём записей
+         * @param maxBytes объём в байтах, 0 - без ограничения
+         */
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Метод, возвращающий размер выборки кандидатов на вытеснение
+         * @return размер выборки
+         */
+        public int getSampleSize() {
+            return sampleSize;
+        }
+
+        /**
+         * Метод, устанавливающий размер выборки кандидатов на вытеснение
+         * @param sampleSize размер выборки
+         */
+        public void setSampleSize(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+    }
+
+    /**
+     * Настройки сохранения хранилища в файл, префикс "database.snapshot"
+     */
+    public static class Snapshot {
+        /**
+         * Путь к файлу сохранённого хранилища
+         */
+        private String path = "data.dat";
+
+        /**
+         * Метод, возвращающий путь к файлу сохранённого хранилища
+         * @return путь к файлу
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Метод, устанавливающий путь к файлу сохранённого хранилища
+         * @param path путь к файлу
+         */
+        public void setPath(String path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Настройки загрузки сохранённого хранилища, префикс "database.load"
+     */
+    public static class Load {
+        /**
+         * Число потоков, разбирающих и вставляющих блоки записей, 0 - по числу доступных процессоров
+         */
+        private int workers;
+
+        /**
+         * Метод, возвращающий число потоков загрузки
+         * @return число потоков, 0 - по числу доступных процессоров
+         */
+        public int getWorkers() {
+            return workers;
+        }
+
+        /**
+         * Метод, устанавливающий число потоков загрузки
+         * @param workers число потоков, 0 - по числу доступных процессоров
+         */
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+    }
+
+    /**
+     * Настройки журнала изменений, префикс "database.wal"
+     */
+    public static class Wal {
+        /**
+         * Правдивость утверждения о том, что изменения записываются в журнал и воспроизводятся при запуске
+         */
+        private boolean enabled;
+        /**
+         * Путь к файлу журнала
+         */
+        private String path = "data.wal";
+        /**
+         * Политика сброса журнала на диск
+         */
+        private FsyncPolicy fsync = FsyncPolicy.INTERVAL;
+        /**
+         * Период сброса журнала на диск при политике {@link FsyncPolicy#INTERVAL} в миллисекундах
+         */
+        private long fsyncInterval = 1000L;
+        /**
+         * Минимальный размер журнала в байтах, начиная с которого он перезаписывается
+         */
+        private long rewriteMinSize = 64L * 1024 * 1024;
+
+        /**
+         * Метод, возвращающий признак включения журнала
+         * @return правдивость утверждения о том, что журнал включён
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Метод, устанавливающий признак включения журнала
+         * @param enabled правдивость утверждения о том, что журнал включён
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Метод, возвращающий путь к файлу журнала
+         * @return путь к файлу
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Метод, устанавливающий путь к файлу журнала
+         * @param path путь к файлу
+         */
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        /**
+         * Метод, возвращающий политику сброса журнала на диск
+         * @return политика сброса
+         */
+        public FsyncPolicy getFsync() {
+            return fsync;
+        }
+
+        /**
+         * Метод, устанавливающий политику сброса журнала на диск
+         * @param fsync политика сброса
+         */
+        public void setFsync(FsyncPolicy fsync) {
+            this.fsync = fsync;
+        }
+
+        /**
+         * Метод, возвращающий период сброса журнала на диск
+         * @return период в миллисекундах
+         */
+        public long getFsyncInterval() {
+            return fsyncInterval;
+        }
+
+        /**
+         * Метод, устанавливающий период сброса журнала на диск
+         * @param fsyncInterval период в миллисекундах
+         */
+        public void setFsyncInterval(long fsyncInterval) {
+            this.fsyncInterval = fsyncInterval;
+        }
+
+        /**
+         * Метод, возвращающий минимальный размер журнала, начиная с которого он перезаписывается
+         * @return размер в байтах
+         */
+        public long getRewriteMinSize() {
+            return rewriteMinSize;
+        }
+
+        /**
+         * Метод, устанавливающий минимальный размер журнала, начиная с которого он перезаписывается
+         * @param rewriteMinSize размер в байтах
+         */
+        public void setRewriteMinSize(long rewriteMinSize) {
+            this.rewriteMinSize = rewriteMinSize;
+        }
+    }
+
+    /**
+     * Настройки TCP сервера с текстовым протоколом memcached, префикс "database.tcp"
+     */
+    public static class Tcp {
+        /**
+         * Правдивость утверждения о том, что сервер запускается вместе с приложением
+         */
+        private boolean enabled;
+        /**
+         * Порт сервера, 0 - любой свободный
+         */
+        private int port = 11211;
+        /**
+         * Число потоков, обслуживающих соединения, 0 - по числу доступных процессоров
+         */
+        private int workers;
+        /**
+         * Максимальный размер данных одной записи в байтах
+         */
+        private int maxValueSize = 1024 * 1024;
+
+        /**
+         * Метод, возвращающий признак запуска сервера
+         * @return правдивость утверждения о том, что сервер запускается
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Метод, устанавливающий признак запуска сервера
+         * @param enabled правдивость утверждения о том, что сервер запускается
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Метод, возвращающий порт сервера
+         * @return порт, 0 - любой свободный
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Метод, устанавливающий порт сервера
+         * @param port порт, 0 - любой свободный
+         */
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        /**
+         * Метод, возвращающий число потоков, обслуживающих соединения
+         * @return число потоков, 0 - по числу доступных процессоров
+         */
+        public int getWorkers() {
+            return workers;
+        }
+
+        /**
+         * Метод, устанавливающий число потоков, обслуживающих соединения
+         * @param workers число потоков, 0 - по числу доступных процессоров
+         */
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        /**
+         * Метод, возвращающий максимальный размер данных одной записи
+         * @return размер в байтах
+         */
+        public int getMaxValueSize() {
+            return maxValueSize;
+        }
+
+        /**
+         * Метод, устанавливающий максимальный размер данных одной записи
+         * @param maxValueSize размер в байтах
+         */
+        public void setMaxValueSize(int maxValueSize) {
+            this.maxValueSize = maxValueSize;
+        }
+    }
+
+    /**
+     * Настройки журнала медленных операций, префикс "database.slow-log"
+     */
+    public static class SlowLog {
+        /**
+         * Порог длительности операции в микросекундах, начиная с которого она попадает в журнал,
+         * 0 - журнал отключён и операции не замеряются
+         */
+        private long thresholdMicros;
+        /**
+         * Число последних медленных операций, которые хранит журнал
+         */
+        private int capacity = 128;
+
+        /**
+         * Метод, возвращающий порог длительности медленной операции
+         * @return порог в микросекундах, 0 - журнал отключён
+         */
+        public long getThresholdMicros() {
+            return thresholdMicros;
+        }
+
+        /**
+         * Метод, устанавливающий порог длительности медленной операции
+         * @param thresholdMicros порог в микросекундах, 0 - журнал отключён
+         */
+        public void setThresholdMicros(long thresholdMicros) {
+            this.thresholdMicros = thresholdMicros;
+        }
+
+        /**
+         * Метод, возвращающий число хранимых медленных операций
+         * @return число операций
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * Метод, устанавливающий число хранимых медленных операций
+         * @param capacity число операций
+         */
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Настройки репликации хранилища, префикс "database.replication"
+     */
+    public static class Replication {
+        /**
+         * Роль экземпляра в репликации
+         */
+        private ReplicationRole role = ReplicationRole.NONE;
+        /**
+         * Порт, на котором ведущий принимает соединения ведомых, 0 - любой свободный
+         */
+        private int port = 11212;
+        /**
+         * Адрес ведущего, к которому подключается ведомый
+         */
+        private String leaderHost = "localhost";
+        /**
+         * Порт ведущего, к которому подключается ведомый
+         */
+        private int leaderPort = 11212;
+        /**
+         * Число последних изменений, которые ведущий хранит для передачи ведомым. Ведомый, отставший
+         * больше чем на это число изменений, отключается и заново получает снимок хранилища
+         */
+        private int backlog = 1 << 20;
+        /**
+         * Период, с которым ведущий без новых изменений сообщает ведомым о себе, в миллисекундах
+         */
+        private long heartbeatInterval = 1000L;
+        /**
+         * Пауза ведомого перед повторным подключением к ведущему в миллисекундах
+         */
+        private long reconnectDelay = 1000L;
+
+        /**
+         * Метод, возвращающий роль экземпляра в репликации
+         * @return роль экземпляра
+         */
+        public ReplicationRole getRole() {
+            return role;
+        }
+
+        /**
+         * Метод, устанавливающий роль экземпляра в репликации
+         * @param role роль экземпляра
+         */
+        public void setRole(ReplicationRole role) {
+            this.role = role;
+        }
+
+        /**
+         * Метод, возвращающий порт, на котором ведущий принимает соединения ведомых
+         * @return порт, 0 - любой свободный
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Метод, устанавливающий порт, на котором ведущий принимает соединения ведомых
+         * @param port порт, 0 - любой свободный
+         */
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        /**
+         * Метод, возвращающий адрес ведущего
+         * @return имя или адрес узла ведущего
+         */
+        public String getLeaderHost() {
+            return leaderHost;
+        }
+
+        /**
+         * Метод, устанавливающий адрес ведущего
+         * @param leaderHost имя или адрес узла ведущего
+         */
+        public void setLeaderHost(String leaderHost) {
+            this.leaderHost = leaderHost;
+        }
+
+        /**
+         * Метод, возвращающий порт ведущего
+         * @return порт ведущего
+         */
+        public int getLeaderPort() {
+            return leaderPort;
+        }
+
+        /**
+         * Метод, устанавливающий порт ведущего
+         * @param leaderPort порт ведущего
+         */
+        public void setLeaderPort(int leaderPort) {
+            this.leaderPort = leaderPort;
+        }
+
+        /**
+         * Метод, возвращающий число хранимых ведущим изменений
+         * @return число изменений
+         */
+        public int getBacklog() {
+            return backlog;
+        }
+
+        /**
+         * Метод, устанавливающий число хранимых ведущим изменений
+         * @param backlog число изменений
+         */
+        public void setBacklog(int backlog) {
+            this.backlog = backlog;
+        }
+
+        /**
+         * Метод, возвращающий период сообщений ведущего без новых изменений
+         * @return период в миллисекундах
+         */
+        public long getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        /**
+         * Метод, устанавливающий период сообщений ведущего без новых изменений
+         * @param heartbeatInterval период в миллисекундах
+         */
+        public void setHeartbeatInterval(long heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+
+        /**
+         * Метод, возвращающий паузу перед повторным подключением к ведущему
+         * @return пауза в миллисекундах
+         */
+        public long getReconnectDelay() {
+            return reconnectDelay;
+        }
+
+        /**
+         * Метод, устанавливающий паузу перед повторным подключением к ведущему
+         * @param reconnectDelay пауза в миллисекундах
+         */
+        public void setReconnectDelay(long reconnectDelay) {
+            this.reconnectDelay = reconnectDelay;
+        }
+    }
+
+    /**
+     * Настройки режима кластера, префикс "database.cluster"
+     */
+    public static class Cluster {
+        /**
+         * Правдивость утверждения о том, что узел работает в кластере
+         */
+        private boolean enabled;
+        /**
+         * Адрес этого узла так, как он указан в списке участников, например http://localhost:8080
+         */
+        private String self = "http://localhost:8080";
+        /**
+         * Адреса участников кластера
+         */
+        private List<String> members = new ArrayList<>();
+        /**
+         * Файл со списком участников по одному адресу в строке, строки с # пропускаются. Если задан,
+         * используется вместо database.cluster.members
+         */
+        private String membersFile = "";
+        /**
+         * Число виртуальных узлов каждого участника на кольце
+         */
+        private int virtualNodes = 160;
+        /**
+         * Время ожидания подключения к другому узлу в миллисекундах
+         */
+        private long connectTimeout = 1000L;
+        /**
+         * Время ожидания ответа другого узла в миллисекундах
+         */
+        private long requestTimeout = 5000L;
+
+        /**
+         * Метод, возвращающий признак режима кластера
+         * @return правдивость утверждения о том, что узел работает в кластере
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Метод, устанавливающий признак режима кластера
+         * @param enabled правдивость утверждения о том, что узел работает в кластере
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Метод, возвращающий адрес этого узла
+         * @return адрес узла
+         */
+        public String getSelf() {
+            return self;
+        }
+
+        /**
+         * Метод, устанавливающий адрес этого узла
+         * @param self адрес узла
+         */
+        public void setSelf(String self) {
+            this.self = self;
+        }
+
+        /**
+         * Метод, возвращающий адреса участников кластера
+         * @return адреса участников
+         */
+        public List<String> getMembers() {
+            return members;
+        }
+
+        /**
+         * Метод, устанавливающий адреса участников кластера
+         * @param members адреса участников
+         */
+        public void setMembers(List<String> members) {
+            this.members = members;
+        }
+
+        /**
+         * Метод, возвращающий файл со списком участников
+         * @return путь к файлу, пустая строка - участники задаются database.cluster.members
+         */
+        public String getMembersFile() {
+            return membersFile;
+        }
+
+        /**
+         * Метод, устанавливающий файл со списком участников
+         * @param membersFile путь к файлу, пустая строка - участники задаются database.cluster.members
+         */
+        public void setMembersFile(String membersFile) {
+            this.membersFile = membersFile;
+        }
+
+        /**
+         * Метод, возвращающий число виртуальных узлов каждого участника
+         * @return число виртуальных узлов
+         */
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        /**
+         * Метод, устанавливающий число виртуальных узлов каждого участника
+         * @param virtualNodes число виртуальных узлов
+         */
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+
+        /**
+         * Метод, возвращающий время ожидания подключения к другому узлу
+         * @return время в миллисекундах
+         */
+        public long getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        /**
+         * Метод, устанавливающий время ожидания подключения к другому узлу
+         * @param connectTimeout время в миллисекундах
+         */
+        public void setConnectTimeout(long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        /**
+         * Метод, возвращающий время ожидания ответа другого узла
+         * @return время в миллисекундах
+         */
+        public long getRequestTimeout() {
+            return requestTimeout;
+        }
+
+        /**
+         * Метод, устанавливающий время ожидания ответа другого узла
+         * @param requestTimeout время в миллисекундах
+         */
+        public void setRequestTimeout(long requestTimeout) {
+            this.requestTimeout = requestTimeout;
+        }
+    }
+
+    /**
+     * Настройки упорядоченного индекса ключей для обхода диапазонов, префикс "database.index"
+     */
+    public static class Index {
+        /**
+         * Правдивость утверждения о том, что шарды ведут упорядоченный индекс ключей
+         */
+        private boolean enabled;
+        /**
+         * Наибольшее число записей одной страницы обхода диапазона
+         */
+        private int maxLimit = 10000;
+
+        /**
+         * Метод, возвращающий признак упорядоченного индекса
+         * @return правдивость утверждения о том, что индекс ведётся
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Метод, устанавливающий признак упорядоченного индекса
+         * @param enabled правдивость утверждения о том, что индекс ведётся
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Метод, возвращающий наибольшее число записей страницы обхода
+         * @return число записей
+         */
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        /**
+         * Метод, устанавливающий наибольшее число записей страницы обхода
+         * @param maxLimit число записей
+         */
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+    }
+
+    /**
+     * Настройки сжатия данных записей движками {@link StorageEngine#MAP} и {@link StorageEngine#INT_HASH},
+     * префикс "database.compression"
+     */
+    public static class Compression {
+        /**
+         * Правдивость утверждения о том, что длинные данные хранятся сжатыми
+         */
+        private boolean enabled;
+        /**
+         * Наименьшая длина сжимаемых данных в символах
+         */
+        private int threshold = 1024;
+        /**
+         * Уровень сжатия Deflater от 0 до 9, 1 - самое быстрое сжатие
+         */
+        private int level = 1;
+
+        /**
+         * Метод, возвращающий признак сжатия данных
+         * @return правдивость утверждения о том, что длинные данные хранятся сжатыми
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Метод, устанавливающий признак сжатия данных
+         * @param enabled правдивость утверждения о том, что длинные данные хранятся сжатыми
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Метод, возвращающий наименьшую длину сжимаемых данных
+         * @return длина в символах
+         */
+        public int getThreshold() {
+            return threshold;
+        }
+
+        /**
+         * Метод, устанавливающий наименьшую длину сжимаемых данных
+         * @param threshold длина в символах
+         */
+        public void setThreshold(int threshold) {
+            this.threshold = threshold;
+        }
+
+        /**
+         * Метод, возвращающий уровень сжатия
+         * @return уровень от 0 до 9
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * Метод, устанавливающий уровень сжатия
+         * @param level уровень от 0 до 9
+         */
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.spring_problem.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Настройка сервера для профиля reactive. Tomcat остаётся в зависимостях ради сервлетного режима, и без
+ * явной фабрики Spring Boot запустил бы реактивное приложение на Tomcat, поэтому сервер Netty задаётся здесь
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfig {
+
+    /**
+     * Метод, создающий фабрику сервера Netty
+     * @return фабрика сервера
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.spring_problem.controller;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Поток ввода поверх тела реактивного запроса для блокирующего кода загрузки. У тела запрашивается
+ * не больше заданного числа буферов вперёд, следующие запрашиваются по мере чтения, поэтому медленная
+ * загрузка притормаживает клиента, а не накапливает тело в памяти. Читать можно только вне потоков
+ * обработки событий, при закрытии непрочитанный остаток тела отменяется
+ */
+final class DataBufferInputStream extends InputStream {
+    /**
+     * Буферы тела, закрытие отменяет подписку
+     */
+    private final Stream<DataBuffer> buffers;
+
+    /**
+     * Итератор буферов тела
+     */
+    private final Iterator<DataBuffer> iterator;
+
+    /**
+     * Читаемый буфер либо null
+     */
+    private DataBuffer current;
+
+    /**
+     * Создаёт поток ввода
+     * @param body тело запроса
+     * @param prefetch число буферов, запрашиваемых вперёд
+     */
+    DataBufferInputStream(Flux<DataBuffer> body, int prefetch) {
+        this.buffers = body.toStream(prefetch);
+        this.iterator = buffers.iterator();
+    }
+
+    @Override
+    public int read() {
+        if (!advance()) {
+            return -1;
+        }
+        return current.read() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!advance()) {
+            return -1;
+        }
+        int chunk = Math.min(len, current.readableByteCount());
+        current.read(b, off, chunk);
+        return chunk;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.readableByteCount();
+    }
+
+    @Override
+    public void close() {
+        if (current != null) {
+            DataBufferUtils.release(current);
+            current = null;
+        }
+        buffers.close();
+    }
+
+    /**
+     * Переходит к следующему непустому буферу, если текущий прочитан
+     * @return правдивость утверждения о том, что есть непрочитанные байты
+     */
+    private boolean advance() {
+        while (current == null || current.readableByteCount() == 0) {
+            if (current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+            }
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+        }
+        return true;
+    }
+}
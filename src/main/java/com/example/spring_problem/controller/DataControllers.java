@@ -1,31 +1,59 @@
 package com.example.spring_problem.controller;
 
+import com.example.spring_problem.cluster.ClusterStatus;
+import com.example.spring_problem.database.CompressionMetrics;
+import com.example.spring_problem.database.EvictionMetrics;
+import com.example.spring_problem.database.ExpiryMetrics;
+import com.example.spring_problem.database.LoadMode;
+import com.example.spring_problem.database.SlowOperation;
+import com.example.spring_problem.entity.BatchResult;
 import com.example.spring_problem.entity.DataObject;
-import com.example.spring_problem.exception.MissedDataException;
+import com.example.spring_problem.exception.DatabaseExceptionHandler;
+import com.example.spring_problem.exception.IndexDisabledException;
 import com.example.spring_problem.exception.TimeToLeaveException;
+import com.example.spring_problem.replication.ReplicationStatus;
 import com.example.spring_problem.service.DataServiceImpl;
+import com.example.spring_problem.snapshot.LoadProgress;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 /**
- * Класс, содержащий контроллеры для связи пользователя с хранилищем посредством запросов
+ * Класс, содержащий контроллеры для связи пользователя с хранилищем посредством запросов. Работает на
+ * сервлетном стеке, кроме профиля reactive, в котором те же запросы обслуживает {@link ReactiveDataControllers}
  */
 @RestController
+@Profile("!reactive")
 public class DataControllers {
+    /**
+     * Параметр кодирования в Accept-Encoding, запрещающий его: нулевой вес q
+     */
+    private static final Pattern REJECTED = Pattern.compile("(?i)q\\s*=\\s*0(\\.0{0,3})?");
+
     /**
      * Поле, сервис для связи с хранилищем
      */
     DataServiceImpl dataService;
 
+    /**
+     * Правдивость утверждения о том, что хранилище может хранить данные сжатыми
+     */
+    private final boolean compression;
+
     /**
      * Констуктор, инициализирует поле сервиса с помощью Spring
      * @param dataService сервис для связи с хранилищем
@@ -33,23 +61,87 @@ public class DataControllers {
     @Autowired
     public DataControllers(DataServiceImpl dataService) {
         this.dataService = dataService;
+        this.compression = dataService.isCompressionEnabled();
     }
 
     /**
      * Метод вызывается get-запросом вида "/database/{key}" и
-     * либо возвращает данные, хранящиеся по заданному ключу, либо выбрасывает исключение, если по
-     * этому ключу в базе отсутствуют данные
-     * @see com.example.spring_problem.exception.DatabaseExceptionHandler#handleDataException(MissedDataException)
+     * либо возвращает данные, хранящиеся по заданному ключу, либо, если по этому ключу в базе
+     * отсутствуют данные, заранее созданный ответ {@link DatabaseExceptionHandler#MISSED_DATA} со статусом 404.
+     * Промах не выбрасывает исключений и не создаёт объектов
      * @param key значение ключа для хранилища
-     * @return возвращает либо данные, хранящиеся по заданному ключу, либо выбрасывает исключение с сообщением
+     * @return возвращает либо данные, хранящиеся по заданному ключу, либо ответ с сообщением об отсутствии ключа
      */
     @GetMapping(value = "/database/{key}")
-    public String getData(@PathVariable int key) {
-        try {
-            return dataService.get(key);
-        } catch (Exception e) {
-            throw new MissedDataException();
+    public ResponseEntity<?> getData(@PathVariable int key) {
+        String data = dataService.getIfPresent(key);
+        return data != null ? ResponseEntity.ok(data) : DatabaseExceptionHandler.MISSED_DATA;
+    }
+
+    /**
+     * Метод вызывается get-запросом вида "/database/{key}" с заголовком Accept-Encoding. Если сжатие выключено
+     * или клиент не принимает кодирование deflate, запрос обслуживается так же, как {@link #getData(int)}, без
+     * разбора заголовка в первом случае. Иначе данные читаются одним обращением в хранимом виде: сжатые
+     * отдаются без распаковки с заголовком Content-Encoding: deflate, несжатые - обычным текстом
+     * @param key значение ключа для хранилища
+     * @param acceptEncoding значение заголовка Accept-Encoding
+     * @return возвращает либо данные, хранящиеся по заданному ключу, либо ответ с сообщением об отсутствии ключа
+     */
+    @GetMapping(value = "/database/{key}", headers = HttpHeaders.ACCEPT_ENCODING)
+    public ResponseEntity<?> getData(@PathVariable int key,
+                                     @RequestHeader(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        if (!compression || !acceptsDeflate(acceptEncoding)) {
+            return getData(key);
         }
+        Object data = dataService.getStoredIfPresent(key);
+        return data != null ? stored(data) : DatabaseExceptionHandler.MISSED_DATA;
+    }
+
+    /**
+     * Проверяет, принимает ли клиент кодирование deflate, по значению заголовка Accept-Encoding
+     * @param acceptEncoding значение заголовка, например "gzip, deflate;q=0.5"
+     * @return правдивость утверждения о том, что deflate или * указаны без q=0, а deflate не запрещён явно
+     */
+    static boolean acceptsDeflate(String acceptEncoding) {
+        boolean accepted = false;
+
+        for (String coding : acceptEncoding.split(",")) {
+            int parameters = coding.indexOf(';');
+            String name = (parameters < 0 ? coding : coding.substring(0, parameters)).trim();
+            boolean deflate = name.equalsIgnoreCase("deflate");
+
+            if (!deflate && !name.equals("*")) {
+                continue;
+            }
+            boolean allowed = parameters < 0 || !REJECTED.matcher(coding.substring(parameters + 1).trim()).matches();
+            if (deflate) {
+                return allowed;
+            }
+            accepted = allowed;
+        }
+        return accepted;
+    }
+
+    /**
+     * Создаёт ответ с данными в хранимом виде
+     * @param data данные: String или сжатые в формате zlib byte[]
+     * @return ответ с данными, сжатые данные отдаются с кодированием deflate
+     */
+    static ResponseEntity<?> stored(Object data) {
+        return data instanceof byte[] ? deflated((byte[]) data) : ResponseEntity.ok(data);
+    }
+
+    /**
+     * Создаёт ответ с данными, сжатыми в формате zlib
+     * @param compressed сжатые данные
+     * @return ответ с заголовками Content-Encoding: deflate и Vary: Accept-Encoding
+     */
+    static ResponseEntity<byte[]> deflated(byte[] compressed) {
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_ENCODING, "deflate")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .body(compressed);
     }
 
     /**
@@ -57,7 +149,9 @@ public class DataControllers {
      * указывается параметр "date", параметр "ttl" же может отсутствовать. При запросе первого вида ttl
      * либо указывается в теле запроса, либо будет присвоен по умолчанию. При запросе второго вида ttl
      * будет взят из строки URL, но если указать его ещё и в теле запроса, то будет использован ttl из
-     * тела. Возвращает HTTP статус, содержащий либо метку успешности, либо метку плохого запроса
+     * тела. Если в теле указан параметр "idle", данные получают время жизни без обращений: они удаляются,
+     * если их не читали дольше idle секунд, а ttl не учитывается. Возвращает HTTP статус, содержащий либо
+     * метку успешности, либо метку плохого запроса
      * @see com.example.spring_problem.exception.DatabaseExceptionHandler#handleDataException(TimeToLeaveException)
      * @param key значение ключа для хранилища
      * @param ttl время жизни данных
@@ -68,53 +162,101 @@ public class DataControllers {
     public HttpStatus setData(@PathVariable Integer key,
                               @PathVariable(required = false) Long ttl,
                               @RequestBody DataObject dataObject) {
-        try {
-            dataObject.setKey(key);
-            if (dataObject.getTtl() == 0) {
-                if (ttl == null) {
-                    dataService.put(dataObject.getKey(), dataObject.getData());
-                } else {
-                    dataObject.setTtl(ttl);
-                    dataService.put(dataObject.getKey(), dataObject.getData(), dataObject.getTtl() * 1000);
-                }
+        store(dataService, key, ttl, dataObject);
+        return HttpStatus.OK;
+    }
+
+    /**
+     * Помещает данные запроса в хранилище: с временем простоя, если оно задано, иначе с временем жизни
+     * из тела, из строки URL либо по умолчанию
+     * @param dataService сервис для связи с хранилищем
+     * @param key значение ключа для хранилища
+     * @param ttl время жизни данных из строки URL либо null
+     * @param dataObject тело запроса
+     */
+    static void store(DataServiceImpl dataService, Integer key, Long ttl, DataObject dataObject) {
+        dataObject.setKey(key);
+        if (dataObject.getIdle() != 0) {
+            dataService.putIdle(dataObject.getKey(), dataObject.getData(), dataObject.getIdle() * 1000);
+        } else if (dataObject.getTtl() == 0) {
+            if (ttl == null) {
+                dataService.put(dataObject.getKey(), dataObject.getData());
             } else {
+                dataObject.setTtl(ttl);
                 dataService.put(dataObject.getKey(), dataObject.getData(), dataObject.getTtl() * 1000);
             }
-
-            return HttpStatus.OK;
-        } catch (TimeToLeaveException e) {
-            throw new TimeToLeaveException();
+        } else {
+            dataService.put(dataObject.getKey(), dataObject.getData(), dataObject.getTtl() * 1000);
         }
     }
 
     /**
      * Метод вызывается delete-запросом вида "/database/{key}" и удаляет данные в хранилище по
      * заданному ключу. При этом он либо возвращает данные, хранящиеся по заданному ключу,
-     * либо выбрасывает исключение, если по этому ключу в базе отсутствуют данные
-     * @see com.example.spring_problem.exception.DatabaseExceptionHandler#handleDataException(MissedDataException)
+     * либо, как {@link #getData(int)}, ответ {@link DatabaseExceptionHandler#MISSED_DATA}
      * @param key значение ключа для хранилища
-     * @return возвращает либо данные, хранящиеся по заданному ключу, либо выбрасывает исключение с сообщением
+     * @return возвращает либо данные, хранящиеся по заданному ключу, либо ответ с сообщением об отсутствии ключа
      */
     @DeleteMapping(value = "/database/{key}")
-    public String removeData(@PathVariable int key) {
-        try {
-            return dataService.remove(key);
-        } catch (Exception e) {
-            throw new MissedDataException();
-        }
+    public ResponseEntity<?> removeData(@PathVariable int key) {
+        String data = dataService.removeIfPresent(key);
+        return data != null ? ResponseEntity.ok(data) : DatabaseExceptionHandler.MISSED_DATA;
+    }
+
+    /**
+     * Метод вызывается post-запросом вида "/database/batch/get", в теле которого передаётся массив ключей,
+     * и возвращает данные по всем ключам одним ответом. Отсутствующий ключ не прерывает запрос, а получает
+     * в ответе статус 404. Параметр "ttl" добавляет к найденным записям оставшееся время жизни в миллисекундах
+     * @param keys массив ключей
+     * @param ttl правдивость утверждения о том, что нужно вернуть оставшееся время жизни
+     * @return результаты в порядке ключей
+     */
+    @PostMapping(value = "/database/batch/get")
+    public List<BatchResult> getBatch(@RequestBody int[] keys,
+                                      @RequestParam(defaultValue = "false") boolean ttl) {
+        return ttl ? dataService.getAllWithTtl(keys) : dataService.getAll(keys);
+    }
+
+    /**
+     * Метод вызывается put-запросом вида "/database/batch", в теле которого передаётся массив записей с
+     * параметрами "key", "data" и, как в {@link #setData(Integer, Long, DataObject)}, необязательными
+     * "ttl" и "idle" в секундах. Записи с отрицательным временем или без данных получают в ответе статус 400,
+     * остальные записи помещаются в хранилище
+     * @param records массив записей
+     * @return результаты в порядке записей
+     */
+    @PutMapping(value = "/database/batch")
+    public List<BatchResult> setBatch(@RequestBody List<DataObject> records) {
+        return dataService.putAll(records);
+    }
+
+    /**
+     * Метод вызывается delete-запросом вида "/database/batch", в теле которого передаётся массив ключей,
+     * удаляет данные по всем ключам и возвращает их. Отсутствующий ключ получает в ответе статус 404
+     * @param keys массив ключей
+     * @return результаты в порядке ключей
+     */
+    @DeleteMapping(value = "/database/batch")
+    public List<BatchResult> removeBatch(@RequestBody int[] keys) {
+        return dataService.removeAll(keys);
     }
 
     /**
      * Метод вызывается post-запросом вида "/database/load" и требует файла формата .dat, который
-     * был создан ранее методом {@link #dumpFile()} и содержит сохранённое состояние хранилища. В
-     * методе оно преобразуется в поток и загружается в хранилище
+     * был создан ранее методом {@link #dumpFile(boolean, boolean)} и содержит сохранённое состояние хранилища. В
+     * методе оно преобразуется в поток и загружается в хранилище. Параметр "mode" задаёт способ загрузки:
+     * REPLACE (по умолчанию) атомарно заменяет содержимое хранилища по окончании загрузки, MERGE добавляет
+     * записи к текущему содержимому. Ход загрузки возвращает {@link #getLoadProgress()}
+     * @see com.example.spring_problem.exception.DatabaseExceptionHandler#handleDataException(com.example.spring_problem.exception.LoadInProgressException)
      * @param file файл, содержащий сохранённое состояние хранилища
+     * @param mode способ загрузки
      */
-    @PostMapping(value = "/database/load")
-    public void loadFile(@RequestParam("file") MultipartFile file) {
+    @PostMapping(value = "/database/load", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public void loadFile(@RequestParam("file") MultipartFile file,
+                         @RequestParam(defaultValue = "REPLACE") LoadMode mode) {
         try {
             InputStream inputStream = file.getInputStream();
-            dataService.load(inputStream);
+            dataService.load(inputStream, mode);
             inputStream.close();
 
         } catch (IOException e) {
@@ -124,28 +266,175 @@ public class DataControllers {
     }
 
     /**
-     * Метод вызывается get-запросом вида "/database/dump" и вызывает сохранение текущего
-     * состояния хранилища, которое сериализуется и упаковывается в .dat файл, который
-     * передаётся пользователю
-     * @return файл с сохранённым состоянием хранилища
+     * Метод вызывается post-запросом вида "/database/load" с телом типа application/octet-stream, которое
+     * содержит сохранённое состояние хранилища. В отличие от загрузки файла формы, тело не сохраняется
+     * сервером во временный файл, а разбирается по мере поступления
+     * @param body тело запроса
+     * @param mode способ загрузки
+     */
+    @PostMapping(value = "/database/load", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void loadStream(InputStream body,
+                           @RequestParam(defaultValue = "REPLACE") LoadMode mode) {
+        dataService.load(body, mode);
+    }
+
+    /**
+     * Метод вызывается get-запросом вида "/database/load/progress" и возвращает ход текущей или последней
+     * загрузки: состояние, способ, число загруженных записей, длительность и скорость в записях в секунду
+     * @return ход загрузки
+     */
+    @GetMapping(value = "/database/load/progress")
+    public LoadProgress getLoadProgress() {
+        return dataService.getLoadProgress();
+    }
+
+    /**
+     * Метод вызывается get-запросом вида "/database/dump" и передаёт пользователю текущее состояние
+     * хранилища в двоичном формате. Хранилище записывается прямо в ответ по мере обхода, без временного
+     * файла и копии в памяти, ответ передаётся частями (chunked). Параметр "gzip" сжимает ответ, параметр
+     * "persisted" вместо текущего состояния передаёт ранее сохранённый файл, если он существует, с помощью
+     * {@link java.nio.channels.FileChannel#transferTo}
+     * @param gzip правдивость утверждения о том, что ответ нужно сжать gzip
+     * @param persisted правдивость утверждения о том, что нужно передать ранее сохранённый файл
+     * @return ответ, тело которого записывается потоково
      */
     @GetMapping(value = "/database/dump")
-    public ResponseEntity<Object> dumpFile() {
-        File file = dataService.dump();
+    public ResponseEntity<StreamingResponseBody> dumpFile(@RequestParam(defaultValue = "false") boolean gzip,
+                                                          @RequestParam(defaultValue = "false") boolean persisted) {
         HttpHeaders headers = new HttpHeaders();
-        InputStreamResource resource = null;
+        headers.add("Content-Disposition",
+                String.format("attachment; filename=\"%s\"", gzip ? "data.dat.gz" : "data.dat"));
 
-        try {
-            resource = new InputStreamResource(new FileInputStream(file));
+        StreamingResponseBody body = outputStream -> {
+            OutputStream target = gzip ? new GZIPOutputStream(outputStream, 64 * 1024) : outputStream;
 
-            headers.add("Content-Disposition",
-                    String.format("attachment; filename=\"%s\"",file.getName()));
+            if (!persisted || !dataService.transferSnapshot(Channels.newChannel(target))) {
+                dataService.dump(target);
+            }
+            if (target instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) target).finish();
+            }
+            target.flush();
+        };
 
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+        return ResponseEntity.ok().headers(headers).
+                contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.APPLICATION_OCTET_STREAM).
+                body(body);
+    }
+
+    /**
+     * Метод вызывается get-запросом вида "/database?from=&to=&limit=&cursor=" и потоково передаёт записи с
+     * ключами из диапазона [from, to] по возрастанию ключа, пропуская записи с истекшим временем жизни.
+     * Записи берутся из упорядоченного индекса ключей по мере записи ответа, без копии хранилища. Ответ
+     * содержит не больше limit записей и, если диапазон не пройден до конца, поле "next": его значение
+     * передаётся параметром cursor, чтобы получить следующую страницу. В режиме кластера обходятся только
+     * ключи этого узла
+     * @see com.example.spring_problem.exception.DatabaseExceptionHandler#handleDataException(IndexDisabledException)
+     * @param from наименьший ключ диапазона
+     * @param to наибольший ключ диапазона
+     * @param limit наибольшее число записей страницы
+     * @param cursor значение "next" предыдущей страницы, заменяет from
+     * @return ответ, тело которого записывается потоково
+     */
+    @GetMapping(value = "/database")
+    public ResponseEntity<StreamingResponseBody> scan(@RequestParam(defaultValue = "-2147483648") int from,
+                                                      @RequestParam(defaultValue = "2147483647") int to,
+                                                      @RequestParam(defaultValue = "1000") int limit,
+                                                      @RequestParam(required = false) Integer cursor) {
+        if (!dataService.isIndexEnabled()) {
+            throw new IndexDisabledException();
         }
+        int start = cursor != null ? cursor : from;
+        StreamingResponseBody body = outputStream -> dataService.scan(start, to, limit, outputStream);
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
 
-        return ResponseEntity.ok().headers(headers).contentLength(file.length()).
-                contentType(MediaType.parseMediaType("application/txt")).body(resource);
+    /**
+     * Метод вызывается get-запросом вида "/database/metrics/expiry" и возвращает счётчики удаления
+     * записей с истекшим временем жизни: число циклов, просмотренных и удалённых записей, длительность циклов
+     * @return счётчики удаления записей
+     */
+    @GetMapping(value = "/database/metrics/expiry")
+    public ExpiryMetrics getExpiryMetrics() {
+        return dataService.getExpiryMetrics();
+    }
+
+    /**
+     * Метод вызывается get-запросом вида "/database/metrics/compression" и возвращает счётчики сжатия:
+     * число сжатых и несжатых длинных данных, объём до и после сжатия, степень сжатия, время сжатия и распаковки
+     * @return счётчики сжатия данных
+     */
+    @GetMapping(value = "/database/metrics/compression")
+    public CompressionMetrics getCompressionMetrics() {
+        return dataService.getCompressionMetrics();
+    }
+
+    /**
+     * Метод вызывается get-запросом вида "/database/metrics/eviction" и возвращает счётчики вытеснения:
+     * число попаданий и промахов чтения, долю попаданий, число и объём вытесненных записей
+     * @return счётчики вытеснения записей
+     */
+    @GetMapping(value = "/database/metrics/eviction")
+    public EvictionMetrics getEvictionMetrics() {
+        return dataService.getEvictionMetrics();
+    }
+
+    /**
+     * Метод вызывается get-запросом вида "/database/metrics/slow" и возвращает журнал медленных операций:
+     * последние операции дольше порога database.slow-log.threshold-micros, начиная с самой долгой.
+     * При нулевом пороге журнал отключён и пуст
+     * @return медленные операции
+     */
+    @GetMapping(value = "/database/metrics/slow")
+    public List<SlowOperation> getSlowOperations() {
+        return dataService.getSlowOperations();
+    }
+
+    /**
+     * Метод вызывается get-запросом вида "/database/replication" и возвращает состояние репликации: роль
+     * экземпляра, номера изменений и отставание ведомых от ведущего в изменениях и миллисекундах
+     * @return состояние репликации
+     */
+    @GetMapping(value = "/database/replication")
+    public ReplicationStatus getReplicationStatus() {
+        return dataService.getReplicationStatus();
+    }
+
+    /**
+     * Метод вызывается get-запросом вида "/database/cluster" и возвращает состояние узла кластера: его адрес,
+     * участников кольца, число ключей на узле и ход перераспределения ключей. Запросы вида "/database/{key}"
+     * к ключам других участников пересылаются владельцам до контроллеров
+     * @see com.example.spring_problem.cluster.ClusterForwardingFilter
+     * @return состояние узла кластера
+     */
+    @GetMapping(value = "/database/cluster")
+    public ClusterStatus getClusterStatus() {
+        return dataService.getClusterStatus();
+    }
+
+    /**
+     * Метод вызывается put-запросом вида "/database/cluster/members", в теле которого передаётся массив
+     * адресов участников кластера. Заменяет кольцо узла и в фоне передаёт новым владельцам ключи, сменившие
+     * владельца. Запрос нужно отправить всем узлам нового списка, включая добавленные
+     * @see com.example.spring_problem.exception.DatabaseExceptionHandler#handleDataException(com.example.spring_problem.exception.ClusterDisabledException)
+     * @param members адреса участников
+     * @return состояние узла кластера
+     */
+    @PutMapping(value = "/database/cluster/members")
+    public ClusterStatus setClusterMembers(@RequestBody List<String> members) {
+        return dataService.changeClusterMembers(members);
+    }
+
+    /**
+     * Метод вызывается post-запросом вида "/database/cluster/transfer" с телом типа application/octet-stream
+     * в формате снимка, которое другой узел кластера передаёт при перераспределении ключей. Записи
+     * добавляются к содержимому хранилища по мере поступления тела
+     * @param body тело запроса
+     * @return число полученных записей
+     */
+    @PostMapping(value = "/database/cluster/transfer", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public long receiveClusterTransfer(InputStream body) {
+        return dataService.receiveClusterTransfer(body);
     }
 }
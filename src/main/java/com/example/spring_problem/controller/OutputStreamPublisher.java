@@ -0,0 +1,158 @@
+package com.example.spring_problem.controller;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Поток вывода, превращающий запись блокирующего кода в {@link Flux} буферов для реактивного ответа.
+ * Записывающий код выполняется в отдельном потоке {@link Schedulers#boundedElastic()}, каждый заполненный
+ * буфер отдаётся подписчику только по его запросу: пока медленный клиент не запросил следующий буфер,
+ * запись останавливается, и в памяти находится не больше одного буфера. При отмене подписки запись
+ * прерывается исключением {@link IOException}. Запросы подписчика доставляются в вызывающем потоке,
+ * а не в потоке записи: тот может стоять в ожидании запроса
+ */
+final class OutputStreamPublisher extends OutputStream {
+    /**
+     * Код, записывающий тело ответа в поток вывода
+     */
+    interface Writer {
+        /**
+         * Записывает тело ответа
+         * @param outputStream поток вывода
+         * @throws IOException при ошибке записи или отмене подписки
+         */
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Приёмник буферов для подписчика
+     */
+    private final FluxSink<DataBuffer> sink;
+
+    /**
+     * Фабрика буферов ответа
+     */
+    private final DataBufferFactory factory;
+
+    /**
+     * Накапливаемый буфер
+     */
+    private final byte[] buffer;
+
+    /**
+     * Число байт в накапливаемом буфере
+     */
+    private int count;
+
+    /**
+     * Число буферов, запрошенных подписчиком и ещё не отданных
+     */
+    private final AtomicLong requested = new AtomicLong();
+
+    /**
+     * Поток, выполняющий запись, будится при запросе и отмене
+     */
+    private final Thread writer = Thread.currentThread();
+
+    /**
+     * Правдивость утверждения о том, что подписка отменена
+     */
+    private volatile boolean cancelled;
+
+    private OutputStreamPublisher(FluxSink<DataBuffer> sink, DataBufferFactory factory, int chunkSize) {
+        this.sink = sink;
+        this.factory = factory;
+        this.buffer = new byte[chunkSize];
+        sink.onRequest(n -> {
+            requested.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            LockSupport.unpark(writer);
+        });
+        sink.onCancel(() -> {
+            cancelled = true;
+            LockSupport.unpark(writer);
+        });
+    }
+
+    /**
+     * Создаёт поток буферов, содержимое которого записывает заданный код при подписке
+     * @param factory фабрика буферов ответа
+     * @param chunkSize размер буфера в байтах
+     * @param writer код, записывающий тело ответа
+     * @return поток буферов
+     */
+    static Flux<DataBuffer> publish(DataBufferFactory factory, int chunkSize, Writer writer) {
+        return Flux.<DataBuffer>create(sink -> {
+            try (OutputStreamPublisher outputStream = new OutputStreamPublisher(sink, factory, chunkSize)) {
+                writer.writeTo(outputStream);
+            } catch (IOException | RuntimeException e) {
+                if (!sink.isCancelled()) {
+                    sink.error(e);
+                }
+                return;
+            }
+            sink.complete();
+        }).subscribeOn(Schedulers.boundedElastic(), false);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            emit();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                emit();
+            }
+            int chunk = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * Не отдаёт неполный буфер, чтобы частые сбросы не дробили ответ на мелкие части: остаток отдаётся
+     * при закрытии
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!cancelled && count > 0) {
+            emit();
+        }
+    }
+
+    /**
+     * Дожидается запроса подписчика и отдаёт ему накопленный буфер
+     * @throws IOException если подписка отменена
+     */
+    private void emit() throws IOException {
+        while (requested.get() == 0 && !cancelled) {
+            LockSupport.park(this);
+        }
+        if (cancelled) {
+            throw new IOException("Subscription cancelled");
+        }
+        requested.decrementAndGet();
+        sink.next(factory.wrap(Arrays.copyOf(buffer, count)));
+        count = 0;
+    }
+}
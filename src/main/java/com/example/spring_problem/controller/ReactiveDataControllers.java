@@ -0,0 +1,366 @@
+package com.example.spring_problem.controller;
+
+import com.example.spring_problem.cluster.ClusterStatus;
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.CompressionMetrics;
+import com.example.spring_problem.database.EvictionMetrics;
+import com.example.spring_problem.database.ExpiryMetrics;
+import com.example.spring_problem.database.FsyncPolicy;
+import com.example.spring_problem.database.LoadMode;
+import com.example.spring_problem.database.SlowOperation;
+import com.example.spring_problem.entity.BatchResult;
+import com.example.spring_problem.entity.DataObject;
+import com.example.spring_problem.exception.DatabaseExceptionHandler;
+import com.example.spring_problem.exception.IndexDisabledException;
+import com.example.spring_problem.replication.ReplicationStatus;
+import com.example.spring_problem.service.DataServiceImpl;
+import com.example.spring_problem.snapshot.LoadProgress;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Класс, содержащий те же контроллеры, что и {@link DataControllers}, для реактивного стека WebFlux на
+ * Netty. Работает в профиле reactive. Обращения к хранилищу в памяти не блокируются и выполняются прямо
+ * в потоках обработки событий, кроме записи при политике сброса журнала {@link FsyncPolicy#ALWAYS}: она
+ * ждёт сброса на диск и выполняется в {@link Schedulers#boundedElastic()}. Выгрузка и загрузка хранилища
+ * передаются потоками буферов с обратным давлением и не занимают потоки обработки событий
+ */
+@RestController
+@Profile("reactive")
+public class ReactiveDataControllers {
+    /**
+     * Размер одной части ответа при выгрузке хранилища в байтах
+     */
+    private static final int DUMP_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Число частей тела запроса, запрашиваемых вперёд при загрузке хранилища
+     */
+    private static final int LOAD_PREFETCH = 4;
+
+    /**
+     * Заранее созданный ответ об отсутствии ключа {@link DatabaseExceptionHandler#MISSED_DATA}
+     */
+    private static final Mono<ResponseEntity<?>> MISSED_DATA = Mono.just(DatabaseExceptionHandler.MISSED_DATA);
+
+    /**
+     * Поле, сервис для связи с хранилищем
+     */
+    private final DataServiceImpl dataService;
+
+    /**
+     * Планировщик изменяющих запросов
+     */
+    private final Scheduler writes;
+
+    /**
+     * Правдивость утверждения о том, что хранилище может хранить данные сжатыми
+     */
+    private final boolean compression;
+
+    /**
+     * Фабрика буферов ответа
+     */
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    /**
+     * Констуктор, инициализирует поле сервиса с помощью Spring
+     * @param dataService сервис для связи с хранилищем
+     * @param properties настройки хранилища, по политике сброса журнала выбирается планировщик записи
+     */
+    public ReactiveDataControllers(DataServiceImpl dataService, DatabaseProperties properties) {
+        this.dataService = dataService;
+        this.compression = dataService.isCompressionEnabled();
+        this.writes = properties.getWal().isEnabled() && properties.getWal().getFsync() == FsyncPolicy.ALWAYS
+                ? Schedulers.boundedElastic() : Schedulers.immediate();
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getData(int)}
+     * @param key значение ключа для хранилища
+     * @return данные по ключу либо заранее созданный ответ {@link #MISSED_DATA}
+     */
+    @GetMapping(value = "/database/{key}")
+    public Mono<ResponseEntity<?>> getData(@PathVariable int key) {
+        String data = dataService.getIfPresent(key);
+        return data != null ? Mono.just(ResponseEntity.ok(data)) : MISSED_DATA;
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getData(int, String)}
+     * @param key значение ключа для хранилища
+     * @param acceptEncoding значение заголовка Accept-Encoding
+     * @return сжатые либо обычные данные по ключу либо заранее созданный ответ {@link #MISSED_DATA}
+     */
+    @GetMapping(value = "/database/{key}", headers = HttpHeaders.ACCEPT_ENCODING)
+    public Mono<ResponseEntity<?>> getData(@PathVariable int key,
+                                           @RequestHeader(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
+        if (!compression || !DataControllers.acceptsDeflate(acceptEncoding)) {
+            return getData(key);
+        }
+        Object data = dataService.getStoredIfPresent(key);
+        return data != null ? Mono.just(DataControllers.stored(data)) : MISSED_DATA;
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#setData(Integer, Long, DataObject)}
+     * @param key значение ключа для хранилища
+     * @param ttl время жизни данных
+     * @param dataObject тело запроса
+     * @return HTTP статус
+     */
+    @PutMapping(value = { "/database/{key}", "/database/{key}/{ttl}" })
+    public Mono<HttpStatus> setData(@PathVariable Integer key,
+                                    @PathVariable(required = false) Long ttl,
+                                    @RequestBody Mono<DataObject> dataObject) {
+        return dataObject.publishOn(writes).map(body -> {
+            DataControllers.store(dataService, key, ttl, body);
+            return HttpStatus.OK;
+        });
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#removeData(int)}
+     * @param key значение ключа для хранилища
+     * @return удалённые данные либо заранее созданный ответ {@link #MISSED_DATA}
+     */
+    @DeleteMapping(value = "/database/{key}")
+    public Mono<ResponseEntity<?>> removeData(@PathVariable int key) {
+        return Mono.fromCallable(() -> dataService.removeIfPresent(key))
+                .subscribeOn(writes)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .switchIfEmpty(MISSED_DATA);
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getBatch(int[], boolean)}
+     * @param keys массив ключей
+     * @param ttl правдивость утверждения о том, что нужно вернуть оставшееся время жизни
+     * @return результаты в порядке ключей
+     */
+    @PostMapping(value = "/database/batch/get")
+    public Mono<List<BatchResult>> getBatch(@RequestBody Mono<int[]> keys,
+                                            @RequestParam(defaultValue = "false") boolean ttl) {
+        return keys.map(ttl ? dataService::getAllWithTtl : dataService::getAll);
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#setBatch(List)}
+     * @param records массив записей
+     * @return результаты в порядке записей
+     */
+    @PutMapping(value = "/database/batch")
+    public Mono<List<BatchResult>> setBatch(@RequestBody Mono<List<DataObject>> records) {
+        return records.publishOn(writes).map(dataService::putAll);
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#removeBatch(int[])}
+     * @param keys массив ключей
+     * @return результаты в порядке ключей
+     */
+    @DeleteMapping(value = "/database/batch")
+    public Mono<List<BatchResult>> removeBatch(@RequestBody Mono<int[]> keys) {
+        return keys.publishOn(writes).map(dataService::removeAll);
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#loadFile}: содержимое файла формы разбирается по мере
+     * поступления, без временного файла
+     * @param file часть формы с файлом
+     * @param mode способ загрузки
+     * @return завершение загрузки
+     */
+    @PostMapping(value = "/database/load", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<Void> loadFile(@RequestPart("file") Mono<FilePart> file,
+                               @RequestParam(defaultValue = "REPLACE") LoadMode mode) {
+        return file.flatMap(part -> load(part.content(), mode));
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#loadStream(InputStream, LoadMode)}
+     * @param body тело запроса
+     * @param mode способ загрузки
+     * @return завершение загрузки
+     */
+    @PostMapping(value = "/database/load", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Mono<Void> loadStream(@RequestBody Flux<DataBuffer> body,
+                                 @RequestParam(defaultValue = "REPLACE") LoadMode mode) {
+        return load(body, mode);
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getLoadProgress()}
+     * @return ход загрузки
+     */
+    @GetMapping(value = "/database/load/progress")
+    public LoadProgress getLoadProgress() {
+        return dataService.getLoadProgress();
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#dumpFile(boolean, boolean)}: хранилище записывается в
+     * отдельном потоке частями по {@value #DUMP_CHUNK_SIZE} байт, следующая часть готовится только после
+     * того, как клиент принял предыдущую
+     * @param gzip правдивость утверждения о том, что ответ нужно сжать gzip
+     * @param persisted правдивость утверждения о том, что нужно передать ранее сохранённый файл
+     * @return ответ с потоком частей
+     */
+    @GetMapping(value = "/database/dump")
+    public ResponseEntity<Flux<DataBuffer>> dumpFile(@RequestParam(defaultValue = "false") boolean gzip,
+                                                     @RequestParam(defaultValue = "false") boolean persisted) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Disposition",
+                String.format("attachment; filename=\"%s\"", gzip ? "data.dat.gz" : "data.dat"));
+
+        Flux<DataBuffer> body = OutputStreamPublisher.publish(bufferFactory, DUMP_CHUNK_SIZE, outputStream -> {
+            OutputStream target = gzip ? new GZIPOutputStream(outputStream, DUMP_CHUNK_SIZE) : outputStream;
+
+            if (!persisted || !dataService.transferSnapshot(Channels.newChannel(target))) {
+                dataService.dump(target);
+            }
+            if (target instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) target).finish();
+            }
+        });
+
+        return ResponseEntity.ok().headers(headers).
+                contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.APPLICATION_OCTET_STREAM).
+                body(body);
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#scan(int, int, int, Integer)}: страница записывается в
+     * отдельном потоке частями по {@value #DUMP_CHUNK_SIZE} байт по мере того, как клиент их принимает
+     * @param from наименьший ключ диапазона
+     * @param to наибольший ключ диапазона
+     * @param limit наибольшее число записей страницы
+     * @param cursor значение "next" предыдущей страницы, заменяет from
+     * @return ответ с потоком частей
+     */
+    @GetMapping(value = "/database")
+    public ResponseEntity<Flux<DataBuffer>> scan(@RequestParam(defaultValue = "-2147483648") int from,
+                                                 @RequestParam(defaultValue = "2147483647") int to,
+                                                 @RequestParam(defaultValue = "1000") int limit,
+                                                 @RequestParam(required = false) Integer cursor) {
+        if (!dataService.isIndexEnabled()) {
+            throw new IndexDisabledException();
+        }
+        int start = cursor != null ? cursor : from;
+        Flux<DataBuffer> body = OutputStreamPublisher.publish(bufferFactory, DUMP_CHUNK_SIZE,
+                outputStream -> dataService.scan(start, to, limit, outputStream));
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getExpiryMetrics()}
+     * @return счётчики удаления записей
+     */
+    @GetMapping(value = "/database/metrics/expiry")
+    public ExpiryMetrics getExpiryMetrics() {
+        return dataService.getExpiryMetrics();
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getCompressionMetrics()}
+     * @return счётчики сжатия данных
+     */
+    @GetMapping(value = "/database/metrics/compression")
+    public CompressionMetrics getCompressionMetrics() {
+        return dataService.getCompressionMetrics();
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getEvictionMetrics()}
+     * @return счётчики вытеснения записей
+     */
+    @GetMapping(value = "/database/metrics/eviction")
+    public EvictionMetrics getEvictionMetrics() {
+        return dataService.getEvictionMetrics();
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getSlowOperations()}
+     * @return медленные операции
+     */
+    @GetMapping(value = "/database/metrics/slow")
+    public List<SlowOperation> getSlowOperations() {
+        return dataService.getSlowOperations();
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getReplicationStatus()}
+     * @return состояние репликации
+     */
+    @GetMapping(value = "/database/replication")
+    public ReplicationStatus getReplicationStatus() {
+        return dataService.getReplicationStatus();
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#getClusterStatus()}
+     * @return состояние узла кластера
+     */
+    @GetMapping(value = "/database/cluster")
+    public ClusterStatus getClusterStatus() {
+        return dataService.getClusterStatus();
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#setClusterMembers(List)}
+     * @param members адреса участников
+     * @return состояние узла кластера
+     */
+    @PutMapping(value = "/database/cluster/members")
+    public Mono<ClusterStatus> setClusterMembers(@RequestBody Mono<List<String>> members) {
+        return members.map(dataService::changeClusterMembers);
+    }
+
+    /**
+     * Реактивный вариант {@link DataControllers#receiveClusterTransfer(InputStream)}, тело читается в
+     * отдельном потоке по мере разбора
+     * @param body тело запроса
+     * @return число полученных записей
+     */
+    @PostMapping(value = "/database/cluster/transfer", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Mono<Long> receiveClusterTransfer(@RequestBody Flux<DataBuffer> body) {
+        return Mono.fromCallable(() -> {
+            try (DataBufferInputStream inputStream = new DataBufferInputStream(body, LOAD_PREFETCH)) {
+                return dataService.receiveClusterTransfer(inputStream);
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Загружает хранилище из тела запроса в отдельном потоке, читая тело по мере разбора
+     * @param body тело запроса
+     * @param mode способ загрузки
+     * @return завершение загрузки
+     */
+    private Mono<Void> load(Flux<DataBuffer> body, LoadMode mode) {
+        return Mono.<Void>fromRunnable(() -> {
+            try (DataBufferInputStream inputStream = new DataBufferInputStream(body, LOAD_PREFETCH)) {
+                dataService.load(inputStream, mode);
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+}
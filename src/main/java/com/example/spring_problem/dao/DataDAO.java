@@ -1,7 +1,21 @@
 package com.example.spring_problem.dao;
 
+import com.example.spring_problem.database.CompressionMetrics;
+import com.example.spring_problem.database.EvictionMetrics;
+import com.example.spring_problem.database.ExpiryMetrics;
+import com.example.spring_problem.database.LoadMode;
+import com.example.spring_problem.database.SlowOperation;
+import com.example.spring_problem.entity.BatchResult;
+import com.example.spring_problem.entity.DataObject;
+import com.example.spring_problem.snapshot.LoadProgress;
+import com.example.spring_problem.snapshot.SnapshotMetrics;
+
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
 
 /**
  * Интерфейс доступа к хранилищу {@link com.example.spring_problem.database.Database}
@@ -24,6 +38,15 @@ public interface DataDAO {
      */
     void put(int key, String data, long ttl);
 
+    /**
+     * Помещает в хранилище данные по заданному ключу со временем жизни без обращений
+     * @see DataDAOImpl#putIdle(int, String, long)
+     * @param key ключ для хранилища
+     * @param data данные для хранилища
+     * @param idle время простоя в миллисекундах
+     */
+    void putIdle(int key, String data, long idle);
+
     /**
      * Помещает в хранилище данные по заданному ключу с временем жизни по умолчанию
      * @see DataDAOImpl#put(int, String)
@@ -41,16 +64,163 @@ public interface DataDAO {
     String remove(int key);
 
     /**
-     * Сериализует хранилище и записывает в файл
+     * Возвращает значение, хранящееся в хранилище по заданному ключу, отсутствие ключа не приводит к исключению
+     * @see DataDAOImpl#getIfPresent(int)
+     * @param key ключ для хранилища
+     * @return данные, хранящиеся по заданному ключу, null - ключ отсутствует
+     */
+    String getIfPresent(int key);
+
+    /**
+     * Возвращает данные, хранящиеся по заданному ключу, в хранимом виде без распаковки
+     * @see DataDAOImpl#getStoredIfPresent(int)
+     * @param key ключ для хранилища
+     * @return String, данные в формате zlib byte[], null - ключ отсутствует
+     */
+    Object getStoredIfPresent(int key);
+
+    /**
+     * Возвращает признак хранения сжатых данных
+     * @see DataDAOImpl#isCompressionEnabled()
+     * @return правдивость утверждения о том, что данные могут храниться сжатыми
+     */
+    boolean isCompressionEnabled();
+
+    /**
+     * Удаляет данные из хранилища и возвращает их, отсутствие ключа не приводит к исключению
+     * @see DataDAOImpl#removeIfPresent(int)
+     * @param key ключ для хранилища
+     * @return удалённые данные, null - ключ отсутствует
+     */
+    String removeIfPresent(int key);
+
+    /**
+     * Возвращает данные по нескольким ключам, отсутствие ключа не приводит к исключению
+     * @see DataDAOImpl#getAll(int[])
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей
+     */
+    List<BatchResult> getAll(int[] keys);
+
+    /**
+     * Возвращает данные по нескольким ключам вместе с оставшимся временем жизни найденных записей
+     * @see DataDAOImpl#getAllWithTtl(int[])
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей
+     */
+    List<BatchResult> getAllWithTtl(int[] keys);
+
+    /**
+     * Помещает в хранилище несколько записей, время жизни и простоя записей задаются в секундах
+     * @see DataDAOImpl#putAll(List)
+     * @param records записи для хранилища
+     * @return результаты в порядке записей
+     */
+    List<BatchResult> putAll(List<DataObject> records);
+
+    /**
+     * Удаляет данные по нескольким ключам и возвращает их, отсутствие ключа не приводит к исключению
+     * @see DataDAOImpl#removeAll(int[])
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей
+     */
+    List<BatchResult> removeAll(int[] keys);
+
+    /**
+     * Записывает хранилище в файл в двоичном формате сохранённого хранилища
      * @see DataDAOImpl#dump()
-     * @return возвращает файл, в котором хранится сериализованное хранилище
+     * @return возвращает файл, в котором хранится сохранённое хранилище
      */
     File dump();
 
     /**
-     * Передаёт входной поток, в котором содержится объект, для десериализации и загрузки в хранилище
+     * Потоково записывает хранилище в выходной поток в двоичном формате сохранённого хранилища
+     * @see DataDAOImpl#dump(OutputStream)
+     * @param outputStream выходной поток
+     * @throws IOException если запись в поток не удалась
+     */
+    void dump(OutputStream outputStream) throws IOException;
+
+    /**
+     * Возвращает признак упорядоченного индекса ключей, без которого обход диапазона недоступен
+     * @return правдивость утверждения о том, что индекс ведётся
+     */
+    boolean isIndexEnabled();
+
+    /**
+     * Потоково записывает в выходной поток в формате JSON страницу записей из диапазона ключей
+     * @see DataDAOImpl#scan(int, int, int, OutputStream)
+     * @param from наименьший ключ диапазона
+     * @param to наибольший ключ диапазона
+     * @param limit наибольшее число записей страницы
+     * @param outputStream выходной поток
+     * @throws IOException если запись в поток не удалась
+     */
+    void scan(int from, int to, int limit, OutputStream outputStream) throws IOException;
+
+    /**
+     * Передаёт файл сохранённого хранилища в канал, если файл существует
+     * @see DataDAOImpl#transferSnapshot(WritableByteChannel)
+     * @param target канал, в который передаётся файл
+     * @return правдивость утверждения о том, что файл существует и был передан
+     * @throws IOException если чтение файла или запись в канал не удались
+     */
+    boolean transferSnapshot(WritableByteChannel target) throws IOException;
+
+    /**
+     * Передаёт входной поток, в котором содержится сохранённое хранилище, для загрузки в хранилище
      * @see DataDAOImpl#load(InputStream)
      * @param loadInputStream входной поток данных
      */
     void load(InputStream loadInputStream);
+
+    /**
+     * Передаёт входной поток, в котором содержится сохранённое хранилище, для загрузки заданным способом
+     * @see DataDAOImpl#load(InputStream, LoadMode)
+     * @param loadInputStream входной поток данных
+     * @param mode способ загрузки
+     */
+    void load(InputStream loadInputStream, LoadMode mode);
+
+    /**
+     * Возвращает ход текущей или последней загрузки сохранённого хранилища
+     * @see DataDAOImpl#getLoadProgress()
+     * @return ход загрузки
+     */
+    LoadProgress getLoadProgress();
+
+    /**
+     * Возвращает счётчики удаления записей с истекшим временем жизни
+     * @see DataDAOImpl#getExpiryMetrics()
+     * @return счётчики удаления
+     */
+    ExpiryMetrics getExpiryMetrics();
+
+    /**
+     * Возвращает счётчики сжатия данных записей
+     * @see DataDAOImpl#getCompressionMetrics()
+     * @return счётчики сжатия
+     */
+    CompressionMetrics getCompressionMetrics();
+
+    /**
+     * Возвращает счётчики попаданий и вытеснения записей
+     * @see DataDAOImpl#getEvictionMetrics()
+     * @return счётчики вытеснения
+     */
+    EvictionMetrics getEvictionMetrics();
+
+    /**
+     * Возвращает счётчики сохранений и загрузок хранилища
+     * @see DataDAOImpl#getSnapshotMetrics()
+     * @return счётчики сохранений и загрузок
+     */
+    SnapshotMetrics getSnapshotMetrics();
+
+    /**
+     * Возвращает медленные операции хранилища
+     * @see DataDAOImpl#getSlowOperations()
+     * @return медленные операции, начиная с самой долгой
+     */
+    List<SlowOperation> getSlowOperations();
 }
@@ -1,13 +1,43 @@
 package com.example.spring_problem.dao;
 
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.CompressionMetrics;
 import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.EvictionMetrics;
+import com.example.spring_problem.database.ExpiryMetrics;
+import com.example.spring_problem.database.LoadMode;
+import com.example.spring_problem.database.SlowOperation;
+import com.example.spring_problem.database.SlowOperationLog;
+import com.example.spring_problem.entity.BatchResult;
+import com.example.spring_problem.entity.DataObject;
+import com.example.spring_problem.exception.LoadInProgressException;
 import com.example.spring_problem.exception.MissedDataException;
+import com.example.spring_problem.exception.ReadOnlyReplicaException;
 import com.example.spring_problem.exception.TimeToLeaveException;
+import com.example.spring_problem.snapshot.LoadProgress;
+import com.example.spring_problem.snapshot.SnapshotEvent;
+import com.example.spring_problem.snapshot.SnapshotFormat;
+import com.example.spring_problem.snapshot.SnapshotLoader;
+import com.example.spring_problem.snapshot.SnapshotMetrics;
+import com.example.spring_problem.snapshot.SnapshotWriter;
+import com.example.spring_problem.snapshot.Snapshots;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.io.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Класс, реализующий интерфейс {@link DataDAO}
@@ -19,29 +49,65 @@ public class DataDAOImpl implements DataDAO {
      */
     private Database database;
 
+    /**
+     * Путь к файлу сохранённого хранилища
+     */
+    private final Path snapshotPath;
+
+    /**
+     * Параллельная загрузка сохранённого хранилища
+     */
+    private final SnapshotLoader loader;
+
+    /**
+     * Ход текущей или последней загрузки
+     */
+    private final LoadProgress loadProgress = new LoadProgress();
+
+    /**
+     * Счётчики сохранений и загрузок хранилища
+     */
+    private final SnapshotMetrics snapshotMetrics = new SnapshotMetrics();
+
+    /**
+     * Фабрика потоковой записи JSON для обхода диапазонов
+     */
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * Создаёт и инициализирует поле хранилищем {@link Database}, файл сохранённого хранилища - data.dat
+     * @param database хранилище
+     */
+    public DataDAOImpl(Database database) {
+        this(database, new DatabaseProperties());
+    }
+
     /**
      * Создаёт и инициализирует поле хранилищем {@link Database} с помощью Spring
      * @param database хранилище, которое инициализирует Spring
+     * @param properties настройки хранилища, из них берутся путь database.snapshot.path и число потоков
+     *                   загрузки database.load.workers
      */
     @Autowired
-    public DataDAOImpl(Database database) {
+    public DataDAOImpl(Database database, DatabaseProperties properties) {
         this.database = database;
+        this.snapshotPath = Paths.get(properties.getSnapshot().getPath()).toAbsolutePath();
+        this.loader = new SnapshotLoader(properties.getLoad().getWorkers());
     }
 
     /**
-     * Метод обновляет хранилище и озвращает значение, хранящееся в хранилище по переданному ключу
+     * Метод возвращает значение, хранящееся в хранилище по переданному ключу
      * @param key ключ для хранилища
      * @return возвращает значение, хранящееся в хранилище по заданному ключу
      * @throws MissedDataException если заданный ключ отсутствует, то выбрасывается исключение
      */
     @Override
     public String get(int key) throws MissedDataException {
-        database.update();
         return database.get(key);
     }
 
     /**
-     * Метод обновляет хранилище и кладёт по ключу данные с заданной продолжительностью жизни
+     * Метод кладёт по ключу данные с заданной продолжительностью жизни
      * @param key значение ключа
      * @param data данные для хранилища
      * @param ttl время жизни данных
@@ -49,7 +115,6 @@ public class DataDAOImpl implements DataDAO {
      */
     @Override
     public void put(int key, String data, long ttl) throws TimeToLeaveException {
-        database.update();
         if(ttl > 0) {
             database.put(key, data, ttl);
         } else {
@@ -58,63 +123,510 @@ public class DataDAOImpl implements DataDAO {
     }
 
     /**
-     * Метод обновляет хранилище и кладёт по ключу данные с продолжительностью жизни по умолчанию
+     * Метод кладёт по ключу данные со временем жизни без обращений, каждое чтение продлевает их жизнь
+     * на время простоя
+     * @param key значение ключа
+     * @param data данные для хранилища
+     * @param idle время простоя в миллисекундах
+     * @throws TimeToLeaveException если переданное время простоя не положительно, то выбрасывается исключение
+     */
+    @Override
+    public void putIdle(int key, String data, long idle) throws TimeToLeaveException {
+        if(idle > 0) {
+            database.putIdle(key, data, idle);
+        } else {
+            throw new TimeToLeaveException();
+        }
+    }
+
+    /**
+     * Метод кладёт по ключу данные с продолжительностью жизни по умолчанию
      * @param key значение ключа
      * @param data данные для хранилища
      */
     @Override
     public void put(int key, String data) {
-        database.update();
         database.put(key, data);
     }
 
     /**
-     * Метод обновляет хранилище и удаляет данные по ключу, при этом возвращая их
+     * Метод удаляет данные по ключу, при этом возвращая их
      * @param key значение ключа
      * @return возвращает данные, которые были удалены в хранилище
      * @throws MissedDataException если заданный ключ отсутствует, то выбрасывается исключение
      */
     @Override
     public String remove(int key) throws MissedDataException {
-        database.update();
         return database.remove(key);
     }
 
     /**
-     * Метод обновляет хранилище и получает объект ConcurrentHashMap, который сериализует и возвращает
-     * @return возвращает файл, в котором хранится сериализованное хранилище
+     * Метод возвращает значение, хранящееся в хранилище по переданному ключу. Промах не создаёт объектов
+     * и не выбрасывает исключения
+     * @param key ключ для хранилища
+     * @return значение, хранящееся по заданному ключу, null - ключ отсутствует
      */
     @Override
-    public File dump() {
-        database.update();
-        ConcurrentHashMap<Database.Key,String> dumpHashMap = database.dump();
+    public String getIfPresent(int key) {
+        return database.getIfPresent(key);
+    }
 
-        File file = new File("data.dat");
+    /**
+     * Метод возвращает значение, хранящееся по переданному ключу, в том виде, в котором его хранит
+     * движок, без распаковки
+     * @param key ключ для хранилища
+     * @return String, данные в формате zlib byte[], null - ключ отсутствует
+     */
+    @Override
+    public Object getStoredIfPresent(int key) {
+        return database.getStoredIfPresent(key);
+    }
 
-        try(ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(dumpHashMap);
-        } catch (IOException e) {
+    /**
+     * Метод возвращает признак хранения сжатых данных
+     * @return правдивость утверждения о том, что данные могут храниться сжатыми
+     */
+    @Override
+    public boolean isCompressionEnabled() {
+        return database.isCompressionEnabled();
+    }
+
+    /**
+     * Метод удаляет данные по ключу, при этом возвращая их. Промах не создаёт объектов и не выбрасывает исключения
+     * @param key значение ключа
+     * @return удалённые данные, null - ключ отсутствует
+     */
+    @Override
+    public String removeIfPresent(int key) {
+        return database.removeIfPresent(key);
+    }
+
+    /**
+     * Метод возвращает данные по нескольким ключам, хранилище обрабатывает ключи за один проход по
+     * каждому шарду
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей: данные и статус 200 либо статус 404, если ключ отсутствует
+     */
+    @Override
+    public List<BatchResult> getAll(int[] keys) {
+        return results(keys, database.getAll(keys));
+    }
+
+    /**
+     * Метод возвращает данные по нескольким ключам, как {@link #getAll(int[])}, и оставшееся время жизни
+     * найденных записей, по которому клиент может хранить их копию, не обращаясь к хранилищу
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей: данные, статус 200 и время жизни в миллисекундах либо статус 404
+     */
+    @Override
+    public List<BatchResult> getAllWithTtl(int[] keys) {
+        long[] ttls = new long[keys.length];
+        List<BatchResult> results = results(keys, database.getAll(keys, ttls));
+
+        for (int i = 0; i < keys.length; i++) {
+            if (ttls[i] != 0) {
+                results.get(i).setTtl(ttls[i]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Метод кладёт в хранилище несколько записей за один проход по каждому шарду. Время жизни и простоя
+     * записей задаются в секундах, как в теле одиночного запроса: если время простоя больше 0, запись живёт
+     * время простоя без обращений, иначе - время жизни, 0 - время жизни по умолчанию. Записи с отрицательным
+     * временем или без данных не помещаются в хранилище, остальные записи пакета помещаются
+     * @param records записи для хранилища
+     * @return результаты в порядке записей: статус 200 либо 400 для неверной записи
+     */
+    @Override
+    public List<BatchResult> putAll(List<DataObject> records) {
+        List<BatchResult> results = new ArrayList<>(records.size());
+        int[] keys = new int[records.size()];
+        String[] data = new String[records.size()];
+        long[] ttls = new long[records.size()];
+        long[] idles = new long[records.size()];
+        int count = 0;
+
+        for (DataObject record : records) {
+            boolean valid = record.getData() != null && record.getTtl() >= 0 && record.getIdle() >= 0;
+            results.add(new BatchResult(record.getKey(), null, valid ? 200 : 400));
+            if (valid) {
+                keys[count] = record.getKey();
+                data[count] = record.getData();
+                ttls[count] = record.getTtl() * 1000;
+                idles[count++] = record.getIdle() * 1000;
+            }
+        }
+        if (count < records.size()) {
+            keys = Arrays.copyOf(keys, count);
+            data = Arrays.copyOf(data, count);
+            ttls = Arrays.copyOf(ttls, count);
+            idles = Arrays.copyOf(idles, count);
+        }
+        database.putAll(keys, data, ttls, idles);
+        return results;
+    }
+
+    /**
+     * Метод удаляет данные по нескольким ключам за один проход по каждому шарду, при этом возвращая их
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей: удалённые данные и статус 200 либо статус 404, если ключ отсутствует
+     */
+    @Override
+    public List<BatchResult> removeAll(int[] keys) {
+        return results(keys, database.removeAll(keys));
+    }
+
+    /**
+     * Составляет результаты пакетного чтения или удаления
+     * @param keys ключи для хранилища
+     * @param data данные в порядке ключей, null - ключ отсутствует
+     * @return результаты в порядке ключей
+     */
+    private static List<BatchResult> results(int[] keys, String[] data) {
+        List<BatchResult> results = new ArrayList<>(keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+            results.add(new BatchResult(keys[i], data[i], data[i] != null ? 200 : 404));
+        }
+        return results;
+    }
+
+    /**
+     * Метод потоково записывает хранилище в файл database.snapshot.path в формате {@link SnapshotFormat},
+     * не создавая копии хранилища. Запись идёт во временный файл, который затем атомарно заменяет
+     * прежний, поэтому одновременные сохранения не портят файл друг другу
+     * @return возвращает файл, в котором хранится сохранённое хранилище
+     */
+    @Override
+    public File dump() {
+        Path temp = null;
+
+        try {
+            temp = Files.createTempFile(snapshotPath.getParent(), snapshotPath.getFileName().toString(), ".tmp");
+            try(OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temp), SnapshotFormat.BLOCK_SIZE)) {
+                dump(outputStream);
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException e) {
             e.printStackTrace();
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
         }
-        return file;
+        return snapshotPath.toFile();
     }
 
     /**
-     * Метод обновляет хранилище, получает входной поток, который десериализует в объект ConcurrentHashMap
-     * @see ConcurrentHashMap
+     * Метод потоково записывает хранилище в формате {@link SnapshotFormat} в выходной поток по мере
+     * обхода хранилища, заголовок отправляется сразу. Поток не закрывается
+     * @param outputStream выходной поток
+     * @throws IOException если запись в поток не удалась
+     */
+    @Override
+    public void dump(OutputStream outputStream) throws IOException {
+        SnapshotEvent event = new SnapshotEvent();
+        long start = System.nanoTime();
+        event.begin();
+        SnapshotWriter writer = new SnapshotWriter(outputStream, true);
+        boolean succeeded = false;
+
+        try {
+            outputStream.flush();
+            try {
+                database.dump((key, data, ttl) -> {
+                    try {
+                        writer.write(key, data, ttl);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.finish();
+            succeeded = true;
+        } finally {
+            long duration = System.nanoTime() - start;
+            if (succeeded) {
+                snapshotMetrics.recordDump(duration, writer.getRecordCount(), writer.getSize());
+            }
+            trace(event, "DUMP", writer.getRecordCount(), writer.getSize(), succeeded, duration);
+        }
+    }
+
+    /**
+     * Метод возвращает признак упорядоченного индекса ключей
+     * @return правдивость утверждения о том, что индекс ведётся
+     */
+    @Override
+    public boolean isIndexEnabled() {
+        return database.isIndexEnabled();
+    }
+
+    /**
+     * Метод потоково записывает страницу записей из диапазона ключей в формате JSON по мере обхода индекса:
+     * {"entries":[{"key":1,"data":"...","ttl":1000},...],"next":2}. Время жизни - оставшееся число
+     * миллисекунд, "next" - значение параметра cursor для следующей страницы, его нет, если диапазон
+     * пройден до конца. Поток не закрывается
+     * @param from наименьший ключ диапазона
+     * @param to наибольший ключ диапазона
+     * @param limit наибольшее число записей страницы
+     * @param outputStream выходной поток
+     * @throws IOException если запись в поток не удалась
+     */
+    @Override
+    public void scan(int from, int to, int limit, OutputStream outputStream) throws IOException {
+        JsonGenerator generator = JSON.createGenerator(outputStream);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("entries");
+
+        long next;
+        try {
+            next = database.scan(from, to, limit, (key, data, ttl) -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("key", key);
+                    generator.writeStringField("data", data);
+                    generator.writeNumberField("ttl", ttl);
+                    generator.writeEndObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        if (next != Long.MAX_VALUE) {
+            generator.writeNumberField("next", next);
+        }
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * Метод передаёт файл сохранённого хранилища в канал с помощью {@link FileChannel#transferTo}, без
+     * копирования через буферы приложения
+     * @param target канал, в который передаётся файл
+     * @return правдивость утверждения о том, что файл существует и был передан
+     * @throws IOException если чтение файла или запись в канал не удались
+     */
+    @Override
+    public boolean transferSnapshot(WritableByteChannel target) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(snapshotPath, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        try(FileChannel fileChannel = channel) {
+            long size = fileChannel.size();
+            for (long position = 0; position < size; ) {
+                position += fileChannel.transferTo(position, size - position, target);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Метод заменяет содержимое хранилища записями из входного потока
+     * @see #load(InputStream, LoadMode)
      * @param loadInputStream входной поток данных
      */
     @Override
     public void load(InputStream loadInputStream) {
-        ConcurrentHashMap<Database.Key,String> loadHashMap = new ConcurrentHashMap<>();
-        database.update();
+        load(loadInputStream, LoadMode.REPLACE);
+    }
 
-        try(ObjectInputStream ois = new ObjectInputStream(loadInputStream)) {
-            loadHashMap = (ConcurrentHashMap<Database.Key, String>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
+    /**
+     * Метод потоково загружает записи из входного потока, блоки разбираются и вставляются параллельно
+     * потоками {@link SnapshotLoader}. В режиме {@link LoadMode#REPLACE} записи загружаются в новые шарды,
+     * которые атомарно заменяют текущие только после успешной загрузки всего потока, до этого читатели
+     * видят прежнее содержимое. В режиме {@link LoadMode#MERGE} записи сразу добавляются в хранилище.
+     * Поддерживается формат {@link SnapshotFormat} и прежний формат сериализации Java
+     * @param loadInputStream входной поток данных
+     * @param mode способ загрузки
+     * @throws LoadInProgressException если уже выполняется другая загрузка
+     * @throws ReadOnlyReplicaException если хранилище - ведомый экземпляр
+     * @throws com.example.spring_problem.exception.SnapshotFormatException если поток повреждён или имеет неизвестный формат
+     * @throws UncheckedIOException если чтение потока завершилось ошибкой
+     */
+    @Override
+    public void load(InputStream loadInputStream, LoadMode mode) {
+        if (database.isReadOnly()) {
+            throw new ReadOnlyReplicaException();
         }
+        if (!loadProgress.start(mode)) {
+            throw new LoadInProgressException();
+        }
+        Database.Staging staging;
+        try {
+            staging = mode == LoadMode.REPLACE ? database.stage() : null;
+        } catch (RuntimeException | Error e) {
+            loadProgress.fail(e.toString());
+            throw e;
+        }
+        SnapshotEvent event = new SnapshotEvent();
+        long start = System.nanoTime();
+        event.begin();
+        CountingInputStream counted = new CountingInputStream(loadInputStream);
+        boolean succeeded = false;
+
+        try(CountingInputStream inputStream = counted) {
+            long records = loader.load(inputStream, staging != null ? staging : database::put, loadProgress);
+            if (staging != null) {
+                staging.commit();
+            }
+            loadProgress.complete();
+            snapshotMetrics.recordLoad(System.nanoTime() - start, records, inputStream.count);
+            succeeded = true;
+        } catch (IOException e) {
+            loadProgress.fail(e.toString());
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException | Error e) {
+            loadProgress.fail(e.toString());
+            throw e;
+        } finally {
+            if (staging != null) {
+                staging.abort();
+            }
+            trace(event, "LOAD", loadProgress.getRecords(), counted.count, succeeded, System.nanoTime() - start);
+        }
+    }
 
-        database.load(loadHashMap);
+    /**
+     * Завершает событие JFR о сохранении или загрузке и записывает операцию в журнал медленных операций
+     * хранилища, если она длилась не меньше его порога
+     * @param event событие, начатое вместе с операцией
+     * @param operation операция: DUMP или LOAD
+     * @param records число записей
+     * @param bytes число байт потока
+     * @param succeeded правдивость утверждения о том, что операция завершилась успешно
+     * @param durationNanos длительность операции в наносекундах
+     */
+    private void trace(SnapshotEvent event, String operation, long records, long bytes, boolean succeeded,
+                       long durationNanos) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.records = records;
+            event.bytes = bytes;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+        SlowOperationLog slowOperations = database.getSlowOperations();
+        if (slowOperations.isSlow(durationNanos)) {
+            slowOperations.record(operation, records + " records, " + bytes + " bytes"
+                    + (succeeded ? "" : ", failed"), durationNanos);
+        }
+    }
+
+    /**
+     * Метод возвращает ход текущей или последней загрузки
+     * @return ход загрузки
+     */
+    @Override
+    public LoadProgress getLoadProgress() {
+        return loadProgress;
+    }
+
+    /**
+     * Метод возвращает счётчики удаления записей с истекшим временем жизни
+     * @return счётчики удаления
+     */
+    @Override
+    public ExpiryMetrics getExpiryMetrics() {
+        return database.getExpiryMetrics();
+    }
+
+    /**
+     * Метод возвращает счётчики сжатия данных записей
+     * @return счётчики сжатия
+     */
+    @Override
+    public CompressionMetrics getCompressionMetrics() {
+        return database.getCompressionMetrics();
+    }
+
+    /**
+     * Метод возвращает счётчики попаданий и вытеснения записей
+     * @return счётчики вытеснения
+     */
+    @Override
+    public EvictionMetrics getEvictionMetrics() {
+        return database.getEvictionMetrics();
+    }
+
+    /**
+     * Метод возвращает счётчики сохранений и загрузок хранилища
+     * @return счётчики сохранений и загрузок
+     */
+    @Override
+    public SnapshotMetrics getSnapshotMetrics() {
+        return snapshotMetrics;
+    }
+
+    /**
+     * Метод возвращает медленные операции хранилища, начиная с самой долгой
+     * @return медленные операции
+     */
+    @Override
+    public List<SlowOperation> getSlowOperations() {
+        return database.getSlowOperations().getSlowest();
+    }
+
+    /**
+     * Входной поток, считающий прочитанные байты
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        /**
+         * Число прочитанных байт
+         */
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        /**
+         * Повторно прочитанные после {@link #reset()} байты считались бы дважды, поэтому метка не
+         * поддерживается, и загрузчик сам добавляет буфер поверх этого потока
+         */
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
     }
 }
@@ -0,0 +1,162 @@
+package com.example.spring_problem.database;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики сжатия данных записей: сколько данных сжато и во сколько раз, сколько времени процессора
+ * ушло на сжатие и распаковку, сколько чтений отдано клиентам сжатыми без распаковки
+ */
+public class CompressionMetrics {
+    /**
+     * Число записанных данных, сохранённых сжатыми
+     */
+    private final LongAdder compressedValues = new LongAdder();
+    /**
+     * Число записанных данных длиннее порога, сохранённых несжатыми, так как сжатие почти не уменьшило их
+     */
+    private final LongAdder skippedValues = new LongAdder();
+    /**
+     * Суммарный объём сохранённых сжатыми данных до сжатия в байтах UTF-8
+     */
+    private final LongAdder originalBytes = new LongAdder();
+    /**
+     * Суммарный объём сохранённых сжатыми данных после сжатия в байтах
+     */
+    private final LongAdder compressedBytes = new LongAdder();
+    /**
+     * Суммарная длительность сжатия, в том числе неудачного, в наносекундах
+     */
+    private final LongAdder compressNanos = new LongAdder();
+    /**
+     * Число распаковок данных
+     */
+    private final LongAdder decompressions = new LongAdder();
+    /**
+     * Суммарная длительность распаковки в наносекундах
+     */
+    private final LongAdder decompressNanos = new LongAdder();
+    /**
+     * Число чтений, отданных клиенту сжатыми без распаковки
+     */
+    private final LongAdder servedCompressed = new LongAdder();
+
+    /**
+     * Учитывает данные, сохранённые сжатыми
+     * @param original объём до сжатия в байтах
+     * @param compressed объём после сжатия в байтах
+     * @param nanos длительность сжатия
+     */
+    void recordCompressed(int original, int compressed, long nanos) {
+        compressedValues.increment();
+        originalBytes.add(original);
+        compressedBytes.add(compressed);
+        compressNanos.add(nanos);
+    }
+
+    /**
+     * Учитывает данные, которые не удалось заметно сжать
+     * @param nanos длительность попытки сжатия
+     */
+    void recordSkipped(long nanos) {
+        skippedValues.increment();
+        compressNanos.add(nanos);
+    }
+
+    /**
+     * Учитывает распаковку данных
+     * @param nanos длительность распаковки
+     */
+    void recordDecompressed(long nanos) {
+        decompressions.increment();
+        decompressNanos.add(nanos);
+    }
+
+    /**
+     * Учитывает чтение, отданное клиенту сжатым
+     */
+    void recordServedCompressed() {
+        servedCompressed.increment();
+    }
+
+    /**
+     * Метод, возвращающий число данных, сохранённых сжатыми
+     * @return число данных
+     */
+    public long getCompressedValues() {
+        return compressedValues.sum();
+    }
+
+    /**
+     * Метод, возвращающий число данных длиннее порога, сохранённых несжатыми
+     * @return число данных
+     */
+    public long getSkippedValues() {
+        return skippedValues.sum();
+    }
+
+    /**
+     * Метод, возвращающий суммарный объём сохранённых сжатыми данных до сжатия
+     * @return объём в байтах
+     */
+    public long getOriginalBytes() {
+        return originalBytes.sum();
+    }
+
+    /**
+     * Метод, возвращающий суммарный объём сохранённых сжатыми данных после сжатия
+     * @return объём в байтах
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Метод, возвращающий степень сжатия записанных сжатыми данных: отношение объёма до сжатия к объёму
+     * после. Учитываются все записи с запуска, а не только хранящиеся сейчас
+     * @return степень сжатия, 0 - сжатых данных не было
+     */
+    public double getCompressionRatio() {
+        long compressed = compressedBytes.sum();
+        return compressed == 0 ? 0.0 : (double) originalBytes.sum() / compressed;
+    }
+
+    /**
+     * Метод, возвращающий суммарную длительность сжатия
+     * @return длительность в наносекундах
+     */
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    /**
+     * Метод, возвращающий число попыток сжатия, удачных и неудачных
+     * @return число попыток
+     */
+    public long getCompressions() {
+        return compressedValues.sum() + skippedValues.sum();
+    }
+
+    /**
+     * Метод, возвращающий число распаковок данных
+     * @return число распаковок
+     */
+    public long getDecompressions() {
+        return decompressions.sum();
+    }
+
+    /**
+     * Метод, возвращающий суммарную длительность распаковки
+     * @return длительность в наносекундах
+     */
+    public long getDecompressNanos() {
+        return decompressNanos.sum();
+    }
+
+    /**
+     * Метод, возвращающий число чтений, отданных клиенту сжатыми без распаковки
+     * @return число чтений
+     */
+    public long getServedCompressed() {
+        return servedCompressed.sum();
+    }
+}
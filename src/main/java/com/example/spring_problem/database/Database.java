@@ -1,53 +1,544 @@
 package com.example.spring_problem.database;
 
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.exception.IndexDisabledException;
 import com.example.spring_problem.exception.MissedDataException;
+import com.example.spring_problem.exception.ReadOnlyReplicaException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import jdk.jfr.EventType;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
- * Класс, создающий хранилище типа ключ-значение
+ * Класс, создающий хранилище типа ключ-значение. Записи распределяются по хешу ключа между
+ * независимыми шардами {@link Shard}, число которых задаётся свойством database.shards
  */
 @Component
 public class Database {
     /**
-     * Константа, задаёт частоту обновления хранилища
+     * Имя файла в каталоге движка {@link StorageEngine#MAPPED}, в котором записан номер текущего поколения
      */
-    private static final long PERIOD_REFRESH = 5000L;
+    private static final String CURRENT_GENERATION = "CURRENT";
+
+    /**
+     * Шарды хранилища, при загрузке в режиме {@link LoadMode#REPLACE} массив заменяется целиком
+     */
+    private volatile Shard[] shards;
+
     /**
-     * хранилище данных, в качестве ключа объект, хранящий его численное значение и время жизни,
-     * в качестве данных строка
+     * Настройки хранилища, по ним создаются шарды
      */
-    private volatile ConcurrentHashMap<Key,String> databaseMap = new ConcurrentHashMap<>();
+    private final DatabaseProperties properties;
 
     /**
-     * Объявляем шедулер, чтобы потом он с заданной частотой повторял обновление хранилища
+     * Источник текущего времени в миллисекундах
      */
-    private ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-        Thread thread = new Thread(r);
-        thread.setDaemon(true);
-        return thread;
-    });
+    private final LongSupplier clock;
 
     /**
-     * Через период {@link Database#PERIOD_REFRESH} хранилище проверяется на актуальность
-     * времени жизни объектов и очищается
+     * Счётчики удаления записей с истекшим временем жизни, общие для всех шардов
+     */
+    private final ExpiryMetrics expiryMetrics = new ExpiryMetrics();
+
+    /**
+     * Счётчики сжатия данных записей, общие для всех шардов
+     */
+    private final CompressionMetrics compressionMetrics = new CompressionMetrics();
+
+    /**
+     * Сжатие данных записей, общее для всех шардов
+     */
+    private final ValueCodec codec;
+
+    /**
+     * Счётчики попаданий и вытеснения записей
+     */
+    private final EvictionMetrics evictionMetrics;
+
+    /**
+     * Тип события JFR об операции, по нему без создания события проверяется, идёт ли запись
+     */
+    private static final EventType OPERATION_EVENT = EventType.getEventType(OperationEvent.class);
+
+    /**
+     * Приёмник длительностей операций, null - длительности не замеряются
+     */
+    private volatile OperationTimer operationTimer;
+
+    /**
+     * Журнал медленных операций, общий для хранилища и его шардов
+     */
+    private final SlowOperationLog slowOperations;
+
+    /**
+     * Пул потоков, с заданной частотой запускающий циклы удаления записей шардов
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Журнал изменений, null - журнал отключён
+     */
+    private final WriteAheadLog wal;
+
+    /**
+     * Блокировки по ключам, под которыми изменение применяется к шарду и добавляется в журнал и передаётся
+     * получателю изменений, чтобы порядок изменений одного ключа в них совпадал с порядком их применения
+     */
+    private final Object[] mutationLocks = new Object[64];
+
+    /**
+     * Получатель изменений для репликации, null - изменения никуда не передаются
+     */
+    private volatile MutationListener mutationListener;
+
+    /**
+     * Правдивость утверждения о том, что хранилище - ведомый экземпляр и изменяется только репликацией
+     */
+    private final boolean readOnly;
+
+    /**
+     * Каталог движка {@link StorageEngine#MAPPED}, null - используется другой движок. Сегменты шардов
+     * лежат в подкаталогах поколение/номер шарда, при загрузке в режиме {@link LoadMode#REPLACE} шарды
+     * создаются в новом поколении
+     */
+    private final Path mappedDirectory;
+
+    /**
+     * Счётчик поколений каталогов шардов, выдаёт номера поколений загрузкам
+     */
+    private final AtomicInteger generations;
+
+    /**
+     * Номер поколения каталогов текущих шардов
+     */
+    private int generation;
+
+    /**
+     * Создаёт хранилище с настройками по умолчанию, использующее системное время
      */
     public Database() {
-        scheduler.scheduleAtFixedRate(() -> {
-            long current = System.currentTimeMillis();
+        this(new DatabaseProperties(), System::currentTimeMillis);
+    }
 
-            for (Key k : databaseMap.keySet()) {
-                if (!k.isAlive(current)) {
-                    databaseMap.remove(k);
+    /**
+     * Создаёт хранилище с настройками по умолчанию и заданным источником времени
+     * @param clock источник текущего времени в миллисекундах
+     */
+    public Database(LongSupplier clock) {
+        this(new DatabaseProperties(), clock);
+    }
+
+    /**
+     * Создаёт хранилище с заданными с помощью Spring настройками, использующее системное время
+     * @param properties настройки хранилища
+     */
+    @Autowired
+    public Database(DatabaseProperties properties) {
+        this(properties, System::currentTimeMillis);
+    }
+
+    /**
+     * Создаёт хранилище с заданными настройками и источником времени. Для каждого шарда с периодом
+     * database.expiry.period запускается свой цикл удаления записей с истекшим временем жизни, циклы
+     * выполняются пулом из database.expiry.workers потоков. Если задана политика database.eviction.policy
+     * и ёмкость, она делится между шардами поровну и при её превышении записи вытесняются. Если включён
+     * журнал изменений database.wal.enabled, он воспроизводится, а затем в него записываются все изменения.
+     * Движок {@link StorageEngine#MAPPED} открывает сегменты текущего поколения, сегменты остальных
+     * поколений - незавершённых загрузок - удаляются
+     * @param properties настройки хранилища
+     * @param clock источник текущего времени в миллисекундах
+     */
+    public Database(DatabaseProperties properties, LongSupplier clock) {
+        List<Evictor> evictors = new ArrayList<>();
+
+        this.clock = clock;
+        this.properties = properties;
+        this.slowOperations = new SlowOperationLog(properties.getSlowLog().getThresholdMicros(),
+                properties.getSlowLog().getCapacity());
+        this.codec = new ValueCodec(properties.getCompression(), compressionMetrics);
+        if (properties.getEngine() == StorageEngine.MAPPED) {
+            this.mappedDirectory = Paths.get(properties.getMapped().getDirectory()).toAbsolutePath();
+            this.generation = openGenerations();
+        } else {
+            this.mappedDirectory = null;
+        }
+        this.generations = new AtomicInteger(generation);
+        this.shards = createShards(evictors, generation);
+        this.evictionMetrics = new EvictionMetrics(evictors.toArray(new Evictor[0]));
+        this.readOnly = properties.getReplication().getRole() == ReplicationRole.FOLLOWER;
+        for (int i = 0; i < mutationLocks.length; i++) {
+            mutationLocks[i] = new Object();
+        }
+        this.wal = properties.getWal().isEnabled() ? openWriteAheadLog(properties.getWal()) : null;
+
+        int shardCount = shards.length;
+        long period = properties.getExpiry().getPeriod();
+        this.scheduler = Executors.newScheduledThreadPool(
+                Math.max(1, Math.min(shardCount, properties.getExpiry().getWorkers())), r -> {
+                    Thread thread = new Thread(r);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        for (int i = 0; i < shardCount; i++) {
+            int index = i;
+            scheduler.scheduleAtFixedRate(() -> shards[index].update(), period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Создаёт шарды по настройкам хранилища. Шарды пусты, кроме шардов движка {@link StorageEngine#MAPPED},
+     * которые восстанавливают записи из сегментов своего поколения. Шарды создаются параллельно, чтобы
+     * индексы шардов восстанавливались одновременно
+     * @param evictors список, в который добавляются созданные политики вытеснения шардов
+     * @param generation номер поколения каталогов шардов движка {@link StorageEngine#MAPPED}
+     * @return шарды
+     * @throws IllegalStateException если сегменты поколения записаны другим числом шардов
+     */
+    private Shard[] createShards(List<Evictor> evictors, int generation) {
+        int shardCount = properties.getShards() > 0
+                ? properties.getShards()
+                : Runtime.getRuntime().availableProcessors();
+        DatabaseProperties.Eviction eviction = properties.getEviction();
+        Evictor[] shardEvictors = new Evictor[shardCount];
+        Path[] directories = new Path[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            shardEvictors[i] = createEvictor(eviction, share(eviction.getMaxEntries(), i, shardCount),
+                    share(eviction.getMaxBytes(), i, shardCount));
+            if (shardEvictors[i] != null) {
+                evictors.add(shardEvictors[i]);
+            }
+        }
+        if (mappedDirectory != null) {
+            Path generationDirectory = mappedDirectory.resolve(String.valueOf(generation));
+            long existing = countDirectories(generationDirectory);
+            if (existing > 0 && existing != shardCount) {
+                throw new IllegalStateException("Segments in " + generationDirectory + " were written by "
+                        + existing + " shards, but database.shards gives " + shardCount);
+            }
+            for (int i = 0; i < shardCount; i++) {
+                directories[i] = generationDirectory.resolve(String.valueOf(i));
+            }
+        }
+
+        Shard[] created = new Shard[shardCount];
+        IntStream.range(0, shardCount).parallel().forEach(i ->
+                created[i] = new Shard(properties, directories[i], shardEvictors[i], clock, expiryMetrics,
+                        slowOperations, codec));
+        return created;
+    }
+
+    /**
+     * Читает номер текущего поколения каталогов движка {@link StorageEngine#MAPPED} и удаляет каталоги
+     * остальных поколений, оставшиеся от незавершённых загрузок
+     * @return номер текущего поколения, 0 - если каталог создаётся впервые
+     * @throws UncheckedIOException если каталог не удалось прочитать
+     */
+    private int openGenerations() {
+        try {
+            Files.createDirectories(mappedDirectory);
+            Path current = mappedDirectory.resolve(CURRENT_GENERATION);
+            int opened = Files.exists(current) ? Integer.parseInt(Files.readString(current).trim()) : 0;
+
+            try (Stream<Path> list = Files.list(mappedDirectory)) {
+                for (Path directory : (Iterable<Path>) list::iterator) {
+                    if (Files.isDirectory(directory) && !directory.getFileName().toString().equals(String.valueOf(opened))) {
+                        deleteDirectory(directory);
+                    }
                 }
             }
-        }, 1, PERIOD_REFRESH, TimeUnit.MILLISECONDS);
+            return opened;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open segments in " + mappedDirectory, e);
+        }
+    }
+
+    /**
+     * Записывает номер текущего поколения каталогов движка {@link StorageEngine#MAPPED}. Файл заменяется
+     * атомарно, поэтому после сбоя текущим остаётся либо прежнее, либо новое поколение
+     * @param current номер поколения
+     * @throws UncheckedIOException если номер не удалось записать
+     */
+    private void writeGeneration(int current) {
+        Path file = mappedDirectory.resolve(CURRENT_GENERATION);
+        Path temporary = mappedDirectory.resolve(CURRENT_GENERATION + ".tmp");
+        try {
+            Files.writeString(temporary, String.valueOf(current));
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + file, e);
+        }
+    }
+
+    /**
+     * Закрывает шарды движка {@link StorageEngine#MAPPED} и удаляет каталог их поколения
+     * @param closed шарды поколения, уже очищенные
+     * @param closedGeneration номер поколения
+     * @throws UncheckedIOException если каталог не удалось удалить
+     */
+    private void dropGeneration(Shard[] closed, int closedGeneration) {
+        for (Shard shard : closed) {
+            shard.close();
+        }
+        if (mappedDirectory != null) {
+            try {
+                deleteDirectory(mappedDirectory.resolve(String.valueOf(closedGeneration)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete segments of generation " + closedGeneration, e);
+            }
+        }
+    }
+
+    private static long countDirectories(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return 0L;
+        }
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.filter(Files::isDirectory).count();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list " + directory, e);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Воспроизводит журнал изменений в шардах, пропуская записи, время жизни которых уже истекло, и
+     * открывает журнал для дописывания
+     * @param properties настройки журнала
+     * @return журнал изменений
+     * @throws UncheckedIOException если журнал не удалось прочитать или открыть
+     */
+    private WriteAheadLog openWriteAheadLog(DatabaseProperties.Wal properties) {
+        Path path = Paths.get(properties.getPath()).toAbsolutePath();
+        long current = clock.getAsLong();
+
+        try {
+            WriteAheadLog.replay(path, (op, key, deadline, data) -> apply(op, key, deadline, data, current));
+            return new WriteAheadLog(path, properties.getFsync(), properties.getFsyncInterval(),
+                    properties.getRewriteMinSize(), this::forEachLogged);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open write-ahead log " + path, e);
+        }
+    }
+
+    /**
+     * Применяет к шардам изменение из журнала изменений или от ведущего экземпляра. Запись с уже истекшим
+     * моментом истечения удаляется
+     * @param op тип операции {@link WriteAheadLog#PUT}, {@link WriteAheadLog#PUT_IDLE}, {@link WriteAheadLog#REMOVE}
+     *           или {@link WriteAheadLog#CLEAR}
+     * @param key значение ключа для хранилища
+     * @param deadline момент времени, в который время жизни данных истечёт, для {@link WriteAheadLog#PUT_IDLE} - время простоя
+     * @param data данные
+     * @param current текущее время в миллисекундах
+     * @throws IllegalStateException если тип операции неизвестен
+     */
+    private void apply(byte op, int key, long deadline, String data, long current) {
+        switch (op) {
+            case WriteAheadLog.PUT:
+                if (current < deadline) {
+                    shardFor(key).put(key, data, deadline);
+                } else {
+                    shardFor(key).remove(key, Long.MIN_VALUE);
+                }
+                break;
+            case WriteAheadLog.PUT_IDLE:
+                shardFor(key).putIdle(key, data, deadline, current);
+                break;
+            case WriteAheadLog.REMOVE:
+                shardFor(key).remove(key, Long.MIN_VALUE);
+                break;
+            case WriteAheadLog.CLEAR:
+                for (Shard shard : shards) {
+                    shard.clear();
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown mutation " + op);
+        }
+    }
+
+    /**
+     * Передаёт записи хранилища с неистекшим временем жизни как операции журнала изменений: записи со
+     * временем жизни без обращений - с временем простоя, остальные - с моментом истечения
+     * @param visitor получатель операций
+     */
+    private void forEachLogged(WriteAheadLog.Replayer visitor) {
+        long current = clock.getAsLong();
+
+        for (Shard shard : shards) {
+            Map<Integer,Long> idleDurations = shard.idleDurations();
+            shard.forEach((key, data, deadline) -> {
+                Long idle = idleDurations.get(key);
+                if (current >= deadline) {
+                    return;
+                }
+                if (idle != null) {
+                    visitor.apply(WriteAheadLog.PUT_IDLE, key, idle, data);
+                } else {
+                    visitor.apply(WriteAheadLog.PUT, key, deadline, data);
+                }
+            });
+        }
+    }
+
+    /**
+     * Возвращает блокировку изменений ключа
+     * @param key значение ключа для хранилища
+     * @return объект блокировки
+     */
+    private Object lockFor(int key) {
+        return mutationLocks[(key * 0x9E3779B9) >>> 26];
+    }
+
+    /**
+     * Проверяет, ведётся ли журнал изменений или передача изменений: тогда изменение применяется под
+     * блокировкой ключа и передаётся в {@link #log(byte, int, long, String)}
+     * @return правдивость утверждения о том, что изменения записываются
+     */
+    private boolean logged() {
+        return wal != null || mutationListener != null;
+    }
+
+    /**
+     * Проверяет, что журнал изменений принимает изменения. Вызывается под блокировкой ключа до применения
+     * изменения к шарду, чтобы после ошибки журнала изменение не применялось без записи в журнал
+     * @throws UncheckedIOException если запись журнала ранее завершилась ошибкой
+     */
+    private void checkLog() {
+        if (wal != null) {
+            wal.check();
+        }
+    }
+
+    /**
+     * Передаёт изменение получателю изменений и добавляет его в журнал. Вызывается под блокировкой ключа
+     * {@link #lockFor(int)} сразу после применения изменения к шарду
+     * @param op тип операции
+     * @param key значение ключа для хранилища
+     * @param deadline момент времени, в который время жизни данных истечёт, для {@link WriteAheadLog#PUT_IDLE} - время простоя
+     * @param data данные либо null для операций без данных
+     * @return изменение в журнале, сброса которого нужно дождаться, null - журнал отключён
+     */
+    private WriteAheadLog.Record log(byte op, int key, long deadline, String data) {
+        MutationListener listener = mutationListener;
+
+        if (listener != null) {
+            listener.mutated(op, key, deadline, data);
+        }
+        return wal != null ? wal.append(op, key, deadline, data) : null;
+    }
+
+    /**
+     * Проверяет, что хранилище можно изменять не только репликацией
+     * @throws ReadOnlyReplicaException если хранилище - ведомый экземпляр
+     */
+    private void checkWritable() {
+        if (readOnly) {
+            throw new ReadOnlyReplicaException();
+        }
+    }
+
+    /**
+     * Вычисляет долю ограничения ёмкости, приходящуюся на шард: ограничение делится поровну, остаток
+     * достаётся первым шардам. Каждому шарду достаётся хотя бы единица, поэтому при ограничении
+     * меньше числа шардов суммарная ёмкость немного превышает заданную
+     * @param limit ограничение ёмкости хранилища, 0 - без ограничения
+     * @param index номер шарда
+     * @param shardCount число шардов
+     * @return ограничение ёмкости шарда, 0 - без ограничения
+     */
+    private static long share(long limit, int index, int shardCount) {
+        if (limit <= 0) {
+            return 0L;
+        }
+        return Math.max(1L, limit / shardCount + (index < limit % shardCount ? 1 : 0));
+    }
+
+    /**
+     * Создаёт политику вытеснения, заданную свойством database.eviction.policy
+     * @param eviction настройки вытеснения
+     * @param maxEntries максимальное число записей шарда, 0 - без ограничения
+     * @param maxBytes максимальный оценочный объём записей шарда в байтах, 0 - без ограничения
+     * @return политика вытеснения либо null, если политика или ёмкость не заданы
+     */
+    private static Evictor createEvictor(DatabaseProperties.Eviction eviction, long maxEntries, long maxBytes) {
+        if (maxEntries <= 0 && maxBytes <= 0) {
+            return null;
+        }
+        switch (eviction.getPolicy()) {
+            case LRU:
+                return new LruEvictor(maxEntries, maxBytes);
+            case SAMPLED_LRU:
+                return new SampledLruEvictor(maxEntries, maxBytes, eviction.getSampleSize());
+            case W_TINY_LFU:
+                return new TinyLfuEvictor(maxEntries, maxBytes);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Возвращает шард, в котором хранится ключ. Хеш перемешивает биты иначе, чем хеш движков хранения,
+     * чтобы ключи одного шарда равномерно распределялись по ячейкам его движка
+     * @param key значение ключа для хранилища
+     * @return шард
+     */
+    private Shard shardFor(int key) {
+        return shardFor(shards, key);
+    }
+
+    /**
+     * Возвращает шард из переданного набора, в котором хранится ключ
+     * @param shards шарды хранилища
+     * @param key значение ключа для хранилища
+     * @return шард
+     */
+    private static Shard shardFor(Shard[] shards, int key) {
+        return shards[shardIndex(shards.length, key)];
+    }
+
+    /**
+     * Возвращает номер шарда, в котором хранится ключ
+     * @param shardCount число шардов
+     * @param key значение ключа для хранилища
+     * @return номер шарда
+     */
+    private static int shardIndex(int shardCount, int key) {
+        int hash = key * 0xCC9E2D51;
+        hash ^= hash >>> 15;
+        return (hash & Integer.MAX_VALUE) % shardCount;
     }
 
     /**
@@ -56,121 +547,821 @@ public class Database {
      * @param data данные, хранящиеся в хранилище
      */
     public void put(int key, String data) {
-        Key tempKey = new Key(key);
+        put(key, data, Key.DEFAULT_TTL);
+    }
 
-        if(databaseMap.containsKey(tempKey)) {
-            databaseMap.put(tempKey,data);
+    /**
+     * Метод вставки данных по ключу в хранилище, устанавливается заданное время жизни. Если по ключу
+     * уже хранятся данные, то они заменяются, а время жизни отсчитывается заново
+     * @param key ключ для объекта в хранилище
+     * @param data данные, хранящиеся в хранилище
+     * @param ttl время жизни данных в хранилище
+     */
+    public void put(int key, String data, long ttl) {
+        checkWritable();
+        OperationTimer timer = sampledTimer();
 
-            for(Key k : databaseMap.keySet()) {
-                if(k.equals(tempKey)) {
-                    k.setDefaultTtl();
-                }
-            }
-        } else {
-            databaseMap.put(tempKey,data);
+        if (timer == null && !traced()) {
+            store(key, data, ttl);
+            return;
         }
+        OperationEvent event = new OperationEvent();
+        long start = System.nanoTime();
+        event.begin();
+        store(key, data, ttl);
+        finish(OperationTimer.Operation.PUT, key, timer, event, start);
     }
 
     /**
-     * Метод вставки данных по ключу в хранилище, устанавливается заданное время жизни
+     * Вставляет данные с заданным временем жизни, применяя изменение к шарду и журналу
      * @param key ключ для объекта в хранилище
      * @param data данные, хранящиеся в хранилище
      * @param ttl время жизни данных в хранилище
      */
-//    public void put(int key, String data, long ttl) {
-//        Key tempKey = new Key(key, ttl);
-//
-//        databaseMap.put(tempKey,data);
-//
-//    }
-    public void put(int key, String data, long ttl) {
-        Key tempKey = new Key(key, ttl);
+    private void store(int key, String data, long ttl) {
+        long deadline = clock.getAsLong() + ttl;
+
+        if (!logged()) {
+            shardFor(key).put(key, data, deadline);
+            return;
+        }
+        WriteAheadLog.Record record;
+        synchronized (lockFor(key)) {
+            checkLog();
+            shardFor(key).put(key, data, deadline);
+            record = log(WriteAheadLog.PUT, key, deadline, data);
+        }
+        if (record != null) {
+            wal.await(record);
+        }
+    }
 
-        if(databaseMap.containsKey(tempKey)) {
-            databaseMap.put(tempKey,data);
+    /**
+     * Метод, решающий, замерять ли очередную операцию для метрик
+     * @return приёмник длительностей, если операция попала в выборку, иначе null
+     */
+    private OperationTimer sampledTimer() {
+        OperationTimer timer = operationTimer;
 
-            for(Key k : databaseMap.keySet()) {
-                if(k.equals(tempKey)) {
-                    k.setTtl(ttl);
-                }
-            }
-        } else {
-            databaseMap.put(tempKey,data);
+        return timer != null && OperationTimer.sample() ? timer : null;
+    }
+
+    /**
+     * Метод, проверяющий, нужно ли замерять каждую операцию: включён журнал медленных операций или идёт
+     * запись JFR с событием {@link OperationEvent}. Иначе операции вне выборки метрик не замеряются вовсе
+     * @return правдивость утверждения о том, что операции замеряются
+     */
+    private boolean traced() {
+        return slowOperations.isEnabled() || OPERATION_EVENT.isEnabled();
+    }
+
+    /**
+     * Завершает замер операции: передаёт длительность в метрики, если операция попала в их выборку,
+     * записывает медленную операцию в журнал и событие JFR
+     * @param operation операция
+     * @param key ключ операции
+     * @param timer приёмник длительностей, null - операция не попала в выборку
+     * @param event событие JFR, начатое вместе с операцией
+     * @param start момент начала операции по {@link System#nanoTime()}
+     */
+    private void finish(OperationTimer.Operation operation, int key, OperationTimer timer, OperationEvent event,
+                        long start) {
+        long duration = System.nanoTime() - start;
+
+        event.end();
+        if (timer != null) {
+            timer.record(operation, duration);
+        }
+        slowOperations.record(operation.name(), key, duration);
+        if (event.shouldCommit()) {
+            event.operation = operation.name();
+            event.key = key;
+            event.commit();
+        }
+    }
+
+    /**
+     * Метод вставки данных по ключу со временем жизни без обращений: запись истекает, если к ней не
+     * обращались дольше времени простоя, каждое успешное чтение продлевает её жизнь. Продление применяется
+     * пачкой в цикле удаления, поэтому время простоя должно быть больше периода database.expiry.period
+     * @param key ключ для объекта в хранилище
+     * @param data данные, хранящиеся в хранилище
+     * @param idle время простоя в миллисекундах
+     */
+    public void putIdle(int key, String data, long idle) {
+        checkWritable();
+        if (!logged()) {
+            shardFor(key).putIdle(key, data, idle, clock.getAsLong());
+            return;
+        }
+        WriteAheadLog.Record record;
+        synchronized (lockFor(key)) {
+            checkLog();
+            shardFor(key).putIdle(key, data, idle, clock.getAsLong());
+            record = log(WriteAheadLog.PUT_IDLE, key, idle, data);
+        }
+        if (record != null) {
+            wal.await(record);
         }
     }
 
     /**
-     * Метод получения данных по значению ключа
+     * Метод получения данных по значению ключа. Запись с истекшим временем жизни считается
+     * отсутствующей и сразу удаляется из хранилища
      * @param key ключ для хранилища
      * @return возвращает данные, хранящиеся по переданному ключу
-     * @throws MissedDataException если заданный ключ отсутствует, то выбрасывается исключение
+     * @throws MissedDataException если заданный ключ отсутствует или время жизни данных истекло, то выбрасывается исключение
      */
     public String get(int key) throws MissedDataException {
-        Key tempKey = new Key(key);
+        String data = getIfPresent(key);
 
-        if(databaseMap.containsKey(tempKey)) {
-            return databaseMap.get(tempKey);
-        } else {
+        if(data == null) {
             throw new MissedDataException();
         }
+        return data;
+    }
+
+    /**
+     * Метод получения данных по значению ключа без исключения: промах не создаёт объектов и не обходит стек,
+     * поэтому частые промахи не нагружают процессор и сборщик мусора
+     * @param key ключ для хранилища
+     * @return данные, хранящиеся по переданному ключу, null - ключ отсутствует или время жизни данных истекло
+     */
+    public String getIfPresent(int key) {
+        OperationTimer timer = sampledTimer();
+
+        if (timer == null && !traced()) {
+            return lookup(key);
+        }
+        OperationEvent event = new OperationEvent();
+        long start = System.nanoTime();
+        event.begin();
+        String data = lookup(key);
+        finish(OperationTimer.Operation.GET, key, timer, event, start);
+        return data;
+    }
+
+    /**
+     * Метод получения данных по значению ключа в том виде, в котором их хранит движок, за одно обращение
+     * к шарду: сжатые данные возвращаются без распаковки для передачи клиенту с кодированием deflate и
+     * учитываются как отданные сжатыми
+     * @param key ключ для хранилища
+     * @return String, данные в формате zlib byte[], null - ключ отсутствует или время жизни данных истекло
+     */
+    public Object getStoredIfPresent(int key) {
+        OperationTimer timer = sampledTimer();
+
+        if (timer == null && !traced()) {
+            return lookupStored(key);
+        }
+        OperationEvent event = new OperationEvent();
+        long start = System.nanoTime();
+        event.begin();
+        Object data = lookupStored(key);
+        finish(OperationTimer.Operation.GET, key, timer, event, start);
+        return data;
+    }
+
+    /**
+     * Метод, возвращающий признак хранения сжатых данных
+     * @return правдивость утверждения о том, что сжатие включено и движок хранит данные сжатыми, то есть
+     * {@link #getStoredIfPresent(int)} может вернуть данные в формате zlib
+     */
+    public boolean isCompressionEnabled() {
+        StorageEngine engine = properties.getEngine();
+        return properties.getCompression().isEnabled()
+                && (engine == StorageEngine.MAP || engine == StorageEngine.INT_HASH);
+    }
+
+    /**
+     * Получает данные по ключу и учитывает попадание или промах
+     * @param key ключ для хранилища
+     * @return данные, null - ключ отсутствует или время жизни данных истекло
+     */
+    private String lookup(int key) {
+        String data = shardFor(key).get(key, clock.getAsLong());
+
+        if(data == null) {
+            evictionMetrics.recordMiss();
+        } else {
+            evictionMetrics.recordHit();
+        }
+        return data;
     }
 
     /**
      * Метод удаления данных по ключу. Данные передадутся, а затем удалятся из хранилища
      * @param key ключ для хранилища
      * @return возвращает данные, хранящиеся по переданному ключу
-     * @throws MissedDataException если заданный ключ отсутствует, то выбрасывается исключение
+     * @throws MissedDataException если заданный ключ отсутствует или время жизни данных истекло, то выбрасывается исключение
      */
     public String remove(int key) throws MissedDataException {
-        Key tempKey = new Key(key);
+        String data = removeIfPresent(key);
 
-        if(databaseMap.containsKey(tempKey)) {
-            String response = databaseMap.get(tempKey);
-            databaseMap.remove(tempKey);
-            return response;
-        } else {
+        if(data == null) {
             throw new MissedDataException();
         }
+        return data;
     }
 
-    /**Хранилище очищается, устанавливается версия
-     * устанавливается время жизни исходя из текущего и
+    /**
+     * Метод удаления данных по ключу без исключения, промах не создаёт объектов
+     * @param key ключ для хранилища
+     * @return удалённые данные, null - ключ отсутствует или время жизни данных истекло
+     */
+    public String removeIfPresent(int key) {
+        checkWritable();
+        OperationTimer timer = sampledTimer();
+
+        if (timer == null && !traced()) {
+            return delete(key);
+        }
+        OperationEvent event = new OperationEvent();
+        long start = System.nanoTime();
+        event.begin();
+        String data = delete(key);
+        finish(OperationTimer.Operation.REMOVE, key, timer, event, start);
+        return data;
+    }
+
+    /**
+     * Получает данные по ключу в хранимом виде и учитывает попадание или промах
+     * @param key ключ для хранилища
+     * @return String, данные в формате zlib byte[], null - ключ отсутствует или время жизни данных истекло
+     */
+    private Object lookupStored(int key) {
+        Object data = shardFor(key).getStored(key, clock.getAsLong());
+
+        if (data == null) {
+            evictionMetrics.recordMiss();
+        } else {
+            evictionMetrics.recordHit();
+            if (data instanceof byte[]) {
+                compressionMetrics.recordServedCompressed();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Удаляет данные по ключу, применяя изменение к шарду и журналу
+     * @param key ключ для хранилища
+     * @return удалённые данные, null - ключ отсутствует или время жизни данных истекло
+     */
+    private String delete(int key) {
+        if (!logged()) {
+            return shardFor(key).remove(key, clock.getAsLong());
+        }
+        String data;
+        WriteAheadLog.Record record = null;
+        synchronized (lockFor(key)) {
+            checkLog();
+            data = shardFor(key).remove(key, clock.getAsLong());
+            if (data != null) {
+                record = log(WriteAheadLog.REMOVE, key, 0L, null);
+            }
+        }
+        if (record != null) {
+            wal.await(record);
+        }
+        return data;
+    }
+
+    /**
+     * Метод получения данных по нескольким ключам за один проход по каждому шарду: ключи группируются по
+     * шардам, затем каждый шард обрабатывает свои ключи подряд. Отсутствующие ключи не приводят к исключению
+     * @param keys ключи для хранилища, могут повторяться
+     * @return данные в порядке ключей, null - ключ отсутствует или время жизни данных истекло
+     */
+    public String[] getAll(int[] keys) {
+        return getAll(keys, null);
+    }
+
+    /**
+     * Вариант {@link #getAll(int[])}, дополнительно возвращающий оставшееся время жизни найденных записей.
+     * Для записи со временем простоя возвращается время до её истечения без обращений без учёта этого
+     * чтения, то есть не больше настоящего
+     * @param keys ключи для хранилища, могут повторяться
+     * @param ttls массив длины keys.length, в который записывается оставшееся время жизни в миллисекундах,
+     *             0 - ключ отсутствует; null - время жизни не нужно
+     * @return данные в порядке ключей, null - ключ отсутствует или время жизни данных истекло
+     */
+    public String[] getAll(int[] keys, long[] ttls) {
+        Shard[] current = shards;
+        String[] result = new String[keys.length];
+        long now = clock.getAsLong();
+
+        for (int i : groupByShard(current, keys)) {
+            Shard shard = shardFor(current, keys[i]);
+            result[i] = shard.get(keys[i], now);
+            if (result[i] == null) {
+                evictionMetrics.recordMiss();
+            } else {
+                evictionMetrics.recordHit();
+                if (ttls != null) {
+                    ttls[i] = Math.max(1L, shard.deadline(keys[i]) - now);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Метод вставки нескольких записей за один проход по каждому шарду. Если по ключу уже хранятся данные,
+     * они заменяются, для повторяющихся ключей остаётся последняя запись. При включённом журнале изменений
+     * метод ожидает сброса на диск только последнего изменения пачки, так как журнал сбрасывает изменения по порядку
+     * @param keys ключи для хранилища
+     * @param data данные по ключам
+     * @param ttls время жизни данных в миллисекундах, 0 - время жизни по умолчанию {@link Key#DEFAULT_TTL}
+     * @param idles время простоя в миллисекундах, больше 0 - запись со временем жизни без обращений, как в
+     *              {@link #putIdle(int, String, long)}, время жизни тогда не учитывается
+     */
+    public void putAll(int[] keys, String[] data, long[] ttls, long[] idles) {
+        checkWritable();
+        Shard[] current = shards;
+        WriteAheadLog.Record last = null;
+        long now = clock.getAsLong();
+        boolean logged = logged();
+
+        for (int i : groupByShard(current, keys)) {
+            Shard shard = shardFor(current, keys[i]);
+            long deadline = now + (ttls[i] == 0 ? Key.DEFAULT_TTL : ttls[i]);
+
+            if (!logged) {
+                putInto(shard, keys[i], data[i], deadline, idles[i], now);
+                continue;
+            }
+            synchronized (lockFor(keys[i])) {
+                checkLog();
+                putInto(shard, keys[i], data[i], deadline, idles[i], now);
+                last = idles[i] > 0
+                        ? log(WriteAheadLog.PUT_IDLE, keys[i], idles[i], data[i])
+                        : log(WriteAheadLog.PUT, keys[i], deadline, data[i]);
+            }
+        }
+        if (last != null) {
+            wal.await(last);
+        }
+    }
+
+    private static void putInto(Shard shard, int key, String data, long deadline, long idle, long now) {
+        if (idle > 0) {
+            shard.putIdle(key, data, idle, now);
+        } else {
+            shard.put(key, data, deadline);
+        }
+    }
+
+    /**
+     * Метод удаления данных по нескольким ключам за один проход по каждому шарду. Отсутствующие ключи не
+     * приводят к исключению
+     * @param keys ключи для хранилища, могут повторяться
+     * @return удалённые данные в порядке ключей, null - ключ отсутствует или время жизни данных истекло
+     */
+    public String[] removeAll(int[] keys) {
+        checkWritable();
+        Shard[] current = shards;
+        String[] result = new String[keys.length];
+        WriteAheadLog.Record last = null;
+        long now = clock.getAsLong();
+        boolean logged = logged();
+
+        for (int i : groupByShard(current, keys)) {
+            Shard shard = shardFor(current, keys[i]);
+
+            if (!logged) {
+                result[i] = shard.remove(keys[i], now);
+                continue;
+            }
+            synchronized (lockFor(keys[i])) {
+                checkLog();
+                result[i] = shard.remove(keys[i], now);
+                if (result[i] != null) {
+                    last = log(WriteAheadLog.REMOVE, keys[i], 0L, null);
+                }
+            }
+        }
+        if (last != null) {
+            wal.await(last);
+        }
+        return result;
+    }
+
+    /**
+     * Упорядочивает номера ключей по шардам сортировкой подсчётом. Порядок ключей одного шарда сохраняется,
+     * поэтому повторяющиеся ключи обрабатываются в порядке их передачи
+     * @param current шарды хранилища
+     * @param keys ключи для хранилища
+     * @return номера ключей в массиве keys, сгруппированные по шардам
+     */
+    private static int[] groupByShard(Shard[] current, int[] keys) {
+        int[] shardIndexes = new int[keys.length];
+        int[] starts = new int[current.length + 1];
+
+        for (int i = 0; i < keys.length; i++) {
+            shardIndexes[i] = shardIndex(current.length, keys[i]);
+            starts[shardIndexes[i] + 1]++;
+        }
+        for (int shard = 0; shard < current.length; shard++) {
+            starts[shard + 1] += starts[shard];
+        }
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[starts[shardIndexes[i]]++] = i;
+        }
+        return order;
+    }
+
+    /**Содержимое хранилища заменяется переданным, время жизни устанавливается исходя из текущего времени
+     * и сохранённого оставшегося времени жизни. Замена атомарна, как в {@link #stage()}
      * @param loadHashMap загруженное из файла хранилище с данными
      */
     public void load(ConcurrentHashMap<Key,String> loadHashMap) {
-        databaseMap.clear();
+        checkWritable();
+        Staging staging = stage();
+
         for(Key k : loadHashMap.keySet()) {
-            k.setTtl(k.getTtl());
-            databaseMap.put(k, loadHashMap.get(k));
+            staging.accept(k.getKey(), loadHashMap.get(k), k.getTtl());
         }
+        staging.commit();
     }
 
     /**
-     * Копирует хранилище данных, в качестве времени жизни указывается рассчитанное
-     * с помощью {@link Key#prepareKeyForDump(Key)}, то есть оставшееся число миллисекунд
+     * Создаёт новые пустые шарды, в которые можно загружать записи, не затрагивая текущие. Текущее
+     * содержимое остаётся доступным до {@link Staging#commit()}, после чего новые шарды атомарно заменяют
+     * текущие. Записи, изменённые в хранилище во время загрузки, при замене теряются. На время загрузки
+     * хранилище занимает память под оба набора шардов
+     * @return загружаемые шарды
+     * @throws ReadOnlyReplicaException если хранилище - ведомый экземпляр
+     */
+    public Staging stage() {
+        checkWritable();
+        return stageReplica();
+    }
+
+    /**
+     * Создаёт загружаемые шарды, как {@link #stage()}, но и для ведомого экземпляра: им ведомый
+     * заменяет содержимое хранилища снимком, полученным от ведущего. Не предназначен для других целей
+     * @return загружаемые шарды
+     */
+    public Staging stageReplica() {
+        List<Evictor> evictors = new ArrayList<>();
+        int stagedGeneration = generations.incrementAndGet();
+        Shard[] staged = createShards(evictors, stagedGeneration);
+        return new Staging(staged, evictors.toArray(new Evictor[0]), stagedGeneration);
+    }
+
+    /**
+     * Копирует хранилище данных, в качестве времени жизни указывается
+     * оставшееся число миллисекунд, как в {@link Key#prepareKeyForDump(Key)}
      * @return возвращает скопированное хранилище
      */
     public ConcurrentHashMap<Key,String> dump() {
         ConcurrentHashMap<Key,String> dumpHashMap = new ConcurrentHashMap<>();
+        long current = clock.getAsLong();
 
-        for(Key k : databaseMap.keySet()) {
-            dumpHashMap.put(Key.prepareKeyForDump(k), databaseMap.get(k));
+        for (Shard shard : shards) {
+            shard.forEach((key, data, deadline) -> {
+                if (current < deadline) {
+                    dumpHashMap.put(Key.forDump(key, deadline - current), data);
+                }
+            });
         }
 
         return dumpHashMap;
     }
 
     /**
-     * Обновляет хранилище, удаляя элементы с истекшим временем жизни
+     * Потоково обходит записи хранилища с неистекшим временем жизни без создания копии хранилища.
+     * Обход слабо согласован: изменения, сделанные во время обхода, могут как попасть, так и не попасть в него
+     * @param consumer получатель записей, время жизни передаётся как оставшееся число миллисекунд
+     */
+    public void dump(EntryConsumer consumer) {
+        long current = clock.getAsLong();
+
+        for (Shard shard : shards) {
+            shard.forEach((key, data, deadline) -> {
+                if (current < deadline) {
+                    consumer.accept(key, data, deadline - current);
+                }
+            });
+        }
+    }
+
+    /**
+     * Потоково обходит записи с ключами из диапазона [from, to] по возрастанию ключа, пропуская записи с
+     * истекшим временем жизни. Ключи берутся из упорядоченных индексов шардов слиянием, без копии
+     * хранилища и без сортировки, поэтому стоимость страницы зависит от её размера, а не от числа записей.
+     * Обход не продлевает время простоя и не влияет на вытеснение. Обход слабо согласован, как
+     * {@link #dump(EntryConsumer)}
+     * @param from наименьший ключ диапазона
+     * @param to наибольший ключ диапазона
+     * @param limit наибольшее число записей, ограничивается свойством database.index.max-limit
+     * @param consumer получатель записей, время жизни передаётся как оставшееся число миллисекунд
+     * @return ключ, с которого продолжается обход следующей страницы, либо {@link Long#MAX_VALUE}, если
+     *         диапазон пройден до конца
+     * @throws IndexDisabledException если индекс выключен свойством database.index.enabled
      */
-    public void update() {
-        long current = System.currentTimeMillis();
+    public long scan(int from, int to, int limit, EntryConsumer consumer) {
+        if (!properties.getIndex().isEnabled()) {
+            throw new IndexDisabledException();
+        }
+        limit = Math.max(1, Math.min(limit, properties.getIndex().getMaxLimit()));
+        Shard[] current = shards;
+        KeyIndex.Cursor[] cursors = new KeyIndex.Cursor[current.length];
+        long[] heads = new long[current.length];
+        long now = clock.getAsLong();
+        int count = 0;
+
+        for (int i = 0; i < current.length; i++) {
+            cursors[i] = current[i].keys(from);
+            heads[i] = cursors[i].next();
+        }
+        while (count < limit) {
+            int next = 0;
+            for (int i = 1; i < heads.length; i++) {
+                if (heads[i] < heads[next]) {
+                    next = i;
+                }
+            }
+            if (heads[next] > to) {
+                return Long.MAX_VALUE;
+            }
+            int key = (int) heads[next];
+            heads[next] = cursors[next].next();
 
-        for (Key k : databaseMap.keySet()) {
-            if (!k.isAlive(current)) {
-                databaseMap.remove(k);
+            String data = current[next].peek(key, now);
+            if (data != null) {
+                long deadline = current[next].deadline(key);
+                consumer.accept(key, data, Math.max(1L, deadline - now));
+                count++;
+                if (key == to) {
+                    return Long.MAX_VALUE;
+                }
             }
         }
+        long next = Arrays.stream(heads).min().getAsLong();
+        return next > to ? Long.MAX_VALUE : next;
+    }
+
+    /**
+     * Метод, возвращающий признак упорядоченного индекса ключей
+     * @return правдивость утверждения о том, что шарды ведут индекс и доступен {@link #scan(int, int, int, EntryConsumer)}
+     */
+    public boolean isIndexEnabled() {
+        return properties.getIndex().isEnabled();
+    }
+
+    /**
+     * Заменяет шарды хранилища загруженными и очищает прежние. Для движка {@link StorageEngine#MAPPED}
+     * сначала записывается номер поколения загруженных шардов, затем удаляются сегменты прежних
+     * @param staged загруженные шарды
+     * @param evictors политики вытеснения загруженных шардов
+     * @param stagedGeneration номер поколения каталогов загруженных шардов
+     */
+    private synchronized void swap(Shard[] staged, Evictor[] evictors, int stagedGeneration) {
+        Shard[] previous = shards;
+        int previousGeneration = generation;
+
+        if (mappedDirectory != null) {
+            writeGeneration(stagedGeneration);
+        }
+        shards = staged;
+        generation = stagedGeneration;
+        evictionMetrics.setEvictors(evictors);
+        for (Shard shard : previous) {
+            shard.clear();
+        }
+        dropGeneration(previous, previousGeneration);
+        if (wal != null) {
+            wal.rewrite();
+        }
+        MutationListener listener = mutationListener;
+        if (listener != null) {
+            listener.reset();
+        }
+    }
+
+    /**
+     * Удаляет из хранилища все записи
+     */
+    public void clear() {
+        checkWritable();
+        checkLog();
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+        WriteAheadLog.Record record = log(WriteAheadLog.CLEAR, 0, 0L, null);
+        if (record != null) {
+            wal.await(record);
+        }
+    }
+
+    /**
+     * Применяет изменение, полученное ведомым экземпляром от ведущего, и записывает его в журнал изменений,
+     * если он включён. В отличие от остальных изменяющих методов работает и на ведомом экземпляре
+     * @param op тип операции {@link MutationListener#PUT}, {@link MutationListener#PUT_IDLE},
+     *           {@link MutationListener#REMOVE} или {@link MutationListener#CLEAR}
+     * @param key значение ключа для хранилища
+     * @param deadline момент времени, в который время жизни данных истечёт, для {@link MutationListener#PUT_IDLE} - время простоя
+     * @param data данные, пустая строка для операций без данных
+     * @throws IllegalStateException если тип операции неизвестен
+     */
+    public void applyReplicated(byte op, int key, long deadline, String data) {
+        if (!logged()) {
+            apply(op, key, deadline, data, clock.getAsLong());
+            return;
+        }
+        WriteAheadLog.Record record;
+        synchronized (lockFor(key)) {
+            checkLog();
+            apply(op, key, deadline, data, clock.getAsLong());
+            record = log(op, key, deadline, data);
+        }
+        if (record != null) {
+            wal.await(record);
+        }
+    }
+
+    /**
+     * Задаёт получателя изменений хранилища. Изменения, сделанные до вызова, получателю не передаются
+     * @param mutationListener получатель изменений, null - не передавать
+     */
+    public void setMutationListener(MutationListener mutationListener) {
+        this.mutationListener = mutationListener;
+    }
+
+    /**
+     * Метод, возвращающий признак ведомого экземпляра
+     * @return правдивость утверждения о том, что хранилище изменяется только репликацией
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Запускает циклы удаления записей с истекшим временем жизни во всех шардах. В режиме
+     * {@link ExpiryMode#WHEEL} продвигает колёса сроков жизни и просматривает только записи, срок
+     * которых наступил, в режиме {@link ExpiryMode#SAMPLED} просматривает выборки записей. Затем
+     * применяет накопленные политикой вытеснения обращения к записям
+     * @return число удалённых записей
+     */
+    public int update() {
+        int reaped = 0;
+
+        for (Shard shard : shards) {
+            reaped += shard.update();
+        }
+        return reaped;
+    }
+
+    /**
+     * Возвращает число записей в хранилище, включая ещё не удалённые записи с истекшим временем жизни
+     * @return число записей в хранилище
+     */
+    public int size() {
+        int size = 0;
+
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * Оценивает объём записей хранилища: 64 байта на запись и байт на символ данных, как при учёте
+     * ёмкости политикой вытеснения
+     * @return оценка объёма в байтах
+     */
+    public long estimatedBytes() {
+        long bytes = 0L;
+
+        for (Shard shard : shards) {
+            bytes += shard.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Задаёт приёмник длительностей операций get, put и remove. Замеряется случайная выборка операций,
+     * см. {@link OperationTimer#SAMPLE_RATE}
+     * @param operationTimer приёмник длительностей, null - не замерять
+     */
+    public void setOperationTimer(OperationTimer operationTimer) {
+        this.operationTimer = operationTimer;
+    }
+
+    /**
+     * Возвращает журнал медленных операций
+     * @return журнал медленных операций
+     */
+    public SlowOperationLog getSlowOperations() {
+        return slowOperations;
+    }
+
+    /**
+     * Возвращает счётчики удаления записей с истекшим временем жизни
+     * @return счётчики удаления
+     */
+    public ExpiryMetrics getExpiryMetrics() {
+        return expiryMetrics;
+    }
+
+    /**
+     * Возвращает счётчики сжатия данных записей
+     * @return счётчики сжатия
+     */
+    public CompressionMetrics getCompressionMetrics() {
+        return compressionMetrics;
+    }
+
+    /**
+     * Возвращает счётчики попаданий и вытеснения записей
+     * @return счётчики вытеснения
+     */
+    public EvictionMetrics getEvictionMetrics() {
+        return evictionMetrics;
+    }
+
+    /**
+     * Останавливает пул потоков, запускающий циклы удаления записей, закрывает журнал изменений,
+     * дописав и сбросив на диск оставшиеся изменения, и закрывает движки шардов
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        if (wal != null) {
+            wal.close();
+        }
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * Шарды, загружаемые в фоне для атомарной замены содержимого хранилища. Записи можно добавлять из
+     * нескольких потоков одновременно, читатели хранилища их не видят до {@link #commit()}
+     */
+    public final class Staging implements EntryConsumer {
+        /**
+         * Загружаемые шарды
+         */
+        private final Shard[] staged;
+        /**
+         * Политики вытеснения загружаемых шардов
+         */
+        private final Evictor[] evictors;
+        /**
+         * Номер поколения каталогов загружаемых шардов
+         */
+        private final int stagedGeneration;
+        /**
+         * Правдивость утверждения о том, что шарды уже заменили текущие или отброшены
+         */
+        private boolean finished;
+
+        private Staging(Shard[] staged, Evictor[] evictors, int stagedGeneration) {
+            this.staged = staged;
+            this.evictors = evictors;
+            this.stagedGeneration = stagedGeneration;
+        }
+
+        /**
+         * Добавляет запись в загружаемые шарды, время жизни отсчитывается от текущего момента
+         * @param key значение ключа для хранилища
+         * @param data данные, хранящиеся по ключу
+         * @param ttl оставшееся время жизни данных в миллисекундах
+         */
+        @Override
+        public void accept(int key, String data, long ttl) {
+            shardFor(staged, key).put(key, data, clock.getAsLong() + ttl);
+        }
+
+        /**
+         * Атомарно заменяет текущие шарды хранилища загруженными, прежние очищаются
+         * @throws IllegalStateException если загрузка уже завершена
+         */
+        public synchronized void commit() {
+            if (finished) {
+                throw new IllegalStateException("Staging is already finished");
+            }
+            finished = true;
+            swap(staged, evictors, stagedGeneration);
+        }
+
+        /**
+         * Отбрасывает загруженные записи, хранилище не изменяется. Повторный вызов ничего не делает
+         */
+        public synchronized void abort() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            for (Shard shard : staged) {
+                shard.clear();
+            }
+            dropGeneration(staged, stagedGeneration);
+        }
     }
 
     /**
@@ -179,6 +1370,10 @@ public class Database {
      * либо значение времени его жизни в милисекундах
      */
     public static class Key implements Serializable{
+        /**
+         * Версия сериализации, зафиксирована, чтобы сохранённые ранее файлы хранилища оставались совместимыми
+         */
+        private static final long serialVersionUID = 2824553080638984875L;
         /**
          * Численное значение ключа от хранилища для данных
          */
@@ -226,6 +1421,18 @@ public class Database {
             return tempKey;
         }
 
+        /**
+         * Создаёт ключ для сохранения хранилища, во времени жизни хранится оставшееся число миллисекунд
+         * @param key значение ключа для хранилища
+         * @param remainingTtl оставшееся время жизни объекта
+         * @return возвращает ключ для сохранения
+         */
+        static Key forDump(int key, long remainingTtl) {
+            Key tempKey = new Key(key, 0L);
+            tempKey.ttl = remainingTtl;
+            return tempKey;
+        }
+
         /**
          * Метод, возвращающий численное значение ключа
          * @return возвращает численное значение ключа хранилища
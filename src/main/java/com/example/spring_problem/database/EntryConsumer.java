@@ -0,0 +1,15 @@
+package com.example.spring_problem.database;
+
+/**
+ * Получатель записей хранилища при потоковом сохранении и загрузке, время жизни передаётся как
+ * оставшееся число миллисекунд
+ */
+public interface EntryConsumer {
+    /**
+     * Вызывается для каждой записи
+     * @param key значение ключа для хранилища
+     * @param data данные, хранящиеся по ключу
+     * @param ttl оставшееся время жизни данных в миллисекундах
+     */
+    void accept(int key, String data, long ttl);
+}
@@ -0,0 +1,126 @@
+package com.example.spring_problem.database;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики попаданий и вытеснения записей, по ним подбирается ёмкость хранилища
+ */
+public class EvictionMetrics {
+    /**
+     * Число чтений, нашедших запись
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * Число чтений, не нашедших запись
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * Политики вытеснения шардов, пустой массив - записи не вытесняются
+     */
+    private volatile Evictor[] evictors;
+
+    /**
+     * Создаёт счётчики для переданных политик вытеснения
+     * @param evictors политики вытеснения шардов, пустой массив - записи не вытесняются
+     */
+    EvictionMetrics(Evictor[] evictors) {
+        this.evictors = evictors;
+    }
+
+    /**
+     * Заменяет политики вытеснения при замене шардов хранилища, счётчики вытеснения начинаются с нуля,
+     * счётчики попаданий и промахов сохраняются
+     * @param evictors политики вытеснения новых шардов
+     */
+    void setEvictors(Evictor[] evictors) {
+        this.evictors = evictors;
+    }
+
+    /**
+     * Учитывает чтение, нашедшее запись
+     */
+    void recordHit() {
+        hits.increment();
+    }
+
+    /**
+     * Учитывает чтение, не нашедшее запись
+     */
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Метод, возвращающий число чтений, нашедших запись
+     * @return число чтений
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Метод, возвращающий число чтений, не нашедших запись
+     * @return число чтений
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Метод, возвращающий долю чтений, нашедших запись
+     * @return доля от 0 до 1, 0 - если чтений не было
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Метод, возвращающий число вытесненных записей
+     * @return число записей
+     */
+    public long getEvictions() {
+        long sum = 0L;
+        for (Evictor evictor : evictors) {
+            sum += evictor.evictions();
+        }
+        return sum;
+    }
+
+    /**
+     * Метод, возвращающий оценочный объём вытесненных записей
+     * @return объём в байтах
+     */
+    public long getEvictedBytes() {
+        long sum = 0L;
+        for (Evictor evictor : evictors) {
+            sum += evictor.evictedBytes();
+        }
+        return sum;
+    }
+
+    /**
+     * Метод, возвращающий число записей, учтённых политикой вытеснения
+     * @return число записей, 0 - если записи не вытесняются
+     */
+    public long getEntries() {
+        long sum = 0L;
+        for (Evictor evictor : evictors) {
+            sum += evictor.entries();
+        }
+        return sum;
+    }
+
+    /**
+     * Метод, возвращающий оценочный объём записей, учтённых политикой вытеснения
+     * @return объём в байтах, 0 - если записи не вытесняются
+     */
+    public long getWeightedBytes() {
+        long sum = 0L;
+        for (Evictor evictor : evictors) {
+            sum += evictor.weightedBytes();
+        }
+        return sum;
+    }
+}
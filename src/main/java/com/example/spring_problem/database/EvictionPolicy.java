@@ -0,0 +1,27 @@
+package com.example.spring_problem.database;
+
+/**
+ * Политика вытеснения записей при превышении ёмкости хранилища, задаётся свойством database.eviction.policy
+ */
+public enum EvictionPolicy {
+    /**
+     * Записи не вытесняются, хранилище растёт до истечения времени жизни записей
+     */
+    NONE,
+    /**
+     * Вытесняется запись, к которой дольше всех не обращались
+     * @see LruEvictor
+     */
+    LRU,
+    /**
+     * Из случайной выборки записей вытесняется та, к которой дольше всех не обращались
+     * @see SampledLruEvictor
+     */
+    SAMPLED_LRU,
+    /**
+     * Окно LRU для новых записей и сегментированный LRU для основной области, запись допускается в
+     * основную область, только если к ней обращаются чаще, чем к вытесняемой
+     * @see TinyLfuEvictor
+     */
+    W_TINY_LFU
+}
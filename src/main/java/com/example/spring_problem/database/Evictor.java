@@ -0,0 +1,494 @@
+package com.example.spring_problem.database;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Основа политики вытеснения записей из хранилища с ограниченной ёмкостью. Политика ведёт собственный
+ * индекс ключей, изменяемый только под её блокировкой. Обращения на чтение и удаления лишь записываются
+ * в буферы без блокировки и применяются при следующей записи или обслуживании, поэтому чтение из
+ * хранилища не захватывает общую блокировку. Запись в движок хранения и удаление из него вытесняемых
+ * записей выполняются под блокировкой политики, поэтому вытеснение не может удалить запись, вставленную
+ * после того, как политика выбрала её ключ
+ */
+abstract class Evictor {
+    /**
+     * Пустой массив вытесненных ключей
+     */
+    private static final int[] NO_VICTIMS = new int[0];
+
+    /**
+     * Максимальное число записей, 0 - без ограничения
+     */
+    private final long maxEntries;
+    /**
+     * Максимальный оценочный объём записей в байтах, 0 - без ограничения
+     */
+    private final long maxBytes;
+    /**
+     * Блокировка политики, под ней изменяется индекс ключей
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Движок хранения шарда, из которого вытесняются записи
+     */
+    private Store store;
+    /**
+     * Буфер обращений на чтение
+     */
+    private final ReadBuffer readBuffer = new ReadBuffer();
+    /**
+     * Очередь ключей, удалённых из хранилища помимо политики
+     */
+    private final ConcurrentLinkedQueue<Integer> removals = new ConcurrentLinkedQueue<>();
+    /**
+     * Индекс ключей политики
+     */
+    private final Map<Integer,Node> nodes = new HashMap<>();
+    /**
+     * Оценочный объём записей в индексе в байтах
+     */
+    private long totalBytes;
+    /**
+     * Число вытесненных записей
+     */
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * Оценочный объём вытесненных записей в байтах
+     */
+    private final LongAdder evictedBytes = new LongAdder();
+    /**
+     * Число записей в индексе на момент последнего изменения
+     */
+    private volatile long entries;
+    /**
+     * Оценочный объём записей в индексе на момент последнего изменения
+     */
+    private volatile long weightedBytes;
+
+    /**
+     * Создаёт политику с заданной ёмкостью
+     * @param maxEntries максимальное число записей, 0 - без ограничения
+     * @param maxBytes максимальный оценочный объём записей в байтах, 0 - без ограничения
+     */
+    Evictor(long maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Связывает политику с движком хранения шарда. Вызывается шардом один раз, до первой записи
+     * @param store движок хранения шарда
+     */
+    void bind(Store store) {
+        this.store = store;
+    }
+
+    /**
+     * Оценивает объём, занимаемый записью в хранилище: накладные расходы движка и строки плюс по
+     * байту на символ данных
+     * @param data данные записи
+     * @return оценка объёма в байтах
+     */
+    static long weigh(String data) {
+        return weigh(data.length());
+    }
+
+    /**
+     * Оценивает объём, занимаемый записью в хранилище, по длине её данных
+     * @param length длина данных
+     * @return оценка объёма в байтах
+     */
+    static long weigh(int length) {
+        return 64L + length;
+    }
+
+    /**
+     * Записывает обращение к ключу на чтение. Не блокируется: если буфер заполнен, пытается применить
+     * его, только если блокировка политики свободна
+     * @param key значение ключа для хранилища
+     */
+    void recordAccess(int key) {
+        if (!readBuffer.offer(key) && lock.tryLock()) {
+            try {
+                drainBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Записывает удаление ключа из хранилища, произошедшее помимо политики, например по истечении
+     * времени жизни. Вызывается после удаления записи из движка. Не блокируется
+     * @param key значение ключа для хранилища
+     */
+    void recordRemoval(int key) {
+        removals.add(key);
+    }
+
+    /**
+     * Учитывает запись, уже находящуюся в движке хранения, не вытесняя записи. Используется при
+     * восстановлении записей движка, вытеснение выполняет последующий вызов {@link #maintain()}
+     * @param key значение ключа для хранилища
+     * @param bytes оценочный объём записи в байтах
+     */
+    void recordExisting(int key, long bytes) {
+        lock.lock();
+        try {
+            record(key, bytes);
+        } finally {
+            updateSnapshot();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Вставляет или заменяет запись в движке хранения, учитывает её и, если ёмкость превышена, вытесняет
+     * записи из движка. Всё выполняется под блокировкой политики
+     * @param key значение ключа для хранилища
+     * @param data данные для хранилища
+     * @param deadline момент времени, в который время жизни данных истечёт
+     * @return ключи записей, удалённых из движка
+     */
+    int[] write(int key, String data, long deadline) {
+        lock.lock();
+        try {
+            drainBuffers();
+            store.put(key, data, deadline);
+            record(key, weigh(data));
+            return evictIfNeeded();
+        } finally {
+            updateSnapshot();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Добавляет ключ в индекс политики или обновляет его узел. Вызывается под блокировкой
+     * @param key значение ключа для хранилища
+     * @param bytes оценочный объём записи в байтах
+     */
+    private void record(int key, long bytes) {
+        Node node = nodes.get(key);
+        if (node == null) {
+            node = new Node(key);
+            node.bytes = bytes;
+            node.weight = weightOf(bytes);
+            nodes.put(key, node);
+            totalBytes += bytes;
+            onInsert(node);
+        } else {
+            totalBytes += bytes - node.bytes;
+            node.bytes = bytes;
+            onWeightChange(node, weightOf(bytes));
+            onAccess(node);
+        }
+    }
+
+    /**
+     * Применяет накопленные буферы и вытесняет записи из движка, если ёмкость превышена
+     * @return ключи записей, удалённых из движка
+     */
+    int[] maintain() {
+        lock.lock();
+        try {
+            drainBuffers();
+            return evictIfNeeded();
+        } finally {
+            updateSnapshot();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Очищает индекс ключей политики
+     */
+    void clear() {
+        lock.lock();
+        try {
+            drainBuffers();
+            for (Node node : nodes.values()) {
+                onRemove(node);
+            }
+            nodes.clear();
+            totalBytes = 0;
+            onClear();
+        } finally {
+            updateSnapshot();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает число вытесненных записей
+     * @return число записей
+     */
+    long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Возвращает оценочный объём вытесненных записей
+     * @return объём в байтах
+     */
+    long evictedBytes() {
+        return evictedBytes.sum();
+    }
+
+    /**
+     * Возвращает число записей, учтённых политикой
+     * @return число записей
+     */
+    long entries() {
+        return entries;
+    }
+
+    /**
+     * Возвращает оценочный объём записей, учтённых политикой
+     * @return объём в байтах
+     */
+    long weightedBytes() {
+        return weightedBytes;
+    }
+
+    /**
+     * Возвращает вес записи, в котором политика измеряет доли своих очередей: байты, если задан
+     * объём, иначе единица на запись
+     * @param bytes оценочный объём записи в байтах
+     * @return вес записи
+     */
+    private long weightOf(long bytes) {
+        return maxBytes > 0 ? bytes : 1L;
+    }
+
+    /**
+     * Возвращает ёмкость в единицах веса записей
+     * @return ёмкость
+     */
+    protected long capacity() {
+        return maxBytes > 0 ? maxBytes : maxEntries;
+    }
+
+    /**
+     * Возвращает текущее число записей в индексе
+     * @return число записей
+     */
+    protected int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Вызывается при добавлении ключа в индекс
+     * @param node узел ключа
+     */
+    protected abstract void onInsert(Node node);
+
+    /**
+     * Вызывается при обращении к ключу на чтение или при его перезаписи
+     * @param node узел ключа
+     */
+    protected abstract void onAccess(Node node);
+
+    /**
+     * Вызывается при удалении ключа из индекса, узел нужно исключить из структур политики
+     * @param node узел ключа
+     */
+    protected abstract void onRemove(Node node);
+
+    /**
+     * Выбирает ключ для вытеснения, узел остаётся в структурах политики до вызова {@link #onRemove(Node)}
+     * @return узел вытесняемого ключа либо null, если вытеснять нечего
+     */
+    protected abstract Node selectVictim();
+
+    /**
+     * Вызывается под блокировкой при очистке индекса, после удаления из него всех узлов
+     */
+    protected void onClear() {
+    }
+
+    /**
+     * Изменяет вес узла, политика с очередями должна пересчитать их суммарный вес
+     * @param node узел ключа
+     * @param weight новый вес
+     */
+    protected void onWeightChange(Node node, long weight) {
+        node.weight = weight;
+    }
+
+    /**
+     * Применяет накопленные удаления и обращения на чтение. Удаление записывается в очередь уже после
+     * удаления из движка, и за это время ключ может быть вставлен заново. Вставка выполняется под
+     * блокировкой политики, поэтому ключ, который есть в движке в момент применения удаления, принадлежит
+     * живой записи, и её узел остаётся в индексе
+     */
+    private void drainBuffers() {
+        for (Integer key = removals.poll(); key != null; key = removals.poll()) {
+            if (store.deadline(key) != 0) {
+                continue;
+            }
+            Node node = nodes.remove(key);
+            if (node != null) {
+                totalBytes -= node.bytes;
+                onRemove(node);
+            }
+        }
+        readBuffer.drainTo(key -> {
+            Node node = nodes.get(key);
+            if (node != null) {
+                onAccess(node);
+            }
+        });
+    }
+
+    /**
+     * Вытесняет записи, пока ёмкость превышена, и удаляет их из движка. Вызывается под блокировкой,
+     * поэтому удаляется именно та запись, которую учитывал узел политики
+     * @return вытесненные ключи
+     */
+    private int[] evictIfNeeded() {
+        int[] victims = NO_VICTIMS;
+        int count = 0;
+
+        while ((maxEntries > 0 && nodes.size() > maxEntries) || (maxBytes > 0 && totalBytes > maxBytes)) {
+            Node victim = selectVictim();
+            if (victim == null) {
+                break;
+            }
+            onRemove(victim);
+            nodes.remove(victim.key);
+            totalBytes -= victim.bytes;
+            evictions.increment();
+            evictedBytes.add(victim.bytes);
+            // Минимальное время: вытесненная запись удаляется как живая, не попадая в счётчики истечения
+            store.remove(victim.key, Long.MIN_VALUE);
+
+            if (count == victims.length) {
+                victims = Arrays.copyOf(victims, Math.max(4, count * 2));
+            }
+            victims[count++] = victim.key;
+        }
+        return count == victims.length ? victims : Arrays.copyOf(victims, count);
+    }
+
+    /**
+     * Обновляет значения, доступные для чтения без блокировки
+     */
+    private void updateSnapshot() {
+        entries = nodes.size();
+        weightedBytes = totalBytes;
+    }
+
+    /**
+     * Узел ключа в индексе политики, поля используются разными политиками по-разному
+     */
+    protected static final class Node {
+        /**
+         * Значение ключа для хранилища
+         */
+        final int key;
+        /**
+         * Оценочный объём записи в байтах
+         */
+        long bytes;
+        /**
+         * Вес записи в единицах ёмкости политики
+         */
+        long weight;
+        /**
+         * Соседние узлы в очереди политики
+         */
+        Node prev;
+        Node next;
+        /**
+         * Очередь политики, в которой находится узел
+         */
+        AccessQueue queue;
+        /**
+         * Логическое время последнего обращения
+         */
+        long accessTime;
+        /**
+         * Позиция узла в плотном массиве политики
+         */
+        int index;
+
+        private Node(int key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Двусвязная очередь узлов в порядке обращений, в голове - узел, к которому обращались раньше всех
+     */
+    protected static final class AccessQueue {
+        private Node head;
+        private Node tail;
+        /**
+         * Суммарный вес узлов очереди
+         */
+        long weight;
+
+        /**
+         * Добавляет узел в хвост очереди
+         * @param node узел
+         */
+        void addLast(Node node) {
+            node.queue = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        /**
+         * Исключает узел из очереди
+         * @param node узел
+         */
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.queue = null;
+            weight -= node.weight;
+        }
+
+        /**
+         * Перемещает узел в хвост очереди
+         * @param node узел
+         */
+        void moveToEnd(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        /**
+         * Возвращает узел, к которому обращались раньше всех
+         * @return головной узел либо null, если очередь пуста
+         */
+        Node peekFirst() {
+            return head;
+        }
+    }
+}
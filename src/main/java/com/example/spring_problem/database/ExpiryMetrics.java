@@ -0,0 +1,103 @@
+package com.example.spring_problem.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики удаления записей с истекшим временем жизни, по ним настраивается цикл удаления
+ */
+public class ExpiryMetrics {
+    /**
+     * Число выполненных циклов активного удаления
+     */
+    private final LongAdder cycles = new LongAdder();
+    /**
+     * Число записей, просмотренных циклами активного удаления
+     */
+    private final LongAdder keysSampled = new LongAdder();
+    /**
+     * Число записей, удалённых циклами активного удаления
+     */
+    private final LongAdder keysReaped = new LongAdder();
+    /**
+     * Число записей, удалённых при обращении к ним после истечения времени жизни
+     */
+    private final LongAdder keysReapedOnRead = new LongAdder();
+    /**
+     * Суммарная длительность циклов активного удаления в наносекундах
+     */
+    private final LongAdder totalCycleNanos = new LongAdder();
+    /**
+     * Длительность последнего цикла активного удаления в наносекундах
+     */
+    private final AtomicLong lastCycleNanos = new AtomicLong();
+
+    /**
+     * Учитывает завершённый цикл активного удаления
+     * @param sampled число просмотренных записей
+     * @param reaped число удалённых записей
+     * @param durationNanos длительность цикла в наносекундах
+     */
+    void recordCycle(long sampled, long reaped, long durationNanos) {
+        cycles.increment();
+        keysSampled.add(sampled);
+        keysReaped.add(reaped);
+        totalCycleNanos.add(durationNanos);
+        lastCycleNanos.set(durationNanos);
+    }
+
+    /**
+     * Учитывает запись, удалённую при обращении к ней
+     */
+    void recordReapedOnRead() {
+        keysReapedOnRead.increment();
+    }
+
+    /**
+     * Метод, возвращающий число выполненных циклов активного удаления
+     * @return число циклов
+     */
+    public long getCycles() {
+        return cycles.sum();
+    }
+
+    /**
+     * Метод, возвращающий число записей, просмотренных циклами активного удаления
+     * @return число записей
+     */
+    public long getKeysSampled() {
+        return keysSampled.sum();
+    }
+
+    /**
+     * Метод, возвращающий число записей, удалённых циклами активного удаления
+     * @return число записей
+     */
+    public long getKeysReaped() {
+        return keysReaped.sum();
+    }
+
+    /**
+     * Метод, возвращающий число записей, удалённых при обращении к ним
+     * @return число записей
+     */
+    public long getKeysReapedOnRead() {
+        return keysReapedOnRead.sum();
+    }
+
+    /**
+     * Метод, возвращающий суммарную длительность циклов активного удаления
+     * @return длительность в наносекундах
+     */
+    public long getTotalCycleNanos() {
+        return totalCycleNanos.sum();
+    }
+
+    /**
+     * Метод, возвращающий длительность последнего цикла активного удаления
+     * @return длительность в наносекундах
+     */
+    public long getLastCycleNanos() {
+        return lastCycleNanos.get();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.spring_problem.database;
+
+/**
+ * Режим активного удаления записей с истекшим временем жизни
+ */
+public enum ExpiryMode {
+    /**
+     * Каждая запись регистрируется в колесе сроков жизни {@link ExpiryWheel}, удаляются только
+     * записи, срок которых наступил
+     */
+    WHEEL,
+    /**
+     * Записи не регистрируются, за цикл просматривается выборка записей, из неё удаляются истекшие,
+     * цикл повторяется, пока доля истекших в выборке превышает порог
+     */
+    SAMPLED
+}
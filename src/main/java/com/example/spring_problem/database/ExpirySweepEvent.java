@@ -0,0 +1,30 @@
+package com.example.spring_problem.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие Java Flight Recorder о цикле удаления записей шарда с истекшим временем жизни. Начало и
+ * длительность события - начало и длительность цикла
+ */
+@Name("com.example.spring_problem.ExpirySweep")
+@Label("Expiry Sweep")
+@Description("Expiry sweep cycle of one shard")
+@Category("Database")
+@StackTrace(false)
+public class ExpirySweepEvent extends jdk.jfr.Event {
+    /**
+     * Число просмотренных записей
+     */
+    @Label("Keys Scanned")
+    long keysScanned;
+
+    /**
+     * Число удалённых записей
+     */
+    @Label("Keys Removed")
+    long keysRemoved;
+}
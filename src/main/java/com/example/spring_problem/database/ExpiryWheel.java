@@ -0,0 +1,266 @@
+package com.example.spring_problem.database;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Иерархическое колесо таймеров, индекс сроков истечения времени жизни ключей хранилища.
+ * Каждый уровень колеса содержит {@value #WHEEL_SIZE} ячеек, ячейка уровня L охватывает
+ * {@code WHEEL_SIZE^L} тиков. Ключ регистрируется в ячейке, соответствующей его сроку, а при
+ * продвижении колеса просматриваются только ячейки, срок которых наступил, поэтому стоимость
+ * истечения одного ключа в среднем O(1) и не зависит от размера хранилища. Каждый ключ представлен
+ * в колесе одним узлом: повторная регистрация переносит его, а отмена исключает из ячейки, поэтому
+ * размер колеса ограничен числом живых ключей, а не числом записей за время жизни
+ */
+public class ExpiryWheel {
+    /**
+     * Число бит индекса ячейки на одном уровне колеса
+     */
+    private static final int WHEEL_BITS = 6;
+    /**
+     * {@value #WHEEL_SIZE} число ячеек на одном уровне колеса
+     */
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    /**
+     * Маска индекса ячейки на одном уровне колеса
+     */
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    /**
+     * {@value #LEVELS} число уровней колеса
+     */
+    private static final int LEVELS = 6;
+    /**
+     * Максимальное расстояние в тиках, которое может охватить колесо. Более дальние сроки
+     * регистрируются на максимальное расстояние и перерегистрируются при срабатывании
+     */
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    /**
+     * Обработчик ключей, срок жизни которых истёк
+     */
+    public interface Reaper {
+        /**
+         * Вызывается для каждого ключа, срок которого наступил
+         * @param key значение ключа для хранилища
+         * @param deadline момент времени, с которым ключ был зарегистрирован
+         */
+        void expire(int key, long deadline);
+    }
+
+    /**
+     * Длительность одного тика колеса в миллисекундах
+     */
+    private final long tickDuration;
+    /**
+     * Ячейки колеса по уровням, каждая ячейка - двусвязный список зарегистрированных ключей
+     */
+    private final Node[][] wheel = new Node[LEVELS][WHEEL_SIZE];
+    /**
+     * Узлы зарегистрированных ключей по ключу
+     */
+    private final Map<Integer,Node> nodes = new HashMap<>();
+    /**
+     * Номер последнего обработанного тика
+     */
+    private long currentTick;
+
+    /**
+     * Создаёт колесо с заданной длительностью тика, отсчёт тиков начинается с переданного момента времени
+     * @param tickDuration длительность тика в миллисекундах
+     * @param currentTimeMillis текущее значение времени
+     */
+    public ExpiryWheel(long tickDuration, long currentTimeMillis) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        this.tickDuration = tickDuration;
+        this.currentTick = currentTimeMillis / tickDuration;
+    }
+
+    /**
+     * Регистрирует ключ в колесе. Повторная регистрация того же ключа заменяет предыдущую. Срок может
+     * наступить одновременно с заменой записи, поэтому обработчик должен сверять переданный момент
+     * времени с актуальным
+     * @param key значение ключа для хранилища
+     * @param deadline момент времени, в который время жизни ключа истечёт
+     */
+    public synchronized void schedule(int key, long deadline) {
+        Node node = nodes.get(key);
+        if (node == null) {
+            node = new Node(key);
+            nodes.put(key, node);
+        } else {
+            unlink(node);
+        }
+        node.deadline = deadline;
+        node.tick = Math.max(deadlineTick(deadline), currentTick + 1);
+        insert(node);
+    }
+
+    /**
+     * Отменяет регистрацию ключа, если он зарегистрирован
+     * @param key значение ключа для хранилища
+     */
+    public synchronized void cancel(int key) {
+        Node node = nodes.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Продвигает колесо до переданного момента времени и передаёт обработчику все ключи, срок
+     * которых наступил. Обработчик вызывается вне блокировки колеса
+     * @param currentTimeMillis текущее значение времени
+     * @param reaper обработчик ключей с истекшим временем жизни
+     * @return число переданных обработчику ключей
+     */
+    public int advance(long currentTimeMillis, Reaper reaper) {
+        Node expired = null;
+        int count = 0;
+
+        synchronized (this) {
+            long targetTick = currentTimeMillis / tickDuration;
+
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade();
+
+                int slot = (int) (currentTick & WHEEL_MASK);
+                Node node = wheel[0][slot];
+                wheel[0][slot] = null;
+
+                while (node != null) {
+                    Node next = node.next;
+                    if (node.deadline > currentTimeMillis) {
+                        node.tick = Math.max(deadlineTick(node.deadline), currentTick + 1);
+                        insert(node);
+                    } else {
+                        nodes.remove(node.key);
+                        node.next = expired;
+                        expired = node;
+                        count++;
+                    }
+                    node = next;
+                }
+            }
+        }
+
+        for (Node node = expired; node != null; node = node.next) {
+            reaper.expire(node.key, node.deadline);
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает число зарегистрированных в колесе ключей
+     * @return число ключей, ожидающих истечения времени жизни
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Удаляет из колеса все зарегистрированные ключи
+     */
+    public synchronized void clear() {
+        for (Node[] level : wheel) {
+            Arrays.fill(level, null);
+        }
+        nodes.clear();
+    }
+
+    /**
+     * Переносит ключи из ячеек верхних уровней, чей диапазон начинается с текущего тика, на нижние уровни
+     */
+    private void cascade() {
+        int level = 0;
+        while (level + 1 < LEVELS && (currentTick & ((1L << (WHEEL_BITS * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+
+        for (; level > 0; level--) {
+            int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            Node node = wheel[level][slot];
+            wheel[level][slot] = null;
+
+            while (node != null) {
+                Node next = node.next;
+                insert(node);
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Помещает узел в ячейку, соответствующую расстоянию от текущего тика до его срока
+     * @param node узел колеса
+     */
+    private void insert(Node node) {
+        long delta = node.tick - currentTick;
+        if (delta > MAX_DELTA) {
+            delta = MAX_DELTA;
+            node.tick = currentTick + MAX_DELTA;
+        }
+
+        int level = 0;
+        while (level + 1 < LEVELS && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+
+        int slot = (int) ((node.tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Node head = wheel[level][slot];
+        node.level = level;
+        node.slot = slot;
+        node.prev = null;
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        wheel[level][slot] = node;
+    }
+
+    /**
+     * Исключает узел из ячейки, в которой он находится
+     * @param node узел колеса
+     */
+    private void unlink(Node node) {
+        if (node.prev == null) {
+            wheel[node.level][node.slot] = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    /**
+     * Вычисляет номер тика, начиная с которого время жизни истекло
+     * @param deadline момент времени, в который время жизни истечёт
+     * @return номер тика
+     */
+    private long deadlineTick(long deadline) {
+        return Math.floorDiv(deadline, tickDuration) + (Math.floorMod(deadline, tickDuration) == 0 ? 0 : 1);
+    }
+
+    /**
+     * Узел колеса, хранит значение ключа, момент истечения его времени жизни и ячейку, в которой находится
+     */
+    private static final class Node {
+        private final int key;
+        private long deadline;
+        private long tick;
+        private int level;
+        private int slot;
+        private Node prev;
+        private Node next;
+
+        private Node(int key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.spring_problem.database;
+
+import java.util.Arrays;
+
+/**
+ * Приближённый счётчик частоты обращений к ключам (count-min sketch) с 4-битными счётчиками.
+ * Каждое значение long вмещает 16 счётчиков, ключ учитывается в {@value #DEPTH} счётчиках, выбранных
+ * разными хеш-функциями, а частотой считается минимальный из них. Когда число учтённых обращений
+ * достигает десятикратного размера таблицы, все счётчики уменьшаются вдвое, поэтому старая
+ * популярность со временем забывается. Не потокобезопасен, доступ защищает политика вытеснения
+ */
+final class FrequencySketch {
+    /**
+     * {@value #DEPTH} число счётчиков на один ключ
+     */
+    private static final int DEPTH = 4;
+    /**
+     * Максимальное значение 4-битного счётчика
+     */
+    private static final int MAX_COUNT = 15;
+    /**
+     * Маска, сбрасывающая старший бит каждого 4-битного счётчика после сдвига
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+    /**
+     * Максимальное число элементов таблицы
+     */
+    private static final int MAX_TABLE_SIZE = 1 << 24;
+    /**
+     * Соли хеш-функций
+     */
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+
+    /**
+     * Таблица счётчиков
+     */
+    private long[] table = new long[0];
+    /**
+     * Число учтённых обращений с последнего уменьшения счётчиков
+     */
+    private int additions;
+    /**
+     * Число учтённых обращений, при котором счётчики уменьшаются вдвое
+     */
+    private int sampleSize;
+
+    /**
+     * Увеличивает таблицу так, чтобы её хватало для оценки частот заданного числа ключей.
+     * При увеличении накопленные частоты сбрасываются
+     * @param maximumSize ожидаемое число ключей
+     */
+    void ensureCapacity(long maximumSize) {
+        int size = (int) Math.min(Math.max(maximumSize, 16), MAX_TABLE_SIZE);
+        if (table.length >= size) {
+            return;
+        }
+        table = new long[Integer.highestOneBit(size - 1) << 1];
+        sampleSize = 10 * table.length;
+        additions = 0;
+    }
+
+    /**
+     * Возвращает оценку частоты обращений к ключу
+     * @param key значение ключа для хранилища
+     * @return частота от 0 до {@value #MAX_COUNT}
+     */
+    int frequency(int key) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            long hash = hash(key, i);
+            int shift = ((int) hash & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[index(hash)] >>> shift) & MAX_COUNT));
+        }
+        return frequency;
+    }
+
+    /**
+     * Учитывает обращение к ключу
+     * @param key значение ключа для хранилища
+     */
+    void increment(int key) {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            long hash = hash(key, i);
+            int index = index(hash);
+            int shift = ((int) hash & 15) << 2;
+            if (((table[index] >>> shift) & MAX_COUNT) < MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Уменьшает все счётчики вдвое
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    /**
+     * Сбрасывает все счётчики
+     */
+    void clear() {
+        Arrays.fill(table, 0L);
+        additions = 0;
+    }
+
+    /**
+     * Вычисляет i-ю хеш-функцию ключа
+     * @param key значение ключа для хранилища
+     * @param i номер хеш-функции
+     * @return хеш ключа
+     */
+    private static long hash(int key, int i) {
+        long hash = (key + SEEDS[i]) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Возвращает элемент таблицы, в котором лежит счётчик с переданным хешем
+     * @param hash хеш ключа
+     * @return номер элемента таблицы
+     */
+    private int index(long hash) {
+        return (int) (hash >>> 32) & (table.length - 1);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.spring_problem.database;
+
+/**
+ * Политика сброса журнала изменений на диск, задаётся свойством database.wal.fsync
+ * @see WriteAheadLog
+ */
+public enum FsyncPolicy {
+    /**
+     * Изменение подтверждается только после сброса журнала на диск. Потоки, изменившие хранилище
+     * одновременно, ожидают одного общего сброса
+     */
+    ALWAYS,
+    /**
+     * Журнал сбрасывается на диск не реже раза в database.wal.fsync-interval миллисекунд, при сбое
+     * теряются изменения за последний интервал
+     */
+    INTERVAL,
+    /**
+     * Журнал записывается в файл без явного сброса, момент записи на диск выбирает операционная система
+     */
+    OS
+}
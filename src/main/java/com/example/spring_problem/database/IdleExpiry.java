@@ -0,0 +1,467 @@
+package com.example.spring_problem.database;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Индекс записей шарда со временем жизни без обращений (time-to-idle): каждое успешное чтение такой
+ * записи переносит момент истечения её времени жизни на время простоя вперёд. Чтение лишь запоминает
+ * своё время в узле записи, не изменяя ни очередей индекса, ни движка хранения, и записывается в буфер с
+ * потерями, как обращения политики вытеснения {@link Evictor}. Буфер применяется пачкой: при заполнении
+ * или в цикле удаления, при применении момент истечения записи в движке переносится не чаще одного раза
+ * за пачку. Буфер задаёт только порядок записей в очередях: чтение, потерянное буфером, всё равно
+ * продлевает жизнь записи, потому что цикл удаления сверяет истекшую запись со временем последнего чтения.
+ * Записи с одинаковым временем простоя хранятся в отдельной очереди в порядке обращений, поэтому
+ * момент истечения в каждой очереди почти не убывает от головы к хвосту, и цикл удаления просматривает
+ * только истекшие записи из голов очередей, не обходя движок хранения
+ */
+final class IdleExpiry {
+    /**
+     * Движок хранения записей шарда
+     */
+    private final Store store;
+    /**
+     * Источник текущего времени в миллисекундах
+     */
+    private final LongSupplier clock;
+    /**
+     * Блокировка индекса
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Буфер обращений на чтение
+     */
+    private final ReadBuffer readBuffer = new ReadBuffer();
+    /**
+     * Очередь ключей, удалённых из хранилища или заменённых записями без времени простоя
+     */
+    private final ConcurrentLinkedQueue<Integer> removals = new ConcurrentLinkedQueue<>();
+    /**
+     * Узлы записей по ключу. Изменяются под блокировкой, чтения находят в них узел без блокировки и без
+     * упаковки ключа
+     */
+    private final NodeTable nodes = new NodeTable();
+    /**
+     * Очереди узлов в порядке обращений по времени простоя
+     */
+    private final Map<Long,IdleQueue> queues = new HashMap<>();
+    /**
+     * Число записей в индексе, пока оно равно нулю, чтения не записываются в буфер
+     */
+    private volatile int size;
+
+    /**
+     * Создаёт пустой индекс
+     * @param store движок хранения записей шарда
+     * @param clock источник текущего времени в миллисекундах
+     */
+    IdleExpiry(Store store, LongSupplier clock) {
+        this.store = store;
+        this.clock = clock;
+    }
+
+    /**
+     * Возвращает число записей в индексе
+     * @return число записей
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Записывает обращение к ключу на чтение: запоминает время чтения в узле записи и записывает ключ в
+     * буфер. Не блокируется: если буфер заполнен, пытается применить его, только если блокировка индекса
+     * свободна, иначе время чтения применит цикл удаления
+     * @param key значение ключа для хранилища
+     */
+    void recordAccess(int key) {
+        if (size == 0) {
+            return;
+        }
+        Node node = nodes.get(key);
+        if (node == null) {
+            return;
+        }
+        node.accessTime = clock.getAsLong();
+        if (!readBuffer.offer(key) && lock.tryLock()) {
+            try {
+                drainBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Записывает удаление ключа или его замену записью без времени простоя. Не блокируется
+     * @param key значение ключа для хранилища
+     */
+    void recordRemoval(int key) {
+        if (size != 0) {
+            removals.add(key);
+        }
+    }
+
+    /**
+     * Учитывает вставку или замену записи со временем простоя, запись помещается в хвост своей очереди
+     * @param key значение ключа для хранилища
+     * @param idle время простоя в миллисекундах
+     * @param deadline момент истечения времени жизни, записанный в движок
+     */
+    void recordWrite(int key, long idle, long deadline) {
+        lock.lock();
+        try {
+            drainBuffers();
+
+            Node node = nodes.get(key);
+            if (node == null) {
+                node = new Node(key);
+                nodes.add(node);
+            } else {
+                node.queue.remove(node);
+            }
+            node.idle = idle;
+            node.deadline = deadline;
+            node.accessTime = deadline - idle;
+            queues.computeIfAbsent(idle, i -> new IdleQueue()).addLast(node);
+        } finally {
+            size = nodes.size;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Применяет накопленные обращения и удаляет из движка записи, время простоя которых истекло. Запись,
+     * прочитанная позже, чем учтено в её моменте истечения, не удаляется, а продлевается от времени чтения
+     * @param currentTimeMillis текущее значение времени
+     * @param reaper получатель ключей удалённых записей
+     * @return число просмотренных записей
+     */
+    int expire(long currentTimeMillis, IntConsumer reaper) {
+        if (size == 0 && removals.isEmpty()) {
+            return 0;
+        }
+        int examined = 0;
+
+        lock.lock();
+        try {
+            drainBuffers();
+
+            for (IdleQueue queue : queues.values()) {
+                for (Node node = queue.head; node != null && node.deadline <= currentTimeMillis; node = queue.head) {
+                    examined++;
+                    if (node.accessTime + node.idle > currentTimeMillis && extend(node)) {
+                        continue;
+                    }
+                    queue.remove(node);
+                    nodes.remove(node.key);
+                    if (store.expire(node.key, node.deadline)) {
+                        reaper.accept(node.key);
+                    }
+                }
+            }
+            queues.values().removeIf(queue -> queue.head == null);
+        } finally {
+            size = nodes.size;
+            lock.unlock();
+        }
+        return examined;
+    }
+
+    /**
+     * Возвращает время простоя записей индекса
+     * @return время простоя в миллисекундах по ключу
+     */
+    Map<Integer,Long> idleDurations() {
+        lock.lock();
+        try {
+            drainBuffers();
+            Map<Integer,Long> durations = new HashMap<>();
+            nodes.forEach(node -> durations.put(node.key, node.idle));
+            return durations;
+        } finally {
+            size = nodes.size;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Очищает индекс
+     */
+    void clear() {
+        lock.lock();
+        try {
+            drainBuffers();
+            nodes.clear();
+            queues.clear();
+        } finally {
+            size = 0;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Применяет накопленные удаления и обращения на чтение. Обращение переносит момент истечения записи
+     * в движке на время простоя от последнего чтения, а узел - в хвост очереди
+     */
+    private void drainBuffers() {
+        for (Integer key = removals.poll(); key != null; key = removals.poll()) {
+            Node node = nodes.remove(key);
+            if (node != null) {
+                node.queue.remove(node);
+            }
+        }
+
+        readBuffer.drainTo(key -> {
+            Node node = nodes.get(key);
+            if (node != null) {
+                extend(node);
+            }
+        });
+    }
+
+    /**
+     * Переносит момент истечения записи в движке на время простоя от её последнего чтения, а узел - в
+     * хвост очереди. Если запись в движке уже заменена, перенос не выполняется, а узел исправит
+     * последующая вставка или удалит цикл удаления. Вызывается под блокировкой
+     * @param node узел записи
+     * @return правдивость утверждения о том, что момент истечения перенесён
+     */
+    private boolean extend(Node node) {
+        long deadline = node.accessTime + node.idle;
+        if (deadline <= node.deadline || !store.touch(node.key, node.deadline, deadline)) {
+            return false;
+        }
+        node.deadline = deadline;
+        IdleQueue queue = node.queue;
+        queue.remove(node);
+        queue.addLast(node);
+        return true;
+    }
+
+    /**
+     * Узел записи со временем простоя
+     */
+    private static final class Node {
+        /**
+         * Значение ключа для хранилища
+         */
+        private final int key;
+        /**
+         * Время простоя в миллисекундах
+         */
+        private long idle;
+        /**
+         * Момент истечения времени жизни, записанный в движок
+         */
+        private long deadline;
+        /**
+         * Время последнего чтения записи, записывается без блокировки
+         */
+        private volatile long accessTime;
+        /**
+         * Соседние узлы в очереди
+         */
+        private Node prev;
+        private Node next;
+        /**
+         * Очередь, в которой находится узел
+         */
+        private IdleQueue queue;
+
+        private Node(int key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Таблица узлов по ключу с открытой адресацией, ключи не упаковываются в Integer. Изменяется под
+     * блокировкой индекса, поиск выполняется без блокировки: ячейки читаются через
+     * {@link AtomicReferenceArray}, удалённый узел заменяется отметкой {@link #REMOVED}, чтобы поиск не
+     * терял узлы дальше по цепочке, а перестроенная таблица публикуется целиком
+     */
+    private static final class NodeTable {
+        /**
+         * {@value #INITIAL_CAPACITY} начальная ёмкость таблицы
+         */
+        private static final int INITIAL_CAPACITY = 16;
+        /**
+         * Отметка ячейки удалённого узла
+         */
+        private static final Node REMOVED = new Node(0);
+
+        /**
+         * Ячейки таблицы, ёмкость - степень двойки
+         */
+        private volatile AtomicReferenceArray<Node> slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        /**
+         * Число узлов
+         */
+        private int size;
+        /**
+         * Число занятых ячеек вместе с отметками удалённых узлов
+         */
+        private int used;
+
+        /**
+         * Находит узел по ключу, не блокируется
+         * @param key значение ключа для хранилища
+         * @return узел либо null
+         */
+        private Node get(int key) {
+            AtomicReferenceArray<Node> table = slots;
+            int mask = table.length() - 1;
+
+            for (int i = IntHashStore.hash(key) & mask; ; i = (i + 1) & mask) {
+                Node node = table.get(i);
+                if (node == null) {
+                    return null;
+                }
+                if (node != REMOVED && node.key == key) {
+                    return node;
+                }
+            }
+        }
+
+        /**
+         * Добавляет узел, ключа которого нет в таблице. Вызывается под блокировкой индекса
+         * @param node узел
+         */
+        private void add(Node node) {
+            if ((used + 1) * 4 > slots.length() * 3) {
+                rebuild();
+            }
+            AtomicReferenceArray<Node> table = slots;
+            int mask = table.length() - 1;
+
+            for (int i = IntHashStore.hash(node.key) & mask; ; i = (i + 1) & mask) {
+                Node current = table.get(i);
+                if (current == null || current == REMOVED) {
+                    if (current == null) {
+                        used++;
+                    }
+                    table.set(i, node);
+                    size++;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Удаляет узел по ключу. Вызывается под блокировкой индекса
+         * @param key значение ключа для хранилища
+         * @return удалённый узел либо null
+         */
+        private Node remove(int key) {
+            AtomicReferenceArray<Node> table = slots;
+            int mask = table.length() - 1;
+
+            for (int i = IntHashStore.hash(key) & mask; ; i = (i + 1) & mask) {
+                Node node = table.get(i);
+                if (node == null) {
+                    return null;
+                }
+                if (node != REMOVED && node.key == key) {
+                    table.set(i, REMOVED);
+                    size--;
+                    return node;
+                }
+            }
+        }
+
+        /**
+         * Передаёт все узлы получателю. Вызывается под блокировкой индекса
+         * @param consumer получатель узлов
+         */
+        private void forEach(Consumer<Node> consumer) {
+            AtomicReferenceArray<Node> table = slots;
+            for (int i = 0; i < table.length(); i++) {
+                Node node = table.get(i);
+                if (node != null && node != REMOVED) {
+                    consumer.accept(node);
+                }
+            }
+        }
+
+        /**
+         * Удаляет все узлы. Вызывается под блокировкой индекса
+         */
+        private void clear() {
+            slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+            size = 0;
+            used = 0;
+        }
+
+        /**
+         * Перестраивает таблицу без отметок удалённых узлов, ёмкость выбирается так, чтобы узлы занимали
+         * не больше 3/8 ячеек. Поиск, начатый в прежней таблице, завершается в ней
+         */
+        private void rebuild() {
+            int capacity = INITIAL_CAPACITY;
+            while (capacity * 3 < (size + 1) * 8) {
+                capacity <<= 1;
+            }
+            AtomicReferenceArray<Node> table = new AtomicReferenceArray<>(capacity);
+            int mask = capacity - 1;
+
+            forEach(node -> {
+                int i = IntHashStore.hash(node.key) & mask;
+                while (table.get(i) != null) {
+                    i = (i + 1) & mask;
+                }
+                table.set(i, node);
+            });
+            used = size;
+            slots = table;
+        }
+    }
+
+    /**
+     * Двусвязная очередь узлов с одинаковым временем простоя, в голове - узел, к которому обращались раньше всех
+     */
+    private static final class IdleQueue {
+        private Node head;
+        private Node tail;
+
+        /**
+         * Добавляет узел в хвост очереди
+         * @param node узел
+         */
+        private void addLast(Node node) {
+            node.queue = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        /**
+         * Исключает узел из очереди
+         * @param node узел
+         */
+        private void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+}
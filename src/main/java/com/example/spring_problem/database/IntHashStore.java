@@ -0,0 +1,463 @@
+package com.example.spring_problem.database;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Движок хранения на основе хеш-таблицы с открытой адресацией и линейным пробированием, ключи
+ * хранятся как примитивные int. Ключи, данные и сроки жизни лежат в параллельных массивах, поэтому
+ * на запись не создаётся ни одного объекта, кроме самих данных. Таблица разбита на сегменты, каждый
+ * сегмент защищён своей {@link StampedLock}. Чтение выполняется оптимистично, без захвата блокировки
+ * и без создания объектов, при конкурентном изменении сегмента чтение повторяется под блокировкой.
+ * Длинные данные хранятся сжатыми {@link ValueCodec}, сжатие и распаковка выполняются вне блокировки
+ */
+final class IntHashStore implements Store {
+    /**
+     * Число бит номера сегмента
+     */
+    private static final int SEGMENT_BITS = 6;
+    /**
+     * {@value #SEGMENT_COUNT} число сегментов таблицы
+     */
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    /**
+     * {@value #INITIAL_CAPACITY} начальная ёмкость сегмента
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Максимальная доля заполнения сегмента, при превышении которой ёмкость сегмента удваивается
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Сегменты таблицы
+     */
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    /**
+     * Получатель уведомлений о записях, удалённых по истечении времени жизни
+     */
+    private final ExpiryListener expiryListener;
+
+    /**
+     * Сжатие данных записей
+     */
+    private final ValueCodec codec;
+
+    /**
+     * Курсор выборки записей: номер сегмента в старших 32 битах, номер ячейки в младших
+     */
+    private long sampleCursor;
+
+    /**
+     * Создаёт пустой движок
+     * @param expiryListener получатель уведомлений о записях, удалённых по истечении времени жизни
+     * @param codec сжатие данных записей
+     */
+    IntHashStore(ExpiryListener expiryListener, ValueCodec codec) {
+        this.expiryListener = expiryListener;
+        this.codec = codec;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public String get(int key, long currentTimeMillis) {
+        return codec.decode(lookup(key, currentTimeMillis));
+    }
+
+    @Override
+    public Object getStored(int key, long currentTimeMillis) {
+        return lookup(key, currentTimeMillis);
+    }
+
+    /**
+     * Возвращает данные записи в хранимом виде, удаляя запись с истекшим временем жизни
+     * @param key значение ключа
+     * @param currentTimeMillis текущее значение времени
+     * @return String или сжатые byte[] либо null, если записи нет
+     */
+    private Object lookup(int key, long currentTimeMillis) {
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.tryOptimisticRead();
+        Table table = segment.table;
+        int index = table.find(key, hash);
+        Object data = index < 0 ? null : table.values[index];
+        long deadline = index < 0 ? 0L : table.deadlines[index];
+
+        if (!segment.validate(stamp)) {
+            stamp = segment.readLock();
+            try {
+                table = segment.table;
+                index = table.find(key, hash);
+                data = index < 0 ? null : table.values[index];
+                deadline = index < 0 ? 0L : table.deadlines[index];
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+
+        if (data == null) {
+            return null;
+        }
+        if (currentTimeMillis >= deadline) {
+            if (expire(key, deadline)) {
+                expiryListener.expired(key, true);
+            }
+            return null;
+        }
+        return data;
+    }
+
+    @Override
+    public void put(int key, String data, long deadline) {
+        if (data == null) {
+            throw new NullPointerException();
+        }
+        Object value = codec.encode(data);
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.writeLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+
+            if (index < 0) {
+                if (segment.size + 1 > table.threshold) {
+                    table = segment.resize();
+                }
+                index = table.freeSlot(hash);
+                table.keys[index] = key;
+                segment.size++;
+            }
+            table.deadlines[index] = deadline;
+            table.values[index] = value;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String remove(int key, long currentTimeMillis) {
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+        Object data;
+        long deadline;
+
+        long stamp = segment.writeLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+
+            if (index < 0) {
+                return null;
+            }
+            data = table.values[index];
+            deadline = table.deadlines[index];
+            segment.delete(index);
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+
+        if (currentTimeMillis >= deadline) {
+            expiryListener.expired(key, true);
+            return null;
+        }
+        return codec.decode(data);
+    }
+
+    @Override
+    public long deadline(int key) {
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.tryOptimisticRead();
+        Table table = segment.table;
+        int index = table.find(key, hash);
+        long deadline = index < 0 ? 0L : table.deadlines[index];
+
+        if (!segment.validate(stamp)) {
+            stamp = segment.readLock();
+            try {
+                table = segment.table;
+                index = table.find(key, hash);
+                deadline = index < 0 ? 0L : table.deadlines[index];
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+        return deadline;
+    }
+
+    @Override
+    public boolean expire(int key, long deadline) {
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.writeLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+
+            if (index < 0 || table.deadlines[index] != deadline) {
+                return false;
+            }
+            segment.delete(index);
+            return true;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean touch(int key, long deadline, long newDeadline) {
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.writeLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+
+            if (index < 0 || table.deadlines[index] != deadline) {
+                return false;
+            }
+            table.deadlines[index] = newDeadline;
+            return true;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public synchronized int sampleExpired(int count, long currentTimeMillis) {
+        int segmentIndex = (int) (sampleCursor >>> 32);
+        int slot = (int) sampleCursor;
+        int sampled = 0;
+        int expired = 0;
+
+        for (int visitedSegments = 0; sampled < count && visitedSegments <= SEGMENT_COUNT; visitedSegments++) {
+            Segment segment = segments[segmentIndex];
+
+            long stamp = segment.writeLock();
+            try {
+                Table table = segment.table;
+
+                while (sampled < count && slot < table.values.length) {
+                    if (table.values[slot] == null) {
+                        slot++;
+                        continue;
+                    }
+                    sampled++;
+                    if (currentTimeMillis >= table.deadlines[slot]) {
+                        expiryListener.expired(table.keys[slot], false);
+                        segment.delete(slot);
+                        expired++;
+                    } else {
+                        slot++;
+                    }
+                }
+                if (slot < table.values.length) {
+                    break;
+                }
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+
+            segmentIndex = (segmentIndex + 1) & (SEGMENT_COUNT - 1);
+            slot = 0;
+        }
+
+        sampleCursor = ((long) segmentIndex << 32) | slot;
+        return expired;
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor) {
+        for (Segment segment : segments) {
+            int[] keys;
+            long[] deadlines;
+            Object[] values;
+
+            long stamp = segment.readLock();
+            try {
+                Table table = segment.table;
+                keys = table.keys.clone();
+                deadlines = table.deadlines.clone();
+                values = table.values.clone();
+            } finally {
+                segment.unlockRead(stamp);
+            }
+
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    visitor.visit(keys[i], codec.decode(values[i]), deadlines[i]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+
+        for (Segment segment : segments) {
+            long stamp = segment.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            long stamp = segment.writeLock();
+            try {
+                segment.table = new Table(INITIAL_CAPACITY);
+                segment.size = 0;
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Перемешивает биты ключа, старшие биты результата задают сегмент, младшие - ячейку в сегменте
+     * @param key значение ключа для хранилища
+     * @return хеш ключа
+     */
+    static int hash(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Возвращает сегмент, в котором хранится ключ с переданным хешем
+     * @param hash хеш ключа
+     * @return сегмент таблицы
+     */
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    /**
+     * Сегмент таблицы, сама блокировка сегмента. Поля изменяются только под блокировкой на запись
+     */
+    @SuppressWarnings("serial")
+    private static final class Segment extends StampedLock {
+        /**
+         * Массивы ячеек сегмента, заменяются целиком при увеличении ёмкости
+         */
+        private volatile Table table = new Table(INITIAL_CAPACITY);
+        /**
+         * Число записей в сегменте
+         */
+        private int size;
+
+        /**
+         * Удваивает ёмкость сегмента и переносит в новую таблицу все записи
+         * @return новая таблица сегмента
+         */
+        private Table resize() {
+            Table old = table;
+            Table resized = new Table(old.values.length * 2);
+
+            for (int i = 0; i < old.values.length; i++) {
+                if (old.values[i] != null) {
+                    int index = resized.freeSlot(hash(old.keys[i]));
+                    resized.keys[index] = old.keys[i];
+                    resized.deadlines[index] = old.deadlines[i];
+                    resized.values[index] = old.values[i];
+                }
+            }
+            table = resized;
+            return resized;
+        }
+
+        /**
+         * Удаляет запись из ячейки, сдвигая назад следующие за ней записи той же цепочки пробирования,
+         * чтобы в таблице не оставалось удалённых меток
+         * @param index номер ячейки
+         */
+        private void delete(int index) {
+            Table table = this.table;
+            int mask = table.values.length - 1;
+            int hole = index;
+
+            for (int next = (hole + 1) & mask; table.values[next] != null; next = (next + 1) & mask) {
+                int home = hash(table.keys[next]) & mask;
+                boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+
+                if (!stays) {
+                    table.keys[hole] = table.keys[next];
+                    table.deadlines[hole] = table.deadlines[next];
+                    table.values[hole] = table.values[next];
+                    hole = next;
+                }
+            }
+            table.values[hole] = null;
+            size--;
+        }
+    }
+
+    /**
+     * Параллельные массивы ячеек сегмента. Данные хранятся как String либо сжатые byte[]. Пустая ячейка -
+     * ячейка, в которой данные равны null
+     */
+    private static final class Table {
+        private final int[] keys;
+        private final long[] deadlines;
+        private final Object[] values;
+        private final int threshold;
+
+        private Table(int capacity) {
+            keys = new int[capacity];
+            deadlines = new long[capacity];
+            values = new Object[capacity];
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        /**
+         * Ищет ячейку с переданным ключом. Число проверяемых ячеек ограничено ёмкостью, чтобы
+         * оптимистичное чтение конкурентно изменяемой таблицы не зациклилось
+         * @param key значение ключа для хранилища
+         * @param hash хеш ключа
+         * @return номер ячейки либо -1, если ключ отсутствует
+         */
+        private int find(int key, int hash) {
+            int mask = values.length - 1;
+
+            for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                if (values[i] == null) {
+                    return -1;
+                }
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Ищет первую пустую ячейку цепочки пробирования для переданного хеша
+         * @param hash хеш ключа
+         * @return номер пустой ячейки
+         */
+        private int freeSlot(int hash) {
+            int mask = values.length - 1;
+            int i = hash & mask;
+
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+}
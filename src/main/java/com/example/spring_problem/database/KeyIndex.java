@@ -0,0 +1,257 @@
+package com.example.spring_problem.database;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Упорядоченный индекс ключей шарда для обхода диапазонов. Ключи хранятся без упаковки в отсортированных
+ * листах по {@value #LEAF_CAPACITY} значений, листы упорядочены {@link ConcurrentSkipListMap} по нижней
+ * границе - двухуровневое B+-дерево, в котором на ключ приходится около 6 байт против 60 у
+ * {@link java.util.concurrent.ConcurrentSkipListSet} с упаковкой в Integer. Изменение листа копирует его
+ * массив под блокировкой листа, поэтому обход читает массивы без блокировок и не мешает записи.
+ * <p>
+ * Индекс не знает о сроках жизни: ключ удаляется из него вызывающим после удаления записи из движка,
+ * а ключи записей, удалённых движком при чтении, остаются в индексе, пока их не встретит обход. Поэтому
+ * обход проверяет каждый ключ по движку
+ */
+final class KeyIndex {
+    /**
+     * Наибольшее число ключей листа, переполненный лист делится пополам
+     */
+    static final int LEAF_CAPACITY = 256;
+
+    /**
+     * Листы индекса по нижней границе. Лист с границей {@link Integer#MIN_VALUE} есть всегда, поэтому
+     * у любого ключа есть лист, которому он принадлежит: лист с наибольшей границей не больше ключа
+     */
+    private final ConcurrentSkipListMap<Integer, Leaf> leaves = new ConcurrentSkipListMap<>();
+
+    KeyIndex() {
+        leaves.put(Integer.MIN_VALUE, new Leaf(Integer.MIN_VALUE, Integer.MAX_VALUE + 1L));
+    }
+
+    /**
+     * Добавляет ключ в индекс, повторное добавление ничего не меняет и не берёт блокировку
+     * @param key значение ключа для хранилища
+     */
+    void add(int key) {
+        while (true) {
+            Leaf leaf = leaves.floorEntry(key).getValue();
+
+            // Перезапись существующей записи не меняет индекс, ключ ищется без блокировки
+            if (Arrays.binarySearch(leaf.keys, key) >= 0) {
+                return;
+            }
+            synchronized (leaf) {
+                if (!leaf.owns(key)) {
+                    continue;
+                }
+                int[] keys = leaf.keys;
+                int index = Arrays.binarySearch(keys, key);
+                if (index >= 0) {
+                    return;
+                }
+                index = -index - 1;
+                int[] updated = new int[keys.length + 1];
+                System.arraycopy(keys, 0, updated, 0, index);
+                updated[index] = key;
+                System.arraycopy(keys, index, updated, index + 1, keys.length - index);
+
+                if (updated.length <= LEAF_CAPACITY) {
+                    leaf.keys = updated;
+                    return;
+                }
+                // Верхняя половина публикуется раньше, чем урезается нижняя: обход, попавший между этими
+                // шагами, увидит ключи верхней половины дважды и отбросит повтор по порядку ключей
+                int middle = updated.length / 2;
+                Leaf upper = new Leaf(updated[middle], leaf.end);
+                upper.keys = Arrays.copyOfRange(updated, middle, updated.length);
+                leaves.put(updated[middle], upper);
+                leaf.keys = Arrays.copyOf(updated, middle);
+                leaf.end = updated[middle];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Удаляет ключ из индекса. Опустевший лист, кроме первого, удаляется, а его диапазон переходит к
+     * предыдущему листу
+     * @param key значение ключа для хранилища
+     */
+    void remove(int key) {
+        while (true) {
+            Leaf leaf = leaves.floorEntry(key).getValue();
+
+            synchronized (leaf) {
+                if (!leaf.owns(key)) {
+                    continue;
+                }
+                int[] keys = leaf.keys;
+                int index = Arrays.binarySearch(keys, key);
+                if (index < 0) {
+                    return;
+                }
+                int[] updated = new int[keys.length - 1];
+                System.arraycopy(keys, 0, updated, 0, index);
+                System.arraycopy(keys, index + 1, updated, index, updated.length - index);
+                leaf.keys = updated;
+
+                if (updated.length == 0 && leaf.start != Integer.MIN_VALUE) {
+                    retire(leaf);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Удаляет опустевший лист, передавая его диапазон предыдущему листу. Вызывается под блокировкой листа
+     * и берёт блокировку предыдущего: блокировки двух листов берутся только справа налево, поэтому
+     * взаимной блокировки нет
+     * @param leaf опустевший лист
+     */
+    private void retire(Leaf leaf) {
+        while (true) {
+            Leaf previous = leaves.lowerEntry(leaf.start).getValue();
+
+            synchronized (previous) {
+                // Предыдущий лист мог разделиться или быть удалён, пока его блокировка не была взята
+                if (previous.retired || previous.end != leaf.start) {
+                    continue;
+                }
+                previous.end = leaf.end;
+                leaf.retired = true;
+                leaves.remove(leaf.start, leaf);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Возвращает курсор, обходящий ключи индекса по возрастанию, начиная с from
+     * @param from наименьший ключ обхода
+     * @return курсор
+     */
+    Cursor from(int from) {
+        return new Cursor(from);
+    }
+
+    /**
+     * Удаляет все ключи индекса
+     */
+    void clear() {
+        for (Leaf leaf : leaves.values()) {
+            synchronized (leaf) {
+                leaf.retired = true;
+            }
+        }
+        leaves.put(Integer.MIN_VALUE, new Leaf(Integer.MIN_VALUE, Integer.MAX_VALUE + 1L));
+        leaves.tailMap(Integer.MIN_VALUE, false).clear();
+    }
+
+    /**
+     * Лист индекса, владеющий ключами из диапазона [start, end). Граница end и признак удаления изменяются
+     * и читаются под блокировкой листа, поэтому принадлежность ключа листу проверяется без обращения к
+     * {@link #leaves}
+     */
+    private static final class Leaf {
+        /**
+         * Нижняя граница листа, его ключ в {@link #leaves}
+         */
+        private final int start;
+
+        /**
+         * Верхняя граница листа, не входящая в него
+         */
+        private long end;
+
+        /**
+         * Отсортированные ключи листа, массив не изменяется после публикации
+         */
+        private volatile int[] keys = new int[0];
+
+        /**
+         * Правдивость утверждения о том, что лист удалён из индекса
+         */
+        private boolean retired;
+
+        private Leaf(int start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Проверяет под блокировкой листа, что ключ всё ещё принадлежит ему: лист не удалён, и после того,
+         * как лист был найден, его верхняя половина с этим ключом не перенесена в новый лист
+         * @param key значение ключа
+         * @return правдивость утверждения о том, что ключ принадлежит листу
+         */
+        private boolean owns(int key) {
+            return !retired && key < end;
+        }
+    }
+
+    /**
+     * Курсор обхода ключей по возрастанию. Видит ключи, добавленные во время обхода правее его позиции,
+     * каждый ключ возвращает не больше одного раза. Не потокобезопасен
+     */
+    final class Cursor {
+        /**
+         * Нижняя граница текущего листа
+         */
+        private int bound;
+
+        /**
+         * Ключи текущего листа
+         */
+        private int[] keys;
+
+        /**
+         * Позиция следующего ключа в текущем листе
+         */
+        private int position;
+
+        /**
+         * Наименьший ключ, который ещё можно вернуть
+         */
+        private long next;
+
+        private Cursor(int from) {
+            Map.Entry<Integer, Leaf> entry = leaves.floorEntry(from);
+            bound = entry.getKey();
+            keys = entry.getValue().keys;
+            next = from;
+            position = start(keys, from);
+        }
+
+        /**
+         * Возвращает следующий ключ
+         * @return ключ либо {@link Long#MAX_VALUE}, если ключи кончились
+         */
+        long next() {
+            while (true) {
+                while (position < keys.length) {
+                    int key = keys[position++];
+                    if (key >= next) {
+                        next = key + 1L;
+                        return key;
+                    }
+                }
+                Map.Entry<Integer, Leaf> entry = leaves.higherEntry(bound);
+                if (entry == null || next > Integer.MAX_VALUE) {
+                    return Long.MAX_VALUE;
+                }
+                bound = entry.getKey();
+                keys = entry.getValue().keys;
+                position = start(keys, (int) Math.max(next, Integer.MIN_VALUE));
+            }
+        }
+
+        private int start(int[] keys, int from) {
+            int index = Arrays.binarySearch(keys, from);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.spring_problem.database;
+
+/**
+ * Способ загрузки сохранённого хранилища, задаётся параметром "mode" запроса "/database/load"
+ */
+public enum LoadMode {
+    /**
+     * Записи загружаются в новое хранилище, которое по окончании загрузки атомарно заменяет текущее.
+     * До замены читатели видят прежнее содержимое, при ошибке загрузки оно остаётся нетронутым
+     * @see Database#stage()
+     */
+    REPLACE,
+    /**
+     * Записи добавляются в текущее хранилище поверх имеющихся, записи с теми же ключами заменяются
+     */
+    MERGE
+}
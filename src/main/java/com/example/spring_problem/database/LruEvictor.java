@@ -0,0 +1,41 @@
+package com.example.spring_problem.database;
+
+/**
+ * Политика вытеснения LRU: вытесняется ключ, к которому дольше всех не обращались. Ключи хранятся
+ * в одной очереди в порядке обращений
+ */
+final class LruEvictor extends Evictor {
+    /**
+     * Очередь ключей в порядке обращений
+     */
+    private final AccessQueue queue = new AccessQueue();
+
+    /**
+     * Создаёт политику с заданной ёмкостью
+     * @param maxEntries максимальное число записей, 0 - без ограничения
+     * @param maxBytes максимальный оценочный объём записей в байтах, 0 - без ограничения
+     */
+    LruEvictor(long maxEntries, long maxBytes) {
+        super(maxEntries, maxBytes);
+    }
+
+    @Override
+    protected void onInsert(Node node) {
+        queue.addLast(node);
+    }
+
+    @Override
+    protected void onAccess(Node node) {
+        queue.moveToEnd(node);
+    }
+
+    @Override
+    protected void onRemove(Node node) {
+        queue.remove(node);
+    }
+
+    @Override
+    protected Node selectVictim() {
+        return queue.peekFirst();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.spring_problem.database;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Движок хранения на основе ConcurrentHashMap, ключ упаковывается в Integer, данные и срок
+ * жизни хранятся в объекте записи {@link Entry}. Длинные данные хранятся сжатыми {@link ValueCodec}
+ */
+final class MapStore implements Store {
+    /**
+     * хранилище данных, в качестве ключа численное значение ключа, в качестве значения запись,
+     * хранящая данные и момент истечения их времени жизни
+     */
+    private final ConcurrentHashMap<Integer,Entry> databaseMap = new ConcurrentHashMap<>();
+
+    /**
+     * Получатель уведомлений о записях, удалённых по истечении времени жизни
+     */
+    private final ExpiryListener expiryListener;
+
+    /**
+     * Сжатие данных записей
+     */
+    private final ValueCodec codec;
+
+    /**
+     * Курсор выборки записей, каждая выборка продолжает просмотр с места, на котором остановилась предыдущая
+     */
+    private Iterator<Map.Entry<Integer,Entry>> sampleCursor;
+
+    /**
+     * Создаёт пустой движок
+     * @param expiryListener получатель уведомлений о записях, удалённых по истечении времени жизни
+     * @param codec сжатие данных записей
+     */
+    MapStore(ExpiryListener expiryListener, ValueCodec codec) {
+        this.expiryListener = expiryListener;
+        this.codec = codec;
+    }
+
+    @Override
+    public String get(int key, long currentTimeMillis) {
+        return codec.decode(lookup(key, currentTimeMillis));
+    }
+
+    @Override
+    public Object getStored(int key, long currentTimeMillis) {
+        return lookup(key, currentTimeMillis);
+    }
+
+    /**
+     * Возвращает данные записи в хранимом виде, удаляя запись с истекшим временем жизни
+     * @param key значение ключа
+     * @param currentTimeMillis текущее значение времени
+     * @return String или сжатые byte[] либо null, если записи нет
+     */
+    private Object lookup(int key, long currentTimeMillis) {
+        Entry entry = databaseMap.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.isAlive(currentTimeMillis)) {
+            if (databaseMap.remove(key, entry)) {
+                expiryListener.expired(key, true);
+            }
+            return null;
+        }
+        return entry.data;
+    }
+
+    @Override
+    public void put(int key, String data, long deadline) {
+        databaseMap.put(key, new Entry(codec.encode(data), deadline));
+    }
+
+    @Override
+    public String remove(int key, long currentTimeMillis) {
+        Entry entry = databaseMap.remove(key);
+
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.isAlive(currentTimeMillis)) {
+            expiryListener.expired(key, true);
+            return null;
+        }
+        return codec.decode(entry.data);
+    }
+
+    @Override
+    public long deadline(int key) {
+        Entry entry = databaseMap.get(key);
+
+        return entry == null ? 0L : entry.deadline;
+    }
+
+    @Override
+    public boolean expire(int key, long deadline) {
+        boolean[] removed = new boolean[1];
+
+        databaseMap.computeIfPresent(key, (k, e) -> {
+            if (e.deadline != deadline) {
+                return e;
+            }
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public boolean touch(int key, long deadline, long newDeadline) {
+        boolean[] touched = new boolean[1];
+
+        databaseMap.computeIfPresent(key, (k, e) -> {
+            if (e.deadline != deadline) {
+                return e;
+            }
+            touched[0] = true;
+            return new Entry(e.data, newDeadline);
+        });
+        return touched[0];
+    }
+
+    @Override
+    public synchronized int sampleExpired(int count, long currentTimeMillis) {
+        int expired = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (sampleCursor == null || !sampleCursor.hasNext()) {
+                sampleCursor = databaseMap.entrySet().iterator();
+                if (!sampleCursor.hasNext()) {
+                    break;
+                }
+            }
+            Map.Entry<Integer,Entry> sampled = sampleCursor.next();
+
+            if (!sampled.getValue().isAlive(currentTimeMillis) && databaseMap.remove(sampled.getKey(), sampled.getValue())) {
+                expiryListener.expired(sampled.getKey(), false);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor) {
+        databaseMap.forEach((key, entry) -> visitor.visit(key, codec.decode(entry.data), entry.deadline));
+    }
+
+    @Override
+    public int size() {
+        return databaseMap.size();
+    }
+
+    @Override
+    public void clear() {
+        databaseMap.clear();
+    }
+
+    /**
+     * Запись хранилища, содержит данные и момент времени, в который их время жизни истечёт
+     */
+    private static final class Entry {
+        /**
+         * Данные, хранящиеся в хранилище: String либо сжатые byte[]
+         */
+        private final Object data;
+        /**
+         * Момент времени, в который время жизни данных истечёт
+         */
+        private final long deadline;
+
+        private Entry(Object data, long deadline) {
+            this.data = data;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Проверяет, не истекло ли время жизни данных к переданному моменту времени
+         * @param currentTimeMillis текущее значение времени
+         * @return правдивость утверждения о том, что время жизни данных ещё не истекло
+         */
+        private boolean isAlive(long currentTimeMillis) {
+            return currentTimeMillis < deadline;
+        }
+    }
+}
@@ -0,0 +1,899 @@
+package com.example.spring_problem.database;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Движок хранения, в котором записи лежат в файлах сегментов, отображённых в память
+ * ({@link MappedByteBuffer}). Сегменты заполняются только дописыванием: новая версия записи или метка
+ * удаления дописывается в конец текущего сегмента, в куче остаётся лишь индекс по примитивным int ключам
+ * с положением последней версии записи. Содержимое сегментов сбрасывает на диск операционная система,
+ * поэтому после аварийного завершения процесса записи не теряются, а при запуске достаточно открыть
+ * сегменты и восстановить индекс, сегменты просматриваются параллельно. Сегменты, большую часть которых
+ * занимают устаревшие версии, уплотняются: живые записи переносятся в текущий сегмент, файл удаляется.
+ * Все операции выполняются под одной блокировкой движка, параллельность обеспечивается шардами
+ */
+final class MappedStore implements Store {
+    /**
+     * Сигнатура файла сегмента "SPSG"
+     */
+    static final int MAGIC = 0x53505347;
+    /**
+     * {@value #VERSION} версия формата сегмента
+     */
+    static final short VERSION = 1;
+    /**
+     * {@value #SEGMENT_HEADER_SIZE} размер заголовка сегмента: сигнатура, версия, резерв и порядковый номер
+     */
+    static final int SEGMENT_HEADER_SIZE = 16;
+    /**
+     * {@value #RECORD_HEADER_SIZE} размер заголовка записи: момент истечения времени жизни, контрольная
+     * сумма, ключ и длина данных. Контрольная сумма CRC32C считается по ключу, длине и данным, момент
+     * истечения в неё не входит, так как переписывается на месте при продлении жизни записи
+     */
+    static final int RECORD_HEADER_SIZE = 20;
+    /**
+     * Длина данных метки удаления
+     */
+    private static final int TOMBSTONE = -1;
+    /**
+     * {@value #INITIAL_CAPACITY} начальная ёмкость индекса
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Максимальная доля заполнения индекса, при превышении которой ёмкость индекса удваивается
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * {@value #FOREACH_CHUNK} число ячеек индекса, просматриваемых при обходе под одним захватом блокировки
+     */
+    private static final int FOREACH_CHUNK = 4096;
+
+    /**
+     * Каталог файлов сегментов
+     */
+    private final Path directory;
+
+    /**
+     * Размер файла сегмента в байтах
+     */
+    private final int segmentSize;
+
+    /**
+     * Доля устаревших версий в сегменте, при превышении которой сегмент уплотняется
+     */
+    private final double compactThreshold;
+
+    /**
+     * Получатель уведомлений о записях, удалённых по истечении времени жизни
+     */
+    private final ExpiryListener expiryListener;
+
+    /**
+     * Блокировка движка: чтение - под общей, изменения и уплотнение - под исключительной
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Контрольная сумма дописываемых записей, используется только под исключительной блокировкой
+     */
+    private final CRC32C crc = new CRC32C();
+
+    /**
+     * Открытые сегменты по номеру, номер сегмента входит в положение записи в индексе
+     */
+    private Segment[] segments = new Segment[16];
+
+    /**
+     * Сегмент, в который дописываются записи
+     */
+    private Segment active;
+
+    /**
+     * Порядковый номер следующего создаваемого сегмента, более поздний сегмент содержит более поздние версии
+     */
+    private long nextSequence;
+
+    /**
+     * Индекс записей
+     */
+    private Index index = new Index(INITIAL_CAPACITY);
+
+    /**
+     * Курсор выборки записей: номер ячейки индекса
+     */
+    private int sampleCursor;
+
+    /**
+     * Открывает движок в каталоге. Если в каталоге уже есть сегменты, они просматриваются параллельно и
+     * по ним восстанавливается индекс: для каждого ключа берётся последняя версия, ключи с меткой удаления
+     * и с истекшим временем жизни пропускаются. Просмотр сегмента останавливается на первой записи с
+     * неверной контрольной суммой, так отбрасывается запись, которую процесс не успел дописать
+     * @param directory каталог файлов сегментов
+     * @param segmentSize размер файла сегмента в байтах
+     * @param compactThreshold доля устаревших версий в сегменте, при превышении которой сегмент уплотняется
+     * @param currentTimeMillis текущее значение времени
+     * @param expiryListener получатель уведомлений о записях, удалённых по истечении времени жизни
+     * @throws UncheckedIOException если каталог или сегменты не удалось открыть
+     * @throws IllegalStateException если файл сегмента имеет неизвестный формат
+     */
+    MappedStore(Path directory, int segmentSize, double compactThreshold, long currentTimeMillis,
+                ExpiryListener expiryListener) {
+        if (segmentSize < SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.compactThreshold = compactThreshold;
+        this.expiryListener = expiryListener;
+        try {
+            Files.createDirectories(directory);
+            recover(currentTimeMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open segments in " + directory, e);
+        }
+    }
+
+    /**
+     * Открывает и параллельно просматривает сегменты каталога, затем по порядку сегментов восстанавливает
+     * индекс и объём живых записей каждого сегмента. Последний сегмент становится текущим, запись
+     * продолжается с места, на котором остановился просмотр. Для записей с истекшим временем жизни
+     * дописываются метки удаления, чтобы после уплотнения их сегментов не ожили более ранние версии
+     * @param currentTimeMillis текущее значение времени
+     * @throws IOException если сегменты не удалось открыть
+     */
+    private void recover(long currentTimeMillis) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(".seg")).collect(Collectors.toList());
+        }
+        List<Scan> scans;
+        try {
+            scans = files.parallelStream()
+                    .map(MappedStore::scan)
+                    .filter(scan -> scan != null)
+                    .sorted(Comparator.comparingLong(scan -> scan.segment.sequence))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        for (Scan scan : scans) {
+            Segment segment = scan.segment;
+            register(segment);
+            for (int i = 0; i < scan.count; i++) {
+                int slot = index.find(scan.keys[i]);
+                if (scan.offsets[i] < 0) {
+                    if (slot >= 0) {
+                        index.delete(slot);
+                    }
+                } else if (slot >= 0) {
+                    index.positions[slot] = position(segment.id, scan.offsets[i]);
+                    index.deadlines[slot] = scan.deadlines[i];
+                } else {
+                    index.insert(scan.keys[i], position(segment.id, scan.offsets[i]), scan.deadlines[i]);
+                }
+            }
+            nextSequence = segment.sequence + 1;
+            active = segment;
+        }
+
+        int[] expired = new int[16];
+        int expiredCount = 0;
+        for (int slot = 0; slot < index.keys.length; slot++) {
+            if (index.positions[slot] == 0L) {
+                continue;
+            }
+            segmentOf(index.positions[slot]).liveBytes += recordSize(index.positions[slot]);
+            if (currentTimeMillis >= index.deadlines[slot]) {
+                if (expiredCount == expired.length) {
+                    expired = Arrays.copyOf(expired, expiredCount * 2);
+                }
+                expired[expiredCount++] = index.keys[slot];
+            }
+        }
+        if (active == null) {
+            active = createSegment(0);
+        }
+        for (int i = 0; i < expiredCount; i++) {
+            delete(index.find(expired[i]));
+        }
+    }
+
+    /**
+     * Открывает файл сегмента и просматривает его записи. Вызывается параллельно для разных сегментов
+     * @param file файл сегмента
+     * @return результат просмотра либо null, если файл удалён, так как процесс завершился до записи заголовка
+     * @throws UncheckedIOException если файл не удалось открыть
+     * @throws IllegalStateException если файл имеет неизвестный формат
+     */
+    private static Scan scan(Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size < SEGMENT_HEADER_SIZE || size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IllegalStateException("Corrupted segment size " + size + " of " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int magic = buffer.getInt(0);
+            if (magic == 0 && buffer.getLong(8) == 0L) {
+                channel.close();
+                Files.delete(file);
+                return null;
+            }
+            if (magic != MAGIC || buffer.getShort(4) != VERSION) {
+                channel.close();
+                throw new IllegalStateException("Not a segment of a supported version: " + file);
+            }
+
+            Segment segment = new Segment(buffer.getLong(8), file, channel, buffer);
+            Scan scan = new Scan(segment);
+            CRC32C crc = new CRC32C();
+            int offset = SEGMENT_HEADER_SIZE;
+            while (offset + RECORD_HEADER_SIZE <= segment.capacity()) {
+                int length = buffer.getInt(offset + 16);
+                if (length < TOMBSTONE || length > segment.capacity() - offset - RECORD_HEADER_SIZE) {
+                    break;
+                }
+                int end = offset + RECORD_HEADER_SIZE + Math.max(length, 0);
+                ByteBuffer checked = buffer.duplicate();
+                checked.position(offset + 12).limit(end);
+                crc.reset();
+                crc.update(checked);
+                if ((int) crc.getValue() != buffer.getInt(offset + 8)) {
+                    break;
+                }
+                scan.add(buffer.getInt(offset + 12), length == TOMBSTONE ? -offset : offset, buffer.getLong(offset));
+                offset = end;
+            }
+            segment.end = offset;
+            return scan;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String get(int key, long currentTimeMillis) {
+        lock.readLock().lock();
+        try {
+            int slot = index.find(key);
+            if (slot < 0) {
+                return null;
+            }
+            if (currentTimeMillis < index.deadlines[slot]) {
+                return read(index.positions[slot]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            int slot = index.find(key);
+            if (slot >= 0 && currentTimeMillis >= index.deadlines[slot]) {
+                delete(slot);
+                expiryListener.expired(key, true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public void put(int key, String data, long deadline) {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+
+        lock.writeLock().lock();
+        try {
+            long position = append(key, deadline, bytes, bytes.length);
+            int slot = index.find(key);
+            if (slot >= 0) {
+                release(index.positions[slot]);
+                index.positions[slot] = position;
+                index.deadlines[slot] = deadline;
+            } else {
+                index.insert(key, position, deadline);
+            }
+            segmentOf(position).liveBytes += RECORD_HEADER_SIZE + bytes.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String remove(int key, long currentTimeMillis) {
+        String data;
+        long deadline;
+
+        lock.writeLock().lock();
+        try {
+            int slot = index.find(key);
+            if (slot < 0) {
+                return null;
+            }
+            deadline = index.deadlines[slot];
+            data = currentTimeMillis < deadline ? read(index.positions[slot]) : null;
+            delete(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (data == null) {
+            expiryListener.expired(key, true);
+        }
+        return data;
+    }
+
+    @Override
+    public long deadline(int key) {
+        lock.readLock().lock();
+        try {
+            int slot = index.find(key);
+            return slot < 0 ? 0L : index.deadlines[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean expire(int key, long deadline) {
+        lock.writeLock().lock();
+        try {
+            int slot = index.find(key);
+            if (slot < 0 || index.deadlines[slot] != deadline) {
+                return false;
+            }
+            delete(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean touch(int key, long deadline, long newDeadline) {
+        lock.writeLock().lock();
+        try {
+            int slot = index.find(key);
+            if (slot < 0 || index.deadlines[slot] != deadline) {
+                return false;
+            }
+            index.deadlines[slot] = newDeadline;
+            segmentOf(index.positions[slot]).buffer.putLong(offset(index.positions[slot]), newDeadline);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int sampleExpired(int count, long currentTimeMillis) {
+        int sampled = 0;
+        int expired = 0;
+
+        lock.writeLock().lock();
+        try {
+            int capacity = index.keys.length;
+            int slot = sampleCursor & (capacity - 1);
+
+            for (int visited = 0; sampled < count && visited < 2 * capacity; visited++) {
+                if (index.positions[slot] == 0L) {
+                    slot = (slot + 1) & (capacity - 1);
+                    continue;
+                }
+                sampled++;
+                if (currentTimeMillis >= index.deadlines[slot]) {
+                    expiryListener.expired(index.keys[slot], false);
+                    delete(slot);
+                    expired++;
+                } else {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+            }
+            sampleCursor = slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return expired;
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor) {
+        int[] keys = new int[FOREACH_CHUNK];
+        long[] deadlines = new long[FOREACH_CHUNK];
+        String[] values = new String[FOREACH_CHUNK];
+
+        for (int from = 0; ; from += FOREACH_CHUNK) {
+            int count = 0;
+
+            lock.readLock().lock();
+            try {
+                if (from >= index.keys.length) {
+                    return;
+                }
+                int to = Math.min(from + FOREACH_CHUNK, index.keys.length);
+                for (int slot = from; slot < to; slot++) {
+                    if (index.positions[slot] != 0L) {
+                        keys[count] = index.keys[slot];
+                        deadlines[count] = index.deadlines[slot];
+                        values[count++] = read(index.positions[slot]);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            for (int i = 0; i < count; i++) {
+                visitor.visit(keys[i], values[i], deadlines[i]);
+                values[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public void forEachKey(KeyVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < index.keys.length; slot++) {
+                long position = index.positions[slot];
+                if (position != 0L) {
+                    visitor.visit(index.keys[slot], index.deadlines[slot], recordSize(position) - RECORD_HEADER_SIZE);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет все записи вместе с файлами сегментов и начинает новый сегмент
+     * @throws UncheckedIOException если файлы сегментов не удалось удалить
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                if (segment != null) {
+                    segment.delete();
+                }
+            }
+            segments = new Segment[16];
+            index = new Index(INITIAL_CAPACITY);
+            sampleCursor = 0;
+            active = createSegment(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not clear segments in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Уплотняет сегмент с наибольшей долей устаревших версий, если она превышает порог. Живые записи
+     * сегмента дописываются в текущий сегмент, метки удаления - только если есть более старые сегменты и
+     * ключ не записан заново, после чего файл сегмента удаляется. За вызов уплотняется не больше одного сегмента
+     * @throws UncheckedIOException если сегмент не удалось уплотнить
+     */
+    @Override
+    public void defragment() {
+        lock.writeLock().lock();
+        try {
+            Segment victim = null;
+            double victimRatio = compactThreshold;
+            for (Segment segment : segments) {
+                if (segment == null || segment == active || segment.end == SEGMENT_HEADER_SIZE) {
+                    continue;
+                }
+                double ratio = 1.0 - (double) segment.liveBytes / (segment.end - SEGMENT_HEADER_SIZE);
+                if (ratio > victimRatio) {
+                    victim = segment;
+                    victimRatio = ratio;
+                }
+            }
+            if (victim != null) {
+                compact(victim);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compact segments in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает содержимое сегментов на диск и закрывает их файлы
+     * @throws UncheckedIOException если сегменты не удалось закрыть
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                if (segment != null) {
+                    segment.buffer.force();
+                    segment.channel.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close segments in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Переносит живые записи и нужные метки удаления сегмента в текущий сегмент и удаляет сегмент.
+     * Вызывается под исключительной блокировкой
+     * @param segment уплотняемый сегмент
+     * @throws IOException если не удалось создать новый сегмент или удалить уплотнённый
+     */
+    private void compact(Segment segment) throws IOException {
+        boolean oldest = true;
+        for (Segment other : segments) {
+            if (other != null && other.sequence < segment.sequence) {
+                oldest = false;
+                break;
+            }
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        byte[] bytes = new byte[0];
+        for (int offset = SEGMENT_HEADER_SIZE; offset < segment.end; ) {
+            int key = buffer.getInt(offset + 12);
+            int length = buffer.getInt(offset + 16);
+            int slot = index.find(key);
+
+            if (length == TOMBSTONE) {
+                if (!oldest && slot < 0) {
+                    append(key, 0L, null, TOMBSTONE);
+                }
+            } else if (slot >= 0 && index.positions[slot] == position(segment.id, offset)) {
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                ByteBuffer source = buffer.duplicate();
+                source.position(offset + RECORD_HEADER_SIZE);
+                source.get(bytes, 0, length);
+                long position = append(key, index.deadlines[slot], bytes, length);
+                index.positions[slot] = position;
+                segmentOf(position).liveBytes += RECORD_HEADER_SIZE + length;
+            }
+            offset += RECORD_HEADER_SIZE + Math.max(length, 0);
+        }
+        segments[segment.id] = null;
+        segment.delete();
+    }
+
+    /**
+     * Удаляет запись из индекса и дописывает метку удаления, чтобы при восстановлении индекса не ожили
+     * её прежние версии. Вызывается под исключительной блокировкой
+     * @param slot ячейка индекса
+     */
+    private void delete(int slot) {
+        int key = index.keys[slot];
+        release(index.positions[slot]);
+        index.delete(slot);
+        append(key, 0L, null, TOMBSTONE);
+    }
+
+    /**
+     * Дописывает запись в текущий сегмент, при нехватке места начинает новый. Вызывается под
+     * исключительной блокировкой
+     * @param key значение ключа для хранилища
+     * @param deadline момент времени, в который время жизни данных истечёт
+     * @param bytes данные в кодировке UTF-8, null для метки удаления
+     * @param length длина данных либо {@link #TOMBSTONE}
+     * @return положение записи
+     * @throws UncheckedIOException если новый сегмент не удалось создать
+     */
+    private long append(int key, long deadline, byte[] bytes, int length) {
+        int size = RECORD_HEADER_SIZE + Math.max(length, 0);
+        if (active.capacity() - active.end < size) {
+            try {
+                active = createSegment(size);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create segment in " + directory, e);
+            }
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int offset = active.end;
+        buffer.putLong(offset, deadline);
+        buffer.putInt(offset + 12, key);
+        buffer.putInt(offset + 16, length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(offset + RECORD_HEADER_SIZE);
+        if (length > 0) {
+            target.put(bytes, 0, length);
+        }
+        target.position(offset + 12).limit(offset + size);
+        crc.reset();
+        crc.update(target);
+        buffer.putInt(offset + 8, (int) crc.getValue());
+
+        active.end = offset + size;
+        return position(active.id, offset);
+    }
+
+    /**
+     * Создаёт новый сегмент со следующим порядковым номером и записывает его заголовок
+     * @param recordSize размер записи, которая должна поместиться в сегмент
+     * @return сегмент
+     * @throws IOException если файл сегмента не удалось создать
+     */
+    private Segment createSegment(int recordSize) throws IOException {
+        long sequence = nextSequence++;
+        Path file = directory.resolve(String.format("segment-%016d.seg", sequence));
+        int capacity = Math.max(segmentSize, SEGMENT_HEADER_SIZE + recordSize);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.putLong(8, sequence);
+        buffer.putShort(4, VERSION);
+        buffer.putInt(0, MAGIC);
+
+        Segment segment = new Segment(sequence, file, channel, buffer);
+        segment.end = SEGMENT_HEADER_SIZE;
+        register(segment);
+        return segment;
+    }
+
+    /**
+     * Назначает сегменту свободный номер
+     * @param segment сегмент
+     */
+    private void register(Segment segment) {
+        int id = 0;
+        while (id < segments.length && segments[id] != null) {
+            id++;
+        }
+        if (id == segments.length) {
+            segments = Arrays.copyOf(segments, segments.length * 2);
+        }
+        segment.id = id;
+        segments[id] = segment;
+    }
+
+    /**
+     * Учитывает, что версия записи в переданном положении устарела
+     * @param position положение записи
+     */
+    private void release(long position) {
+        segmentOf(position).liveBytes -= recordSize(position);
+    }
+
+    /**
+     * Читает данные записи
+     * @param position положение записи
+     * @return данные
+     */
+    private String read(long position) {
+        Segment segment = segmentOf(position);
+        int offset = offset(position);
+        byte[] bytes = new byte[segment.buffer.getInt(offset + 16)];
+        ByteBuffer source = segment.buffer.duplicate();
+        source.position(offset + RECORD_HEADER_SIZE);
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Возвращает размер записи вместе с заголовком
+     * @param position положение записи
+     * @return размер в байтах
+     */
+    private int recordSize(long position) {
+        return RECORD_HEADER_SIZE + segmentOf(position).buffer.getInt(offset(position) + 16);
+    }
+
+    private Segment segmentOf(long position) {
+        return segments[(int) (position >>> 32)];
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+
+    /**
+     * Упаковывает номер сегмента и смещение записи в положение. Смещение записи не меньше размера
+     * заголовка сегмента, поэтому положение никогда не равно 0
+     * @param segmentId номер сегмента
+     * @param offset смещение записи от начала сегмента
+     * @return положение записи
+     */
+    private static long position(int segmentId, int offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+    /**
+     * Открытый файл сегмента
+     */
+    private static final class Segment {
+        private final long sequence;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        /**
+         * Номер сегмента в {@link #segments}
+         */
+        private int id;
+        /**
+         * Смещение конца последней записи
+         */
+        private int end;
+        /**
+         * Объём живых записей вместе с заголовками
+         */
+        private long liveBytes;
+
+        private Segment(long sequence, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+
+        /**
+         * Закрывает и удаляет файл сегмента. Отображение освобождается сборщиком мусора
+         * @throws IOException если файл не удалось удалить
+         */
+        private void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Записи одного сегмента в порядке их дописывания. Смещение метки удаления хранится со знаком минус
+     */
+    private static final class Scan {
+        private final Segment segment;
+        private int[] keys = new int[1024];
+        private int[] offsets = new int[1024];
+        private long[] deadlines = new long[1024];
+        private int count;
+
+        private Scan(Segment segment) {
+            this.segment = segment;
+        }
+
+        private void add(int key, int offset, long deadline) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                deadlines = Arrays.copyOf(deadlines, count * 2);
+            }
+            keys[count] = key;
+            offsets[count] = offset;
+            deadlines[count++] = deadline;
+        }
+    }
+
+    /**
+     * Хеш-таблица с открытой адресацией и линейным пробированием из ключа в положение последней версии
+     * записи и момент истечения её времени жизни. Пустая ячейка - ячейка с нулевым положением
+     */
+    private static final class Index {
+        private int[] keys;
+        private long[] positions;
+        private long[] deadlines;
+        private int size;
+        private int threshold;
+
+        private Index(int capacity) {
+            keys = new int[capacity];
+            positions = new long[capacity];
+            deadlines = new long[capacity];
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        /**
+         * Ищет ячейку с переданным ключом
+         * @param key значение ключа для хранилища
+         * @return номер ячейки либо -1, если ключ отсутствует
+         */
+        private int find(int key) {
+            int mask = keys.length - 1;
+
+            for (int i = IntHashStore.hash(key) & mask; positions[i] != 0L; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Добавляет отсутствующий в индексе ключ, при превышении доли заполнения удваивает ёмкость
+         * @param key значение ключа для хранилища
+         * @param position положение записи
+         * @param deadline момент времени, в который время жизни данных истечёт
+         */
+        private void insert(int key, long position, long deadline) {
+            if (size >= threshold) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = IntHashStore.hash(key) & mask;
+            while (positions[i] != 0L) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            positions[i] = position;
+            deadlines[i] = deadline;
+            size++;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            long[] oldPositions = positions;
+            long[] oldDeadlines = deadlines;
+
+            keys = new int[oldKeys.length * 2];
+            positions = new long[oldKeys.length * 2];
+            deadlines = new long[oldKeys.length * 2];
+            threshold = (int) (keys.length * LOAD_FACTOR);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldPositions[i] != 0L) {
+                    insert(oldKeys[i], oldPositions[i], oldDeadlines[i]);
+                }
+            }
+        }
+
+        /**
+         * Удаляет запись из ячейки, сдвигая назад следующие за ней записи той же цепочки пробирования
+         * @param index номер ячейки
+         */
+        private void delete(int index) {
+            int mask = keys.length - 1;
+            int hole = index;
+
+            for (int next = (hole + 1) & mask; positions[next] != 0L; next = (next + 1) & mask) {
+                int home = IntHashStore.hash(keys[next]) & mask;
+                boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+
+                if (!stays) {
+                    keys[hole] = keys[next];
+                    positions[hole] = positions[next];
+                    deadlines[hole] = deadlines[next];
+                    hole = next;
+                }
+            }
+            positions[hole] = 0L;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.spring_problem.database;
+
+/**
+ * Получатель изменений хранилища для их передачи за пределы процесса, например ведомым экземплярам.
+ * Изменения одного ключа передаются под той же блокировкой, под которой применяются к шарду, поэтому
+ * приходят в порядке применения. Вызывается в потоке, изменяющем хранилище, и не должен блокироваться
+ * @see Database#setMutationListener(MutationListener)
+ */
+public interface MutationListener {
+    /**
+     * Операция вставки записи, deadline - момент истечения времени жизни
+     */
+    byte PUT = WriteAheadLog.PUT;
+    /**
+     * Операция удаления записи
+     */
+    byte REMOVE = WriteAheadLog.REMOVE;
+    /**
+     * Операция удаления всех записей
+     */
+    byte CLEAR = WriteAheadLog.CLEAR;
+    /**
+     * Операция вставки записи со временем жизни без обращений, deadline - время простоя
+     */
+    byte PUT_IDLE = WriteAheadLog.PUT_IDLE;
+
+    /**
+     * Вызывается для каждого изменения хранилища
+     * @param op тип операции {@link #PUT}, {@link #PUT_IDLE}, {@link #REMOVE} или {@link #CLEAR}
+     * @param key значение ключа для хранилища
+     * @param deadline момент времени, в который время жизни данных истечёт, для {@link #PUT_IDLE} - время простоя
+     * @param data данные либо null для операций без данных
+     */
+    void mutated(byte op, int key, long deadline, String data);
+
+    /**
+     * Вызывается после замены всего содержимого хранилища загрузкой, которую нельзя передать отдельными
+     * изменениями: получатель должен заново передать содержимое целиком
+     */
+    void reset();
+}
@@ -0,0 +1,259 @@
+package com.example.spring_problem.database;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Арена для хранения строк вне кучи. Строка кодируется в UTF-8 и записывается в блок, выделенный
+ * в одной из прямых (direct) областей памяти - слэбов. Размер блока округляется вверх до степени
+ * двойки (класс размера), освобождённые блоки попадают в список свободных блоков своего класса и
+ * переиспользуются. Строки, не помещающиеся в слэб, получают собственный слэб точного размера.
+ * Ссылка на строку - дескриптор типа long: номер слэба в старших 32 битах и смещение блока в младших,
+ * нулевой дескриптор не выдаётся никогда. Арена не потокобезопасна, доступ к ней защищает владелец
+ */
+final class OffHeapArena {
+    /**
+     * Размер заголовка блока, в нём хранится длина строки в байтах
+     */
+    private static final int HEADER = Integer.BYTES;
+    /**
+     * Минимальный размер блока, степень двойки
+     */
+    private static final int MIN_BLOCK_SHIFT = 4;
+
+    /**
+     * Размер слэба в байтах
+     */
+    private final int slabSize;
+    /**
+     * Слэбы арены, индекс слэба в списке - его номер минус один. Освобождённые слэбы строк-гигантов
+     * заменяются на null
+     */
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    /**
+     * Списки свободных блоков по классам размера
+     */
+    private final LongStack[] freeBlocks;
+    /**
+     * Освободившиеся номера слэбов строк-гигантов
+     */
+    private final LongStack freeSlabs = new LongStack();
+    /**
+     * Номер текущего слэба, из которого блоки выделяются последовательно, 0 - текущего слэба нет
+     */
+    private int currentSlab;
+    /**
+     * Смещение первого невыделенного байта текущего слэба
+     */
+    private int currentOffset;
+    /**
+     * Суммарный размер всех слэбов арены в байтах
+     */
+    private long reservedBytes;
+    /**
+     * Суммарный размер выделенных блоков в байтах
+     */
+    private long usedBytes;
+    /**
+     * Суммарный размер блоков в списках свободных блоков
+     */
+    private long freeBytes;
+
+    /**
+     * Создаёт пустую арену, слэбы выделяются по мере необходимости
+     * @param slabSize размер слэба в байтах, округляется вниз до степени двойки
+     */
+    OffHeapArena(int slabSize) {
+        this.slabSize = Integer.highestOneBit(Math.max(slabSize, 1 << MIN_BLOCK_SHIFT));
+        this.freeBlocks = new LongStack[blockClass(this.slabSize) + 1];
+        for (int i = 0; i < freeBlocks.length; i++) {
+            freeBlocks[i] = new LongStack();
+        }
+    }
+
+    /**
+     * Кодирует строку в UTF-8 и записывает её в арену
+     * @param data строка
+     * @return дескриптор записанной строки
+     */
+    long store(String data) {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        int blockSize = HEADER + bytes.length;
+        long handle = blockSize > slabSize ? allocateHuge(blockSize) : allocate(blockClass(blockSize));
+
+        ByteBuffer block = block(handle);
+        block.putInt(bytes.length);
+        block.put(bytes);
+        return handle;
+    }
+
+    /**
+     * Копирует строку из другой арены без декодирования, используется при дефрагментации
+     * @param source арена, в которой хранится строка
+     * @param handle дескриптор строки в исходной арене
+     * @return дескриптор строки в этой арене
+     */
+    long copy(OffHeapArena source, long handle) {
+        ByteBuffer from = source.block(handle);
+        int blockSize = HEADER + from.getInt(from.position());
+        long copied = blockSize > slabSize ? allocateHuge(blockSize) : allocate(blockClass(blockSize));
+
+        from.limit(from.position() + blockSize);
+        block(copied).put(from);
+        return copied;
+    }
+
+    /**
+     * Читает строку по дескриптору
+     * @param handle дескриптор строки
+     * @return строка
+     */
+    String load(long handle) {
+        ByteBuffer block = block(handle);
+        byte[] bytes = new byte[block.getInt()];
+        block.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Освобождает блок строки, блок возвращается в список свободных блоков своего класса
+     * @param handle дескриптор строки
+     */
+    void free(long handle) {
+        int blockSize = HEADER + block(handle).getInt();
+
+        if (blockSize > slabSize) {
+            int slab = (int) (handle >>> 32);
+            slabs.set(slab - 1, null);
+            freeSlabs.push(slab);
+            reservedBytes -= blockSize;
+            usedBytes -= blockSize;
+        } else {
+            int blockClass = blockClass(blockSize);
+            freeBlocks[blockClass].push(handle);
+            usedBytes -= 1L << blockClass;
+            freeBytes += 1L << blockClass;
+        }
+    }
+
+    /**
+     * Возвращает суммарный размер слэбов арены
+     * @return размер в байтах
+     */
+    long reservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Возвращает суммарный размер выделенных блоков
+     * @return размер в байтах
+     */
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Возвращает долю зарезервированной памяти, которая занята освобождёнными, но не переиспользованными блоками
+     * @return доля от 0 до 1
+     */
+    double fragmentation() {
+        return reservedBytes == 0 ? 0.0 : (double) freeBytes / reservedBytes;
+    }
+
+    /**
+     * Выделяет блок заданного класса размера, сначала из списка свободных блоков, затем из текущего слэба
+     * @param blockClass класс размера, логарифм размера блока
+     * @return дескриптор блока
+     */
+    private long allocate(int blockClass) {
+        int blockSize = 1 << blockClass;
+        usedBytes += blockSize;
+
+        LongStack free = freeBlocks[blockClass];
+        if (!free.isEmpty()) {
+            freeBytes -= blockSize;
+            return free.pop();
+        }
+
+        if (currentSlab == 0 || currentOffset + blockSize > slabSize) {
+            currentSlab = addSlab(ByteBuffer.allocateDirect(slabSize));
+            currentOffset = 0;
+        }
+        long handle = ((long) currentSlab << 32) | currentOffset;
+        currentOffset += blockSize;
+        return handle;
+    }
+
+    /**
+     * Выделяет отдельный слэб точного размера для строки, не помещающейся в обычный слэб
+     * @param blockSize размер блока в байтах
+     * @return дескриптор блока
+     */
+    private long allocateHuge(int blockSize) {
+        usedBytes += blockSize;
+        return (long) addSlab(ByteBuffer.allocateDirect(blockSize)) << 32;
+    }
+
+    /**
+     * Добавляет слэб в арену, занимая первый освободившийся номер
+     * @param slab слэб
+     * @return номер слэба
+     */
+    private int addSlab(ByteBuffer slab) {
+        reservedBytes += slab.capacity();
+
+        if (freeSlabs.isEmpty()) {
+            slabs.add(slab);
+            return slabs.size();
+        }
+        int index = (int) freeSlabs.pop();
+        slabs.set(index - 1, slab);
+        return index;
+    }
+
+    /**
+     * Возвращает независимое представление блока, позиция которого установлена на начало блока
+     * @param handle дескриптор блока
+     * @return представление блока
+     */
+    private ByteBuffer block(long handle) {
+        ByteBuffer slab = slabs.get((int) (handle >>> 32) - 1).duplicate();
+        slab.position((int) handle);
+        return slab;
+    }
+
+    /**
+     * Вычисляет класс размера, то есть логарифм минимальной степени двойки, вмещающей блок
+     * @param blockSize размер блока в байтах
+     * @return класс размера
+     */
+    private static int blockClass(int blockSize) {
+        return Math.max(MIN_BLOCK_SHIFT, Integer.SIZE - Integer.numberOfLeadingZeros(blockSize - 1));
+    }
+
+    /**
+     * Стек примитивных long значений на растущем массиве
+     */
+    private static final class LongStack {
+        private long[] elements = new long[16];
+        private int size;
+
+        private void push(long value) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size * 2);
+            }
+            elements[size++] = value;
+        }
+
+        private long pop() {
+            return elements[--size];
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
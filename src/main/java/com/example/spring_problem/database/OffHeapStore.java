@@ -0,0 +1,467 @@
+package com.example.spring_problem.database;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Движок хранения, в котором данные лежат вне кучи. Индекс устроен так же, как в {@link IntHashStore}:
+ * сегментированная хеш-таблица с открытой адресацией по примитивным int ключам, но вместо ссылок на
+ * строки в ней хранятся дескрипторы блоков {@link OffHeapArena}. У каждого сегмента своя арена, поэтому
+ * выделение памяти не требует общей блокировки. Если доля освобождённых, но не переиспользованных
+ * блоков арены превышает порог, сегмент дефрагментируется: живые блоки копируются в новую арену
+ */
+final class OffHeapStore implements Store {
+    /**
+     * Число бит номера сегмента
+     */
+    private static final int SEGMENT_BITS = 6;
+    /**
+     * {@value #SEGMENT_COUNT} число сегментов таблицы
+     */
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    /**
+     * {@value #INITIAL_CAPACITY} начальная ёмкость сегмента
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Максимальная доля заполнения сегмента, при превышении которой ёмкость сегмента удваивается
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Сегменты таблицы
+     */
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    /**
+     * Размер слэба арены в байтах
+     */
+    private final int slabSize;
+
+    /**
+     * Доля фрагментации арены, при превышении которой сегмент дефрагментируется
+     */
+    private final double defragmentThreshold;
+
+    /**
+     * Получатель уведомлений о записях, удалённых по истечении времени жизни
+     */
+    private final ExpiryListener expiryListener;
+
+    /**
+     * Курсор выборки записей: номер сегмента в старших 32 битах, номер ячейки в младших
+     */
+    private long sampleCursor;
+
+    /**
+     * Создаёт пустой движок
+     * @param slabSize размер слэба арены в байтах
+     * @param defragmentThreshold доля фрагментации арены, при превышении которой сегмент дефрагментируется
+     * @param expiryListener получатель уведомлений о записях, удалённых по истечении времени жизни
+     */
+    OffHeapStore(int slabSize, double defragmentThreshold, ExpiryListener expiryListener) {
+        this.slabSize = slabSize;
+        this.defragmentThreshold = defragmentThreshold;
+        this.expiryListener = expiryListener;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(new OffHeapArena(slabSize));
+        }
+    }
+
+    @Override
+    public String get(int key, long currentTimeMillis) {
+        int hash = IntHashStore.hash(key);
+        Segment segment = segmentFor(hash);
+        String data;
+        long deadline;
+
+        long stamp = segment.readLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+
+            if (index < 0) {
+                return null;
+            }
+            deadline = table.deadlines[index];
+            data = currentTimeMillis < deadline ? segment.arena.load(table.handles[index]) : null;
+        } finally {
+            segment.unlockRead(stamp);
+        }
+
+        if (data == null && expire(key, deadline)) {
+            expiryListener.expired(key, true);
+        }
+        return data;
+    }
+
+    @Override
+    public void put(int key, String data, long deadline) {
+        int hash = IntHashStore.hash(key);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.writeLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+            long handle = segment.arena.store(data);
+
+            if (index < 0) {
+                if (segment.size + 1 > table.threshold) {
+                    table = segment.resize();
+                }
+                index = table.freeSlot(hash);
+                table.keys[index] = key;
+                segment.size++;
+            } else {
+                segment.arena.free(table.handles[index]);
+            }
+            table.deadlines[index] = deadline;
+            table.handles[index] = handle;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String remove(int key, long currentTimeMillis) {
+        int hash = IntHashStore.hash(key);
+        Segment segment = segmentFor(hash);
+        String data;
+
+        long stamp = segment.writeLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+
+            if (index < 0) {
+                return null;
+            }
+            data = currentTimeMillis < table.deadlines[index] ? segment.arena.load(table.handles[index]) : null;
+            segment.delete(index);
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+
+        if (data == null) {
+            expiryListener.expired(key, true);
+        }
+        return data;
+    }
+
+    @Override
+    public long deadline(int key) {
+        int hash = IntHashStore.hash(key);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.readLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+
+            return index < 0 ? 0L : table.deadlines[index];
+        } finally {
+            segment.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean expire(int key, long deadline) {
+        int hash = IntHashStore.hash(key);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.writeLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+
+            if (index < 0 || table.deadlines[index] != deadline) {
+                return false;
+            }
+            segment.delete(index);
+            return true;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean touch(int key, long deadline, long newDeadline) {
+        int hash = IntHashStore.hash(key);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.writeLock();
+        try {
+            Table table = segment.table;
+            int index = table.find(key, hash);
+
+            if (index < 0 || table.deadlines[index] != deadline) {
+                return false;
+            }
+            table.deadlines[index] = newDeadline;
+            return true;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public synchronized int sampleExpired(int count, long currentTimeMillis) {
+        int segmentIndex = (int) (sampleCursor >>> 32);
+        int slot = (int) sampleCursor;
+        int sampled = 0;
+        int expired = 0;
+
+        for (int visitedSegments = 0; sampled < count && visitedSegments <= SEGMENT_COUNT; visitedSegments++) {
+            Segment segment = segments[segmentIndex];
+
+            long stamp = segment.writeLock();
+            try {
+                Table table = segment.table;
+
+                while (sampled < count && slot < table.handles.length) {
+                    if (table.handles[slot] == 0L) {
+                        slot++;
+                        continue;
+                    }
+                    sampled++;
+                    if (currentTimeMillis >= table.deadlines[slot]) {
+                        expiryListener.expired(table.keys[slot], false);
+                        segment.delete(slot);
+                        expired++;
+                    } else {
+                        slot++;
+                    }
+                }
+                if (slot < table.handles.length) {
+                    break;
+                }
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+
+            segmentIndex = (segmentIndex + 1) & (SEGMENT_COUNT - 1);
+            slot = 0;
+        }
+
+        sampleCursor = ((long) segmentIndex << 32) | slot;
+        return expired;
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor) {
+        for (Segment segment : segments) {
+            int[] keys;
+            long[] deadlines;
+            String[] values;
+
+            long stamp = segment.readLock();
+            try {
+                Table table = segment.table;
+                keys = table.keys.clone();
+                deadlines = table.deadlines.clone();
+                values = new String[table.handles.length];
+                for (int i = 0; i < values.length; i++) {
+                    if (table.handles[i] != 0L) {
+                        values[i] = segment.arena.load(table.handles[i]);
+                    }
+                }
+            } finally {
+                segment.unlockRead(stamp);
+            }
+
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    visitor.visit(keys[i], values[i], deadlines[i]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+
+        for (Segment segment : segments) {
+            long stamp = segment.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            long stamp = segment.writeLock();
+            try {
+                segment.table = new Table(INITIAL_CAPACITY);
+                segment.arena = new OffHeapArena(slabSize);
+                segment.size = 0;
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Дефрагментирует сегменты, доля фрагментации арены которых превышает порог
+     */
+    @Override
+    public void defragment() {
+        for (Segment segment : segments) {
+            long stamp = segment.writeLock();
+            try {
+                if (segment.arena.fragmentation() > defragmentThreshold) {
+                    segment.defragment(new OffHeapArena(slabSize));
+                }
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Возвращает сегмент, в котором хранится ключ с переданным хешем
+     * @param hash хеш ключа
+     * @return сегмент таблицы
+     */
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    /**
+     * Сегмент таблицы, сама блокировка сегмента. Поля изменяются только под блокировкой на запись
+     */
+    @SuppressWarnings("serial")
+    private static final class Segment extends StampedLock {
+        /**
+         * Массивы ячеек сегмента, заменяются целиком при увеличении ёмкости
+         */
+        private volatile Table table = new Table(INITIAL_CAPACITY);
+        /**
+         * Арена, в которой хранятся данные сегмента
+         */
+        private OffHeapArena arena;
+        /**
+         * Число записей в сегменте
+         */
+        private int size;
+
+        private Segment(OffHeapArena arena) {
+            this.arena = arena;
+        }
+
+        /**
+         * Удваивает ёмкость сегмента и переносит в новую таблицу все записи
+         * @return новая таблица сегмента
+         */
+        private Table resize() {
+            Table old = table;
+            Table resized = new Table(old.handles.length * 2);
+
+            for (int i = 0; i < old.handles.length; i++) {
+                if (old.handles[i] != 0L) {
+                    int index = resized.freeSlot(IntHashStore.hash(old.keys[i]));
+                    resized.keys[index] = old.keys[i];
+                    resized.deadlines[index] = old.deadlines[i];
+                    resized.handles[index] = old.handles[i];
+                }
+            }
+            table = resized;
+            return resized;
+        }
+
+        /**
+         * Копирует все живые блоки в новую арену и заменяет ею текущую
+         * @param compacted новая пустая арена
+         */
+        private void defragment(OffHeapArena compacted) {
+            Table table = this.table;
+
+            for (int i = 0; i < table.handles.length; i++) {
+                if (table.handles[i] != 0L) {
+                    table.handles[i] = compacted.copy(arena, table.handles[i]);
+                }
+            }
+            arena = compacted;
+        }
+
+        /**
+         * Освобождает блок записи и удаляет её из ячейки, сдвигая назад следующие за ней записи
+         * той же цепочки пробирования
+         * @param index номер ячейки
+         */
+        private void delete(int index) {
+            Table table = this.table;
+            int mask = table.handles.length - 1;
+            int hole = index;
+
+            arena.free(table.handles[index]);
+            for (int next = (hole + 1) & mask; table.handles[next] != 0L; next = (next + 1) & mask) {
+                int home = IntHashStore.hash(table.keys[next]) & mask;
+                boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+
+                if (!stays) {
+                    table.keys[hole] = table.keys[next];
+                    table.deadlines[hole] = table.deadlines[next];
+                    table.handles[hole] = table.handles[next];
+                    hole = next;
+                }
+            }
+            table.handles[hole] = 0L;
+            size--;
+        }
+    }
+
+    /**
+     * Параллельные массивы ячеек сегмента. Пустая ячейка - ячейка с нулевым дескриптором
+     */
+    private static final class Table {
+        private final int[] keys;
+        private final long[] deadlines;
+        private final long[] handles;
+        private final int threshold;
+
+        private Table(int capacity) {
+            keys = new int[capacity];
+            deadlines = new long[capacity];
+            handles = new long[capacity];
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        /**
+         * Ищет ячейку с переданным ключом
+         * @param key значение ключа для хранилища
+         * @param hash хеш ключа
+         * @return номер ячейки либо -1, если ключ отсутствует
+         */
+        private int find(int key, int hash) {
+            int mask = handles.length - 1;
+
+            for (int i = hash & mask; handles[i] != 0L; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Ищет первую пустую ячейку цепочки пробирования для переданного хеша
+         * @param hash хеш ключа
+         * @return номер пустой ячейки
+         */
+        private int freeSlot(int hash) {
+            int mask = handles.length - 1;
+            int i = hash & mask;
+
+            while (handles[i] != 0L) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.spring_problem.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие Java Flight Recorder об операции get, put или remove хранилища, записывается только для
+ * операций дольше порога, по умолчанию 1 мс, порог задаётся настройкой threshold записи JFR.
+ * Пока запись JFR не идёт, хранилище не создаёт событие и не замеряет операции
+ */
+@Name("com.example.spring_problem.Operation")
+@Label("Database Operation")
+@Description("Store get, put or remove that took longer than the threshold")
+@Category("Database")
+@Threshold("1 ms")
+@StackTrace(false)
+public class OperationEvent extends jdk.jfr.Event {
+    /**
+     * Операция: GET, PUT или REMOVE
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * Ключ операции
+     */
+    @Label("Key")
+    int key;
+}
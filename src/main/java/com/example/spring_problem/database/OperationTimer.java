@@ -0,0 +1,37 @@
+package com.example.spring_problem.database;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Приёмник длительностей операций хранилища. Хранилище замеряет не каждую операцию, а случайную
+ * выборку из одной операции на {@value #SAMPLE_RATE}: два вызова {@link System#nanoTime()} и запись
+ * в гистограмму стоят дороже самого чтения, а в выборке их стоимость делится на все операции
+ */
+public interface OperationTimer {
+    /**
+     * {@value #SAMPLE_RATE} - на сколько операций приходится одна замеренная
+     */
+    int SAMPLE_RATE = 64;
+
+    /**
+     * Замеряемая операция
+     */
+    enum Operation {
+        GET, PUT, REMOVE
+    }
+
+    /**
+     * Вызывается для каждой замеренной операции
+     * @param operation операция
+     * @param durationNanos длительность операции в наносекундах
+     */
+    void record(Operation operation, long durationNanos);
+
+    /**
+     * Метод, решающий, замерять ли очередную операцию
+     * @return правдивость утверждения о том, что операция попала в выборку
+     */
+    static boolean sample() {
+        return (ThreadLocalRandom.current().nextInt() & (SAMPLE_RATE - 1)) == 0;
+    }
+}
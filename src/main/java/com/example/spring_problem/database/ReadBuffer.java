@@ -0,0 +1,92 @@
+package com.example.spring_problem.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Буфер обращений к ключам для политики вытеснения. Разбит на полосы, поток пишет в полосу, выбранную
+ * по его идентификатору, поэтому запись не требует блокировки и почти не конкурирует. Буфер с потерями:
+ * если полоса заполнена, обращение отбрасывается, политика вытеснения от этого лишь чуть теряет в точности
+ */
+final class ReadBuffer {
+    /**
+     * {@value #STRIPE_SIZE} число ячеек в одной полосе, степень двойки
+     */
+    private static final int STRIPE_SIZE = 16;
+    /**
+     * Маска номера ячейки в полосе
+     */
+    private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+    /**
+     * Признак заполненной ячейки, ключ хранится в младших 32 битах
+     */
+    private static final long PRESENT = 1L << 32;
+
+    /**
+     * Полосы буфера
+     */
+    private final Stripe[] stripes;
+
+    /**
+     * Создаёт буфер, число полос - ближайшая сверху степень двойки к удвоенному числу процессоров
+     */
+    ReadBuffer() {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Записывает обращение к ключу в полосу текущего потока
+     * @param key значение ключа для хранилища
+     * @return ложь, если полоса заполнена и обращение отброшено
+     */
+    boolean offer(int key) {
+        long probe = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        Stripe stripe = stripes[(int) (probe >>> 32) & (stripes.length - 1)];
+
+        long tail = stripe.writeCounter.get();
+        if (tail - stripe.readCounter >= STRIPE_SIZE) {
+            return false;
+        }
+        if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+            stripe.keys.lazySet((int) tail & STRIPE_MASK, PRESENT | (key & 0xFFFFFFFFL));
+        }
+        return true;
+    }
+
+    /**
+     * Передаёт накопленные обращения обработчику и освобождает буфер. Вызывается только под
+     * блокировкой политики вытеснения
+     * @param consumer обработчик обращений
+     */
+    void drainTo(IntConsumer consumer) {
+        for (Stripe stripe : stripes) {
+            long head = stripe.readCounter;
+            long tail = stripe.writeCounter.get();
+
+            for (; head < tail; head++) {
+                int index = (int) head & STRIPE_MASK;
+                long value = stripe.keys.get(index);
+                if (value == 0L) {
+                    break;
+                }
+                stripe.keys.lazySet(index, 0L);
+                consumer.accept((int) value);
+            }
+            stripe.readCounter = head;
+        }
+    }
+
+    /**
+     * Полоса буфера, кольцевой массив со счётчиками записанных и прочитанных обращений
+     */
+    private static final class Stripe {
+        private final AtomicLong writeCounter = new AtomicLong();
+        private final AtomicLongArray keys = new AtomicLongArray(STRIPE_SIZE);
+        private volatile long readCounter;
+    }
+}
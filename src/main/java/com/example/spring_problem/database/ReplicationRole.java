@@ -0,0 +1,19 @@
+package com.example.spring_problem.database;
+
+/**
+ * Роль экземпляра в репликации хранилища, задаётся свойством database.replication.role
+ */
+public enum ReplicationRole {
+    /**
+     * Репликация отключена
+     */
+    NONE,
+    /**
+     * Ведущий: принимает изменения и передаёт их ведомым
+     */
+    LEADER,
+    /**
+     * Ведомый: получает изменения от ведущего и обслуживает только чтение
+     */
+    FOLLOWER
+}
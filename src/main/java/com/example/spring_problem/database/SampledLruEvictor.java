@@ -0,0 +1,79 @@
+package com.example.spring_problem.database;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Приближённая политика вытеснения LRU: из случайной выборки ключей вытесняется тот, к которому
+ * дольше всех не обращались. Обращение лишь обновляет логическое время узла, поэтому обходится
+ * дешевле перестановки в очереди, а узлы хранятся в плотном массиве для выборки за O(1)
+ */
+final class SampledLruEvictor extends Evictor {
+    /**
+     * Размер выборки кандидатов на вытеснение
+     */
+    private final int sampleSize;
+    /**
+     * Плотный массив узлов политики
+     */
+    private Node[] nodes = new Node[16];
+    /**
+     * Число узлов в массиве
+     */
+    private int count;
+    /**
+     * Логическое время, увеличивается при каждом обращении
+     */
+    private long clock;
+
+    /**
+     * Создаёт политику с заданной ёмкостью
+     * @param maxEntries максимальное число записей, 0 - без ограничения
+     * @param maxBytes максимальный оценочный объём записей в байтах, 0 - без ограничения
+     * @param sampleSize размер выборки кандидатов на вытеснение
+     */
+    SampledLruEvictor(long maxEntries, long maxBytes, int sampleSize) {
+        super(maxEntries, maxBytes);
+        this.sampleSize = Math.max(1, sampleSize);
+    }
+
+    @Override
+    protected void onInsert(Node node) {
+        if (count == nodes.length) {
+            nodes = Arrays.copyOf(nodes, count * 2);
+        }
+        node.index = count;
+        node.accessTime = ++clock;
+        nodes[count++] = node;
+    }
+
+    @Override
+    protected void onAccess(Node node) {
+        node.accessTime = ++clock;
+    }
+
+    @Override
+    protected void onRemove(Node node) {
+        Node last = nodes[--count];
+        nodes[node.index] = last;
+        last.index = node.index;
+        nodes[count] = null;
+    }
+
+    @Override
+    protected Node selectVictim() {
+        if (count == 0) {
+            return null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Node victim = null;
+
+        for (int i = 0; i < sampleSize; i++) {
+            Node candidate = nodes[random.nextInt(count)];
+            if (victim == null || candidate.accessTime < victim.accessTime) {
+                victim = candidate;
+            }
+        }
+        return victim;
+    }
+}
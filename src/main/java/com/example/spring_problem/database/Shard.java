@@ -0,0 +1,497 @@
+package com.example.spring_problem.database;
+
+import com.example.spring_problem.config.DatabaseProperties;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Шард хранилища {@link Database}: независимая часть записей со своим движком хранения, колесом сроков
+ * жизни и политикой вытеснения. Шарды не разделяют ни структур, ни блокировок, поэтому записи в разные
+ * шарды не конкурируют, а цикл удаления каждого шарда запускается отдельной задачей
+ */
+final class Shard {
+    /**
+     * Пустой массив вытесненных ключей
+     */
+    private static final int[] NO_VICTIMS = new int[0];
+
+    /**
+     * Движок хранения записей шарда
+     */
+    private final Store store;
+
+    /**
+     * Источник текущего времени в миллисекундах
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Настройки удаления записей с истекшим временем жизни
+     */
+    private final DatabaseProperties.Expiry expiry;
+
+    /**
+     * Колесо сроков жизни шарда в режиме {@link ExpiryMode#WHEEL}, иначе null
+     */
+    private final ExpiryWheel expiryWheel;
+
+    /**
+     * Общие для всех шардов счётчики удаления записей с истекшим временем жизни
+     */
+    private final ExpiryMetrics expiryMetrics;
+
+    /**
+     * Общий для всех шардов журнал медленных операций
+     */
+    private final SlowOperationLog slowOperations;
+
+    /**
+     * Политика вытеснения записей шарда, null - записи не вытесняются
+     */
+    private final Evictor evictor;
+
+    /**
+     * Индекс записей со временем жизни без обращений
+     */
+    private final IdleExpiry idleExpiry;
+
+    /**
+     * Упорядоченный индекс ключей шарда, null - индекс выключен свойством database.index.enabled
+     */
+    private final KeyIndex keyIndex;
+
+    /**
+     * Суммарная длина записанных в шард данных, по ней оценивается средний объём записи, если объём
+     * не учитывает политика вытеснения
+     */
+    private final LongAdder writtenLength = new LongAdder();
+
+    /**
+     * Число записей данных в шард без политики вытеснения
+     */
+    private final LongAdder writes = new LongAdder();
+
+    /**
+     * Создаёт шард. Шард пуст, если только движок {@link StorageEngine#MAPPED} не восстановил записи из
+     * своего каталога: тогда их сроки жизни регистрируются в колесе, а записи - в политике вытеснения
+     * @param properties настройки хранилища
+     * @param directory каталог движка {@link StorageEngine#MAPPED}, для остальных движков не используется
+     * @param evictor политика вытеснения записей шарда, null - записи не вытесняются
+     * @param clock источник текущего времени в миллисекундах
+     * @param expiryMetrics общие счётчики удаления записей
+     * @param slowOperations общий журнал медленных операций
+     * @param codec общее сжатие данных движков {@link StorageEngine#MAP} и {@link StorageEngine#INT_HASH}
+     */
+    Shard(DatabaseProperties properties, Path directory, Evictor evictor, LongSupplier clock,
+          ExpiryMetrics expiryMetrics, SlowOperationLog slowOperations, ValueCodec codec) {
+        this.clock = clock;
+        this.expiry = properties.getExpiry();
+        this.expiryMetrics = expiryMetrics;
+        this.slowOperations = slowOperations;
+        this.evictor = evictor;
+        this.store = createStore(properties, directory, codec);
+        if (evictor != null) {
+            evictor.bind(store);
+        }
+        this.idleExpiry = new IdleExpiry(store, clock);
+        this.keyIndex = properties.getIndex().isEnabled() ? new KeyIndex() : null;
+        this.expiryWheel = expiry.getMode() == ExpiryMode.WHEEL
+                ? new ExpiryWheel(expiry.getPeriod(), clock.getAsLong())
+                : null;
+        if (store.size() > 0) {
+            store.forEachKey((key, deadline, length) -> {
+                if (keyIndex != null) {
+                    keyIndex.add(key);
+                }
+                if (expiryWheel != null) {
+                    expiryWheel.schedule(key, deadline);
+                }
+                if (evictor == null) {
+                    writtenLength.add(length);
+                    writes.increment();
+                    return;
+                }
+                evictor.recordExisting(key, Evictor.weigh(length));
+            });
+            // Вытеснение удаляет записи из движка, поэтому выполняется после обхода, вне его блокировки
+            if (evictor != null) {
+                evict(evictor.maintain());
+            }
+        }
+    }
+
+    /**
+     * Создаёт движок хранения, заданный свойством database.engine
+     * @param properties настройки хранилища
+     * @param directory каталог движка {@link StorageEngine#MAPPED}
+     * @param codec сжатие данных движков в куче
+     * @return движок хранения
+     */
+    private Store createStore(DatabaseProperties properties, Path directory, ValueCodec codec) {
+        switch (properties.getEngine()) {
+            case MAPPED:
+                return new MappedStore(directory, properties.getMapped().getSegmentSize(),
+                        properties.getMapped().getCompactThreshold(), clock.getAsLong(), this::onExpired);
+            case INT_HASH:
+                return new IntHashStore(this::onExpired, codec);
+            case OFF_HEAP:
+                return new OffHeapStore(properties.getOffHeap().getSlabSize(),
+                        properties.getOffHeap().getDefragmentThreshold(), this::onExpired);
+            default:
+                return new MapStore(this::onExpired, codec);
+        }
+    }
+
+    /**
+     * Получает уведомление движка о записи, удалённой им по истечении времени жизни
+     * @param key значение ключа для хранилища
+     * @param onRead правдивость утверждения о том, что запись удалена при обращении к ней
+     */
+    private void onExpired(int key, boolean onRead) {
+        if (onRead) {
+            expiryMetrics.recordReapedOnRead();
+        }
+        if (evictor != null) {
+            evictor.recordRemoval(key);
+        }
+        idleExpiry.recordRemoval(key);
+    }
+
+    /**
+     * Вставляет запись, регистрирует её срок жизни и, если ёмкость шарда превышена, вытесняет записи
+     * @param key значение ключа для хранилища
+     * @param data данные, хранящиеся в хранилище
+     * @param deadline момент времени, в который время жизни данных истечёт
+     */
+    void put(int key, String data, long deadline) {
+        int[] victims = write(key, data, deadline);
+
+        if (keyIndex != null) {
+            keyIndex.add(key);
+        }
+        idleExpiry.recordRemoval(key);
+        if (expiryWheel != null) {
+            expiryWheel.schedule(key, deadline);
+        }
+        evict(victims);
+    }
+
+    /**
+     * Вставляет запись со временем жизни без обращений: каждое чтение записи переносит момент истечения
+     * её времени жизни на время простоя вперёд
+     * @param key значение ключа для хранилища
+     * @param data данные, хранящиеся в хранилище
+     * @param idle время простоя в миллисекундах
+     * @param currentTimeMillis текущее значение времени
+     */
+    void putIdle(int key, String data, long idle, long currentTimeMillis) {
+        long deadline = currentTimeMillis + idle;
+        int[] victims = write(key, data, deadline);
+
+        if (keyIndex != null) {
+            keyIndex.add(key);
+        }
+        idleExpiry.recordWrite(key, idle, deadline);
+        if (expiryWheel != null) {
+            expiryWheel.schedule(key, deadline);
+        }
+        evict(victims);
+    }
+
+    /**
+     * Вставляет запись в движок. С политикой вытеснения запись вставляется под её блокировкой вместе с
+     * вытеснением, без политики объём данных учитывается в средней длине данных
+     * @param key значение ключа для хранилища
+     * @param data данные, хранящиеся в хранилище
+     * @param deadline момент времени, в который время жизни данных истечёт
+     * @return ключи записей, вытесненных из движка
+     */
+    private int[] write(int key, String data, long deadline) {
+        if (evictor != null) {
+            return evictor.write(key, data, deadline);
+        }
+        store.put(key, data, deadline);
+        writtenLength.add(data.length());
+        writes.increment();
+        return NO_VICTIMS;
+    }
+
+    /**
+     * Возвращает данные по ключу, если их время жизни не истекло, и учитывает обращение к записи
+     * @param key значение ключа для хранилища
+     * @param currentTimeMillis текущее значение времени
+     * @return данные либо null, если ключ отсутствует или время жизни данных истекло
+     */
+    String get(int key, long currentTimeMillis) {
+        String data = store.get(key, currentTimeMillis);
+
+        if (data != null) {
+            if (evictor != null) {
+                evictor.recordAccess(key);
+            }
+            idleExpiry.recordAccess(key);
+        }
+        return data;
+    }
+
+    /**
+     * Возвращает данные по ключу в том виде, в котором они хранятся, и учитывает обращение к записи
+     * @param key значение ключа для хранилища
+     * @param currentTimeMillis текущее значение времени
+     * @return String, сжатые в формате zlib byte[] либо null, если ключ отсутствует или время жизни
+     * данных истекло
+     */
+    Object getStored(int key, long currentTimeMillis) {
+        Object data = store.getStored(key, currentTimeMillis);
+
+        if (data != null) {
+            if (evictor != null) {
+                evictor.recordAccess(key);
+            }
+            idleExpiry.recordAccess(key);
+        }
+        return data;
+    }
+
+    /**
+     * Возвращает момент истечения времени жизни записи, не учитывая обращение к ней
+     * @param key значение ключа для хранилища
+     * @return момент истечения времени жизни, 0 - ключ отсутствует
+     */
+    long deadline(int key) {
+        return store.deadline(key);
+    }
+
+    /**
+     * Удаляет запись по ключу и возвращает её данные, если их время жизни не истекло
+     * @param key значение ключа для хранилища
+     * @param currentTimeMillis текущее значение времени
+     * @return удалённые данные либо null, если ключ отсутствует или время жизни данных истекло
+     */
+    String remove(int key, long currentTimeMillis) {
+        String data = store.remove(key, currentTimeMillis);
+
+        unindex(key);
+        // Истекшую запись учитывает onExpired, отсутствующую учитывать не нужно: промах не создаёт объектов.
+        // Узел истекшей записи колесо сроков жизни и так удалит при ближайшем продвижении
+        if (data != null) {
+            unschedule(key);
+            if (evictor != null) {
+                evictor.recordRemoval(key);
+            }
+            idleExpiry.recordRemoval(key);
+        }
+        return data;
+    }
+
+    /**
+     * Исключает из индексов шарда записи, которые политика вытеснения уже удалила из движка. Вызывается
+     * вне блокировки политики
+     * @param victims ключи вытесненных записей
+     */
+    private void evict(int[] victims) {
+        for (int victim : victims) {
+            idleExpiry.recordRemoval(victim);
+            unindex(victim);
+            unschedule(victim);
+        }
+    }
+
+    /**
+     * Отменяет регистрацию ключа в колесе сроков жизни после удаления записи из движка. Если запись
+     * с этим ключом успела появиться снова, ключ регистрируется с её сроком, как в {@link #unindex(int)}
+     * @param key значение ключа для хранилища
+     */
+    private void unschedule(int key) {
+        if (expiryWheel == null) {
+            return;
+        }
+        expiryWheel.cancel(key);
+        long deadline = store.deadline(key);
+        if (deadline != 0) {
+            expiryWheel.schedule(key, deadline);
+        }
+    }
+
+    /**
+     * Удаляет ключ из упорядоченного индекса после удаления записи из движка. Если запись с этим ключом
+     * успела появиться снова, ключ возвращается в индекс: запись добавляет ключ после вставки в движок,
+     * поэтому при любом порядке вставки и удаления ключ живой записи остаётся в индексе
+     * @param key значение ключа для хранилища
+     */
+    private void unindex(int key) {
+        if (keyIndex == null) {
+            return;
+        }
+        keyIndex.remove(key);
+        if (store.deadline(key) != 0) {
+            keyIndex.add(key);
+        }
+    }
+
+    /**
+     * Цикл удаления записей шарда с истекшим временем жизни, в том числе записей, время простоя которых
+     * истекло, затем обслуживание политики вытеснения и движка
+     * @return число удалённых записей
+     * @see Database#update()
+     */
+    int update() {
+        ExpirySweepEvent event = new ExpirySweepEvent();
+        long start = System.nanoTime();
+        long[] counters = new long[2];
+
+        event.begin();
+
+        // Записи со временем простоя обрабатываются первыми: чтения, ещё не применённые к движку, переносят
+        // момент истечения, и колесо или выборка не удаляют прочитанную запись по прежнему сроку
+        counters[0] = idleExpiry.expire(clock.getAsLong(), key -> {
+            counters[1]++;
+            if (evictor != null) {
+                evictor.recordRemoval(key);
+            }
+            unindex(key);
+        });
+        if (expiryWheel != null) {
+            counters[0] += expiryWheel.advance(clock.getAsLong(), (key, deadline) -> {
+                if (store.expire(key, deadline)) {
+                    counters[1]++;
+                    if (evictor != null) {
+                        evictor.recordRemoval(key);
+                    }
+                    unindex(key);
+                }
+            });
+        } else {
+            sample(start, counters);
+        }
+
+        long duration = System.nanoTime() - start;
+        event.end();
+        expiryMetrics.recordCycle(counters[0], counters[1], duration);
+        if (event.shouldCommit()) {
+            event.keysScanned = counters[0];
+            event.keysRemoved = counters[1];
+            event.commit();
+        }
+        if (slowOperations.isSlow(duration)) {
+            slowOperations.record("SWEEP", "scanned " + counters[0] + ", removed " + counters[1], duration);
+        }
+        if (evictor != null) {
+            evict(evictor.maintain());
+        }
+        store.defragment();
+        return (int) counters[1];
+    }
+
+    /**
+     * Цикл удаления в режиме {@link ExpiryMode#SAMPLED}. За проход просматривается database.expiry.sample-size
+     * записей и удаляются истекшие. Проход повторяется, пока доля истекших в выборке превышает
+     * database.expiry.expired-threshold и не исчерпано время database.expiry.time-budget
+     * @param start момент начала цикла в наносекундах
+     * @param counters счётчики просмотренных и удалённых записей
+     */
+    private void sample(long start, long[] counters) {
+        long budgetEnd = start + TimeUnit.MILLISECONDS.toNanos(expiry.getTimeBudget());
+        int expired;
+        int sampleSize;
+
+        do {
+            sampleSize = Math.min(expiry.getSampleSize(), store.size());
+            expired = store.sampleExpired(sampleSize, clock.getAsLong());
+            counters[0] += sampleSize;
+            counters[1] += expired;
+        } while (sampleSize > 0 && expired > sampleSize * expiry.getExpiredThreshold()
+                && System.nanoTime() < budgetEnd);
+    }
+
+    /**
+     * Возвращает данные по ключу, если их время жизни не истекло, не учитывая обращение к записи: обход
+     * диапазона не продлевает время простоя и не влияет на вытеснение. Ключ записи, которой больше нет
+     * в движке, удаляется из упорядоченного индекса
+     * @param key значение ключа для хранилища
+     * @param currentTimeMillis текущее значение времени
+     * @return данные либо null, если ключ отсутствует или время жизни данных истекло
+     */
+    String peek(int key, long currentTimeMillis) {
+        String data = store.get(key, currentTimeMillis);
+
+        if (data == null && keyIndex != null && store.deadline(key) == 0) {
+            unindex(key);
+        }
+        return data;
+    }
+
+    /**
+     * Возвращает курсор упорядоченного индекса ключей шарда
+     * @param from наименьший ключ обхода
+     * @return курсор, null - индекс выключен
+     */
+    KeyIndex.Cursor keys(int from) {
+        return keyIndex != null ? keyIndex.from(from) : null;
+    }
+
+    /**
+     * Обходит все записи шарда
+     * @param visitor обработчик записей
+     */
+    void forEach(Store.EntryVisitor visitor) {
+        store.forEach(visitor);
+    }
+
+    /**
+     * Возвращает время простоя записей со временем жизни без обращений
+     * @return время простоя в миллисекундах по ключу
+     */
+    Map<Integer,Long> idleDurations() {
+        return idleExpiry.idleDurations();
+    }
+
+    /**
+     * Возвращает число записей в шарде, включая ещё не удалённые записи с истекшим временем жизни
+     * @return число записей
+     */
+    int size() {
+        return store.size();
+    }
+
+    /**
+     * Оценивает объём записей шарда той же мерой, что и политика вытеснения. Без политики число записей
+     * умножается на объём записи со средней длиной записанных в шард данных
+     * @return оценка объёма в байтах
+     */
+    long estimatedBytes() {
+        if (evictor != null) {
+            return evictor.weightedBytes();
+        }
+        long count = writes.sum();
+        return store.size() * Evictor.weigh(count == 0 ? 0 : (int) (writtenLength.sum() / count));
+    }
+
+    /**
+     * Удаляет все записи шарда
+     */
+    void clear() {
+        store.clear();
+        idleExpiry.clear();
+        if (keyIndex != null) {
+            keyIndex.clear();
+        }
+        if (expiryWheel != null) {
+            expiryWheel.clear();
+        }
+        if (evictor != null) {
+            evictor.clear();
+        }
+    }
+
+    /**
+     * Освобождает ресурсы движка хранения шарда, после вызова шард не используется
+     */
+    void close() {
+        store.close();
+    }
+}
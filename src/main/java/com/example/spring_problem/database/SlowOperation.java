@@ -0,0 +1,83 @@
+package com.example.spring_problem.database;
+
+/**
+ * Запись журнала медленных операций {@link SlowOperationLog}
+ */
+public class SlowOperation {
+    /**
+     * Операция: GET, PUT, REMOVE, SWEEP, DUMP или LOAD
+     */
+    private final String operation;
+    /**
+     * Ключ операции, null - операция не над одним ключом
+     */
+    private final Integer key;
+    /**
+     * Подробности операции, null - их нет
+     */
+    private final String detail;
+    /**
+     * Длительность операции в микросекундах
+     */
+    private final long durationMicros;
+    /**
+     * Момент завершения операции в миллисекундах от начала эпохи
+     */
+    private final long finishedAt;
+
+    /**
+     * Создаёт запись журнала
+     * @param operation операция
+     * @param key ключ операции, null - операция не над одним ключом
+     * @param detail подробности операции, null - их нет
+     * @param durationMicros длительность операции в микросекундах
+     * @param finishedAt момент завершения операции в миллисекундах от начала эпохи
+     */
+    public SlowOperation(String operation, Integer key, String detail, long durationMicros, long finishedAt) {
+        this.operation = operation;
+        this.key = key;
+        this.detail = detail;
+        this.durationMicros = durationMicros;
+        this.finishedAt = finishedAt;
+    }
+
+    /**
+     * Метод, возвращающий операцию
+     * @return операция
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Метод, возвращающий ключ операции
+     * @return ключ, null - операция не над одним ключом
+     */
+    public Integer getKey() {
+        return key;
+    }
+
+    /**
+     * Метод, возвращающий подробности операции
+     * @return подробности, null - их нет
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Метод, возвращающий длительность операции
+     * @return длительность в микросекундах
+     */
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    /**
+     * Метод, возвращающий момент завершения операции
+     * @return момент в миллисекундах от начала эпохи
+     */
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+}
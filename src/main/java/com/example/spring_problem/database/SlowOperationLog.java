@@ -0,0 +1,109 @@
+package com.example.spring_problem.database;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Журнал медленных операций: кольцевой буфер последних операций дольше порога database.slow-log.threshold-micros.
+ * Запись не блокируется, при заполнении буфера новые операции вытесняют самые старые. Операции быстрее
+ * порога только сравниваются с ним и не создают объектов
+ */
+public class SlowOperationLog {
+    /**
+     * Порог длительности в наносекундах, 0 - журнал отключён
+     */
+    private final long thresholdNanos;
+
+    /**
+     * Кольцевой буфер записей
+     */
+    private final AtomicReferenceArray<SlowOperation> entries;
+
+    /**
+     * Номер следующей записи
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * Создаёт журнал
+     * @param thresholdMicros порог длительности в микросекундах, 0 - журнал отключён
+     * @param capacity число хранимых записей
+     */
+    public SlowOperationLog(long thresholdMicros, int capacity) {
+        if (thresholdMicros < 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Slow log threshold must not be negative and capacity must be positive");
+        }
+        this.thresholdNanos = TimeUnit.MICROSECONDS.toNanos(thresholdMicros);
+        this.entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Метод, возвращающий признак работы журнала
+     * @return правдивость утверждения о том, что журнал записывает операции
+     */
+    public boolean isEnabled() {
+        return thresholdNanos > 0;
+    }
+
+    /**
+     * Метод, сравнивающий длительность операции с порогом, чтобы подробности операции собирались только
+     * для медленных операций
+     * @param durationNanos длительность в наносекундах
+     * @return правдивость утверждения о том, что операция попадёт в журнал
+     */
+    public boolean isSlow(long durationNanos) {
+        return isEnabled() && durationNanos >= thresholdNanos;
+    }
+
+    /**
+     * Записывает операцию над ключом, если она длилась не меньше порога
+     * @param operation операция
+     * @param key ключ операции
+     * @param durationNanos длительность в наносекундах
+     */
+    void record(String operation, int key, long durationNanos) {
+        if (isSlow(durationNanos)) {
+            add(new SlowOperation(operation, key, null, TimeUnit.NANOSECONDS.toMicros(durationNanos),
+                    System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Записывает операцию над всем хранилищем или шардом, если она длилась не меньше порога. Подробности
+     * стоит собирать после проверки {@link #isSlow(long)}
+     * @param operation операция
+     * @param detail подробности операции
+     * @param durationNanos длительность в наносекундах
+     */
+    public void record(String operation, String detail, long durationNanos) {
+        if (isSlow(durationNanos)) {
+            add(new SlowOperation(operation, null, detail, TimeUnit.NANOSECONDS.toMicros(durationNanos),
+                    System.currentTimeMillis()));
+        }
+    }
+
+    private void add(SlowOperation operation) {
+        entries.set((int) (next.getAndIncrement() % entries.length()), operation);
+    }
+
+    /**
+     * Метод, возвращающий хранимые медленные операции, начиная с самой долгой
+     * @return медленные операции
+     */
+    public List<SlowOperation> getSlowest() {
+        List<SlowOperation> slowest = new ArrayList<>(entries.length());
+
+        for (int i = 0; i < entries.length(); i++) {
+            SlowOperation operation = entries.get(i);
+            if (operation != null) {
+                slowest.add(operation);
+            }
+        }
+        slowest.sort(Comparator.comparingLong(SlowOperation::getDurationMicros).reversed());
+        return slowest;
+    }
+}
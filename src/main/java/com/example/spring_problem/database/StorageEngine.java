@@ -0,0 +1,30 @@
+package com.example.spring_problem.database;
+
+/**
+ * Движок хранения записей хранилища, задаётся свойством database.engine
+ */
+public enum StorageEngine {
+    /**
+     * Записи хранятся в ConcurrentHashMap, ключ упаковывается в Integer, данные и срок жизни - в объект записи
+     * @see MapStore
+     */
+    MAP,
+    /**
+     * Записи хранятся в хеш-таблице с открытой адресацией по примитивным int ключам, данные и сроки
+     * жизни лежат в параллельных массивах, чтение не создаёт объектов
+     * @see IntHashStore
+     */
+    INT_HASH,
+    /**
+     * Индекс устроен как в {@link #INT_HASH}, а данные в кодировке UTF-8 хранятся вне кучи, в прямых
+     * буферах, поэтому объём данных не влияет на сборку мусора
+     * @see OffHeapStore
+     */
+    OFF_HEAP,
+    /**
+     * Записи дописываются в файлы сегментов, отображённые в память, в куче хранится только индекс по
+     * int ключам. После перезапуска записи не теряются: индекс восстанавливается по сегментам
+     * @see MappedStore
+     */
+    MAPPED
+}
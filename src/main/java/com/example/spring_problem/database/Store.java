@@ -0,0 +1,158 @@
+package com.example.spring_problem.database;
+
+/**
+ * Движок хранения записей хранилища {@link Database}. Запись состоит из численного ключа, данных и
+ * момента времени, в который время жизни данных истечёт. Все методы потокобезопасны
+ */
+public interface Store {
+    /**
+     * Обработчик записей при обходе движка
+     */
+    interface EntryVisitor {
+        /**
+         * Вызывается для каждой записи движка
+         * @param key значение ключа для хранилища
+         * @param data данные, хранящиеся по ключу
+         * @param deadline момент времени, в который время жизни данных истечёт
+         */
+        void visit(int key, String data, long deadline);
+    }
+
+    /**
+     * Обработчик ключей при обходе движка без чтения данных
+     */
+    interface KeyVisitor {
+        /**
+         * Вызывается для каждой записи движка
+         * @param key значение ключа для хранилища
+         * @param deadline момент времени, в который время жизни данных истечёт
+         * @param length длина данных
+         */
+        void visit(int key, long deadline, int length);
+    }
+
+    /**
+     * Получатель уведомлений о записях, которые движок удалил сам из-за истечения времени жизни.
+     * Вызывается, в том числе, под блокировками движка, поэтому не должен блокироваться
+     */
+    interface ExpiryListener {
+        /**
+         * Вызывается для каждой записи, удалённой движком по истечении времени жизни
+         * @param key значение ключа для хранилища
+         * @param onRead правдивость утверждения о том, что запись удалена при обращении к ней, а не выборкой
+         */
+        void expired(int key, boolean onRead);
+    }
+
+    /**
+     * Возвращает данные по ключу, если их время жизни не истекло. Запись с истекшим временем жизни
+     * удаляется из движка
+     * @param key значение ключа для хранилища
+     * @param currentTimeMillis текущее значение времени
+     * @return возвращает данные либо null, если ключ отсутствует или время жизни данных истекло
+     */
+    String get(int key, long currentTimeMillis);
+
+    /**
+     * Возвращает данные по ключу в том виде, в котором они хранятся: строкой или сжатыми, без распаковки.
+     * По умолчанию движок не сжимает данные и возвращает их строкой
+     * @param key значение ключа для хранилища
+     * @param currentTimeMillis текущее значение времени
+     * @return String, сжатые в формате zlib byte[] либо null, если ключ отсутствует или время жизни
+     * данных истекло
+     */
+    default Object getStored(int key, long currentTimeMillis) {
+        return get(key, currentTimeMillis);
+    }
+
+    /**
+     * Возвращает момент истечения времени жизни записи, не учитывая обращение к ней
+     * @param key значение ключа для хранилища
+     * @return момент истечения времени жизни, 0 - ключ отсутствует
+     */
+    long deadline(int key);
+
+    /**
+     * Помещает данные по ключу, заменяя хранящиеся ранее
+     * @param key значение ключа для хранилища
+     * @param data данные для хранилища
+     * @param deadline момент времени, в который время жизни данных истечёт
+     */
+    void put(int key, String data, long deadline);
+
+    /**
+     * Удаляет запись по ключу и возвращает её данные, если их время жизни не истекло
+     * @param key значение ключа для хранилища
+     * @param currentTimeMillis текущее значение времени
+     * @return возвращает удалённые данные либо null, если ключ отсутствует или время жизни данных истекло
+     */
+    String remove(int key, long currentTimeMillis);
+
+    /**
+     * Удаляет запись по ключу, только если её время жизни истекает в переданный момент, то есть
+     * запись не была заменена после регистрации срока
+     * @param key значение ключа для хранилища
+     * @param deadline момент времени, с которым запись была зарегистрирована
+     * @return правдивость утверждения о том, что запись была удалена
+     */
+    boolean expire(int key, long deadline);
+
+    /**
+     * Переносит момент истечения времени жизни записи, только если он равен переданному, то есть запись
+     * не была заменена или удалена после того, как этот момент был прочитан
+     * @param key значение ключа для хранилища
+     * @param deadline ожидаемый момент истечения времени жизни
+     * @param newDeadline новый момент истечения времени жизни
+     * @return правдивость утверждения о том, что момент был перенесён
+     */
+    boolean touch(int key, long deadline, long newDeadline);
+
+    /**
+     * Просматривает очередную выборку записей, продолжая с места, на котором остановилась
+     * предыдущая выборка, и удаляет записи с истекшим временем жизни
+     * @param count число записей в выборке
+     * @param currentTimeMillis текущее значение времени
+     * @return число удалённых записей
+     */
+    int sampleExpired(int count, long currentTimeMillis);
+
+    /**
+     * Обходит все записи движка. Обход слабо согласован: изменения, сделанные во время обхода,
+     * могут как попасть, так и не попасть в него
+     * @param visitor обработчик записей
+     */
+    void forEach(EntryVisitor visitor);
+
+    /**
+     * Обходит ключи всех записей движка. По умолчанию обходит записи через {@link #forEach(EntryVisitor)},
+     * движки, хранящие данные вне кучи, обходят только индекс, не читая данные
+     * @param visitor обработчик ключей
+     */
+    default void forEachKey(KeyVisitor visitor) {
+        forEach((key, data, deadline) -> visitor.visit(key, deadline, data.length()));
+    }
+
+    /**
+     * Возвращает число записей, включая ещё не удалённые записи с истекшим временем жизни
+     * @return число записей
+     */
+    int size();
+
+    /**
+     * Удаляет все записи
+     */
+    void clear();
+
+    /**
+     * Выполняет фоновое обслуживание движка, например дефрагментацию памяти. Вызывается циклом
+     * удаления записей, по умолчанию ничего не делает
+     */
+    default void defragment() {
+    }
+
+    /**
+     * Освобождает ресурсы движка, после вызова движок не используется. По умолчанию ничего не делает
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.spring_problem.database;
+
+/**
+ * Политика вытеснения W-TinyLFU. Новые ключи попадают в небольшое окно LRU ({@value #WINDOW_PERCENT}%
+ * ёмкости), вытесненный из окна ключ становится кандидатом в основную область и допускается в неё,
+ * только если по оценке {@link FrequencySketch} к нему обращались чаще, чем к жертве - самому старому
+ * ключу испытательной очереди. Основная область - сегментированный LRU: испытательная очередь и
+ * защищённая очередь ({@value #PROTECTED_PERCENT}% основной области), в которую ключ переходит при
+ * повторном обращении. Так разовые обращения при сканировании не вытесняют часто используемые ключи
+ */
+final class TinyLfuEvictor extends Evictor {
+    /**
+     * {@value #WINDOW_PERCENT} доля окна от ёмкости в процентах
+     */
+    private static final int WINDOW_PERCENT = 1;
+    /**
+     * {@value #PROTECTED_PERCENT} доля защищённой очереди от основной области в процентах
+     */
+    private static final int PROTECTED_PERCENT = 80;
+
+    /**
+     * Окно новых ключей
+     */
+    private final AccessQueue window = new AccessQueue();
+    /**
+     * Испытательная очередь основной области
+     */
+    private final AccessQueue probation = new AccessQueue();
+    /**
+     * Защищённая очередь основной области
+     */
+    private final AccessQueue protectedQueue = new AccessQueue();
+    /**
+     * Оценка частоты обращений к ключам
+     */
+    private final FrequencySketch sketch = new FrequencySketch();
+    /**
+     * Максимальный вес окна
+     */
+    private final long windowMax;
+    /**
+     * Максимальный вес защищённой очереди
+     */
+    private final long protectedMax;
+
+    /**
+     * Создаёт политику с заданной ёмкостью
+     * @param maxEntries максимальное число записей, 0 - без ограничения
+     * @param maxBytes максимальный оценочный объём записей в байтах, 0 - без ограничения
+     */
+    TinyLfuEvictor(long maxEntries, long maxBytes) {
+        super(maxEntries, maxBytes);
+        long capacity = capacity();
+        this.windowMax = Math.max(1, capacity * WINDOW_PERCENT / 100);
+        this.protectedMax = (capacity - windowMax) * PROTECTED_PERCENT / 100;
+        sketch.ensureCapacity(maxEntries > 0 ? maxEntries : 16);
+    }
+
+    @Override
+    protected void onInsert(Node node) {
+        sketch.ensureCapacity(size());
+        sketch.increment(node.key);
+        window.addLast(node);
+    }
+
+    @Override
+    protected void onAccess(Node node) {
+        sketch.increment(node.key);
+
+        if (node.queue == probation) {
+            probation.remove(node);
+            protectedQueue.addLast(node);
+            while (protectedQueue.weight > protectedMax && protectedQueue.peekFirst() != node) {
+                Node demoted = protectedQueue.peekFirst();
+                protectedQueue.remove(demoted);
+                probation.addLast(demoted);
+            }
+        } else if (node.queue != null) {
+            node.queue.moveToEnd(node);
+        }
+    }
+
+    @Override
+    protected void onRemove(Node node) {
+        if (node.queue != null) {
+            node.queue.remove(node);
+        }
+    }
+
+    @Override
+    protected void onWeightChange(Node node, long weight) {
+        if (node.queue != null) {
+            node.queue.weight += weight - node.weight;
+        }
+        node.weight = weight;
+    }
+
+    /**
+     * Переносит переполнение окна в испытательную очередь и выбирает между последним перенесённым
+     * кандидатом и самым старым ключом испытательной очереди того, к кому обращались реже
+     * @return узел вытесняемого ключа
+     */
+    @Override
+    protected Node selectVictim() {
+        Node candidate = null;
+        while (window.weight > windowMax && window.peekFirst() != null) {
+            candidate = window.peekFirst();
+            window.remove(candidate);
+            probation.addLast(candidate);
+        }
+
+        Node victim = probation.peekFirst();
+        if (victim == candidate) {
+            victim = protectedQueue.peekFirst();
+        }
+        if (victim == null) {
+            victim = window.peekFirst();
+        }
+        if (candidate == null || victim == null) {
+            return victim != null ? victim : candidate;
+        }
+        return sketch.frequency(candidate.key) > sketch.frequency(victim.key) ? victim : candidate;
+    }
+
+    @Override
+    protected void onClear() {
+        sketch.clear();
+    }
+}
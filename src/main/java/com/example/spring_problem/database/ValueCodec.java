@@ -0,0 +1,173 @@
+package com.example.spring_problem.database;
+
+import com.example.spring_problem.config.DatabaseProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатие данных записей для движков, хранящих данные в куче. Данные не короче database.compression.threshold
+ * символов сжимаются {@link Deflater} в формате zlib и хранятся как byte[], остальные - как String. Формат
+ * zlib совпадает с HTTP кодированием deflate, поэтому сжатые данные можно отдать клиенту без распаковки.
+ * Данные, которые сжатие уменьшает меньше чем на восьмую часть, хранятся несжатыми. Deflater, Inflater и
+ * буфер распаковки свои у каждого потока и переиспользуются, поэтому сжатие не создаёт объектов, кроме
+ * результата
+ */
+final class ValueCodec {
+    /**
+     * Наибольший размер буфера распаковки, который остаётся у потока после распаковки
+     */
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    /**
+     * Наименьшая длина сжимаемых данных в символах, 0 - сжатие выключено
+     */
+    private final int threshold;
+
+    /**
+     * Уровень сжатия Deflater
+     */
+    private final int level;
+
+    /**
+     * Счётчики сжатия
+     */
+    private final CompressionMetrics metrics;
+
+    /**
+     * Объекты сжатия и распаковки потока
+     */
+    private final ThreadLocal<Codec> codecs;
+
+    /**
+     * Создаёт сжатие по настройкам хранилища
+     * @param properties настройки сжатия
+     * @param metrics счётчики сжатия
+     */
+    ValueCodec(DatabaseProperties.Compression properties, CompressionMetrics metrics) {
+        this.threshold = properties.isEnabled() ? Math.max(1, properties.getThreshold()) : 0;
+        this.level = properties.getLevel();
+        this.metrics = metrics;
+        this.codecs = ThreadLocal.withInitial(() -> new Codec(level));
+    }
+
+    /**
+     * Возвращает данные в том виде, в котором их нужно хранить
+     * @param data данные
+     * @return сжатые данные byte[] либо сами данные, если они короче порога или плохо сжимаются
+     */
+    Object encode(String data) {
+        if (threshold == 0 || data.length() < threshold) {
+            return data;
+        }
+        long start = System.nanoTime();
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        Codec codec = codecs.get();
+        Deflater deflater = codec.deflater;
+
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        try {
+            // Результат, не уместившийся в 7/8 исходного объёма, не нужен, поэтому буфер не увеличивается
+            byte[] buffer = codec.buffer(bytes.length - bytes.length / 8);
+            int length = deflater.deflate(buffer, 0, bytes.length - bytes.length / 8);
+
+            if (!deflater.finished()) {
+                metrics.recordSkipped(System.nanoTime() - start);
+                return data;
+            }
+            byte[] compressed = Arrays.copyOf(buffer, length);
+            metrics.recordCompressed(bytes.length, length, System.nanoTime() - start);
+            return compressed;
+        } finally {
+            codec.release();
+        }
+    }
+
+    /**
+     * Возвращает данные из хранимого вида
+     * @param value хранимые данные: String или сжатые byte[], null - данных нет
+     * @return данные либо null
+     * @throws IllegalStateException если сжатые данные повреждены
+     */
+    String decode(Object value) {
+        if (!(value instanceof byte[])) {
+            return (String) value;
+        }
+        long start = System.nanoTime();
+        byte[] compressed = (byte[]) value;
+        Codec codec = codecs.get();
+        Inflater inflater = codec.inflater;
+        byte[] buffer = codec.buffer(compressed.length * 4);
+        int length = 0;
+
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = codec.grow();
+                }
+                int inflated = inflater.inflate(buffer, length, buffer.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed value");
+                }
+                length += inflated;
+            }
+            String data = new String(buffer, 0, length, StandardCharsets.UTF_8);
+            metrics.recordDecompressed(System.nanoTime() - start);
+            return data;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed value", e);
+        } finally {
+            codec.release();
+        }
+    }
+
+    /**
+     * Объекты сжатия и распаковки одного потока
+     */
+    private static final class Codec {
+        private final Deflater deflater;
+        private final Inflater inflater = new Inflater();
+        private byte[] buffer = new byte[4096];
+
+        private Codec(int level) {
+            deflater = new Deflater(level);
+        }
+
+        /**
+         * Возвращает буфер не меньше заданного размера
+         * @param size размер в байтах
+         * @return буфер потока
+         */
+        private byte[] buffer(int size) {
+            if (buffer.length < size) {
+                buffer = new byte[size];
+            }
+            return buffer;
+        }
+
+        /**
+         * Удваивает буфер, сохраняя его содержимое
+         * @return новый буфер
+         */
+        private byte[] grow() {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            return buffer;
+        }
+
+        /**
+         * Освобождает слишком большой буфер, чтобы поток не удерживал память после редких больших данных
+         */
+        private void release() {
+            if (buffer.length > MAX_RETAINED_BUFFER) {
+                buffer = new byte[4096];
+            }
+        }
+    }
+}
@@ -0,0 +1,644 @@
+package com.example.spring_problem.database;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал изменений хранилища, дописываемый в конец файла. Изменения попадают в неблокирующую очередь, из
+ * которой их пачками забирает отдельный поток записи, поэтому изменяющий хранилище поток не выполняет
+ * ввода-вывода и при политике {@link FsyncPolicy#ALWAYS} только ожидает общего для пачки сброса на диск.
+ * Запись журнала: длина содержимого (int), контрольная сумма CRC32C содержимого (int), содержимое: тип
+ * операции (byte), ключ (int), момент истечения времени жизни (long), данные в UTF-8. Момент истечения
+ * абсолютный, поэтому при воспроизведении истекшие записи пропускаются. Для записей со временем жизни без
+ * обращений вместо момента истечения хранится время простоя, при воспроизведении оно отсчитывается заново. Когда журнал вырастает вдвое
+ * относительно последней перезаписи, он перезаписывается текущим содержимым хранилища. Содержимое записывает
+ * отдельный поток, а поток записи тем временем продолжает дописывать изменения в прежний журнал и затем
+ * переносит их в конец нового
+ */
+public final class WriteAheadLog implements Closeable {
+    /**
+     * Операция вставки записи
+     */
+    static final byte PUT = 1;
+    /**
+     * Операция удаления записи
+     */
+    static final byte REMOVE = 2;
+    /**
+     * Операция удаления всех записей
+     */
+    static final byte CLEAR = 3;
+    /**
+     * Операция вставки записи со временем жизни без обращений, вместо момента истечения - время простоя
+     */
+    static final byte PUT_IDLE = 4;
+
+    /**
+     * Длина заголовка записи журнала: длина и контрольная сумма содержимого
+     */
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+    /**
+     * Длина содержимого записи журнала без данных
+     */
+    private static final int PAYLOAD_HEADER = 1 + Integer.BYTES + Long.BYTES;
+    /**
+     * Размер буфера, накопив который поток записи записывает его в файл, не дожидаясь конца пачки
+     */
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /**
+     * Отметка в очереди, по которой поток записи перезаписывает журнал
+     */
+    private static final Record REWRITE = new Record(CLEAR, 0, 0L, null);
+
+    /**
+     * Путь к файлу журнала
+     */
+    private final Path path;
+    /**
+     * Политика сброса журнала на диск
+     */
+    private final FsyncPolicy fsyncPolicy;
+    /**
+     * Период сброса журнала на диск при политике {@link FsyncPolicy#INTERVAL} в наносекундах
+     */
+    private final long fsyncIntervalNanos;
+    /**
+     * Минимальный размер журнала в байтах, начиная с которого он перезаписывается
+     */
+    private final long rewriteMinSize;
+    /**
+     * Источник текущего содержимого хранилища для перезаписи журнала
+     */
+    private final Source source;
+    /**
+     * Очередь ещё не записанных изменений
+     */
+    private final ConcurrentLinkedQueue<Record> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * Правдивость утверждения о том, что поток записи ожидает новых изменений
+     */
+    private final AtomicBoolean sleeping = new AtomicBoolean();
+    /**
+     * Поток записи
+     */
+    private final Thread writer;
+    /**
+     * Файл журнала, используется только потоком записи
+     */
+    private LogFile file;
+    /**
+     * Размер содержимого хранилища, записанного последней перезаписью журнала
+     */
+    private long rewrittenSize;
+    /**
+     * Выполняющаяся перезапись журнала, null - перезапись не выполняется. Используется только потоком записи
+     */
+    private Rewrite rewriting;
+    /**
+     * Правдивость утверждения о том, что перезапись запрошена {@link #rewrite()}, но ещё не начата.
+     * Используется только потоком записи
+     */
+    private boolean rewriteRequested;
+    /**
+     * Ошибка записи журнала, после неё изменения не принимаются
+     */
+    private volatile IOException failure;
+    /**
+     * Правдивость утверждения о том, что журнал закрывается
+     */
+    private volatile boolean closed;
+
+    /**
+     * Открывает журнал для дописывания и запускает поток записи. Повреждённый или недописанный хвост
+     * журнала, оставшийся после сбоя, должен быть отрезан заранее, см. {@link #replay(Path, Replayer)}
+     * @param path путь к файлу журнала
+     * @param fsyncPolicy политика сброса журнала на диск
+     * @param fsyncIntervalMillis период сброса при политике {@link FsyncPolicy#INTERVAL} в миллисекундах
+     * @param rewriteMinSize минимальный размер журнала в байтах, начиная с которого он перезаписывается
+     * @param source источник текущего содержимого хранилища для перезаписи журнала
+     * @throws IOException если файл не удалось открыть
+     */
+    WriteAheadLog(Path path, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, long rewriteMinSize,
+                  Source source) throws IOException {
+        this.path = path;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, fsyncIntervalMillis));
+        this.rewriteMinSize = rewriteMinSize;
+        this.source = source;
+        this.file = new LogFile(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+        this.rewrittenSize = file.size;
+
+        this.writer = new Thread(this::run, "write-ahead-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Добавляет изменение в очередь записи. Не выполняет ввода-вывода и не блокируется
+     * @param op тип операции {@link #PUT}, {@link #PUT_IDLE}, {@link #REMOVE} или {@link #CLEAR}
+     * @param key значение ключа для хранилища
+     * @param deadline момент времени, в который время жизни данных истечёт, для {@link #PUT_IDLE} - время простоя
+     * @param data данные либо null для операций без данных
+     * @return изменение, сброса которого можно дождаться {@link #await(Record)}
+     * @throws UncheckedIOException если запись журнала ранее завершилась ошибкой
+     */
+    Record append(byte op, int key, long deadline, String data) {
+        check();
+        Record record = new Record(op, key, deadline, data);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            record.waiter = Thread.currentThread();
+        }
+        queue.offer(record);
+        wakeUp();
+        return record;
+    }
+
+    /**
+     * Проверяет, что журнал принимает изменения. Вызывается до применения изменения к хранилищу, чтобы
+     * после ошибки журнала изменения не становились видны без записи в него
+     * @throws UncheckedIOException если запись журнала ранее завершилась ошибкой
+     */
+    void check() {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failed);
+        }
+    }
+
+    /**
+     * При политике {@link FsyncPolicy#ALWAYS} ожидает, пока изменение не будет сброшено на диск,
+     * при остальных политиках возвращается сразу
+     * @param record изменение
+     * @throws UncheckedIOException если запись журнала завершилась ошибкой
+     */
+    void await(Record record) {
+        if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+        while (!record.durable) {
+            LockSupport.park(this);
+        }
+        IOException failed = failure;
+        if (record.failed && failed != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failed);
+        }
+    }
+
+    /**
+     * Просит поток записи перезаписать журнал текущим содержимым хранилища после уже добавленных изменений.
+     * Перезапись начинается после сброса текущей пачки и не задерживает её
+     */
+    void rewrite() {
+        queue.offer(REWRITE);
+        wakeUp();
+    }
+
+    /**
+     * Записывает оставшиеся изменения, сбрасывает журнал на диск и останавливает поток записи
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void wakeUp() {
+        if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Цикл потока записи: забирает изменения пачкой, записывает их в файл и сбрасывает на диск по политике.
+     * Перезапись журнала начинается только после освобождения ожидающих пачки потоков и выполняется отдельным
+     * потоком, её завершение поток записи подхватывает между пачками
+     */
+    private void run() {
+        List<Record> waiting = new ArrayList<>();
+        long lastSync = System.nanoTime();
+        boolean dirty = false;
+
+        try {
+            while (true) {
+                for (Record record; (record = queue.poll()) != null; ) {
+                    if (record == REWRITE) {
+                        rewriteRequested = true;
+                        continue;
+                    }
+                    file.encode(record);
+                    dirty = true;
+                    if (record.waiter != null) {
+                        waiting.add(record);
+                    }
+                }
+                file.flush();
+
+                long now = System.nanoTime();
+                if (dirty && (fsyncPolicy == FsyncPolicy.ALWAYS
+                        || fsyncPolicy == FsyncPolicy.INTERVAL && now - lastSync >= fsyncIntervalNanos)) {
+                    file.channel.force(false);
+                    lastSync = now;
+                    dirty = false;
+                }
+                release(waiting, false);
+
+                if (rewriting != null && rewriting.done) {
+                    finishRewrite();
+                }
+                if (rewriting == null
+                        && (rewriteRequested || file.size >= Math.max(rewriteMinSize, 2 * rewrittenSize))) {
+                    startRewrite();
+                }
+                if (closed && queue.isEmpty() && rewriting == null) {
+                    break;
+                }
+
+                sleeping.set(true);
+                if (queue.isEmpty() && (rewriting == null ? !closed : !rewriting.done)) {
+                    if (dirty && fsyncPolicy == FsyncPolicy.INTERVAL) {
+                        LockSupport.parkNanos(this, lastSync + fsyncIntervalNanos - now);
+                    } else {
+                        LockSupport.park(this);
+                    }
+                }
+                sleeping.set(false);
+            }
+            file.channel.force(true);
+        } catch (IOException | UncheckedIOException e) {
+            failure = e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e;
+            e.printStackTrace();
+            release(waiting, true);
+            for (Record record; (record = queue.poll()) != null; ) {
+                if (record.waiter != null) {
+                    waiting.add(record);
+                }
+            }
+            release(waiting, true);
+        } finally {
+            if (rewriting != null) {
+                rewriting.discard();
+            }
+            try {
+                file.channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Отмечает изменения сброшенными на диск и будит ожидающие их потоки
+     * @param waiting изменения с ожидающими потоками, список очищается
+     * @param failed правдивость утверждения о том, что запись завершилась ошибкой
+     */
+    private static void release(List<Record> waiting, boolean failed) {
+        for (Record record : waiting) {
+            record.failed = failed;
+            record.durable = true;
+            LockSupport.unpark(record.waiter);
+        }
+        waiting.clear();
+    }
+
+    /**
+     * Начинает перезапись журнала текущим содержимым хранилища в отдельном потоке. Изменения, записанные в
+     * журнал с этого момента, переносятся в новый журнал при завершении перезаписи
+     */
+    private void startRewrite() {
+        rewriteRequested = false;
+        rewriting = new Rewrite(path.resolveSibling(path.getFileName() + ".rewrite"), file.size);
+        rewriting.thread.start();
+    }
+
+    /**
+     * Завершает перезапись: дописывает в новый журнал изменения, записанные в прежний после её начала,
+     * сбрасывает его на диск и атомарно заменяет им журнал. При ошибке перезаписи прежний журнал остаётся
+     * в силе, следующая перезапись начнётся, когда он снова вырастет вдвое
+     */
+    private void finishRewrite() {
+        Rewrite finished = rewriting;
+        LogFile next = finished.file;
+        rewriting = null;
+
+        try {
+            if (finished.failure != null) {
+                throw finished.failure;
+            }
+            for (long position = finished.from; position < file.size; ) {
+                position += file.channel.transferTo(position, file.size - position, next.channel);
+            }
+            next.size += file.size - finished.from;
+            next.channel.force(true);
+            Files.move(finished.temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            e.printStackTrace();
+            finished.discard();
+            rewrittenSize = file.size;
+            return;
+        }
+        FileChannel previous = file.channel;
+        rewrittenSize = next.size - (file.size - finished.from);
+        file = next;
+        try {
+            previous.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Воспроизводит журнал, передавая изменения получателю. Воспроизведение останавливается на первой
+     * недописанной или повреждённой записи, и файл обрезается по последней целой записи, чтобы новые
+     * изменения дописывались после неё
+     * @param path путь к файлу журнала
+     * @param replayer получатель изменений
+     * @return число воспроизведённых записей, 0 - если журнала нет
+     * @throws IOException если чтение или обрезка файла не удались
+     */
+    static long replay(Path path, Replayer replayer) throws IOException {
+        long records = 0L;
+        long valid = 0L;
+
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE))) {
+            byte[] payload = new byte[BUFFER_SIZE];
+            CRC32C crc = new CRC32C();
+
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < PAYLOAD_HEADER) {
+                        break;
+                    }
+                    if (payload.length < length) {
+                        payload = new byte[length];
+                    }
+                    in.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(payload, 0, length);
+                byte op = record.get();
+                int key = record.getInt();
+                long deadline = record.getLong();
+                String data = new String(payload, PAYLOAD_HEADER, length - PAYLOAD_HEADER, StandardCharsets.UTF_8);
+                replayer.apply(op, key, deadline, data);
+
+                valid += RECORD_HEADER + length;
+                records++;
+            }
+        } catch (NoSuchFileException e) {
+            return 0L;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > valid) {
+                System.err.println("Write-ahead log " + path + " truncated to " + valid + " bytes after a torn record");
+                channel.truncate(valid);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Источник текущего содержимого хранилища для перезаписи журнала
+     */
+    interface Source {
+        /**
+         * Передаёт все живые записи хранилища как операции {@link #PUT} или {@link #PUT_IDLE}
+         * @param visitor получатель операций
+         */
+        void forEach(Replayer visitor);
+    }
+
+    /**
+     * Получатель изменений при воспроизведении журнала
+     */
+    interface Replayer {
+        /**
+         * Вызывается для каждого изменения в порядке записи
+         * @param op тип операции {@link #PUT}, {@link #PUT_IDLE}, {@link #REMOVE} или {@link #CLEAR}
+         * @param key значение ключа для хранилища
+         * @param deadline момент времени, в который время жизни данных истечёт, для {@link #PUT_IDLE} - время простоя
+         * @param data данные, пустая строка для операций без данных
+         */
+        void apply(byte op, int key, long deadline, String data);
+    }
+
+    /**
+     * Открытый для дописывания файл журнала с буфером кодирования записей
+     */
+    private static final class LogFile {
+        /**
+         * Канал файла
+         */
+        private final FileChannel channel;
+        /**
+         * Буфер кодирования записей
+         */
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        /**
+         * Размер файла в байтах вместе с записанным буфером
+         */
+        private long size;
+
+        private LogFile(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            channel.position(size);
+        }
+
+        /**
+         * Кодирует изменение в буфер, при нехватке места буфер записывается в файл или увеличивается
+         * @param record изменение
+         * @throws IOException если запись в файл не удалась
+         */
+        private void encode(Record record) throws IOException {
+            byte[] data = record.data == null ? new byte[0] : record.data.getBytes(StandardCharsets.UTF_8);
+            int length = RECORD_HEADER + PAYLOAD_HEADER + data.length;
+
+            if (buffer.remaining() < length) {
+                flush();
+                if (buffer.capacity() < length) {
+                    buffer = ByteBuffer.allocate(length);
+                }
+            }
+            int start = buffer.position();
+            buffer.putInt(PAYLOAD_HEADER + data.length);
+            buffer.putInt(0);
+            buffer.put(record.op);
+            buffer.putInt(record.key);
+            buffer.putLong(record.deadline);
+            buffer.put(data);
+
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), start + RECORD_HEADER, PAYLOAD_HEADER + data.length);
+            buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        }
+
+        /**
+         * Записывает накопленный буфер в файл
+         * @throws IOException если запись в файл не удалась
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            size += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Перезапись журнала в отдельном потоке: текущее содержимое хранилища записывается во временный файл,
+     * который затем завершает поток записи в {@link #finishRewrite()}
+     */
+    private final class Rewrite implements Runnable {
+        /**
+         * Путь к временному файлу нового журнала
+         */
+        private final Path temp;
+        /**
+         * Размер прежнего журнала в начале перезаписи, записи после него переносятся в новый журнал
+         */
+        private final long from;
+        /**
+         * Поток перезаписи
+         */
+        private final Thread thread;
+        /**
+         * Новый журнал с текущим содержимым хранилища
+         */
+        private LogFile file;
+        /**
+         * Ошибка перезаписи, null - перезапись удалась
+         */
+        private Exception failure;
+        /**
+         * Правдивость утверждения о том, что поток перезаписи завершился
+         */
+        private volatile boolean done;
+
+        private Rewrite(Path temp, long from) {
+            this.temp = temp;
+            this.from = from;
+            this.thread = new Thread(this, "write-ahead-log-rewrite");
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                file = new LogFile(FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                source.forEach((op, key, deadline, data) -> {
+                    try {
+                        file.encode(new Record(op, key, deadline, data));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                file.flush();
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            } finally {
+                done = true;
+                wakeUp();
+            }
+        }
+
+        /**
+         * Дожидается завершения потока перезаписи и удаляет временный файл
+         */
+        private void discard() {
+            try {
+                thread.join();
+                if (file != null) {
+                    file.channel.close();
+                }
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Изменение, ожидающее записи в журнал
+     */
+    static final class Record {
+        /**
+         * Тип операции
+         */
+        private final byte op;
+        /**
+         * Значение ключа для хранилища
+         */
+        private final int key;
+        /**
+         * Момент времени, в который время жизни данных истечёт
+         */
+        private final long deadline;
+        /**
+         * Данные либо null для операций без данных
+         */
+        private final String data;
+        /**
+         * Поток, ожидающий сброса изменения на диск, null - никто не ожидает
+         */
+        private Thread waiter;
+        /**
+         * Правдивость утверждения о том, что изменение сброшено на диск или запись завершилась ошибкой
+         */
+        private volatile boolean durable;
+        /**
+         * Правдивость утверждения о том, что запись завершилась ошибкой
+         */
+        private boolean failed;
+
+        private Record(byte op, int key, long deadline, String data) {
+            this.op = op;
+            this.key = key;
+            this.deadline = deadline;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.spring_problem.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Класс результата обработки одного элемента пакетного запроса. Статус элемента совпадает с HTTP статусом,
+ * который вернул бы одиночный запрос: 200 - успешно, 404 - ключ отсутствует, 400 - неверное время жизни
+ * @see com.example.spring_problem.controller.DataControllers#getBatch(int[], boolean)
+ */
+public class BatchResult {
+    /**
+     * Поле, хранящее значение ключа элемента
+     */
+    private int key;
+    /**
+     * Поле, хранящее данные по ключу, null - данных нет или запрос их не возвращает
+     */
+    private String data;
+    /**
+     * Поле, хранящее статус обработки элемента
+     */
+    private int status;
+    /**
+     * Поле, хранящее оставшееся время жизни данных в миллисекундах, null - запрос его не возвращает
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long ttl;
+
+    /**
+     * Пустой конструктор
+     */
+    public BatchResult() {
+
+    }
+
+    /**
+     * Конструктор создания нового объекта класса
+     * @param key значение ключа
+     * @param data данные по ключу
+     * @param status статус обработки элемента
+     */
+    public BatchResult(int key, String data, int status) {
+        this.key = key;
+        this.data = data;
+        this.status = status;
+    }
+
+    /**
+     * Метод, возвращающий значение ключа элемента
+     * @return возвращает значение ключа
+     */
+    public int getKey() {
+        return key;
+    }
+
+    /**
+     * Метод, устанавливающий новое значение ключа
+     * @param key значение ключа
+     */
+    public void setKey(int key) {
+        this.key = key;
+    }
+
+    /**
+     * Метод, возвращающий данные по ключу
+     * @return возвращает данные либо null
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * Метод, устанавливающий данные по ключу
+     * @param data данные
+     */
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    /**
+     * Метод, возвращающий статус обработки элемента
+     * @return возвращает HTTP статус элемента
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Метод, устанавливающий статус обработки элемента
+     * @param status HTTP статус элемента
+     */
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Метод, возвращающий оставшееся время жизни данных
+     * @return время жизни в миллисекундах, null - запрос его не возвращает
+     */
+    public Long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Метод, устанавливающий оставшееся время жизни данных
+     * @param ttl время жизни в миллисекундах, null - запрос его не возвращает
+     */
+    public void setTtl(Long ttl) {
+        this.ttl = ttl;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "key=" + key +
+                ", data='" + data + '\'' +
+                ", status=" + status +
+                ", ttl=" + ttl +
+                '}';
+    }
+}
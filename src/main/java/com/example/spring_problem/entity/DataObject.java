@@ -17,6 +17,10 @@ public class DataObject {
      * Поле, хранящее переданное время жизни данных в базе данных
      */
     private long ttl;
+    /**
+     * Поле, хранящее переданное время простоя данных в секундах, 0 - данные живут время жизни ttl
+     */
+    private long idle;
 
     /**
      * Пустой конструктор
@@ -85,12 +89,29 @@ public class DataObject {
         this.ttl = ttl;
     }
 
+    /**
+     * Метод, возвращающий время простоя данных
+     * @return возвращает время простоя данных в секундах, 0 - не задано
+     */
+    public long getIdle() {
+        return idle;
+    }
+
+    /**
+     * Метод, устанавливающий новое значение времени простоя данных
+     * @param idle время простоя данных в секундах
+     */
+    public void setIdle(long idle) {
+        this.idle = idle;
+    }
+
     @Override
     public String toString() {
         return "DataObject{" +
                 "key=" + key +
                 ", data='" + data + '\'' +
                 ", ttl=" + ttl +
+                ", idle=" + idle +
                 '}';
     }
 }
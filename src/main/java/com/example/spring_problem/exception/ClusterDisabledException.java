@@ -0,0 +1,13 @@
+package com.example.spring_problem.exception;
+
+/**
+ * Исключение, даёт знать о том, что запрос к кластеру пришёл на экземпляр, работающий вне кластера
+ */
+public class ClusterDisabledException extends IllegalStateException {
+    /**
+     * Создаёт новое исключение, передающее сообщение о том, что режим кластера выключен
+     */
+    public ClusterDisabledException() {
+        super("Cluster mode is disabled, set database.cluster.enabled=true");
+    }
+}
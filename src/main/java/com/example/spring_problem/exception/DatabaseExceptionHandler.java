@@ -1,15 +1,26 @@
 package com.example.spring_problem.exception;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.nio.charset.StandardCharsets;
+
 /**
- * Класс для обработки исключений {@link MissedDataException} и {@link TimeToLeaveException}
+ * Класс для обработки исключений {@link MissedDataException}, {@link TimeToLeaveException}, {@link SnapshotFormatException},
+ * {@link LoadInProgressException} и {@link ReadOnlyReplicaException}
  */
 @ControllerAdvice
 public class DatabaseExceptionHandler {
+    /**
+     * Заранее созданный ответ об отсутствии ключа с тем же телом, что и у {@link #handleDataException(MissedDataException)}.
+     * Контроллеры возвращают его при промахе вместо исключения, тело записывается готовыми байтами
+     */
+    public static final ResponseEntity<byte[]> MISSED_DATA = ResponseEntity.status(HttpStatus.NOT_FOUND)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body("{\"message\":\"There is no such key in database\"}".getBytes(StandardCharsets.UTF_8));
 
     /**
      * Обрабатывает исключение MissingDataException и возвращает содержащееся в нём сообщение и соответствующий
@@ -39,4 +50,74 @@ public class DatabaseExceptionHandler {
         return new ResponseEntity<>(message, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Обрабатывает исключение SnapshotFormatException и возвращает содержащееся в нём сообщение и соответствующий
+     * HTTP статус
+     * @param e исключение класса {@link SnapshotFormatException}
+     * @return ResponseEntity, содержащее сообщение и HttpStatus.BAD_REQUEST
+     */
+    @ExceptionHandler
+    public ResponseEntity<ReturnEMessage> handleDataException(SnapshotFormatException e) {
+        ReturnEMessage message = new ReturnEMessage();
+        message.setMessage(e.getMessage());
+
+        return new ResponseEntity<>(message, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Обрабатывает исключение LoadInProgressException и возвращает содержащееся в нём сообщение и соответствующий
+     * HTTP статус
+     * @param e исключение класса {@link LoadInProgressException}
+     * @return ResponseEntity, содержащее сообщение и HttpStatus.CONFLICT
+     */
+    @ExceptionHandler
+    public ResponseEntity<ReturnEMessage> handleDataException(LoadInProgressException e) {
+        ReturnEMessage message = new ReturnEMessage();
+        message.setMessage(e.getMessage());
+
+        return new ResponseEntity<>(message, HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Обрабатывает исключение ReadOnlyReplicaException и возвращает содержащееся в нём сообщение и соответствующий
+     * HTTP статус
+     * @param e исключение класса {@link ReadOnlyReplicaException}
+     * @return ResponseEntity, содержащее сообщение и HttpStatus.FORBIDDEN
+     */
+    @ExceptionHandler
+    public ResponseEntity<ReturnEMessage> handleDataException(ReadOnlyReplicaException e) {
+        ReturnEMessage message = new ReturnEMessage();
+        message.setMessage(e.getMessage());
+
+        return new ResponseEntity<>(message, HttpStatus.FORBIDDEN);
+    }
+
+    /**
+     * Обрабатывает исключение ClusterDisabledException и возвращает содержащееся в нём сообщение и соответствующий
+     * HTTP статус
+     * @param e исключение класса {@link ClusterDisabledException}
+     * @return ResponseEntity, содержащее сообщение и HttpStatus.NOT_FOUND
+     */
+    @ExceptionHandler
+    public ResponseEntity<ReturnEMessage> handleDataException(ClusterDisabledException e) {
+        ReturnEMessage message = new ReturnEMessage();
+        message.setMessage(e.getMessage());
+
+        return new ResponseEntity<>(message, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Обрабатывает исключение IndexDisabledException и возвращает содержащееся в нём сообщение и соответствующий
+     * HTTP статус
+     * @param e исключение класса {@link IndexDisabledException}
+     * @return ResponseEntity, содержащее сообщение и HttpStatus.NOT_FOUND
+     */
+    @ExceptionHandler
+    public ResponseEntity<ReturnEMessage> handleDataException(IndexDisabledException e) {
+        ReturnEMessage message = new ReturnEMessage();
+        message.setMessage(e.getMessage());
+
+        return new ResponseEntity<>(message, HttpStatus.NOT_FOUND);
+    }
+
 }
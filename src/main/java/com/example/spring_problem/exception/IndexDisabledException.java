@@ -0,0 +1,13 @@
+package com.example.spring_problem.exception;
+
+/**
+ * Исключение, даёт знать о том, что обход диапазона запрошен у хранилища без упорядоченного индекса ключей
+ */
+public class IndexDisabledException extends IllegalStateException {
+    /**
+     * Создаёт новое исключение, передающее сообщение о том, что индекс выключен
+     */
+    public IndexDisabledException() {
+        super("Ordered key index is disabled, set database.index.enabled=true");
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.spring_problem.exception;
+
+/**
+ * Исключение, даёт знать о том, что загрузка сохранённого хранилища невозможна, пока выполняется другая загрузка
+ */
+public class LoadInProgressException extends IllegalStateException {
+    /**
+     * Создаёт новое исключение, передающее сообщение о том, что уже выполняется другая загрузка
+     */
+    public LoadInProgressException() {
+        super("Another snapshot is being loaded");
+    }
+}
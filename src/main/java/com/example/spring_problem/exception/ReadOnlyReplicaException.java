@@ -0,0 +1,13 @@
+package com.example.spring_problem.exception;
+
+/**
+ * Исключение, даёт знать о том, что хранилище ведомого экземпляра изменяется только репликацией от ведущего
+ */
+public class ReadOnlyReplicaException extends IllegalStateException {
+    /**
+     * Создаёт новое исключение, передающее сообщение о том, что изменения принимает только ведущий
+     */
+    public ReadOnlyReplicaException() {
+        super("This instance is a read-only follower, send writes to the leader");
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.spring_problem.exception;
+
+/**
+ * Исключение, даёт знать о том, что переданный файл сохранённого хранилища повреждён или имеет неизвестный формат
+ */
+public class SnapshotFormatException extends IllegalArgumentException {
+    /**
+     * Создаёт новое исключение с описанием нарушения формата
+     * @param message описание нарушения формата
+     */
+    public SnapshotFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.spring_problem.metrics;
+
+import com.example.spring_problem.dao.DataDAO;
+import com.example.spring_problem.database.CompressionMetrics;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.EvictionMetrics;
+import com.example.spring_problem.database.ExpiryMetrics;
+import com.example.spring_problem.database.OperationTimer;
+import com.example.spring_problem.snapshot.SnapshotMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Метрики хранилища для Micrometer, доступные через Actuator, в том числе в формате Prometheus на
+ * /actuator/prometheus. Счётчики и размеры не ведутся отдельно, а читаются при снятии метрик из уже
+ * имеющихся счётчиков {@link EvictionMetrics}, {@link ExpiryMetrics}, {@link CompressionMetrics} и
+ * {@link SnapshotMetrics}, поэтому
+ * не добавляют работы операциям. Длительности get, put и remove замеряются на выборке операций
+ * {@link OperationTimer}, длительности HTTP запросов - самим Actuator в метрике http.server.requests
+ */
+@Component
+public class DatabaseMetrics implements MeterBinder {
+    /**
+     * Хранилище
+     */
+    private final Database database;
+
+    /**
+     * Объект доступа к хранилищу, ведущий счётчики сохранений и загрузок
+     */
+    private final DataDAO dataDAO;
+
+    /**
+     * Создаёт метрики хранилища
+     * @param database хранилище
+     * @param dataDAO объект доступа к хранилищу
+     */
+    @Autowired
+    public DatabaseMetrics(Database database, DataDAO dataDAO) {
+        this.database = database;
+        this.dataDAO = dataDAO;
+    }
+
+    /**
+     * Регистрирует метрики хранилища и подключает к нему замер длительностей операций
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Timer[] timers = new Timer[OperationTimer.Operation.values().length];
+        for (OperationTimer.Operation operation : OperationTimer.Operation.values()) {
+            timers[operation.ordinal()] = Timer.builder("database.operations")
+                    .description("Latency of store operations, measured on one operation in "
+                            + OperationTimer.SAMPLE_RATE)
+                    .tag("operation", operation.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        database.setOperationTimer((operation, nanos) -> timers[operation.ordinal()].record(nanos, TimeUnit.NANOSECONDS));
+
+        EvictionMetrics eviction = database.getEvictionMetrics();
+        counter(registry, "database.requests", "Reads of the store by result", "result", "hit",
+                eviction, EvictionMetrics::getHits);
+        counter(registry, "database.requests", "Reads of the store by result", "result", "miss",
+                eviction, EvictionMetrics::getMisses);
+        Gauge.builder("database.hit.ratio", eviction, EvictionMetrics::getHitRatio)
+                .description("Share of reads that found a live entry")
+                .register(registry);
+        FunctionCounter.builder("database.evictions", eviction, EvictionMetrics::getEvictions)
+                .description("Entries evicted by the eviction policy")
+                .register(registry);
+        Gauge.builder("database.entries", database, Database::size)
+                .description("Entries in the store, including expired ones not yet removed")
+                .register(registry);
+        Gauge.builder("database.estimated.bytes", database, Database::estimatedBytes)
+                .description("Estimated size of the entries")
+                .baseUnit("bytes")
+                .register(registry);
+
+        ExpiryMetrics expiry = database.getExpiryMetrics();
+        FunctionTimer.builder("database.expiry.sweeps", expiry, ExpiryMetrics::getCycles,
+                ExpiryMetrics::getTotalCycleNanos, TimeUnit.NANOSECONDS)
+                .description("Expiry sweep cycles of all shards")
+                .register(registry);
+        TimeGauge.builder("database.expiry.sweep.last", expiry, TimeUnit.NANOSECONDS, ExpiryMetrics::getLastCycleNanos)
+                .description("Duration of the latest expiry sweep cycle")
+                .register(registry);
+        counter(registry, "database.expired.keys", "Expired entries removed, by what found them", "source", "sweep",
+                expiry, ExpiryMetrics::getKeysReaped);
+        counter(registry, "database.expired.keys", "Expired entries removed, by what found them", "source", "read",
+                expiry, ExpiryMetrics::getKeysReapedOnRead);
+        FunctionCounter.builder("database.expiry.sampled.keys", expiry, ExpiryMetrics::getKeysSampled)
+                .description("Entries examined by expiry sweeps")
+                .register(registry);
+
+        CompressionMetrics compression = database.getCompressionMetrics();
+        FunctionTimer.builder("database.compression.compress", compression, CompressionMetrics::getCompressions,
+                CompressionMetrics::getCompressNanos, TimeUnit.NANOSECONDS)
+                .description("Compressions of values above the threshold, including ones kept uncompressed")
+                .register(registry);
+        FunctionTimer.builder("database.compression.decompress", compression, CompressionMetrics::getDecompressions,
+                CompressionMetrics::getDecompressNanos, TimeUnit.NANOSECONDS)
+                .description("Decompressions of stored values")
+                .register(registry);
+        counter(registry, "database.compression.values", "Values above the threshold, by how they were stored",
+                "result", "compressed", compression, CompressionMetrics::getCompressedValues);
+        counter(registry, "database.compression.values", "Values above the threshold, by how they were stored",
+                "result", "skipped", compression, CompressionMetrics::getSkippedValues);
+        counter(registry, "database.compression.bytes", "Bytes of compressed values, before and after compression",
+                "stage", "original", compression, CompressionMetrics::getOriginalBytes);
+        counter(registry, "database.compression.bytes", "Bytes of compressed values, before and after compression",
+                "stage", "compressed", compression, CompressionMetrics::getCompressedBytes);
+        Gauge.builder("database.compression.ratio", compression, CompressionMetrics::getCompressionRatio)
+                .description("Original to compressed size of compressed values")
+                .register(registry);
+        FunctionCounter.builder("database.compression.served", compression, CompressionMetrics::getServedCompressed)
+                .description("Reads served to clients with deflate encoding without decompression")
+                .register(registry);
+
+        SnapshotMetrics snapshot = dataDAO.getSnapshotMetrics();
+        FunctionTimer.builder("database.snapshot.dumps", snapshot, SnapshotMetrics::getDumps,
+                SnapshotMetrics::getDumpNanos, TimeUnit.NANOSECONDS)
+                .description("Completed dumps of the store")
+                .register(registry);
+        FunctionCounter.builder("database.snapshot.dump.records", snapshot, SnapshotMetrics::getDumpRecords)
+                .description("Entries written by dumps")
+                .register(registry);
+        FunctionCounter.builder("database.snapshot.dump.bytes", snapshot, SnapshotMetrics::getDumpBytes)
+                .description("Bytes written by dumps")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionTimer.builder("database.snapshot.loads", snapshot, SnapshotMetrics::getLoads,
+                SnapshotMetrics::getLoadNanos, TimeUnit.NANOSECONDS)
+                .description("Completed loads of the store")
+                .register(registry);
+        FunctionCounter.builder("database.snapshot.load.records", snapshot, SnapshotMetrics::getLoadRecords)
+                .description("Entries read by loads")
+                .register(registry);
+        FunctionCounter.builder("database.snapshot.load.bytes", snapshot, SnapshotMetrics::getLoadBytes)
+                .description("Bytes read by loads")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Регистрирует счётчик с одним тегом
+     */
+    private static <T> void counter(MeterRegistry registry, String name, String description, String tag,
+                                    String value, T source, ToDoubleFunction<T> count) {
+        FunctionCounter.builder(name, source, count)
+                .description(description)
+                .tag(tag, value)
+                .register(registry);
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.spring_problem.protocol;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.service.DataService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TCP сервер хранилища, работающий рядом с HTTP контроллерами и понимающий текстовый протокол memcached:
+ * get, gets, set, delete, version и quit. Ключи - целые числа, флаги записи не сохраняются. Команды
+ * выполняются напрямую через {@link DataService}, минуя HTTP стек. Соединения принимает отдельный поток
+ * и по кругу раздаёт рабочим потокам, каждый из которых обслуживает свои соединения через собственный
+ * {@link Selector}. Запускается при database.tcp.enabled=true
+ */
+@Component
+@ConditionalOnProperty(prefix = "database.tcp", name = "enabled", havingValue = "true")
+public class MemcachedServer {
+    /**
+     * Начальный размер входного буфера соединения в байтах
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Сервис для связи с хранилищем
+     */
+    private final DataService dataService;
+
+    /**
+     * Настройки сервера
+     */
+    private final DatabaseProperties.Tcp properties;
+
+    /**
+     * Канал, принимающий соединения
+     */
+    private ServerSocketChannel server;
+
+    /**
+     * Рабочие потоки, обслуживающие соединения
+     */
+    private Worker[] workers;
+
+    /**
+     * Поток, принимающий соединения
+     */
+    private Thread acceptor;
+
+    /**
+     * Конструктор сервера
+     * @param dataService сервис для связи с хранилищем
+     * @param properties настройки хранилища, используются свойства database.tcp
+     */
+    public MemcachedServer(DataService dataService, DatabaseProperties properties) {
+        this.dataService = dataService;
+        this.properties = properties.getTcp();
+    }
+
+    /**
+     * Открывает порт и запускает поток приёма соединений и рабочие потоки
+     * @throws IOException если порт не удалось открыть
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        int count = properties.getWorkers() > 0 ? properties.getWorkers() : Runtime.getRuntime().availableProcessors();
+        workers = new Worker[count];
+        for (int i = 0; i < count; i++) {
+            workers[i] = new Worker(Selector.open(), "memcached-worker-" + i);
+            workers[i].thread.start();
+        }
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(properties.getPort()));
+        acceptor = new Thread(this::accept, "memcached-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Закрывает порт и все соединения, останавливает потоки
+     */
+    @PreDestroy
+    public void stop() {
+        try {
+            server.close();
+            acceptor.join();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Worker worker : workers) {
+            worker.stop();
+        }
+    }
+
+    /**
+     * Метод, возвращающий порт, на котором сервер принимает соединения
+     * @return номер порта
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Цикл потока приёма соединений, завершается при закрытии порта
+     */
+    private void accept() {
+        int next = 0;
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                workers[next].register(channel);
+                next = (next + 1) % workers.length;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Рабочий поток, обслуживающий назначенные ему соединения
+     */
+    private final class Worker implements Runnable {
+        /**
+         * Селектор соединений потока
+         */
+        private final Selector selector;
+        /**
+         * Принятые соединения, ещё не зарегистрированные в селекторе
+         */
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        /**
+         * Поток, выполняющий цикл обслуживания
+         */
+        private final Thread thread;
+        /**
+         * Правдивость утверждения о том, что поток должен продолжать работу
+         */
+        private volatile boolean running = true;
+
+        private Worker(Selector selector, String name) {
+            this.selector = selector;
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Передаёт соединение потоку и будит селектор, чтобы тот его зарегистрировал
+         * @param channel принятое соединение в неблокирующем режиме
+         */
+        private void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Останавливает поток и закрывает его соединения
+         */
+        private void stop() {
+            running = false;
+            selector.wakeup();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = pending.poll()) != null) {
+                        try {
+                            channel.register(selector, SelectionKey.OP_READ,
+                                    new Connection(channel, new MemcachedSession(dataService,
+                                            properties.getMaxValueSize(), System::currentTimeMillis)));
+                        } catch (ClosedChannelException e) {
+                            // Клиент отключился до регистрации соединения
+                        }
+                    }
+                    Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                    while (selected.hasNext()) {
+                        SelectionKey key = selected.next();
+                        selected.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.read(key);
+                            } else if (key.isWritable()) {
+                                connection.flush(key);
+                            }
+                        } catch (IOException e) {
+                            connection.close(key);
+                        } catch (RuntimeException e) {
+                            // Ошибка одного соединения не должна останавливать поток с остальными соединениями
+                            e.printStackTrace();
+                            connection.close(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close(key);
+                }
+                SocketChannel channel;
+                while ((channel = pending.poll()) != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Соединение клиента: входной буфер и состояние разбора команд
+     */
+    private final class Connection {
+        /**
+         * Канал соединения
+         */
+        private final SocketChannel channel;
+        /**
+         * Состояние разбора команд и выходной буфер
+         */
+        private final MemcachedSession session;
+        /**
+         * Входной буфер в режиме записи
+         */
+        private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private Connection(SocketChannel channel, MemcachedSession session) {
+            this.channel = channel;
+            this.session = session;
+        }
+
+        /**
+         * Читает доступные байты, выполняет все полностью полученные команды и отправляет ответы
+         * @param key ключ соединения в селекторе
+         * @throws IOException при ошибке ввода-вывода
+         */
+        private void read(SelectionKey key) throws IOException {
+            if (channel.read(in) < 0) {
+                close(key);
+                return;
+            }
+            process();
+            flush(key);
+        }
+
+        /**
+         * Выполняет полностью полученные команды входного буфера. Буфер увеличивается, если в нём не
+         * помещается текущая команда
+         */
+        private void process() {
+            in.flip();
+            session.process(in);
+            in.compact();
+            int required = session.required();
+            if (!session.isStalled() && (required > in.capacity() || !in.hasRemaining())) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(required, in.capacity() * 2));
+                in.flip();
+                grown.put(in);
+                in = grown;
+            }
+        }
+
+        /**
+         * Отправляет накопленные ответы. Если сокет принял не всё, соединение ждёт готовности к записи
+         * и до отправки остатка не читает новых команд. Если выполнение команд было приостановлено из-за
+         * неотправленных ответов, после их отправки выполняются оставшиеся во входном буфере команды
+         * @param key ключ соединения в селекторе
+         * @throws IOException при ошибке ввода-вывода
+         */
+        private void flush(SelectionKey key) throws IOException {
+            while (true) {
+                ByteBuffer out = session.output();
+                out.flip();
+                channel.write(out);
+                out.compact();
+                if (out.position() > 0) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (session.isClosing()) {
+                    close(key);
+                    return;
+                }
+                if (!session.isStalled()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                process();
+            }
+        }
+
+        /**
+         * Закрывает соединение
+         * @param key ключ соединения в селекторе
+         */
+        private void close(SelectionKey key) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
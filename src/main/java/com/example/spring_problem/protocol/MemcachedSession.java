@@ -0,0 +1,370 @@
+package com.example.spring_problem.protocol;
+
+import com.example.spring_problem.entity.BatchResult;
+import com.example.spring_problem.exception.TimeToLeaveException;
+import com.example.spring_problem.service.DataService;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Состояние одного соединения TCP сервера {@link MemcachedServer}: разбирает команды текстового протокола
+ * memcached из входного буфера, выполняет их через {@link DataService} и накапливает ответы в выходном
+ * буфере. За вызов {@link #process(ByteBuffer)} выполняются все полностью полученные команды, поэтому
+ * клиент может отправлять команды конвейером, не дожидаясь ответов. Не потокобезопасен
+ */
+final class MemcachedSession {
+    /**
+     * {@value #MAX_LINE} максимальная длина строки команды в байтах
+     */
+    static final int MAX_LINE = 64 * 1024;
+    /**
+     * {@value #OUTPUT_HIGH_WATER} размер неотправленных ответов в байтах, после которого выполнение команд
+     * приостанавливается до отправки ответов
+     */
+    static final int OUTPUT_HIGH_WATER = 256 * 1024;
+    /**
+     * Время жизни в секундах, начиная с которого оно, как в memcached, считается моментом времени Unix
+     */
+    private static final long MAX_RELATIVE_EXPTIME = 30L * 24 * 60 * 60;
+    /**
+     * Последнее слово команды, отключающее ответ на неё
+     */
+    private static final String NOREPLY = "noreply";
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] VALUE = "VALUE ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "END\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STORED = "STORED\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELETED = "DELETED\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NOT_FOUND = "NOT_FOUND\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ERROR = "ERROR\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Сервис для связи с хранилищем
+     */
+    private final DataService dataService;
+
+    /**
+     * Максимальный размер данных одной записи в байтах
+     */
+    private final int maxValueSize;
+
+    /**
+     * Источник текущего времени в миллисекундах, нужен для абсолютного времени жизни
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Выходной буфер в режиме записи
+     */
+    private ByteBuffer out = ByteBuffer.allocate(16 * 1024);
+
+    /**
+     * Число байт от начала входного буфера, необходимое для разбора текущей команды, 0 - неизвестно
+     */
+    private int required;
+
+    /**
+     * Правдивость утверждения о том, что соединение нужно закрыть после отправки ответов
+     */
+    private boolean closing;
+
+    /**
+     * Правдивость утверждения о том, что выполнение команд приостановлено, так как неотправленные ответы
+     * превысили {@link #OUTPUT_HIGH_WATER}
+     */
+    private boolean stalled;
+
+    /**
+     * Создаёт состояние соединения
+     * @param dataService сервис для связи с хранилищем
+     * @param maxValueSize максимальный размер данных одной записи в байтах
+     * @param clock источник текущего времени в миллисекундах
+     */
+    MemcachedSession(DataService dataService, int maxValueSize, LongSupplier clock) {
+        this.dataService = dataService;
+        this.maxValueSize = maxValueSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Выполняет все полностью полученные команды входного буфера. Позиция буфера сдвигается за последнюю
+     * выполненную команду, неполная команда остаётся в буфере до следующего вызова. Ошибка хранилища
+     * возвращается клиенту ответом SERVER_ERROR с именем класса исключения, следующие команды выполняются.
+     * Когда неотправленные ответы превышают {@link #OUTPUT_HIGH_WATER}, выполнение приостанавливается, и
+     * оставшиеся команды выполняются повторным вызовом после отправки ответов, см. {@link #isStalled()}
+     * @param in входной буфер в режиме чтения
+     */
+    void process(ByteBuffer in) {
+        required = 0;
+        stalled = false;
+        while (!closing && in.hasRemaining()) {
+            if (out.position() >= OUTPUT_HIGH_WATER) {
+                stalled = true;
+                return;
+            }
+            int start = in.position();
+            int lineEnd = indexOf(in, start, '\n');
+            if (lineEnd < 0) {
+                if (in.remaining() > MAX_LINE) {
+                    clientError("line too long");
+                }
+                return;
+            }
+            int end = lineEnd > start && in.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            String[] tokens = tokens(in, start, end);
+
+            try {
+                if (tokens.length > 0 && tokens[0].equals("set")) {
+                    if (!set(in, tokens, lineEnd + 1)) {
+                        return;
+                    }
+                    continue;
+                }
+                in.position(lineEnd + 1);
+                execute(tokens);
+            } catch (RuntimeException e) {
+                serverError(e);
+            }
+        }
+    }
+
+    /**
+     * Выполняет команду set: "set ключ флаги время_жизни байт [noreply]", за строкой следуют данные
+     * и перевод строки. Флаги не сохраняются и в ответе всегда равны 0
+     * @param in входной буфер
+     * @param tokens слова строки команды
+     * @param dataStart смещение данных в буфере
+     * @return правдивость утверждения о том, что команда выполнена, false - данные ещё не получены
+     */
+    private boolean set(ByteBuffer in, String[] tokens, int dataStart) {
+        if (tokens.length < 5 || tokens.length > 6 || tokens.length == 6 && !tokens[5].equals(NOREPLY)) {
+            in.position(dataStart);
+            clientError("bad command line format");
+            return true;
+        }
+        int key;
+        long exptime;
+        int length;
+        try {
+            key = Integer.parseInt(tokens[1]);
+            exptime = Long.parseLong(tokens[3]);
+            length = Integer.parseInt(tokens[4]);
+        } catch (NumberFormatException e) {
+            in.position(dataStart);
+            clientError("bad command line format");
+            return true;
+        }
+        if (length < 0 || length > maxValueSize) {
+            out("SERVER_ERROR object too large for cache\r\n".getBytes(StandardCharsets.US_ASCII));
+            closing = true;
+            return true;
+        }
+        if (in.limit() < dataStart + length + CRLF.length) {
+            required = dataStart - in.position() + length + CRLF.length;
+            return false;
+        }
+        if (in.get(dataStart + length) != '\r' || in.get(dataStart + length + 1) != '\n') {
+            clientError("bad data chunk");
+            return true;
+        }
+        byte[] bytes = new byte[length];
+        in.position(dataStart);
+        in.get(bytes);
+        in.position(dataStart + length + CRLF.length);
+
+        store(key, new String(bytes, StandardCharsets.UTF_8), exptime);
+        if (tokens.length == 5) {
+            out(STORED);
+        }
+        return true;
+    }
+
+    /**
+     * Помещает данные в хранилище. Время жизни 0 - время жизни по умолчанию, до 30 дней - число секунд,
+     * больше - момент времени Unix в секундах. Отрицательное или уже наступившее время удаляет ключ
+     * @param key значение ключа для хранилища
+     * @param data данные
+     * @param exptime время жизни в формате memcached
+     */
+    private void store(int key, String data, long exptime) {
+        if (exptime == 0) {
+            dataService.put(key, data);
+            return;
+        }
+        long ttl = exptime > MAX_RELATIVE_EXPTIME ? exptime * 1000 - clock.getAsLong() : exptime * 1000;
+        try {
+            dataService.put(key, data, ttl);
+        } catch (TimeToLeaveException e) {
+            dataService.removeIfPresent(key);
+        }
+    }
+
+    /**
+     * Выполняет команду без данных: get, gets, delete, version, quit
+     * @param tokens слова строки команды
+     */
+    private void execute(String[] tokens) {
+        if (tokens.length == 0) {
+            out(ERROR);
+            return;
+        }
+        try {
+            switch (tokens[0]) {
+                case "get":
+                case "gets":
+                    get(tokens);
+                    break;
+                case "delete":
+                    delete(tokens);
+                    break;
+                case "version":
+                    out("VERSION spring_problem\r\n".getBytes(StandardCharsets.US_ASCII));
+                    break;
+                case "quit":
+                    closing = true;
+                    break;
+                default:
+                    out(ERROR);
+            }
+        } catch (NumberFormatException e) {
+            clientError("bad key format");
+        }
+    }
+
+    /**
+     * Выполняет команду "get ключ [ключ ...]": все ключи читаются одним пакетным запросом, для каждого
+     * найденного ключа возвращается строка VALUE с данными, затем END
+     * @param tokens слова строки команды
+     */
+    private void get(String[] tokens) {
+        if (tokens.length < 2) {
+            out(ERROR);
+            return;
+        }
+        int[] keys = new int[tokens.length - 1];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Integer.parseInt(tokens[i + 1]);
+        }
+        List<BatchResult> results = dataService.getAll(keys);
+        for (BatchResult result : results) {
+            if (result.getData() == null) {
+                continue;
+            }
+            byte[] data = result.getData().getBytes(StandardCharsets.UTF_8);
+            out(VALUE);
+            out((result.getKey() + " 0 " + data.length).getBytes(StandardCharsets.US_ASCII));
+            out(CRLF);
+            out(data);
+            out(CRLF);
+        }
+        out(END);
+    }
+
+    /**
+     * Выполняет команду "delete ключ [noreply]"
+     * @param tokens слова строки команды
+     */
+    private void delete(String[] tokens) {
+        if (tokens.length < 2 || tokens.length > 3) {
+            out(ERROR);
+            return;
+        }
+        if (tokens.length == 3 && !tokens[2].equals(NOREPLY)) {
+            clientError("bad command line format");
+            return;
+        }
+        String removed = dataService.removeIfPresent(Integer.parseInt(tokens[1]));
+        if (tokens.length == 2) {
+            out(removed != null ? DELETED : NOT_FOUND);
+        }
+    }
+
+    /**
+     * Отвечает ошибкой клиента. После ошибки граница следующей команды неизвестна, поэтому соединение закрывается
+     * @param message описание ошибки
+     */
+    private void clientError(String message) {
+        out(("CLIENT_ERROR " + message + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        closing = true;
+    }
+
+    /**
+     * Отвечает клиенту SERVER_ERROR с именем класса исключения. Сообщение исключения не передаётся: оно может
+     * отсутствовать или содержать переводы строк и символы вне ASCII, ломающие протокол
+     * @param e исключение хранилища
+     */
+    private void serverError(RuntimeException e) {
+        String name = e.getClass().getSimpleName();
+        StringBuilder line = new StringBuilder("SERVER_ERROR ");
+
+        for (char c : (name.isEmpty() ? "internal error" : name).toCharArray()) {
+            line.append(c > ' ' && c < 0x7F ? c : '_');
+        }
+        out(line.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Метод, возвращающий выходной буфер в режиме записи
+     * @return выходной буфер
+     */
+    ByteBuffer output() {
+        return out;
+    }
+
+    /**
+     * Метод, возвращающий число байт от начала необработанной части входного буфера, необходимое для
+     * разбора текущей команды
+     * @return число байт, 0 - неизвестно
+     */
+    int required() {
+        return required;
+    }
+
+    /**
+     * Метод, возвращающий признак закрытия соединения
+     * @return правдивость утверждения о том, что соединение нужно закрыть после отправки ответов
+     */
+    boolean isClosing() {
+        return closing;
+    }
+
+    /**
+     * Метод, возвращающий признак приостановки выполнения команд из-за неотправленных ответов
+     * @return правдивость утверждения о том, что во входном буфере остались команды, которые нужно выполнить
+     * после отправки ответов
+     */
+    boolean isStalled() {
+        return stalled;
+    }
+
+    private void out(byte[] bytes) {
+        if (out.remaining() < bytes.length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes.length));
+            out.flip();
+            grown.put(out);
+            out = grown;
+        }
+        out.put(bytes);
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, char c) {
+        for (int i = from; i < buffer.limit(); i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String[] tokens(ByteBuffer buffer, int start, int end) {
+        byte[] line = new byte[end - start];
+        for (int i = 0; i < line.length; i++) {
+            line[i] = buffer.get(start + i);
+        }
+        String trimmed = new String(line, StandardCharsets.US_ASCII).trim();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split(" +");
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.spring_problem.replication;
+
+/**
+ * Участник репликации хранилища: ведущий {@link ReplicationLeader} или ведомый {@link ReplicationFollower}
+ */
+public interface Replication {
+    /**
+     * Возвращает состояние репликации этого экземпляра
+     * @return состояние репликации
+     */
+    ReplicationStatus getStatus();
+}
@@ -0,0 +1,286 @@
+package com.example.spring_problem.replication;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.ReplicationRole;
+import com.example.spring_problem.snapshot.SnapshotReader;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ведомый экземпляр репликации: подключается к ведущему, заменяет содержимое хранилища полученным
+ * снимком и затем применяет изменения ведущего по порядку, подтверждая применённые. Хранилище ведомого
+ * изменяется только репликацией и обслуживает чтение. При разрыве соединения или молчании ведущего
+ * дольше пяти периодов database.replication.heartbeat-interval ведомый через
+ * database.replication.reconnect-delay подключается заново и снова получает снимок. Запускается при
+ * database.replication.role=follower
+ */
+@Component
+@ConditionalOnProperty(prefix = "database.replication", name = "role", havingValue = "follower")
+public class ReplicationFollower implements Replication, MeterBinder {
+    /**
+     * Хранилище
+     */
+    private final Database database;
+
+    /**
+     * Настройки репликации
+     */
+    private final DatabaseProperties.Replication properties;
+
+    /**
+     * Поток, получающий изменения
+     */
+    private Thread receiver;
+
+    /**
+     * Текущее соединение с ведущим, null - не подключён
+     */
+    private volatile Socket socket;
+
+    /**
+     * Правдивость утверждения о том, что ведомый получил снимок и получает изменения
+     */
+    private volatile boolean connected;
+
+    /**
+     * Номер последнего применённого изменения
+     */
+    private volatile long applied;
+
+    /**
+     * Номер последнего известного изменения ведущего
+     */
+    private volatile long leaderSequence;
+
+    /**
+     * Задержка применения последнего изменения относительно его выдачи ведущим в миллисекундах
+     */
+    private volatile long lagMillis;
+
+    /**
+     * Число полученных снимков
+     */
+    private volatile long bootstraps;
+
+    /**
+     * Правдивость утверждения о том, что ведомый остановлен
+     */
+    private volatile boolean closed;
+
+    /**
+     * Конструктор ведомого
+     * @param database хранилище
+     * @param properties настройки хранилища, используются свойства database.replication
+     * @throws IllegalStateException если хранилище не настроено как ведомое
+     */
+    public ReplicationFollower(Database database, DatabaseProperties properties) {
+        if (!database.isReadOnly()) {
+            throw new IllegalStateException("Follower needs a database with database.replication.role=follower");
+        }
+        this.database = database;
+        this.properties = properties.getReplication();
+    }
+
+    /**
+     * Запускает поток, подключающийся к ведущему и получающий изменения
+     */
+    @PostConstruct
+    public void start() {
+        receiver = new Thread(this::run, "replication-follower");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * Закрывает соединение с ведущим и останавливает поток
+     */
+    @PreDestroy
+    public void stop() {
+        closed = true;
+        closeSocket();
+        receiver.interrupt();
+        try {
+            receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Возвращает состояние ведомого
+     * @return состояние репликации
+     */
+    @Override
+    public ReplicationStatus getStatus() {
+        long sequence = applied;
+        long leader = Math.max(sequence, leaderSequence);
+
+        return new ReplicationStatus(ReplicationRole.FOLLOWER, connected, sequence, leader, leader - sequence,
+                lagMillis, bootstraps, Collections.emptyList());
+    }
+
+    /**
+     * Регистрирует метрики репликации: номер применённого изменения и отставание от ведущего в изменениях
+     * и во времени
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("database.replication.sequence", this, follower -> follower.applied)
+                .description("Latest mutation sequence of this instance")
+                .register(registry);
+        Gauge.builder("database.replication.lag.records", this, follower -> follower.getStatus().getLagRecords())
+                .description("Mutations of the leader not yet applied by this follower")
+                .register(registry);
+        TimeGauge.builder("database.replication.lag", this, TimeUnit.MILLISECONDS, follower -> follower.lagMillis)
+                .description("Delay between a mutation on the leader and its application on this follower")
+                .register(registry);
+        Gauge.builder("database.replication.connected", this, follower -> follower.connected ? 1 : 0)
+                .description("Whether the follower is connected to the leader")
+                .register(registry);
+    }
+
+    /**
+     * Цикл потока ведомого: подключение, получение снимка и изменений, пауза перед повторным подключением
+     */
+    private void run() {
+        while (!closed) {
+            try {
+                replicate();
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    System.err.println("Replication from " + properties.getLeaderHost() + ":"
+                            + properties.getLeaderPort() + " interrupted: " + e);
+                }
+            } finally {
+                connected = false;
+                closeSocket();
+            }
+            try {
+                Thread.sleep(properties.getReconnectDelay());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Подключается к ведущему, загружает снимок и применяет изменения до разрыва соединения
+     * @throws IOException если соединение не удалось, разорвано или ведущий долго молчит
+     */
+    private void replicate() throws IOException {
+        Socket connection = new Socket();
+        socket = connection;
+        if (closed) {
+            return;
+        }
+        int timeout = (int) Math.min(Integer.MAX_VALUE, 5 * properties.getHeartbeatInterval());
+        connection.connect(new InetSocketAddress(properties.getLeaderHost(), properties.getLeaderPort()), timeout);
+        connection.setSoTimeout(timeout);
+        connection.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(connection.getInputStream(), ReplicationProtocol.BUFFER_SIZE));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+
+        if (in.readInt() != ReplicationProtocol.MAGIC) {
+            throw new IOException("Not a replication stream");
+        }
+        long sequence = in.readLong();
+        bootstrap(in);
+        applied = sequence;
+        leaderSequence = sequence;
+        lagMillis = 0L;
+        bootstraps++;
+        connected = true;
+        acknowledge(out);
+
+        while (!closed) {
+            byte type = in.readByte();
+            if (type == ReplicationProtocol.MUTATION) {
+                long next = in.readLong();
+                long timestamp = in.readLong();
+                byte op = in.readByte();
+                int key = in.readInt();
+                long deadline = in.readLong();
+                int length = in.readInt();
+                String data = "";
+                if (length > 0) {
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    data = new String(bytes, StandardCharsets.UTF_8);
+                }
+                database.applyReplicated(op, key, deadline, data);
+                applied = next;
+                leaderSequence = Math.max(leaderSequence, next);
+                lagMillis = Math.max(0L, System.currentTimeMillis() - timestamp);
+            } else if (type == ReplicationProtocol.HEARTBEAT) {
+                leaderSequence = Math.max(leaderSequence, in.readLong());
+                in.readLong();
+                if (applied >= leaderSequence) {
+                    lagMillis = 0L;
+                }
+            } else {
+                throw new IOException("Unknown replication message " + type);
+            }
+            if (in.available() == 0) {
+                acknowledge(out);
+            }
+        }
+    }
+
+    /**
+     * Атомарно заменяет содержимое хранилища снимком из потока. Пока снимок загружается, читатели видят
+     * прежнее содержимое
+     * @param in поток ведущего, установленный на начало снимка
+     * @throws IOException если чтение не удалось
+     */
+    private void bootstrap(DataInputStream in) throws IOException {
+        Database.Staging staging = database.stageReplica();
+
+        try {
+            new SnapshotReader(in).read(staging);
+            staging.commit();
+        } finally {
+            staging.abort();
+        }
+    }
+
+    /**
+     * Отправляет ведущему номер последнего применённого изменения
+     * @param out поток к ведущему
+     * @throws IOException если запись не удалась
+     */
+    private void acknowledge(DataOutputStream out) throws IOException {
+        out.writeLong(applied);
+        out.flush();
+    }
+
+    private void closeSocket() {
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
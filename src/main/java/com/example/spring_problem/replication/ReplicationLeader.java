@@ -0,0 +1,493 @@
+package com.example.spring_problem.replication;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.MutationListener;
+import com.example.spring_problem.database.ReplicationRole;
+import com.example.spring_problem.snapshot.SnapshotWriter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ведущий экземпляр репликации: принимает по TCP соединения ведомых и передаёт им изменения хранилища
+ * асинхронно, не задерживая изменяющие хранилище потоки. Изменения попадают в неблокирующую очередь, из
+ * которой их забирает поток раздачи: он выдаёт изменениям номера подряд и складывает их в кольцевой буфер
+ * последних database.replication.backlog изменений. Каждому ведомому свой поток передаёт сначала снимок
+ * хранилища, а затем изменения из буфера, начиная со следующего за снимком. Снимок слабо согласован, но
+ * все изменения, сделанные после его начала, передаются после него по порядку, поэтому ведомый приходит
+ * к содержимому ведущего. Ведомый, отставший больше чем на размер буфера, отключается и при повторном
+ * подключении получает снимок заново, как и все ведомые после замены содержимого загрузкой.
+ * Истечение времени жизни не передаётся: ведомые удаляют записи сами по тем же моментам истечения,
+ * поэтому часы экземпляров должны совпадать. Запускается при database.replication.role=leader
+ */
+@Component
+@ConditionalOnProperty(prefix = "database.replication", name = "role", havingValue = "leader")
+public class ReplicationLeader implements MutationListener, Replication, MeterBinder {
+    /**
+     * Хранилище
+     */
+    private final Database database;
+
+    /**
+     * Настройки репликации
+     */
+    private final DatabaseProperties.Replication properties;
+
+    /**
+     * Изменения, ещё не получившие номер
+     */
+    private final ConcurrentLinkedQueue<Frame> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Правдивость утверждения о том, что поток раздачи ожидает новых изменений
+     */
+    private final AtomicBoolean sleeping = new AtomicBoolean();
+
+    /**
+     * Кольцевой буфер последних изменений, изменение с номером n лежит в ячейке n & mask
+     */
+    private final AtomicReferenceArray<Frame> backlog;
+
+    /**
+     * Маска номера ячейки кольцевого буфера
+     */
+    private final int mask;
+
+    /**
+     * Номер последнего изменения, помещённого в буфер
+     */
+    private volatile long published;
+
+    /**
+     * Монитор, на котором потоки ведомых ожидают новых изменений
+     */
+    private final Object signal = new Object();
+
+    /**
+     * Подключённые ведомые
+     */
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Сокет, принимающий соединения ведомых
+     */
+    private ServerSocket server;
+
+    /**
+     * Поток, принимающий соединения
+     */
+    private Thread acceptor;
+
+    /**
+     * Поток раздачи изменений
+     */
+    private Thread dispatcher;
+
+    /**
+     * Правдивость утверждения о том, что ведущий остановлен
+     */
+    private volatile boolean closed;
+
+    /**
+     * Конструктор ведущего
+     * @param database хранилище
+     * @param properties настройки хранилища, используются свойства database.replication
+     */
+    public ReplicationLeader(Database database, DatabaseProperties properties) {
+        this.database = database;
+        this.properties = properties.getReplication();
+        int capacity = Integer.highestOneBit(Math.max(2, this.properties.getBacklog() - 1)) << 1;
+        this.backlog = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Открывает порт, запускает поток раздачи и поток приёма соединений и подключается к хранилищу
+     * получателем изменений
+     * @throws IOException если порт не удалось открыть
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(properties.getPort()));
+        dispatcher = new Thread(this::dispatch, "replication-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        database.setMutationListener(this);
+        acceptor = new Thread(this::accept, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Отключается от хранилища, закрывает порт и соединения ведомых, останавливает потоки
+     */
+    @PreDestroy
+    public void stop() {
+        database.setMutationListener(null);
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Session session : sessions) {
+            session.close();
+        }
+        LockSupport.unpark(dispatcher);
+        try {
+            acceptor.join();
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Метод, возвращающий порт, на котором ведущий принимает соединения
+     * @return порт
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Добавляет изменение в очередь раздачи. Не выполняет ввода-вывода и не блокируется
+     * @param op тип операции
+     * @param key значение ключа для хранилища
+     * @param deadline момент времени, в который время жизни данных истечёт, для {@link #PUT_IDLE} - время простоя
+     * @param data данные либо null для операций без данных
+     */
+    @Override
+    public void mutated(byte op, int key, long deadline, String data) {
+        queue.offer(new Frame(op, key, deadline, data));
+        if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Отключает всех ведомых, чтобы они заново получили снимок заменённого загрузкой содержимого
+     */
+    @Override
+    public void reset() {
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * Возвращает состояние ведущего и подключённых ведомых
+     * @return состояние репликации
+     */
+    @Override
+    public ReplicationStatus getStatus() {
+        long sequence = published;
+        List<ReplicationStatus.Follower> followers = new ArrayList<>();
+        long lag = 0L;
+
+        for (Session session : sessions) {
+            long acknowledged = session.acknowledged;
+            followers.add(new ReplicationStatus.Follower(session.address, acknowledged, sequence - acknowledged));
+            lag = Math.max(lag, sequence - acknowledged);
+        }
+        return new ReplicationStatus(ReplicationRole.LEADER, true, sequence, sequence, lag, 0L, 0L, followers);
+    }
+
+    /**
+     * Регистрирует метрики репликации: номер последнего изменения, число ведомых и отставание самого
+     * отстающего из них
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("database.replication.sequence", this, leader -> leader.published)
+                .description("Latest mutation sequence of this instance")
+                .register(registry);
+        Gauge.builder("database.replication.followers", sessions, List::size)
+                .description("Followers connected to the leader")
+                .register(registry);
+        Gauge.builder("database.replication.lag.records", this, leader -> leader.getStatus().getLagRecords())
+                .description("Mutations not yet applied by the slowest follower")
+                .register(registry);
+    }
+
+    /**
+     * Цикл потока раздачи: забирает изменения пачкой, выдаёт им номера, помещает в буфер и будит потоки ведомых
+     */
+    private void dispatch() {
+        long sequence = published;
+
+        while (!closed) {
+            long now = System.currentTimeMillis();
+            long first = sequence;
+            for (Frame frame; (frame = queue.poll()) != null; ) {
+                frame.sequence = ++sequence;
+                frame.timestamp = now;
+                backlog.set((int) (sequence & mask), frame);
+            }
+            if (sequence != first) {
+                synchronized (signal) {
+                    published = sequence;
+                    signal.notifyAll();
+                }
+            }
+
+            sleeping.set(true);
+            if (queue.isEmpty() && !closed) {
+                LockSupport.park(this);
+            }
+            sleeping.set(false);
+        }
+    }
+
+    /**
+     * Цикл потока приёма соединений: для каждого ведомого запускает поток передачи и поток подтверждений
+     */
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                Session session = new Session(socket);
+                sessions.add(session);
+                session.sender.start();
+                session.receiver.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Изменение хранилища в очереди и кольцевом буфере
+     */
+    private static final class Frame {
+        /**
+         * Тип операции
+         */
+        private final byte op;
+        /**
+         * Значение ключа для хранилища
+         */
+        private final int key;
+        /**
+         * Момент истечения времени жизни или время простоя
+         */
+        private final long deadline;
+        /**
+         * Данные либо null для операций без данных
+         */
+        private final String data;
+        /**
+         * Номер изменения, выдаётся потоком раздачи
+         */
+        private long sequence;
+        /**
+         * Время выдачи номера в миллисекундах
+         */
+        private long timestamp;
+
+        private Frame(byte op, int key, long deadline, String data) {
+            this.op = op;
+            this.key = key;
+            this.deadline = deadline;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Соединение с ведомым: поток передачи отправляет снимок и изменения, поток подтверждений читает номера
+     * применённых ведомым изменений и замечает разрыв соединения
+     */
+    private final class Session {
+        /**
+         * Сокет соединения
+         */
+        private final Socket socket;
+        /**
+         * Адрес ведомого
+         */
+        private final String address;
+        /**
+         * Поток передачи
+         */
+        private final Thread sender;
+        /**
+         * Поток подтверждений
+         */
+        private final Thread receiver;
+        /**
+         * Номер последнего изменения, применение которого ведомый подтвердил, -1 - ведомый ещё не подтвердил
+         * загрузку снимка и считается отстающим
+         */
+        private volatile long acknowledged = -1L;
+        /**
+         * Правдивость утверждения о том, что соединение закрыто
+         */
+        private volatile boolean finished;
+
+        private Session(Socket socket) {
+            this.socket = socket;
+            this.address = String.valueOf(socket.getRemoteSocketAddress());
+            this.sender = new Thread(this::send, "replication-sender-" + address);
+            this.receiver = new Thread(this::receive, "replication-receiver-" + address);
+            sender.setDaemon(true);
+            receiver.setDaemon(true);
+        }
+
+        /**
+         * Передаёт снимок хранилища, затем изменения по мере их появления и сигналы без изменений
+         */
+        private void send() {
+            try {
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream(), ReplicationProtocol.BUFFER_SIZE));
+                long next = published + 1;
+
+                out.writeInt(ReplicationProtocol.MAGIC);
+                out.writeLong(next - 1);
+                SnapshotWriter writer = new SnapshotWriter(out, false);
+                try {
+                    database.dump((key, data, ttl) -> {
+                        try {
+                            writer.write(key, data, ttl);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                writer.finish();
+
+                long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(properties.getHeartbeatInterval());
+                long lastSent = System.nanoTime();
+                while (!finished) {
+                    long last = published;
+                    if (next <= last) {
+                        for (; next <= last; next++) {
+                            Frame frame = backlog.get((int) (next & mask));
+                            if (frame == null || frame.sequence != next) {
+                                throw new IOException("Follower " + address + " fell behind the replication backlog");
+                            }
+                            write(out, frame);
+                        }
+                        out.flush();
+                        lastSent = System.nanoTime();
+                        continue;
+                    }
+                    long idle = System.nanoTime() - lastSent;
+                    if (idle >= heartbeatNanos) {
+                        out.writeByte(ReplicationProtocol.HEARTBEAT);
+                        out.writeLong(last);
+                        out.writeLong(System.currentTimeMillis());
+                        out.flush();
+                        lastSent = System.nanoTime();
+                        continue;
+                    }
+                    synchronized (signal) {
+                        if (published < next && !finished) {
+                            signal.wait(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(heartbeatNanos - idle)));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (!finished && !closed) {
+                    System.err.println("Replication to " + address + " stopped: " + e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Записывает изменение в поток ведомого
+         * @param out поток ведомого
+         * @param frame изменение
+         * @throws IOException если запись не удалась
+         */
+        private void write(DataOutputStream out, Frame frame) throws IOException {
+            out.writeByte(ReplicationProtocol.MUTATION);
+            out.writeLong(frame.sequence);
+            out.writeLong(frame.timestamp);
+            out.writeByte(frame.op);
+            out.writeInt(frame.key);
+            out.writeLong(frame.deadline);
+            if (frame.data == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = frame.data.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        /**
+         * Читает номера изменений, применение которых подтвердил ведомый, до разрыва соединения
+         */
+        private void receive() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (!finished) {
+                    acknowledged = in.readLong();
+                }
+            } catch (IOException e) {
+                if (!finished && !closed && !(e instanceof EOFException) && !(e instanceof SocketException)) {
+                    System.err.println("Replication to " + address + " stopped: " + e);
+                }
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Закрывает соединение и будит поток передачи. Повторный вызов ничего не делает
+         */
+        private void close() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            sessions.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+}
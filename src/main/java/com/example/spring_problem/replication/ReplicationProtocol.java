@@ -0,0 +1,36 @@
+package com.example.spring_problem.replication;
+
+/**
+ * Константы протокола репликации. Ведущий передаёт ведомому:
+ * <pre>
+ * начало:     int MAGIC, long номер последнего изменения, вошедшего в снимок
+ * снимок:     хранилище в формате {@link com.example.spring_problem.snapshot.SnapshotFormat} без индекса
+ * изменение:  byte MUTATION, long номер, long время ведущего, byte операция, int ключ,
+ *             long момент истечения или время простоя, int длина данных в UTF-8 (-1 - без данных), данные
+ * сигнал:     byte HEARTBEAT, long номер последнего изменения ведущего, long время ведущего
+ * </pre>
+ * Ведомый в ответ передаёт номера применённых изменений: long номер. Номера изменений идут подряд,
+ * поэтому разность номеров ведущего и ведомого - отставание ведомого в изменениях. Все числа
+ * записываются в порядке big-endian
+ */
+final class ReplicationProtocol {
+    /**
+     * Сигнатура начала потока репликации, "SPRL"
+     */
+    static final int MAGIC = 0x5350524C;
+    /**
+     * Тип сообщения: изменение хранилища
+     */
+    static final byte MUTATION = 1;
+    /**
+     * Тип сообщения: сигнал ведущего без новых изменений
+     */
+    static final byte HEARTBEAT = 2;
+    /**
+     * Размер буферов потоков соединения в байтах
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private ReplicationProtocol() {
+    }
+}
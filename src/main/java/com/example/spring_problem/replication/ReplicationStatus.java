@@ -0,0 +1,195 @@
+package com.example.spring_problem.replication;
+
+import com.example.spring_problem.database.ReplicationRole;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Состояние репликации экземпляра. Номера изменений выдаёт ведущий подряд, начиная с 1, поэтому отставание
+ * в изменениях - разность номера последнего изменения ведущего и номера последнего применённого изменения
+ */
+public class ReplicationStatus {
+    /**
+     * Роль экземпляра
+     */
+    private final ReplicationRole role;
+    /**
+     * Правдивость утверждения о том, что ведомый подключён к ведущему и получил снимок, у ведущего всегда true
+     */
+    private final boolean connected;
+    /**
+     * Номер последнего изменения: у ведущего - выданного, у ведомого - применённого
+     */
+    private final long sequence;
+    /**
+     * Номер последнего известного изменения ведущего
+     */
+    private final long leaderSequence;
+    /**
+     * Отставание в изменениях: у ведомого - от ведущего, у ведущего - самого отстающего ведомого
+     */
+    private final long lagRecords;
+    /**
+     * Задержка применения последнего изменения ведомым относительно его выдачи ведущим в миллисекундах,
+     * 0 - ведомый не отстаёт
+     */
+    private final long lagMillis;
+    /**
+     * Число полученных ведомым снимков хранилища
+     */
+    private final long bootstraps;
+    /**
+     * Подключённые к ведущему ведомые
+     */
+    private final List<Follower> followers;
+
+    /**
+     * Создаёт состояние репликации
+     * @param role роль экземпляра
+     * @param connected правдивость утверждения о том, что ведомый подключён к ведущему
+     * @param sequence номер последнего выданного или применённого изменения
+     * @param leaderSequence номер последнего известного изменения ведущего
+     * @param lagRecords отставание в изменениях
+     * @param lagMillis задержка применения последнего изменения в миллисекундах
+     * @param bootstraps число полученных снимков хранилища
+     * @param followers подключённые ведомые
+     */
+    public ReplicationStatus(ReplicationRole role, boolean connected, long sequence, long leaderSequence,
+                             long lagRecords, long lagMillis, long bootstraps, List<Follower> followers) {
+        this.role = role;
+        this.connected = connected;
+        this.sequence = sequence;
+        this.leaderSequence = leaderSequence;
+        this.lagRecords = lagRecords;
+        this.lagMillis = lagMillis;
+        this.bootstraps = bootstraps;
+        this.followers = followers;
+    }
+
+    /**
+     * Создаёт состояние экземпляра без репликации
+     * @return состояние с ролью {@link ReplicationRole#NONE}
+     */
+    public static ReplicationStatus none() {
+        return new ReplicationStatus(ReplicationRole.NONE, false, 0L, 0L, 0L, 0L, 0L, Collections.emptyList());
+    }
+
+    /**
+     * Метод, возвращающий роль экземпляра
+     * @return роль экземпляра
+     */
+    public ReplicationRole getRole() {
+        return role;
+    }
+
+    /**
+     * Метод, возвращающий признак подключения к ведущему
+     * @return правдивость утверждения о том, что ведомый подключён к ведущему и получил снимок
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Метод, возвращающий номер последнего выданного или применённого изменения
+     * @return номер изменения
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Метод, возвращающий номер последнего известного изменения ведущего
+     * @return номер изменения
+     */
+    public long getLeaderSequence() {
+        return leaderSequence;
+    }
+
+    /**
+     * Метод, возвращающий отставание в изменениях
+     * @return число изменений
+     */
+    public long getLagRecords() {
+        return lagRecords;
+    }
+
+    /**
+     * Метод, возвращающий задержку применения последнего изменения
+     * @return задержка в миллисекундах
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * Метод, возвращающий число полученных снимков хранилища
+     * @return число снимков
+     */
+    public long getBootstraps() {
+        return bootstraps;
+    }
+
+    /**
+     * Метод, возвращающий подключённых ведомых
+     * @return ведомые, у ведомого - пустой список
+     */
+    public List<Follower> getFollowers() {
+        return followers;
+    }
+
+    /**
+     * Состояние ведомого, подключённого к ведущему
+     */
+    public static class Follower {
+        /**
+         * Адрес ведомого
+         */
+        private final String address;
+        /**
+         * Номер последнего изменения, применение которого ведомый подтвердил
+         */
+        private final long acknowledged;
+        /**
+         * Отставание ведомого в изменениях
+         */
+        private final long lagRecords;
+
+        /**
+         * Создаёт состояние ведомого
+         * @param address адрес ведомого
+         * @param acknowledged номер последнего подтверждённого изменения
+         * @param lagRecords отставание в изменениях
+         */
+        public Follower(String address, long acknowledged, long lagRecords) {
+            this.address = address;
+            this.acknowledged = acknowledged;
+            this.lagRecords = lagRecords;
+        }
+
+        /**
+         * Метод, возвращающий адрес ведомого
+         * @return адрес и порт ведомого
+         */
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * Метод, возвращающий номер последнего подтверждённого изменения
+         * @return номер изменения
+         */
+        public long getAcknowledged() {
+            return acknowledged;
+        }
+
+        /**
+         * Метод, возвращающий отставание ведомого
+         * @return число изменений
+         */
+        public long getLagRecords() {
+            return lagRecords;
+        }
+    }
+}
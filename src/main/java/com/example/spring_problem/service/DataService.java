@@ -1,7 +1,23 @@
 package com.example.spring_problem.service;
 
+import com.example.spring_problem.cluster.ClusterStatus;
+import com.example.spring_problem.database.CompressionMetrics;
+import com.example.spring_problem.database.EvictionMetrics;
+import com.example.spring_problem.database.ExpiryMetrics;
+import com.example.spring_problem.database.LoadMode;
+import com.example.spring_problem.database.SlowOperation;
+import com.example.spring_problem.entity.BatchResult;
+import com.example.spring_problem.entity.DataObject;
+import com.example.spring_problem.exception.ClusterDisabledException;
+import com.example.spring_problem.replication.ReplicationStatus;
+import com.example.spring_problem.snapshot.LoadProgress;
+
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
 
 /**
  * Интерфейс сервиса, который передаёт хранилищу команды и получает ответы
@@ -23,6 +39,15 @@ public interface DataService {
      */
     void put(int key, String data, long ttl);
 
+    /**
+     * Помещает в хранилище данные по заданному ключу со временем жизни без обращений: данные удаляются,
+     * если к ним не обращались дольше времени простоя
+     * @param key ключ для хранилища
+     * @param data данные для хранилища
+     * @param idle время простоя в миллисекундах
+     */
+    void putIdle(int key, String data, long idle);
+
     /**
      * Помещает в хранилище данные по заданному ключу с временем жизни по умолчанию
      * @param key ключ для хранилища
@@ -37,15 +62,168 @@ public interface DataService {
      */
     String remove(int key);
 
+    /**
+     * Возвращает значение, хранящееся в хранилище по заданному ключу, отсутствие ключа не приводит к исключению
+     * @param key ключ для хранилища
+     * @return данные, хранящиеся по заданному ключу, null - ключ отсутствует
+     */
+    String getIfPresent(int key);
+
+    /**
+     * Возвращает данные, хранящиеся по заданному ключу, в хранимом виде без распаковки
+     * @param key ключ для хранилища
+     * @return String, данные в формате zlib byte[], null - ключ отсутствует
+     */
+    Object getStoredIfPresent(int key);
+
+    /**
+     * Возвращает признак хранения сжатых данных
+     * @return правдивость утверждения о том, что данные могут храниться сжатыми
+     */
+    boolean isCompressionEnabled();
+
+    /**
+     * Удаляет данные из хранилища и возвращает их, отсутствие ключа не приводит к исключению
+     * @param key ключ для хранилища
+     * @return удалённые данные, null - ключ отсутствует
+     */
+    String removeIfPresent(int key);
+
+    /**
+     * Возвращает данные по нескольким ключам, отсутствие ключа не приводит к исключению
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей
+     */
+    List<BatchResult> getAll(int[] keys);
+
+    /**
+     * Возвращает данные по нескольким ключам вместе с оставшимся временем жизни найденных записей
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей
+     */
+    List<BatchResult> getAllWithTtl(int[] keys);
+
+    /**
+     * Помещает в хранилище несколько записей, время жизни и простоя записей задаются в секундах
+     * @param records записи для хранилища
+     * @return результаты в порядке записей
+     */
+    List<BatchResult> putAll(List<DataObject> records);
+
+    /**
+     * Удаляет данные по нескольким ключам и возвращает их, отсутствие ключа не приводит к исключению
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей
+     */
+    List<BatchResult> removeAll(int[] keys);
+
     /**
      * Возвращает сохранённое состояние хранилища в виде .dat файла
-     * @return возвращает файл, в котором хранится сериализованное хранилище
+     * @return возвращает файл, в котором хранится сохранённое хранилище
      */
     File dump();
 
+    /**
+     * Потоково записывает текущее состояние хранилища в выходной поток
+     * @param outputStream выходной поток
+     * @throws IOException если запись в поток не удалась
+     */
+    void dump(OutputStream outputStream) throws IOException;
+
+    /**
+     * Возвращает признак упорядоченного индекса ключей, без которого обход диапазона недоступен
+     * @return правдивость утверждения о том, что индекс ведётся
+     */
+    boolean isIndexEnabled();
+
+    /**
+     * Потоково записывает в выходной поток в формате JSON страницу записей из диапазона ключей
+     * по возрастанию ключа
+     * @param from наименьший ключ диапазона
+     * @param to наибольший ключ диапазона
+     * @param limit наибольшее число записей страницы
+     * @param outputStream выходной поток
+     * @throws IOException если запись в поток не удалась
+     */
+    void scan(int from, int to, int limit, OutputStream outputStream) throws IOException;
+
+    /**
+     * Передаёт ранее сохранённый файл хранилища в канал, если файл существует
+     * @param target канал, в который передаётся файл
+     * @return правдивость утверждения о том, что файл существует и был передан
+     * @throws IOException если чтение файла или запись в канал не удались
+     */
+    boolean transferSnapshot(WritableByteChannel target) throws IOException;
+
     /**
      * Загружает состояние хранилища из входного потока данных
      * @param loadInputStream входной поток данных
      */
     void load(InputStream loadInputStream);
+
+    /**
+     * Загружает состояние хранилища из входного потока данных заданным способом: заменяя текущее
+     * содержимое или добавляя записи к нему
+     * @param loadInputStream входной поток данных
+     * @param mode способ загрузки
+     */
+    void load(InputStream loadInputStream, LoadMode mode);
+
+    /**
+     * Возвращает ход текущей или последней загрузки хранилища
+     * @return ход загрузки
+     */
+    LoadProgress getLoadProgress();
+
+    /**
+     * Возвращает счётчики удаления записей с истекшим временем жизни
+     * @return счётчики удаления
+     */
+    ExpiryMetrics getExpiryMetrics();
+
+    /**
+     * Возвращает счётчики сжатия данных записей
+     * @return счётчики сжатия
+     */
+    CompressionMetrics getCompressionMetrics();
+
+    /**
+     * Возвращает счётчики попаданий и вытеснения записей
+     * @return счётчики вытеснения
+     */
+    EvictionMetrics getEvictionMetrics();
+
+    /**
+     * Возвращает медленные операции хранилища
+     * @return медленные операции, начиная с самой долгой
+     */
+    List<SlowOperation> getSlowOperations();
+
+    /**
+     * Возвращает состояние репликации экземпляра
+     * @return состояние репликации, роль {@link com.example.spring_problem.database.ReplicationRole#NONE} - репликация отключена
+     */
+    ReplicationStatus getReplicationStatus();
+
+    /**
+     * Возвращает состояние узла кластера
+     * @return состояние узла, {@link ClusterStatus#none()} - режим кластера выключен
+     */
+    ClusterStatus getClusterStatus();
+
+    /**
+     * Заменяет список участников кластера и запускает передачу сменивших владельца ключей
+     * @param members адреса участников
+     * @return состояние узла
+     * @throws ClusterDisabledException если режим кластера выключен
+     */
+    ClusterStatus changeClusterMembers(List<String> members) throws ClusterDisabledException;
+
+    /**
+     * Принимает ключи, переданные другим узлом кластера
+     * @param inputStream тело запроса в формате снимка
+     * @return число полученных записей
+     * @throws ClusterDisabledException если режим кластера выключен
+     */
+    long receiveClusterTransfer(InputStream inputStream) throws ClusterDisabledException;
 }
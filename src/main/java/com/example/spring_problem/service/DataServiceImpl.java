@@ -1,13 +1,31 @@
 package com.example.spring_problem.service;
 
+import com.example.spring_problem.cluster.ClusterRouter;
+import com.example.spring_problem.cluster.ClusterStatus;
 import com.example.spring_problem.dao.DataDAO;
+import com.example.spring_problem.database.CompressionMetrics;
+import com.example.spring_problem.database.EvictionMetrics;
+import com.example.spring_problem.database.ExpiryMetrics;
+import com.example.spring_problem.database.LoadMode;
+import com.example.spring_problem.database.SlowOperation;
+import com.example.spring_problem.entity.BatchResult;
+import com.example.spring_problem.entity.DataObject;
+import com.example.spring_problem.exception.ClusterDisabledException;
 import com.example.spring_problem.exception.MissedDataException;
 import com.example.spring_problem.exception.TimeToLeaveException;
+import com.example.spring_problem.replication.Replication;
+import com.example.spring_problem.replication.ReplicationStatus;
+import com.example.spring_problem.snapshot.LoadProgress;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
 
 /**
  * Сервис для связи с хранилищем, реализующий интерфейс {@link DataService}
@@ -19,6 +37,16 @@ public class DataServiceImpl implements DataService {
      */
     private DataDAO dataDAO;
 
+    /**
+     * Ведущий или ведомый экземпляр репликации, null - репликация отключена
+     */
+    private Replication replication;
+
+    /**
+     * Узел кластера, null - режим кластера выключен
+     */
+    private ClusterRouter cluster;
+
     /**
      * Конструктор, инициализирует поле DAO, который связывается с хранилищем, с использованием Spring
      * @param dataDAO экземпляр {@link DataDAO}
@@ -28,6 +56,24 @@ public class DataServiceImpl implements DataService {
         this.dataDAO = dataDAO;
     }
 
+    /**
+     * Задаёт участника репликации, если она включена свойством database.replication.role
+     * @param replication ведущий или ведомый экземпляр
+     */
+    @Autowired(required = false)
+    public void setReplication(Replication replication) {
+        this.replication = replication;
+    }
+
+    /**
+     * Задаёт узел кластера, если режим кластера включён свойством database.cluster.enabled
+     * @param cluster узел кластера
+     */
+    @Autowired(required = false)
+    public void setCluster(ClusterRouter cluster) {
+        this.cluster = cluster;
+    }
+
     /**
      * Возвращает данные, которые содержатся в хранилище по переданному ключу
      * @param key значение ключа для хранилища
@@ -51,6 +97,18 @@ public class DataServiceImpl implements DataService {
         dataDAO.put(key,data,ttl);
     }
 
+    /**
+     * Записывает в хранилище данные по переданному ключу со временем жизни без обращений
+     * @param key значение ключа для хранилища
+     * @param data данные для хранилища
+     * @param idle время простоя в миллисекундах
+     * @throws TimeToLeaveException если переданное время простоя не положительно, то выбрасывается исключение
+     */
+    @Override
+    public void putIdle(int key, String data, long idle) throws TimeToLeaveException {
+        dataDAO.putIdle(key, data, idle);
+    }
+
     /**
      * Записывает в хранилище данные по переданному ключу с временем жизни по умолчанию
      * @param key значение ключа для хранилища
@@ -72,6 +130,85 @@ public class DataServiceImpl implements DataService {
         return dataDAO.remove(key);
     }
 
+    /**
+     * Возвращает данные, которые содержатся в хранилище по переданному ключу, без исключения при промахе
+     * @param key значение ключа для хранилища
+     * @return данные либо null, если ключ отсутствует
+     */
+    @Override
+    public String getIfPresent(int key) {
+        return dataDAO.getIfPresent(key);
+    }
+
+    /**
+     * Возвращает данные, которые содержатся в хранилище по переданному ключу, в хранимом виде без распаковки
+     * @param key значение ключа для хранилища
+     * @return String, данные в формате zlib byte[] либо null, если ключ отсутствует
+     */
+    @Override
+    public Object getStoredIfPresent(int key) {
+        return dataDAO.getStoredIfPresent(key);
+    }
+
+    /**
+     * Возвращает признак хранения сжатых данных
+     * @return правдивость утверждения о том, что данные могут храниться сжатыми
+     */
+    @Override
+    public boolean isCompressionEnabled() {
+        return dataDAO.isCompressionEnabled();
+    }
+
+    /**
+     * Удаляет данные, содержащиеся в хранилище, по переданному ключу и возвращает их, без исключения при промахе
+     * @param key значение ключа для хранилища
+     * @return удалённые данные либо null, если ключ отсутствует
+     */
+    @Override
+    public String removeIfPresent(int key) {
+        return dataDAO.removeIfPresent(key);
+    }
+
+    /**
+     * Возвращает данные по нескольким ключам
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей, для отсутствующих ключей - статус 404
+     */
+    @Override
+    public List<BatchResult> getAll(int[] keys) {
+        return dataDAO.getAll(keys);
+    }
+
+    /**
+     * Возвращает данные по нескольким ключам вместе с оставшимся временем жизни найденных записей
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей, для отсутствующих ключей - статус 404 без времени жизни
+     */
+    @Override
+    public List<BatchResult> getAllWithTtl(int[] keys) {
+        return dataDAO.getAllWithTtl(keys);
+    }
+
+    /**
+     * Записывает в хранилище несколько записей
+     * @param records записи для хранилища, время жизни и простоя в секундах
+     * @return результаты в порядке записей, для неверных записей - статус 400
+     */
+    @Override
+    public List<BatchResult> putAll(List<DataObject> records) {
+        return dataDAO.putAll(records);
+    }
+
+    /**
+     * Удаляет данные по нескольким ключам и возвращает их
+     * @param keys ключи для хранилища
+     * @return результаты в порядке ключей, для отсутствующих ключей - статус 404
+     */
+    @Override
+    public List<BatchResult> removeAll(int[] keys) {
+        return dataDAO.removeAll(keys);
+    }
+
     /**
      * Возвращает сохранённое состояние хранилища в виде .dat файла
      * @return возвращает сохранённое состояние хранилища в виде .dat файла
@@ -81,6 +218,49 @@ public class DataServiceImpl implements DataService {
         return dataDAO.dump();
     }
 
+    /**
+     * Потоково записывает текущее состояние хранилища в выходной поток
+     * @param outputStream выходной поток
+     * @throws IOException если запись в поток не удалась
+     */
+    @Override
+    public void dump(OutputStream outputStream) throws IOException {
+        dataDAO.dump(outputStream);
+    }
+
+    /**
+     * Возвращает признак упорядоченного индекса ключей
+     * @return правдивость утверждения о том, что индекс ведётся
+     */
+    @Override
+    public boolean isIndexEnabled() {
+        return dataDAO.isIndexEnabled();
+    }
+
+    /**
+     * Потоково записывает страницу записей из диапазона ключей в выходной поток
+     * @param from наименьший ключ диапазона
+     * @param to наибольший ключ диапазона
+     * @param limit наибольшее число записей страницы
+     * @param outputStream выходной поток
+     * @throws IOException если запись в поток не удалась
+     */
+    @Override
+    public void scan(int from, int to, int limit, OutputStream outputStream) throws IOException {
+        dataDAO.scan(from, to, limit, outputStream);
+    }
+
+    /**
+     * Передаёт ранее сохранённый файл хранилища в канал, если файл существует
+     * @param target канал, в который передаётся файл
+     * @return правдивость утверждения о том, что файл существует и был передан
+     * @throws IOException если чтение файла или запись в канал не удались
+     */
+    @Override
+    public boolean transferSnapshot(WritableByteChannel target) throws IOException {
+        return dataDAO.transferSnapshot(target);
+    }
+
     /**
      * Загружает состояние хранилища из входного потока данных
      * @param loadInputStream входной поток данных
@@ -89,4 +269,110 @@ public class DataServiceImpl implements DataService {
     public void load(InputStream loadInputStream) {
         dataDAO.load(loadInputStream);
     }
+
+    /**
+     * Загружает состояние хранилища из входного потока данных заданным способом: заменяя текущее
+     * содержимое или добавляя записи к нему
+     * @param loadInputStream входной поток данных
+     * @param mode способ загрузки
+     */
+    @Override
+    public void load(InputStream loadInputStream, LoadMode mode) {
+        dataDAO.load(loadInputStream, mode);
+    }
+
+    /**
+     * Возвращает ход текущей или последней загрузки хранилища
+     * @return ход загрузки
+     */
+    @Override
+    public LoadProgress getLoadProgress() {
+        return dataDAO.getLoadProgress();
+    }
+
+    /**
+     * Возвращает счётчики удаления записей с истекшим временем жизни
+     * @return счётчики удаления
+     */
+    @Override
+    public ExpiryMetrics getExpiryMetrics() {
+        return dataDAO.getExpiryMetrics();
+    }
+
+    /**
+     * Возвращает счётчики сжатия данных записей
+     * @return счётчики сжатия
+     */
+    @Override
+    public CompressionMetrics getCompressionMetrics() {
+        return dataDAO.getCompressionMetrics();
+    }
+
+    /**
+     * Возвращает счётчики попаданий и вытеснения записей
+     * @return счётчики вытеснения
+     */
+    @Override
+    public EvictionMetrics getEvictionMetrics() {
+        return dataDAO.getEvictionMetrics();
+    }
+
+    /**
+     * Возвращает медленные операции хранилища
+     * @return медленные операции, начиная с самой долгой
+     */
+    @Override
+    public List<SlowOperation> getSlowOperations() {
+        return dataDAO.getSlowOperations();
+    }
+
+    /**
+     * Возвращает состояние репликации экземпляра
+     * @return состояние репликации, роль {@link com.example.spring_problem.database.ReplicationRole#NONE} - репликация отключена
+     */
+    @Override
+    public ReplicationStatus getReplicationStatus() {
+        return replication != null ? replication.getStatus() : ReplicationStatus.none();
+    }
+
+    /**
+     * Возвращает состояние узла кластера
+     * @return состояние узла, {@link ClusterStatus#none()} - режим кластера выключен
+     */
+    @Override
+    public ClusterStatus getClusterStatus() {
+        return cluster != null ? cluster.getStatus() : ClusterStatus.none();
+    }
+
+    /**
+     * Заменяет список участников кластера и запускает передачу сменивших владельца ключей
+     * @param members адреса участников
+     * @return состояние узла
+     * @throws ClusterDisabledException если режим кластера выключен
+     */
+    @Override
+    public ClusterStatus changeClusterMembers(List<String> members) throws ClusterDisabledException {
+        if (cluster == null) {
+            throw new ClusterDisabledException();
+        }
+        return cluster.changeMembers(members);
+    }
+
+    /**
+     * Принимает ключи, переданные другим узлом кластера
+     * @param inputStream тело запроса в формате снимка
+     * @return число полученных записей
+     * @throws ClusterDisabledException если режим кластера выключен
+     */
+    @Override
+    public long receiveClusterTransfer(InputStream inputStream) throws ClusterDisabledException {
+        if (cluster == null) {
+            throw new ClusterDisabledException();
+        }
+        try {
+            return cluster.receive(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,68 @@
+package com.example.spring_problem.snapshot;
+
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.EntryConsumer;
+import com.example.spring_problem.exception.SnapshotFormatException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.util.Map;
+
+/**
+ * Чтение хранилища, сохранённого прежним способом - сериализацией Java объекта
+ * ConcurrentHashMap&lt;{@link Database.Key},String&gt;. Десериализация ограничена фильтром: допускаются
+ * только классы, из которых состоит такой объект, поэтому поток из недоверенного источника не может
+ * создать произвольные объекты. Формат не потоковый, весь объект читается в память целиком
+ */
+public final class LegacySnapshotReader {
+    /**
+     * Фильтр десериализации: ConcurrentHashMap с его сегментами и блокировками, ключ хранилища и строки
+     */
+    private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=16;java.util.concurrent.ConcurrentHashMap;java.util.concurrent.ConcurrentHashMap$Segment;"
+                    + "java.util.concurrent.locks.ReentrantLock;java.util.concurrent.locks.ReentrantLock$*;"
+                    + "java.util.concurrent.locks.AbstractQueuedSynchronizer;"
+                    + "java.util.concurrent.locks.AbstractOwnableSynchronizer;"
+                    + "com.example.spring_problem.database.Database$Key;java.lang.String;!*");
+
+    private LegacySnapshotReader() {
+    }
+
+    /**
+     * Читает сохранённое хранилище и передаёт его записи получателю, время жизни передаётся как
+     * сохранённое оставшееся число миллисекунд
+     * @param in поток сериализованного хранилища
+     * @param consumer получатель записей
+     * @return число прочитанных записей
+     * @throws IOException если чтение из потока не удалось
+     * @throws SnapshotFormatException если поток не содержит сохранённое хранилище
+     */
+    public static long read(InputStream in, EntryConsumer consumer) throws IOException {
+        Object object;
+
+        ObjectInputStream ois = new ObjectInputStream(in);
+        ois.setObjectInputFilter(FILTER);
+        try {
+            object = ois.readObject();
+        } catch (ClassNotFoundException | InvalidClassException e) {
+            throw new SnapshotFormatException("Not a database snapshot: " + e.getMessage());
+        }
+        if (!(object instanceof Map)) {
+            throw new SnapshotFormatException("Not a database snapshot");
+        }
+
+        long records = 0;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+            if (!(entry.getKey() instanceof Database.Key) || !(entry.getValue() instanceof String)) {
+                throw new SnapshotFormatException("Not a database snapshot");
+            }
+            Database.Key key = (Database.Key) entry.getKey();
+            consumer.accept(key.getKey(), (String) entry.getValue(), key.getTtl());
+            records++;
+        }
+        return records;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.spring_problem.snapshot;
+
+import com.example.spring_problem.database.LoadMode;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ход загрузки сохранённого хранилища: состояние, число загруженных записей и скорость загрузки.
+ * Одновременно выполняется не больше одной загрузки
+ */
+public class LoadProgress {
+    /**
+     * Состояние загрузки
+     */
+    public enum State {
+        /**
+         * Загрузок ещё не было
+         */
+        IDLE,
+        /**
+         * Загрузка выполняется
+         */
+        RUNNING,
+        /**
+         * Последняя загрузка завершилась успешно
+         */
+        COMPLETED,
+        /**
+         * Последняя загрузка завершилась ошибкой, хранилище не изменилось в режиме {@link LoadMode#REPLACE}
+         */
+        FAILED
+    }
+
+    /**
+     * Число загруженных записей текущей или последней загрузки
+     */
+    private final LongAdder records = new LongAdder();
+    /**
+     * Состояние загрузки
+     */
+    private volatile State state = State.IDLE;
+    /**
+     * Способ текущей или последней загрузки
+     */
+    private volatile LoadMode mode;
+    /**
+     * Момент начала загрузки в наносекундах {@link System#nanoTime()}
+     */
+    private volatile long startNanos;
+    /**
+     * Момент окончания загрузки в наносекундах, 0 - загрузка выполняется
+     */
+    private volatile long finishNanos;
+    /**
+     * Описание ошибки последней загрузки
+     */
+    private volatile String error;
+
+    /**
+     * Начинает учёт новой загрузки, если никакая другая не выполняется
+     * @param mode способ загрузки
+     * @return правдивость утверждения о том, что загрузка начата, false - уже выполняется другая
+     */
+    public synchronized boolean start(LoadMode mode) {
+        if (state == State.RUNNING) {
+            return false;
+        }
+        records.reset();
+        this.mode = mode;
+        this.error = null;
+        this.finishNanos = 0L;
+        this.startNanos = System.nanoTime();
+        this.state = State.RUNNING;
+        return true;
+    }
+
+    /**
+     * Учитывает загруженные записи
+     * @param count число записей
+     */
+    public void record(int count) {
+        records.add(count);
+    }
+
+    /**
+     * Отмечает успешное окончание загрузки
+     */
+    public synchronized void complete() {
+        finishNanos = System.nanoTime();
+        state = State.COMPLETED;
+    }
+
+    /**
+     * Отмечает окончание загрузки с ошибкой
+     * @param error описание ошибки
+     */
+    public synchronized void fail(String error) {
+        this.error = error;
+        finishNanos = System.nanoTime();
+        state = State.FAILED;
+    }
+
+    /**
+     * Метод, возвращающий состояние загрузки
+     * @return состояние загрузки
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Метод, возвращающий способ текущей или последней загрузки
+     * @return способ загрузки, null - загрузок ещё не было
+     */
+    public LoadMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Метод, возвращающий число загруженных записей текущей или последней загрузки
+     * @return число записей
+     */
+    public long getRecords() {
+        return records.sum();
+    }
+
+    /**
+     * Метод, возвращающий длительность текущей или последней загрузки
+     * @return длительность в миллисекундах
+     */
+    public long getElapsedMillis() {
+        if (state == State.IDLE) {
+            return 0L;
+        }
+        long finish = finishNanos;
+        return ((finish == 0L ? System.nanoTime() : finish) - startNanos) / 1_000_000L;
+    }
+
+    /**
+     * Метод, возвращающий среднюю скорость текущей или последней загрузки
+     * @return число записей в секунду
+     */
+    public double getRecordsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0L ? 0.0 : getRecords() * 1000.0 / elapsed;
+    }
+
+    /**
+     * Метод, возвращающий описание ошибки последней загрузки
+     * @return описание ошибки, null - ошибки не было
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.spring_problem.snapshot;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие Java Flight Recorder о сохранении или загрузке хранилища
+ */
+@Name("com.example.spring_problem.Snapshot")
+@Label("Snapshot")
+@Description("Dump or load of the whole store")
+@Category("Database")
+@StackTrace(false)
+public class SnapshotEvent extends jdk.jfr.Event {
+    /**
+     * Операция: DUMP или LOAD
+     */
+    @Label("Operation")
+    public String operation;
+
+    /**
+     * Число записей
+     */
+    @Label("Records")
+    public long records;
+
+    /**
+     * Число байт потока
+     */
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    /**
+     * Правдивость утверждения о том, что операция завершилась успешно
+     */
+    @Label("Succeeded")
+    public boolean succeeded;
+}
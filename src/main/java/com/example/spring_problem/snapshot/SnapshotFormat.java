@@ -0,0 +1,53 @@
+package com.example.spring_problem.snapshot;
+
+/**
+ * Константы двоичного формата сохранённого хранилища. Файл устроен так:
+ * <pre>
+ * заголовок:  int MAGIC, short VERSION, short флаги
+ * блок:       int длина содержимого, int число записей, содержимое, int CRC32C содержимого
+ * запись:     varint длина записи, int ключ, varint оставшееся время жизни, значение в UTF-8
+ * конец:      int 0 - блок нулевой длины, long общее число записей
+ * индекс:     int число блоков, для каждого блока long смещение и int число записей, int CRC32C индекса,
+ *             long смещение индекса, int INDEX_MAGIC
+ * </pre>
+ * Индекс необязателен и записывается, если в заголовке установлен флаг {@link #FLAG_INDEX}. Он
+ * позволяет читателю с произвольным доступом найти блоки по смещениям, прочитав последние
+ * {@value #FOOTER_SIZE} байт файла. Все числа фиксированной длины записываются в порядке big-endian
+ */
+public final class SnapshotFormat {
+    /**
+     * Сигнатура файла, "SPDB"
+     */
+    public static final int MAGIC = 0x53504442;
+    /**
+     * Сигнатура завершения индекса, "SPDX"
+     */
+    public static final int INDEX_MAGIC = 0x53504458;
+    /**
+     * {@value #VERSION} текущая версия формата
+     */
+    public static final short VERSION = 1;
+    /**
+     * Флаг заголовка: в конце файла записан индекс блоков
+     */
+    public static final short FLAG_INDEX = 1;
+    /**
+     * {@value #HEADER_SIZE} размер заголовка в байтах
+     */
+    public static final int HEADER_SIZE = 8;
+    /**
+     * {@value #FOOTER_SIZE} размер завершения индекса в байтах
+     */
+    public static final int FOOTER_SIZE = 12;
+    /**
+     * Размер содержимого блока, после заполнения которого блок записывается
+     */
+    public static final int BLOCK_SIZE = 64 * 1024;
+    /**
+     * Первые два байта потока сериализации Java, по ним распознаётся устаревший формат
+     */
+    public static final int LEGACY_MAGIC = 0xACED;
+
+    private SnapshotFormat() {
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.spring_problem.snapshot;
+
+import com.example.spring_problem.database.EntryConsumer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Параллельная загрузка сохранённого хранилища. Поток, вызвавший загрузку, только читает блоки
+ * {@link SnapshotFormat} из входного потока по мере их поступления, а проверку контрольных сумм, разбор
+ * записей и вставку выполняют рабочие потоки. Очередь блоков ограничена, при её заполнении блок
+ * обрабатывает читающий поток, поэтому в памяти находится не больше нескольких блоков на рабочий поток.
+ * Прежний формат сериализации Java разбирается последовательно
+ */
+public final class SnapshotLoader {
+    /**
+     * Число рабочих потоков
+     */
+    private final int workers;
+
+    /**
+     * Создаёт загрузку с заданным числом рабочих потоков
+     * @param workers число рабочих потоков, 0 - по числу доступных процессоров
+     */
+    public SnapshotLoader(int workers) {
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Читает сохранённое хранилище и передаёт записи получателю, формат определяется по первым байтам.
+     * Получатель вызывается из нескольких потоков одновременно и должен быть потокобезопасным, порядок
+     * записей не сохраняется. При ошибке загрузка прекращается, но часть записей уже может быть передана
+     * @param in поток сохранённого хранилища
+     * @param consumer потокобезопасный получатель записей
+     * @param progress ход загрузки, в нём учитываются загруженные записи
+     * @return число загруженных записей
+     * @throws IOException если чтение из потока не удалось или загрузка прервана
+     * @throws com.example.spring_problem.exception.SnapshotFormatException если поток повреждён или имеет неизвестный формат
+     */
+    public long load(InputStream in, EntryConsumer consumer, LoadProgress progress) throws IOException {
+        InputStream buffered = Snapshots.buffered(in);
+
+        if (Snapshots.isLegacy(buffered)) {
+            return LegacySnapshotReader.read(buffered, (key, data, ttl) -> {
+                consumer.accept(key, data, ttl);
+                progress.record(1);
+            });
+        }
+
+        SnapshotReader reader = new SnapshotReader(buffered);
+        reader.readHeader();
+        if (workers == 1) {
+            long total = 0L;
+            for (int count; (count = reader.readBlock(consumer)) >= 0; ) {
+                progress.record(count);
+                total += count;
+            }
+            return total;
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * workers), r -> {
+                    Thread thread = new Thread(r, "snapshot-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        Deque<Future<?>> pending = new ArrayDeque<>();
+        long total = 0L;
+
+        try {
+            for (SnapshotReader.Block block; (block = reader.nextBlock()) != null; ) {
+                SnapshotReader.Block next = block;
+                pending.add(executor.submit(() -> progress.record(next.accept(consumer))));
+                total += block.getCount();
+
+                while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+                    await(pending.pollFirst());
+                }
+            }
+            while (!pending.isEmpty()) {
+                await(pending.pollFirst());
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Ожидает обработки блока и пробрасывает ошибку, возникшую при его обработке
+     * @param future результат обработки блока
+     * @throws InterruptedIOException если ожидание прервано
+     */
+    private static void await(Future<?> future) throws InterruptedIOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Snapshot loading interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.spring_problem.snapshot;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики сохранений и загрузок хранилища: число операций, их суммарная длительность, число записей
+ * и байт потока. Учитываются только завершившиеся успешно операции
+ */
+public class SnapshotMetrics {
+    /**
+     * Число сохранений хранилища
+     */
+    private final LongAdder dumps = new LongAdder();
+    /**
+     * Суммарная длительность сохранений в наносекундах
+     */
+    private final LongAdder dumpNanos = new LongAdder();
+    /**
+     * Число сохранённых записей
+     */
+    private final LongAdder dumpRecords = new LongAdder();
+    /**
+     * Число записанных при сохранении байт
+     */
+    private final LongAdder dumpBytes = new LongAdder();
+    /**
+     * Число загрузок хранилища
+     */
+    private final LongAdder loads = new LongAdder();
+    /**
+     * Суммарная длительность загрузок в наносекундах
+     */
+    private final LongAdder loadNanos = new LongAdder();
+    /**
+     * Число загруженных записей
+     */
+    private final LongAdder loadRecords = new LongAdder();
+    /**
+     * Число прочитанных при загрузке байт
+     */
+    private final LongAdder loadBytes = new LongAdder();
+
+    /**
+     * Учитывает завершённое сохранение
+     * @param durationNanos длительность в наносекундах
+     * @param records число записей
+     * @param bytes число байт
+     */
+    public void recordDump(long durationNanos, long records, long bytes) {
+        dumps.increment();
+        dumpNanos.add(durationNanos);
+        dumpRecords.add(records);
+        dumpBytes.add(bytes);
+    }
+
+    /**
+     * Учитывает завершённую загрузку
+     * @param durationNanos длительность в наносекундах
+     * @param records число записей
+     * @param bytes число байт
+     */
+    public void recordLoad(long durationNanos, long records, long bytes) {
+        loads.increment();
+        loadNanos.add(durationNanos);
+        loadRecords.add(records);
+        loadBytes.add(bytes);
+    }
+
+    /**
+     * Метод, возвращающий число сохранений
+     * @return число сохранений
+     */
+    public long getDumps() {
+        return dumps.sum();
+    }
+
+    /**
+     * Метод, возвращающий суммарную длительность сохранений
+     * @return длительность в наносекундах
+     */
+    public long getDumpNanos() {
+        return dumpNanos.sum();
+    }
+
+    /**
+     * Метод, возвращающий число сохранённых записей
+     * @return число записей
+     */
+    public long getDumpRecords() {
+        return dumpRecords.sum();
+    }
+
+    /**
+     * Метод, возвращающий число записанных при сохранении байт
+     * @return число байт
+     */
+    public long getDumpBytes() {
+        return dumpBytes.sum();
+    }
+
+    /**
+     * Метод, возвращающий число загрузок
+     * @return число загрузок
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * Метод, возвращающий суммарную длительность загрузок
+     * @return длительность в наносекундах
+     */
+    public long getLoadNanos() {
+        return loadNanos.sum();
+    }
+
+    /**
+     * Метод, возвращающий число загруженных записей
+     * @return число записей
+     */
+    public long getLoadRecords() {
+        return loadRecords.sum();
+    }
+
+    /**
+     * Метод, возвращающий число прочитанных при загрузке байт
+     * @return число байт
+     */
+    public long getLoadBytes() {
+        return loadBytes.sum();
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.spring_problem.snapshot;
+
+import com.example.spring_problem.database.EntryConsumer;
+import com.example.spring_problem.exception.SnapshotFormatException;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Потоковое чтение хранилища в формате {@link SnapshotFormat}. Блоки читаются по одному, контрольная
+ * сумма блока проверяется до того, как его записи передаются получателю, поэтому повреждённый блок не
+ * попадает в хранилище даже частично. Не потокобезопасен
+ */
+public final class SnapshotReader {
+    /**
+     * Поток, из которого читается хранилище
+     */
+    private final DataInputStream in;
+    /**
+     * Буфер содержимого текущего блока
+     */
+    private byte[] block = new byte[SnapshotFormat.BLOCK_SIZE + 64];
+    /**
+     * Число прочитанных записей
+     */
+    private long records;
+
+    /**
+     * Создаёт чтение хранилища из потока
+     * @param in поток, из которого читается хранилище
+     */
+    public SnapshotReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * Читает заголовок, затем все блоки, передавая записи получателю
+     * @param consumer получатель записей
+     * @return число прочитанных записей
+     * @throws IOException если чтение из потока не удалось
+     * @throws SnapshotFormatException если поток повреждён или имеет неизвестный формат
+     */
+    public long read(EntryConsumer consumer) throws IOException {
+        readHeader();
+        while (readBlock(consumer) >= 0) {
+            // блоки читаются до признака конца
+        }
+        return records;
+    }
+
+    /**
+     * Читает и проверяет заголовок
+     * @return флаги заголовка
+     * @throws IOException если чтение из потока не удалось
+     * @throws SnapshotFormatException если сигнатура или версия не совпадают
+     */
+    public int readHeader() throws IOException {
+        try {
+            if (in.readInt() != SnapshotFormat.MAGIC) {
+                throw new SnapshotFormatException("Not a database snapshot");
+            }
+            short version = in.readShort();
+            if (version != SnapshotFormat.VERSION) {
+                throw new SnapshotFormatException("Unsupported snapshot version " + version);
+            }
+            return in.readShort();
+        } catch (EOFException e) {
+            throw new SnapshotFormatException("Unexpected end of snapshot");
+        }
+    }
+
+    /**
+     * Читает очередной блок, проверяет его контрольную сумму и передаёт записи получателю
+     * @param consumer получатель записей
+     * @return число записей в блоке либо -1, если прочитан признак конца
+     * @throws IOException если чтение из потока не удалось
+     * @throws SnapshotFormatException если блок повреждён
+     */
+    public int readBlock(EntryConsumer consumer) throws IOException {
+        Block next = readRawBlock(block);
+        if (next == null) {
+            return -1;
+        }
+        block = next.bytes;
+        return next.accept(consumer);
+    }
+
+    /**
+     * Читает очередной блок без проверки и разбора в отдельный массив. Проверку и разбор выполняет
+     * {@link Block#accept(EntryConsumer)}, поэтому блоки можно разбирать в других потоках, пока
+     * читаются следующие
+     * @return блок либо null, если прочитан признак конца
+     * @throws IOException если чтение из потока не удалось
+     * @throws SnapshotFormatException если заголовок блока повреждён или поток обрезан
+     */
+    public Block nextBlock() throws IOException {
+        return readRawBlock(null);
+    }
+
+    /**
+     * Читает заголовок, содержимое и контрольную сумму очередного блока
+     * @param buffer буфер для содержимого, null - выделить массив по длине блока
+     * @return блок либо null, если прочитан признак конца
+     * @throws IOException если чтение из потока не удалось
+     * @throws SnapshotFormatException если заголовок блока повреждён или поток обрезан
+     */
+    private Block readRawBlock(byte[] buffer) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length == 0) {
+                long total = in.readLong();
+                if (total != records) {
+                    throw new SnapshotFormatException("Snapshot has " + records + " records, expected " + total);
+                }
+                return null;
+            }
+            if (length < 0) {
+                throw new SnapshotFormatException("Corrupted block length " + length);
+            }
+            int count = in.readInt();
+            if (count <= 0) {
+                throw new SnapshotFormatException("Corrupted block record count " + count);
+            }
+            byte[] bytes = buffer == null || buffer.length < length ? new byte[length] : buffer;
+            in.readFully(bytes, 0, length);
+            int checksum = in.readInt();
+
+            records += count;
+            return new Block(bytes, length, count, checksum);
+        } catch (EOFException e) {
+            throw new SnapshotFormatException("Unexpected end of snapshot");
+        }
+    }
+
+    /**
+     * Читает индекс блоков файла хранилища
+     * @param channel канал файла хранилища
+     * @return смещения блоков от начала файла либо null, если индекс не записан
+     * @throws IOException если чтение из канала не удалось
+     * @throws SnapshotFormatException если индекс повреждён
+     */
+    public static long[] readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < SnapshotFormat.HEADER_SIZE + SnapshotFormat.FOOTER_SIZE) {
+            return null;
+        }
+        ByteBuffer footer = ByteBuffer.allocate(SnapshotFormat.FOOTER_SIZE);
+        readFully(channel, footer, size - SnapshotFormat.FOOTER_SIZE);
+        long indexOffset = footer.getLong(0);
+        if (footer.getInt(Long.BYTES) != SnapshotFormat.INDEX_MAGIC) {
+            return null;
+        }
+        if (indexOffset < SnapshotFormat.HEADER_SIZE || indexOffset > size - SnapshotFormat.FOOTER_SIZE - 2 * Integer.BYTES) {
+            throw new SnapshotFormatException("Corrupted index offset " + indexOffset);
+        }
+
+        ByteBuffer index = ByteBuffer.allocate((int) (size - SnapshotFormat.FOOTER_SIZE - indexOffset));
+        readFully(channel, index, indexOffset);
+        int checksumOffset = index.capacity() - Integer.BYTES;
+        if (index.getInt(checksumOffset) != SnapshotWriter.crc(index.array(), checksumOffset)) {
+            throw new SnapshotFormatException("Index checksum mismatch");
+        }
+        int blockCount = index.getInt(0);
+        if (blockCount < 0 || Integer.BYTES + (long) blockCount * (Long.BYTES + Integer.BYTES) != checksumOffset) {
+            throw new SnapshotFormatException("Corrupted index block count " + blockCount);
+        }
+
+        long[] offsets = new long[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            offsets[i] = index.getLong(Integer.BYTES + i * (Long.BYTES + Integer.BYTES));
+        }
+        return offsets;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new SnapshotFormatException("Unexpected end of snapshot");
+            }
+        }
+    }
+
+    /**
+     * Прочитанный, но ещё не проверенный и не разобранный блок хранилища
+     */
+    public static final class Block {
+        /**
+         * Содержимое блока
+         */
+        private final byte[] bytes;
+        /**
+         * Длина содержимого блока
+         */
+        private final int length;
+        /**
+         * Число записей, указанное в заголовке блока
+         */
+        private final int count;
+        /**
+         * Контрольная сумма, записанная после содержимого блока
+         */
+        private final int checksum;
+
+        private Block(byte[] bytes, int length, int count, int checksum) {
+            this.bytes = bytes;
+            this.length = length;
+            this.count = count;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Метод, возвращающий число записей, указанное в заголовке блока
+         * @return число записей
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Проверяет контрольную сумму блока и передаёт его записи получателю. Повреждённый блок
+         * обнаруживается до того, как получатель получит хотя бы одну запись
+         * @param consumer получатель записей
+         * @return число записей в блоке
+         * @throws SnapshotFormatException если блок повреждён
+         */
+        public int accept(EntryConsumer consumer) {
+            if (checksum != SnapshotWriter.crc(bytes, length)) {
+                throw new SnapshotFormatException("Block checksum mismatch");
+            }
+            int parsed = parse(consumer);
+            if (parsed != count) {
+                throw new SnapshotFormatException("Block has " + parsed + " records, expected " + count);
+            }
+            return parsed;
+        }
+
+        /**
+         * Разбирает записи блока, контрольная сумма которого уже проверена
+         * @param consumer получатель записей
+         * @return число записей
+         */
+        private int parse(EntryConsumer consumer) {
+            int offset = 0;
+            int parsed = 0;
+
+            while (offset < length) {
+                long recordLength = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[offset++];
+                    recordLength |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0 && offset < length);
+
+                int end = (int) (offset + recordLength);
+                if (recordLength < Integer.BYTES + 1 || end > length) {
+                    throw new SnapshotFormatException("Corrupted record length " + recordLength);
+                }
+                int key = ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                        | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+                offset += Integer.BYTES;
+
+                long ttl = 0;
+                shift = 0;
+                do {
+                    b = bytes[offset++];
+                    ttl |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0 && offset < end);
+
+                consumer.accept(key, new String(bytes, offset, end - offset, StandardCharsets.UTF_8), ttl);
+                offset = end;
+                parsed++;
+            }
+            return parsed;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.spring_problem.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Потоковая запись хранилища в формате {@link SnapshotFormat}. Записи накапливаются в буфере блока и
+ * записываются в поток целым блоком вместе с контрольной суммой, поэтому в памяти находится не больше
+ * одного блока. Не потокобезопасен
+ */
+public final class SnapshotWriter implements Closeable {
+    /**
+     * Поток, в который записывается хранилище
+     */
+    private final OutputStream out;
+    /**
+     * Правдивость утверждения о том, что в конце записывается индекс блоков
+     */
+    private final boolean index;
+    /**
+     * Буфер содержимого текущего блока
+     */
+    private byte[] block = new byte[SnapshotFormat.BLOCK_SIZE + 64];
+    /**
+     * Число байт в буфере текущего блока
+     */
+    private int blockLength;
+    /**
+     * Число записей в текущем блоке
+     */
+    private int blockRecords;
+    /**
+     * Смещения записанных блоков от начала файла
+     */
+    private long[] blockOffsets = new long[16];
+    /**
+     * Число записей в записанных блоках
+     */
+    private int[] blockCounts = new int[16];
+    /**
+     * Число записанных блоков
+     */
+    private int blockCount;
+    /**
+     * Число байт, записанных в поток
+     */
+    private long position;
+    /**
+     * Общее число записей
+     */
+    private long records;
+    /**
+     * Правдивость утверждения о том, что запись завершена
+     */
+    private boolean finished;
+
+    /**
+     * Создаёт запись хранилища и записывает заголовок
+     * @param out поток, в который записывается хранилище
+     * @param index правдивость утверждения о том, что в конце нужно записать индекс блоков
+     * @throws IOException если запись в поток не удалась
+     */
+    public SnapshotWriter(OutputStream out, boolean index) throws IOException {
+        this.out = out;
+        this.index = index;
+
+        byte[] header = new byte[SnapshotFormat.HEADER_SIZE];
+        putInt(header, 0, SnapshotFormat.MAGIC);
+        putShort(header, 4, SnapshotFormat.VERSION);
+        putShort(header, 6, index ? SnapshotFormat.FLAG_INDEX : 0);
+        write(header, header.length);
+    }
+
+    /**
+     * Добавляет запись, при заполнении блока он записывается в поток
+     * @param key значение ключа для хранилища
+     * @param data данные, хранящиеся по ключу
+     * @param ttl оставшееся время жизни данных в миллисекундах, не отрицательное
+     * @throws IOException если запись в поток не удалась
+     */
+    public void write(int key, String data, long ttl) throws IOException {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("Ttl must not be negative");
+        }
+        byte[] value = data.getBytes(StandardCharsets.UTF_8);
+        int length = Integer.BYTES + varintSize(ttl) + value.length;
+        int required = varintSize(length) + length;
+
+        if (blockLength > 0 && blockLength + required > SnapshotFormat.BLOCK_SIZE) {
+            flushBlock();
+        }
+        if (blockLength + required > block.length) {
+            block = Arrays.copyOf(block, blockLength + required);
+        }
+
+        blockLength = putVarint(block, blockLength, length);
+        putInt(block, blockLength, key);
+        blockLength = putVarint(block, blockLength + Integer.BYTES, ttl);
+        System.arraycopy(value, 0, block, blockLength, value.length);
+        blockLength += value.length;
+        blockRecords++;
+        records++;
+    }
+
+    /**
+     * Возвращает число добавленных записей
+     * @return число записей
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Возвращает число байт, записанных в поток
+     * @return число байт
+     */
+    public long getSize() {
+        return position;
+    }
+
+    /**
+     * Записывает последний блок, признак конца и индекс блоков. Поток не закрывается
+     * @throws IOException если запись в поток не удалась
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        flushBlock();
+
+        byte[] end = new byte[Integer.BYTES + Long.BYTES];
+        putLong(end, Integer.BYTES, records);
+        write(end, end.length);
+
+        if (index) {
+            long indexOffset = position;
+            byte[] indexBytes = new byte[Integer.BYTES + blockCount * (Long.BYTES + Integer.BYTES)
+                    + Integer.BYTES + SnapshotFormat.FOOTER_SIZE];
+            int offset = putInt(indexBytes, 0, blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                offset = putLong(indexBytes, offset, blockOffsets[i]);
+                offset = putInt(indexBytes, offset, blockCounts[i]);
+            }
+            offset = putInt(indexBytes, offset, crc(indexBytes, offset));
+            offset = putLong(indexBytes, offset, indexOffset);
+            putInt(indexBytes, offset, SnapshotFormat.INDEX_MAGIC);
+            write(indexBytes, indexBytes.length);
+        }
+        out.flush();
+    }
+
+    /**
+     * Завершает запись и закрывает поток
+     * @throws IOException если запись в поток не удалась
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Записывает текущий блок с заголовком и контрольной суммой, если в нём есть записи
+     * @throws IOException если запись в поток не удалась
+     */
+    private void flushBlock() throws IOException {
+        if (blockRecords == 0) {
+            return;
+        }
+        if (blockCount == blockOffsets.length) {
+            blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+            blockCounts = Arrays.copyOf(blockCounts, blockCount * 2);
+        }
+        blockOffsets[blockCount] = position;
+        blockCounts[blockCount++] = blockRecords;
+
+        byte[] header = new byte[2 * Integer.BYTES];
+        putInt(header, 0, blockLength);
+        putInt(header, Integer.BYTES, blockRecords);
+        byte[] trailer = new byte[Integer.BYTES];
+        putInt(trailer, 0, crc(block, blockLength));
+
+        write(header, header.length);
+        write(block, blockLength);
+        write(trailer, trailer.length);
+        blockLength = 0;
+        blockRecords = 0;
+    }
+
+    private void write(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        position += length;
+    }
+
+    /**
+     * Вычисляет контрольную сумму CRC32C начала массива
+     * @param bytes массив
+     * @param length число байт
+     * @return контрольная сумма
+     */
+    static int crc(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Вычисляет число байт, занимаемых числом в кодировке varint
+     * @param value неотрицательное число
+     * @return число байт
+     */
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int putVarint(byte[] bytes, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static int putShort(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 8);
+        bytes[offset + 1] = (byte) value;
+        return offset + Short.BYTES;
+    }
+
+    private static int putInt(byte[] bytes, int offset, int value) {
+        putShort(bytes, offset, value >>> 16);
+        return putShort(bytes, offset + Short.BYTES, value);
+    }
+
+    private static int putLong(byte[] bytes, int offset, long value) {
+        putInt(bytes, offset, (int) (value >>> 32));
+        return putInt(bytes, offset + Integer.BYTES, (int) value);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.spring_problem.snapshot;
+
+import com.example.spring_problem.database.EntryConsumer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Чтение и преобразование сохранённых хранилищ независимо от формата. Преобразовать файл прежнего
+ * формата в {@link SnapshotFormat} можно из командной строки:
+ * java -cp target/classes com.example.spring_problem.snapshot.Snapshots data.dat data.snapshot
+ */
+public final class Snapshots {
+
+    private Snapshots() {
+    }
+
+    /**
+     * Читает сохранённое хранилище, формат определяется по первым байтам: {@link SnapshotFormat} либо
+     * прежний формат сериализации Java
+     * @param in поток сохранённого хранилища
+     * @param consumer получатель записей
+     * @return число прочитанных записей
+     * @throws IOException если чтение из потока не удалось
+     * @throws com.example.spring_problem.exception.SnapshotFormatException если поток повреждён или имеет неизвестный формат
+     */
+    public static long read(InputStream in, EntryConsumer consumer) throws IOException {
+        InputStream buffered = buffered(in);
+
+        if (isLegacy(buffered)) {
+            return LegacySnapshotReader.read(buffered, consumer);
+        }
+        return new SnapshotReader(buffered).read(consumer);
+    }
+
+    /**
+     * Возвращает поток с поддержкой {@link InputStream#mark(int)}, при необходимости оборачивая переданный
+     * @param in поток сохранённого хранилища
+     * @return поток с поддержкой возврата к отметке
+     */
+    static InputStream buffered(InputStream in) {
+        return in.markSupported() ? in : new BufferedInputStream(in, SnapshotFormat.BLOCK_SIZE);
+    }
+
+    /**
+     * Определяет по первым байтам, не прочитав их, сохранено ли хранилище прежним способом
+     * @param in поток с поддержкой {@link InputStream#mark(int)}
+     * @return правдивость утверждения о том, что поток - сериализация Java прежнего формата
+     * @throws IOException если чтение из потока не удалось
+     */
+    static boolean isLegacy(InputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+
+        return ((first << 8) | second) == SnapshotFormat.LEGACY_MAGIC;
+    }
+
+    /**
+     * Преобразует сохранённое хранилище любого поддерживаемого формата в {@link SnapshotFormat} с индексом
+     * @param in поток сохранённого хранилища
+     * @param out поток, в который записывается преобразованное хранилище, не закрывается
+     * @return число записей
+     * @throws IOException если чтение или запись не удались
+     */
+    public static long convert(InputStream in, OutputStream out) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter(out, true);
+
+        try {
+            read(in, (key, data, ttl) -> {
+                try {
+                    writer.write(key, data, Math.max(0L, ttl));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        return writer.getRecordCount();
+    }
+
+    /**
+     * Преобразует файл сохранённого хранилища в {@link SnapshotFormat}
+     * @param args путь к исходному файлу и путь к файлу результата
+     * @throws IOException если чтение или запись не удались
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: Snapshots <legacy file> <snapshot file>");
+            System.exit(2);
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(args[0])));
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[1])))) {
+            System.out.println(convert(in, out) + " records converted");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.controller.DataControllers;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.entity.BatchResult;
+import com.example.spring_problem.entity.DataObject;
+import com.example.spring_problem.service.DataServiceImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class BatchEndpointTest {
+
+    private AtomicLong clock;
+
+    private Database database;
+
+    private DataControllers controller;
+
+    @Before
+    public void createController() {
+        clock = new AtomicLong(1_000_000L);
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setShards(4);
+        database = new Database(properties, clock::get);
+        controller = new DataControllers(new DataServiceImpl(new DataDAOImpl(database, properties)));
+    }
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что пакетное чтение возвращает данные и промахи в порядке ключей без исключения
+     */
+    @Test
+    public void getBatchShouldReportMisses() {
+        for (int i = 0; i < 100; i += 2) {
+            database.put(i, "data " + i);
+        }
+        int[] keys = new int[100];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 99 - i;
+        }
+
+        List<BatchResult> results = controller.getBatch(keys, false);
+
+        Assert.assertEquals(100, results.size());
+        for (int i = 0; i < keys.length; i++) {
+            BatchResult result = results.get(i);
+            Assert.assertEquals(keys[i], result.getKey());
+            if (keys[i] % 2 == 0) {
+                Assert.assertEquals(200, result.getStatus());
+                Assert.assertEquals("data " + keys[i], result.getData());
+            } else {
+                Assert.assertEquals(404, result.getStatus());
+                Assert.assertNull(result.getData());
+            }
+        }
+        Assert.assertEquals(50, database.getEvictionMetrics().getMisses());
+    }
+
+    /**
+     * Тест проверяет, что пакетное чтение с параметром ttl возвращает оставшееся время жизни найденных
+     * записей, в том числе записей со временем простоя, а для промахов его не возвращает
+     */
+    @Test
+    public void getBatchShouldReturnRemainingTtl() {
+        database.put(1, "data", 10_000L);
+        database.putIdle(2, "idle", 5000L);
+        clock.addAndGet(4000L);
+
+        List<BatchResult> results = controller.getBatch(new int[] {1, 2, 3}, true);
+
+        Assert.assertEquals(Long.valueOf(6000L), results.get(0).getTtl());
+        Assert.assertEquals(Long.valueOf(1000L), results.get(1).getTtl());
+        Assert.assertEquals(404, results.get(2).getStatus());
+        Assert.assertNull(results.get(2).getTtl());
+        Assert.assertNull(controller.getBatch(new int[] {1}, false).get(0).getTtl());
+    }
+
+    /**
+     * Тест проверяет, что пакетная вставка применяет время жизни и простоя каждой записи, для повторяющегося
+     * ключа остаётся последняя запись, а неверные записи отклоняются, не мешая остальным
+     */
+    @Test
+    public void setBatchShouldApplyPerItemTtl() {
+        List<DataObject> records = new ArrayList<>();
+        records.add(new DataObject(1, "default ttl", 0L));
+        records.add(new DataObject(2, "short ttl", 1L));
+        DataObject idle = new DataObject(3, "idle", 0L);
+        idle.setIdle(2L);
+        records.add(idle);
+        records.add(new DataObject(4, "negative ttl", -1L));
+        records.add(new DataObject(5, null, 10L));
+        records.add(new DataObject(1, "replaced", 0L));
+
+        List<BatchResult> results = controller.setBatch(records);
+
+        int[] statuses = results.stream().mapToInt(BatchResult::getStatus).toArray();
+        Assert.assertArrayEquals(new int[] {200, 200, 200, 400, 400, 200}, statuses);
+        Assert.assertEquals(3, database.size());
+        Assert.assertEquals("replaced", database.get(1));
+
+        clock.addAndGet(1000L);
+        Assert.assertEquals("idle", database.get(3));
+        Assert.assertNull(database.getIfPresent(2));
+        Assert.assertNull(database.getIfPresent(4));
+    }
+
+    /**
+     * Тест проверяет, что пакетное удаление возвращает удалённые данные, а повторный и отсутствующий
+     * ключи получают статус 404
+     */
+    @Test
+    public void removeBatchShouldReturnRemovedData() {
+        database.put(1, "data");
+        database.put(2, "another data");
+
+        List<BatchResult> results = controller.removeBatch(new int[] {2, 3, 1, 2});
+
+        Assert.assertEquals("another data", results.get(0).getData());
+        Assert.assertEquals(404, results.get(1).getStatus());
+        Assert.assertEquals("data", results.get(2).getData());
+        Assert.assertEquals(404, results.get(3).getStatus());
+        Assert.assertEquals(0, database.size());
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.LoadMode;
+import com.example.spring_problem.exception.SnapshotFormatException;
+import com.example.spring_problem.snapshot.LoadProgress;
+import com.example.spring_problem.snapshot.SnapshotWriter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+
+
+public class BulkLoadTest {
+
+    private static final int RECORDS = 50_000;
+
+    private Database database;
+
+    private DataDAOImpl dataDAO;
+
+    @Before
+    public void createDatabase() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setShards(4);
+        properties.getLoad().setWorkers(4);
+
+        database = new Database(properties);
+        dataDAO = new DataDAOImpl(database, properties);
+        database.put(-1, "old data");
+    }
+
+    @After
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что во время загрузки с заменой читатели видят прежнее содержимое, а после неё - только загруженное
+     */
+    @Test
+    public void replaceLoadShouldSwapContentAtomically() throws IOException {
+        byte[] snapshot = snapshot();
+        boolean[] checked = new boolean[1];
+
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(snapshot)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (!checked[0] && available() < snapshot.length / 2) {
+                    Assert.assertEquals("old data", database.get(-1));
+                    Assert.assertNull(database.getIfPresent(0));
+                    checked[0] = true;
+                }
+                return super.read(b, off, Math.min(len, 4096));
+            }
+        };
+        dataDAO.load(in, LoadMode.REPLACE);
+
+        Assert.assertTrue(checked[0]);
+        Assert.assertNull(database.getIfPresent(-1));
+        Assert.assertEquals(RECORDS, database.size());
+        Assert.assertEquals("data 12345", database.get(12345));
+
+        LoadProgress progress = dataDAO.getLoadProgress();
+        Assert.assertEquals(LoadProgress.State.COMPLETED, progress.getState());
+        Assert.assertEquals(RECORDS, progress.getRecords());
+    }
+
+    /**
+     * Тест проверяет, что загрузка со слиянием добавляет записи, не удаляя имеющиеся
+     */
+    @Test
+    public void mergeLoadShouldKeepExistingRecords() throws IOException {
+        dataDAO.load(new ByteArrayInputStream(snapshot()), LoadMode.MERGE);
+
+        Assert.assertEquals("old data", database.get(-1));
+        Assert.assertEquals(RECORDS + 1, database.size());
+        Assert.assertEquals(LoadMode.MERGE, dataDAO.getLoadProgress().getMode());
+    }
+
+    /**
+     * Тест проверяет, что повреждённый поток не изменяет хранилище при загрузке с заменой
+     */
+    @Test
+    public void corruptedReplaceLoadShouldKeepPreviousContent() throws IOException {
+        byte[] snapshot = snapshot();
+        snapshot[snapshot.length / 2] ^= 1;
+
+        try {
+            dataDAO.load(new ByteArrayInputStream(snapshot), LoadMode.REPLACE);
+            Assert.fail("Corrupted snapshot was loaded");
+        } catch (SnapshotFormatException e) {
+            Assert.assertEquals(LoadProgress.State.FAILED, dataDAO.getLoadProgress().getState());
+        }
+
+        Assert.assertEquals("old data", database.get(-1));
+        Assert.assertEquals(1, database.size());
+    }
+
+    /**
+     * Тест проверяет, что ошибка чтения потока возвращается вызывающему и не меняет текущее содержимое
+     */
+    @Test
+    public void unreadableStreamShouldFailLoad() throws IOException {
+        byte[] snapshot = snapshot();
+        InputStream broken = new SequenceInputStream(new ByteArrayInputStream(snapshot, 0, snapshot.length / 2),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Connection reset");
+                    }
+                });
+
+        try {
+            dataDAO.load(broken, LoadMode.REPLACE);
+            Assert.fail("Load succeeded with an unreadable stream");
+        } catch (UncheckedIOException e) {
+            Assert.assertEquals(LoadProgress.State.FAILED, dataDAO.getLoadProgress().getState());
+        }
+        Assert.assertEquals("old data", database.get(-1));
+        dataDAO.load(new ByteArrayInputStream(snapshot), LoadMode.REPLACE);
+        Assert.assertEquals(RECORDS, database.size());
+    }
+
+    /**
+     * Тест проверяет, что ошибка создания загружаемых шардов завершает загрузку с ошибкой и не блокирует
+     * последующие загрузки
+     */
+    @Test
+    public void failedStagingShouldNotBlockNextLoad() throws IOException {
+        DatabaseProperties properties = new DatabaseProperties();
+        Database failing = new Database(properties) {
+            @Override
+            public Staging stage() {
+                throw new IllegalStateException("Staging failed");
+            }
+        };
+        DataDAOImpl failingDAO = new DataDAOImpl(failing, properties);
+
+        try {
+            failingDAO.load(new ByteArrayInputStream(snapshot()), LoadMode.REPLACE);
+            Assert.fail("Load succeeded without staged shards");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(LoadProgress.State.FAILED, failingDAO.getLoadProgress().getState());
+        }
+        failingDAO.load(new ByteArrayInputStream(snapshot()), LoadMode.MERGE);
+        Assert.assertEquals(RECORDS, failing.size());
+        failing.shutdown();
+    }
+
+    private static byte[] snapshot() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(out, true)) {
+            for (int i = 0; i < RECORDS; i++) {
+                writer.write(i, "data " + i, 60_000L);
+            }
+        }
+        return out.toByteArray();
+    }
+}
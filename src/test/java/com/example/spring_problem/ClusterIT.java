@@ -0,0 +1,175 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.cluster.ClusterRouter;
+import com.example.spring_problem.cluster.HashRing;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+
+public class ClusterIT {
+
+    private static final int KEYS = 300;
+
+    private static final int VIRTUAL_NODES = 160;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final List<Process> nodes = new ArrayList<>();
+
+    @After
+    public void stopNodes() throws InterruptedException {
+        for (Process node : nodes) {
+            node.destroyForcibly().waitFor();
+        }
+    }
+
+    /**
+     * Тест запускает три узла в отдельных JVM: два в кластере из двух участников и третий, читающий список
+     * из трёх участников из файла. Проверяет, что любой узел обслуживает любой ключ, пересылая запрос
+     * владельцу, а после добавления третьего участника ему передаются только его ключи
+     */
+    @Test
+    public void nodesShouldForwardAndRebalanceKeys() throws Exception {
+        String a = "http://localhost:" + freePort();
+        String b = "http://localhost:" + freePort();
+        String c = "http://localhost:" + freePort();
+        Path membersFile = folder.newFile("members.txt").toPath();
+        Files.write(membersFile, Arrays.asList("# cluster members", a, b, c));
+
+        startNode(a, "--database.cluster.members=" + a + "," + b);
+        startNode(b, "--database.cluster.members=" + a + "," + b);
+        startNode(c, "--database.cluster.members-file=" + membersFile);
+        for (String node : Arrays.asList(a, b, c)) {
+            await(() -> status(node) != null, 120_000L);
+        }
+
+        for (int key = 0; key < KEYS; key++) {
+            String path = key % 2 == 0 ? "/database/" + key : "/database/" + key + "/600";
+            Assert.assertEquals(200, send(a, "PUT", path, "{\"data\":\"data " + key + "\"}").statusCode());
+        }
+        for (int key = 0; key < KEYS; key++) {
+            Assert.assertEquals("data " + key, send(b, "GET", "/database/" + key, null).body());
+        }
+        Assert.assertEquals(KEYS, localKeys(a) + localKeys(b));
+        Assert.assertTrue(localKeys(a) > 0 && localKeys(b) > 0);
+        Assert.assertEquals(0, localKeys(c));
+
+        String members = mapper.writeValueAsString(Arrays.asList(a, b, c));
+        Assert.assertEquals(200, send(a, "PUT", "/database/cluster/members", members).statusCode());
+        Assert.assertEquals(200, send(b, "PUT", "/database/cluster/members", members).statusCode());
+        await(() -> !status(a).get("rebalancing").asBoolean() && !status(b).get("rebalancing").asBoolean(),
+                30_000L);
+
+        HashRing ring = new HashRing(Arrays.asList(a, b, c), VIRTUAL_NODES);
+        for (int key = 0; key < KEYS; key++) {
+            String owner = ring.ownerOf(key);
+            Assert.assertEquals("data " + key, send(c, "GET", "/database/" + key, null).body());
+            Assert.assertEquals(200, sendForwarded(owner, "/database/" + key).statusCode());
+            for (String other : Arrays.asList(a, b, c)) {
+                if (!other.equals(owner)) {
+                    Assert.assertEquals(404, sendForwarded(other, "/database/" + key).statusCode());
+                }
+            }
+        }
+        long sent = status(a).get("keysSent").asLong() + status(b).get("keysSent").asLong();
+        Assert.assertEquals(KEYS, localKeys(a) + localKeys(b) + localKeys(c));
+        Assert.assertTrue(localKeys(c) > 0);
+        Assert.assertEquals(localKeys(c), sent);
+        Assert.assertEquals(localKeys(c), status(c).get("keysReceived").asLong());
+        Assert.assertNull(status(a).get("lastError").textValue());
+
+        Assert.assertEquals("data 1", send(a, "DELETE", "/database/1", null).body());
+        Assert.assertEquals(404, send(b, "GET", "/database/1", null).statusCode());
+    }
+
+    private void startNode(String self, String members) throws IOException {
+        Path log = folder.newFile(URI.create(self).getPort() + ".log").toPath();
+        List<String> command = Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx256m", "-XX:TieredStopAtLevel=1",
+                "-cp", System.getProperty("java.class.path"),
+                SpringProblemApplication.class.getName(),
+                "--server.port=" + URI.create(self).getPort(),
+                "--database.snapshot.path=" + folder.getRoot().toPath().resolve(URI.create(self).getPort() + ".dat"),
+                "--database.cluster.enabled=true",
+                "--database.cluster.self=" + self,
+                members);
+        nodes.add(new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start());
+    }
+
+    private JsonNode status(String node) {
+        try {
+            HttpResponse<String> response = send(node, "GET", "/database/cluster", null);
+            return response.statusCode() == 200 ? mapper.readTree(response.body()) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private long localKeys(String node) {
+        return status(node).get("localKeys").asLong();
+    }
+
+    private HttpResponse<String> send(String node, String method, String path, String json)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(node + path));
+        if (json != null) {
+            request.header("Content-Type", "application/json");
+        }
+        request.method(method, json == null
+                ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json));
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> sendForwarded(String node, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + path))
+                .header(ClusterRouter.FORWARDED_HEADER, "test")
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void await(BooleanSupplier condition, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!condition.getAsBoolean()) {
+            for (Process node : nodes) {
+                Assert.assertTrue("Cluster node exited", node.isAlive());
+            }
+            Assert.assertTrue("Cluster did not reach the expected state", System.currentTimeMillis() < deadline);
+            Thread.sleep(100L);
+        }
+    }
+}
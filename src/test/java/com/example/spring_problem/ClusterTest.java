@@ -0,0 +1,34 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.cluster.HashRing;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+
+public class ClusterTest {
+
+    private static final int VIRTUAL_NODES = 160;
+
+    /**
+     * Тест проверяет, что при добавлении участника владельца меняет около трети ключей кольца из двух
+     * участников и все они переходят к новому участнику
+     */
+    @Test
+    public void ringShouldMoveOnlyKeysOfAddedMember() {
+        HashRing before = new HashRing(Arrays.asList("http://a", "http://b"), VIRTUAL_NODES);
+        HashRing after = new HashRing(Arrays.asList("http://c", "http://b", "http://a"), VIRTUAL_NODES);
+        int moved = 0;
+
+        for (int key = -50_000; key < 50_000; key++) {
+            String owner = after.ownerOf(key);
+            if (!owner.equals(before.ownerOf(key))) {
+                Assert.assertEquals("http://c", owner);
+                moved++;
+            }
+        }
+        Assert.assertEquals(Arrays.asList("http://a", "http://b", "http://c"), after.getMembers());
+        Assert.assertTrue("Moved " + moved, moved > 25_000 && moved < 42_000);
+    }
+}
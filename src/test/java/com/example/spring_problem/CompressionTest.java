@@ -0,0 +1,137 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.controller.DataControllers;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.CompressionMetrics;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import com.example.spring_problem.service.DataServiceImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+public class CompressionTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    private Database database;
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что движки в куче возвращают данные, сохранённые сжатыми, без изменений, в том числе
+     * данные не из ASCII, при удалении и при выгрузке хранилища, а короткие данные не сжимают
+     */
+    @Test
+    public void compressedValuesShouldRoundTrip() {
+        for (StorageEngine engine : new StorageEngine[] {StorageEngine.MAP, StorageEngine.INT_HASH}) {
+            database = new Database(TestDatabaseProperties.compression(engine), clock::get);
+            Map<Integer, String> expected = new HashMap<>();
+            for (int key = 0; key < 200; key++) {
+                String data = (key % 2 == 0 ? "ключ " : "short ") + key;
+                if (key % 2 == 0) {
+                    data = data.repeat(300 / data.length() + 1);
+                }
+                database.put(key, data);
+                expected.put(key, data);
+            }
+            CompressionMetrics metrics = database.getCompressionMetrics();
+            Assert.assertEquals(engine.name(), 100, metrics.getCompressedValues());
+            Assert.assertTrue(engine.name(), metrics.getCompressionRatio() > 4.0);
+
+            for (int key = 0; key < 200; key++) {
+                Assert.assertEquals(expected.get(key), database.get(key));
+            }
+            Assert.assertEquals(100, metrics.getDecompressions());
+            Map<Integer, String> dumped = new HashMap<>();
+            database.dump((key, data, ttl) -> dumped.put(key, data));
+            Assert.assertEquals(expected, dumped);
+            Assert.assertEquals(expected.get(10), database.remove(10));
+            database.shutdown();
+        }
+    }
+
+    /**
+     * Тест проверяет, что данные, которые сжатие не уменьшает, хранятся несжатыми и учитываются как
+     * пропущенные, а при выключенном сжатии длинные данные не сжимаются вовсе
+     */
+    @Test
+    public void incompressibleValuesShouldBeStoredAsIs() {
+        DatabaseProperties stored = TestDatabaseProperties.compression(StorageEngine.MAP);
+        // Уровень 0 только оборачивает данные в несжатые блоки, результат всегда длиннее исходных данных
+        stored.getCompression().setLevel(Deflater.NO_COMPRESSION);
+        database = new Database(stored, clock::get);
+        Random random = new Random(1);
+        StringBuilder noise = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            noise.append((char) ('!' + random.nextInt(90)));
+        }
+        database.put(1, noise.toString());
+
+        Assert.assertEquals(noise.toString(), database.get(1));
+        Assert.assertEquals(noise.toString(), database.getStoredIfPresent(1));
+        Assert.assertEquals(0, database.getCompressionMetrics().getCompressedValues());
+        Assert.assertEquals(1, database.getCompressionMetrics().getSkippedValues());
+        Assert.assertEquals(0, database.getCompressionMetrics().getDecompressions());
+        database.shutdown();
+
+        DatabaseProperties properties = TestDatabaseProperties.compression(StorageEngine.MAP);
+        properties.getCompression().setEnabled(false);
+        database = new Database(properties, clock::get);
+        database.put(1, "a".repeat(10_000));
+        Assert.assertEquals("a".repeat(10_000), database.getStoredIfPresent(1));
+        Assert.assertEquals(0, database.getCompressionMetrics().getCompressions());
+        Assert.assertFalse(database.isCompressionEnabled());
+    }
+
+    /**
+     * Тест проверяет, что клиенту, принимающему deflate, сжатые данные отдаются без распаковки с заголовком
+     * Content-Encoding и распаковываются в исходные, а остальным клиентам - обычным текстом
+     */
+    @Test
+    public void getShouldServeDeflateEncodingWhenAccepted() throws Exception {
+        DatabaseProperties properties = TestDatabaseProperties.compression(StorageEngine.INT_HASH);
+        database = new Database(properties, clock::get);
+        DataControllers controller = new DataControllers(new DataServiceImpl(new DataDAOImpl(database, properties)));
+        String data = "{\"name\":\"значение\",\"items\":[1,2,3]}".repeat(40);
+        database.put(7, data);
+        database.put(8, "short");
+
+        ResponseEntity<?> encoded = controller.getData(7, "gzip, deflate;q=0.5");
+        Assert.assertEquals("deflate", encoded.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertEquals(HttpHeaders.ACCEPT_ENCODING, encoded.getHeaders().getFirst(HttpHeaders.VARY));
+        byte[] body = (byte[]) encoded.getBody();
+        Inflater inflater = new Inflater();
+        inflater.setInput(body);
+        byte[] inflated = new byte[data.length() * 4];
+        int length = inflater.inflate(inflated);
+        Assert.assertTrue(inflater.finished());
+        Assert.assertEquals(data, new String(inflated, 0, length, StandardCharsets.UTF_8));
+        Assert.assertEquals(1, database.getCompressionMetrics().getServedCompressed());
+        Assert.assertEquals(0, database.getCompressionMetrics().getDecompressions());
+
+        Assert.assertEquals(data, controller.getData(7, "gzip, deflate;q=0").getBody());
+        Assert.assertEquals(data, controller.getData(7, "br").getBody());
+        Assert.assertEquals("deflate", controller.getData(7, "*").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertEquals("short", controller.getData(8, "deflate").getBody());
+        Assert.assertEquals(404, controller.getData(9, "deflate").getStatusCodeValue());
+        Assert.assertEquals(2, controller.getCompressionMetrics().getServedCompressed());
+        Assert.assertEquals(5, database.getEvictionMetrics().getHits());
+        Assert.assertEquals(1, database.getEvictionMetrics().getMisses());
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.ExpiryMode;
+import com.example.spring_problem.database.StorageEngine;
+import com.example.spring_problem.exception.MissedDataException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+@RunWith(Parameterized.class)
+public class DatabaseExpiryTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Object[] engines() {
+        return StorageEngine.values();
+    }
+
+    @Parameterized.Parameter
+    public StorageEngine engine;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AtomicLong clock;
+
+    private Database database;
+
+    @Before
+    public void createDatabase() {
+        clock = new AtomicLong(1_000_000L);
+        database = new Database(TestDatabaseProperties.mapped(engine, folder.getRoot().getPath()), clock::get);
+    }
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что данные доступны до истечения времени жизни и недоступны сразу после,
+     * даже если колесо сроков жизни ещё не продвигалось
+     */
+    @Test(expected = MissedDataException.class)
+    public void getShouldMissRightAfterTtl() {
+        database.put(1, "data", 1000L);
+        clock.addAndGet(999L);
+        Assert.assertEquals("data", database.get(1));
+        clock.addAndGet(1L);
+        database.get(1);
+    }
+
+    /**
+     * Тест проверяет, что продвижение колеса удаляет только записи с истекшим временем жизни
+     */
+    @Test
+    public void updateShouldRemoveOnlyExpiredEntries() {
+        database.put(1, "data", 1000L);
+        database.put(2, "another data", 5000L);
+        clock.addAndGet(1500L);
+
+        Assert.assertEquals(1, database.update());
+        Assert.assertEquals(1, database.size());
+        Assert.assertEquals("another data", database.get(2));
+
+        clock.addAndGet(3500L);
+        Assert.assertEquals(1, database.update());
+        Assert.assertEquals(0, database.size());
+    }
+
+    /**
+     * Тест проверяет, что повторная вставка по ключу продлевает время жизни и прежняя
+     * регистрация в колесе не удаляет новые данные
+     */
+    @Test
+    public void putTwiceShouldOutliveFirstDeadline() {
+        database.put(1, "data", 1000L);
+        clock.addAndGet(800L);
+        database.put(1, "another data", 1000L);
+        clock.addAndGet(800L);
+
+        Assert.assertEquals(0, database.update());
+        Assert.assertEquals("another data", database.get(1));
+
+        clock.addAndGet(200L);
+        Assert.assertEquals(1, database.update());
+        Assert.assertEquals(0, database.size());
+    }
+
+    /**
+     * Тест проверяет, что перезапись и удаление ключа не оставляют в колесе прежних регистраций:
+     * цикл удаления просматривает по одному узлу на живой ключ
+     */
+    @Test
+    public void overwritesAndRemovalsShouldNotAccumulateInWheel() {
+        for (int i = 0; i < 1000; i++) {
+            database.put(1, "data" + i, 1000L);
+            database.put(2, "data" + i, 1000L);
+        }
+        database.remove(2);
+        clock.addAndGet(2000L);
+
+        Assert.assertEquals(1, database.update());
+        Assert.assertEquals(1L, database.getExpiryMetrics().getKeysSampled());
+    }
+
+    /**
+     * Тест проверяет, что записи с большим временем жизни, попадающие на верхние уровни колеса,
+     * удаляются не раньше и не позже своего срока при пошаговом продвижении времени
+     */
+    @Test
+    public void longTtlShouldExpireExactlyOnTime() {
+        long[] ttls = {150L, 6_399L, 6_401L, 409_700L, 3_600_000L, 26_214_500L};
+        for (int i = 0; i < ttls.length; i++) {
+            database.put(i, "data" + i, ttls[i]);
+        }
+
+        long start = clock.get();
+        int expired = 0;
+        while (expired < ttls.length) {
+            clock.addAndGet(50L);
+            expired += database.update();
+            long elapsed = clock.get() - start;
+
+            int due = 0;
+            int overdue = 0;
+            for (int i = 0; i < ttls.length; i++) {
+                if (elapsed < ttls[i]) {
+                    Assert.assertNotNull("key " + i + " at " + elapsed, database.getIfPresent(i));
+                }
+                due += elapsed >= ttls[i] ? 1 : 0;
+                overdue += elapsed >= ttls[i] + 100L ? 1 : 0;
+            }
+            Assert.assertTrue("reaped too early at " + elapsed, expired <= due);
+            Assert.assertTrue("reaped too late at " + elapsed, expired >= overdue);
+            Assert.assertEquals(ttls.length - expired, database.size());
+        }
+    }
+
+    /**
+     * Тест проверяет, что удалённая по запросу запись не ломает последующее продвижение колеса
+     */
+    @Test
+    public void removedEntryShouldNotBeReapedTwice() {
+        database.put(1, "data", 1000L);
+        Assert.assertEquals("data", database.remove(1));
+        clock.addAndGet(2000L);
+        Assert.assertEquals(0, database.update());
+    }
+
+    /**
+     * Тест проверяет, что запись с истекшим временем жизни удаляется из хранилища при обращении к ней
+     */
+    @Test
+    public void getShouldDeleteExpiredEntry() {
+        database.put(1, "data", 1000L);
+        clock.addAndGet(1000L);
+        Assert.assertNull(database.getIfPresent(1));
+        Assert.assertEquals(0, database.size());
+        Assert.assertEquals(1, database.getExpiryMetrics().getKeysReapedOnRead());
+    }
+
+    /**
+     * Тест проверяет, что в режиме выборок цикл повторяется, пока доля истекших записей выше порога,
+     * и удаляет все истекшие записи, не трогая живые
+     */
+    @Test
+    public void sampledModeShouldReapExpiredEntries() {
+        database.shutdown();
+        DatabaseProperties properties = TestDatabaseProperties.mapped(engine, folder.getRoot().getPath());
+        properties.getExpiry().setMode(ExpiryMode.SAMPLED);
+        properties.getExpiry().setSampleSize(10);
+        properties.getExpiry().setTimeBudget(10_000L);
+        database = new Database(properties, clock::get);
+
+        for (int i = 0; i < 1000; i++) {
+            database.put(i, "data" + i, i < 900 ? 1000L : 5000L);
+        }
+        clock.addAndGet(2000L);
+
+        int reaped = 0;
+        for (int cycle = 0; cycle < 10 && database.size() > 100; cycle++) {
+            reaped += database.update();
+        }
+
+        Assert.assertEquals(900, reaped);
+        Assert.assertEquals(100, database.size());
+        Assert.assertEquals("data950", database.get(950));
+        Assert.assertEquals(900, database.getExpiryMetrics().getKeysReaped());
+        Assert.assertTrue(database.getExpiryMetrics().getKeysSampled() >= 900);
+    }
+
+    /**
+     * Тест проверяет, что чтения продлевают жизнь записи со временем простоя дольше её первоначального срока
+     */
+    @Test
+    public void readsShouldKeepIdleEntryAlive() {
+        database.putIdle(1, "session", 1000L);
+
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(600L);
+            Assert.assertEquals("session", database.get(1));
+            database.update();
+        }
+
+        clock.addAndGet(999L);
+        Assert.assertEquals(0, database.update());
+        Assert.assertEquals(1, database.size());
+        clock.addAndGet(1L);
+        Assert.assertEquals(1, database.update());
+        Assert.assertEquals(0, database.size());
+    }
+
+    /**
+     * Тест проверяет, что чтение продлевает жизнь записи на время простоя от момента чтения, даже если
+     * цикл удаления применяет его уже после первоначального срока
+     */
+    @Test
+    public void readShouldExtendIdleEntryFromReadTime() {
+        database.putIdle(1, "session", 1000L);
+        clock.addAndGet(600L);
+        Assert.assertEquals("session", database.get(1));
+
+        clock.addAndGet(600L);
+        Assert.assertEquals(0, database.update());
+        clock.addAndGet(399L);
+        Assert.assertEquals(0, database.update());
+        Assert.assertEquals(1, database.size());
+        clock.addAndGet(1L);
+        Assert.assertEquals(1, database.update());
+        Assert.assertEquals(0, database.size());
+    }
+
+    /**
+     * Тест проверяет, что чтения продлевают жизнь многих записей со временем простоя после удалений и
+     * повторных вставок части из них
+     */
+    @Test
+    public void readsShouldKeepManyIdleEntriesAlive() {
+        for (int key = 0; key < 5000; key++) {
+            database.putIdle(key, "session " + key, 1000L);
+        }
+        for (int key = 0; key < 5000; key += 2) {
+            database.remove(key);
+        }
+        for (int key = 0; key < 100; key += 2) {
+            database.putIdle(key, "session " + key, 1000L);
+        }
+        clock.addAndGet(600L);
+        for (int key = 0; key < 5000; key++) {
+            if (key % 2 == 1 || key < 100) {
+                Assert.assertEquals("session " + key, database.get(key));
+            }
+        }
+
+        clock.addAndGet(600L);
+        Assert.assertEquals(0, database.update());
+        Assert.assertEquals(2550, database.size());
+        Assert.assertNull(database.getIfPresent(100));
+        clock.addAndGet(1000L);
+        Assert.assertEquals(2550, database.update());
+        Assert.assertEquals(0, database.size());
+    }
+
+    /**
+     * Тест проверяет, что запись со временем простоя без чтений удаляется по его истечении
+     */
+    @Test
+    public void idleEntryShouldExpireWithoutReads() {
+        database.putIdle(1, "session", 1000L);
+        database.putIdle(2, "another session", 3000L);
+        clock.addAndGet(1000L);
+
+        Assert.assertEquals(1, database.update());
+        Assert.assertNull(database.getIfPresent(1));
+        Assert.assertEquals("another session", database.get(2));
+    }
+
+    /**
+     * Тест проверяет, что после замены записи со временем простоя обычной чтения больше не продлевают её жизнь
+     */
+    @Test
+    public void putShouldReplaceIdleExpiry() {
+        database.putIdle(1, "session", 1000L);
+        database.put(1, "data", 1500L);
+
+        clock.addAndGet(800L);
+        Assert.assertEquals("data", database.get(1));
+        database.update();
+        clock.addAndGet(700L);
+
+        Assert.assertNull(database.getIfPresent(1));
+    }
+}
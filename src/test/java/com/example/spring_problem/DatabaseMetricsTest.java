@@ -0,0 +1,84 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.dao.DataDAO;
+import com.example.spring_problem.database.Database;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class DatabaseMetricsTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private DataDAO dataDAO;
+
+    /**
+     * Тест проверяет, что /actuator/prometheus отдаёт метрики хранилища: попадания и промахи, число
+     * записей, выборочные длительности операций, сохранения и длительности HTTP запросов
+     */
+    @Test
+    public void prometheusShouldExposeDatabaseMetrics() throws Exception {
+        mvc.perform(put("/database/-300").contentType(MediaType.APPLICATION_JSON).content("{\"data\":\"metrics\"}"))
+                .andExpect(status().isOk());
+        for (int i = 0; i < 2000; i++) {
+            dataDAO.getIfPresent(-300);
+        }
+        mvc.perform(get("/database/-301")).andExpect(status().isNotFound());
+        dataDAO.dump(new ByteArrayOutputStream());
+
+        String metrics = mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Assert.assertTrue(metrics.contains("database_requests_total{result=\"hit\",}"));
+        Assert.assertTrue(metrics.contains("database_requests_total{result=\"miss\",}"));
+        Assert.assertTrue(metrics.contains("database_entries "));
+        Assert.assertTrue(metrics.contains("database_estimated_bytes "));
+        Assert.assertTrue(metrics.contains("database_operations_seconds{operation=\"get\",quantile=\"0.99\",}"));
+        Assert.assertTrue(metrics.contains("database_operations_seconds_bucket{operation=\"get\","));
+        Assert.assertFalse(metrics.contains("database_operations_seconds_count{operation=\"get\",} 0.0"));
+        Assert.assertTrue(metrics.contains("database_expiry_sweeps_seconds_count "));
+        Assert.assertTrue(metrics.contains("database_expired_keys_total{source=\"sweep\",}"));
+        Assert.assertTrue(metrics.contains("database_snapshot_dumps_seconds_count"));
+        Assert.assertFalse(metrics.contains("database_snapshot_dumps_seconds_count 0.0"));
+        Assert.assertTrue(metrics.contains("http_server_requests_seconds_bucket"));
+    }
+
+    /**
+     * Тест проверяет, что без политики вытеснения объём записей оценивается по средней длине данных
+     * той же мерой, что и с политикой
+     */
+    @Test
+    public void estimatedBytesShouldFollowWrittenData() {
+        Database database = new Database(new DatabaseProperties());
+        try {
+            for (int key = 0; key < 10; key++) {
+                database.put(key, "0123456789");
+            }
+            Assert.assertEquals(10 * (64 + 10), database.estimatedBytes());
+        } finally {
+            database.shutdown();
+        }
+    }
+}
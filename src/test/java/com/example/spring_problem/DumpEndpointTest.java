@@ -0,0 +1,118 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.controller.DataControllers;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.service.DataServiceImpl;
+import com.example.spring_problem.snapshot.Snapshots;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+
+public class DumpEndpointTest {
+
+    private Path directory;
+
+    private Database database;
+
+    private DataServiceImpl dataService;
+
+    private DataControllers controller;
+
+    @Before
+    public void createController() throws IOException {
+        directory = Files.createTempDirectory("dump");
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.getSnapshot().setPath(directory.resolve("data.dat").toString());
+
+        database = new Database(properties);
+        dataService = new DataServiceImpl(new DataDAOImpl(database, properties));
+        controller = new DataControllers(dataService);
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        database.shutdown();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Тест проверяет, что ответ содержит текущее состояние хранилища и временный файл не создаётся
+     */
+    @Test
+    public void dumpShouldStreamCurrentState() throws IOException {
+        for (int i = 0; i < 10_000; i++) {
+            dataService.put(i, "data " + i);
+        }
+
+        Map<Integer,String> actual = read(write(controller.dumpFile(false, false)));
+
+        Assert.assertEquals(10_000, actual.size());
+        Assert.assertEquals("data 42", actual.get(42));
+        Assert.assertFalse(Files.exists(directory.resolve("data.dat")));
+    }
+
+    /**
+     * Тест проверяет, что сжатый ответ после распаковки содержит состояние хранилища
+     */
+    @Test
+    public void gzipDumpShouldBeDecompressible() throws IOException {
+        dataService.put(1, "data");
+
+        byte[] compressed = write(controller.dumpFile(true, false));
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            Map<Integer,String> actual = new HashMap<>();
+            Snapshots.read(in, (key, data, ttl) -> actual.put(key, data));
+            Assert.assertEquals("data", actual.get(1));
+        }
+    }
+
+    /**
+     * Тест проверяет, что при запросе сохранённого файла передаётся он, а не текущее состояние,
+     * а если файла нет - текущее состояние
+     */
+    @Test
+    public void persistedDumpShouldServeSavedFile() throws IOException {
+        dataService.put(1, "data");
+        Assert.assertEquals("data", read(write(controller.dumpFile(false, true))).get(1));
+
+        dataService.dump();
+        dataService.put(1, "changed data");
+
+        Assert.assertEquals("data", read(write(controller.dumpFile(false, true))).get(1));
+        Assert.assertEquals("changed data", read(write(controller.dumpFile(false, false))).get(1));
+    }
+
+    private static byte[] write(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static Map<Integer,String> read(byte[] bytes) throws IOException {
+        Map<Integer,String> actual = new HashMap<>();
+        Snapshots.read(new ByteArrayInputStream(bytes), (key, data, ttl) -> actual.put(key, data));
+        return actual;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.EvictionPolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class EvictionPolicyTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    private Database database;
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что политика LRU вытесняет запись, к которой дольше всех не обращались
+     */
+    @Test
+    public void lruShouldEvictLeastRecentlyUsed() {
+        database = new Database(TestDatabaseProperties.eviction(EvictionPolicy.LRU, 10L, 0L), clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            database.put(i, "data " + i);
+        }
+        database.get(0);
+        database.put(10, "data 10");
+
+        Assert.assertNotNull(database.getIfPresent(0));
+        Assert.assertNull(database.getIfPresent(1));
+    }
+
+    /**
+     * Тест проверяет, что проход по большому числу новых ключей не вытесняет из W-TinyLFU часто
+     * читаемые ключи, даже если между обращениями к каждому из них записывается больше ключей,
+     * чем вмещает хранилище, и LRU их бы вытеснил
+     */
+    @Test
+    public void tinyLfuShouldKeepFrequentKeysDuringScan() {
+        database = new Database(TestDatabaseProperties.eviction(EvictionPolicy.W_TINY_LFU, 100L, 0L), clock::get);
+
+        for (int i = 0; i < 50; i++) {
+            database.put(i, "hot " + i);
+        }
+        for (int i = 0; i < 50_000; i++) {
+            database.put(1000 + i, "scan " + i);
+            if (i % 5 == 0) {
+                database.getIfPresent(i / 5 % 50);
+            }
+        }
+
+        int survived = 0;
+        for (int i = 0; i < 50; i++) {
+            if (database.getIfPresent(i) != null) {
+                survived++;
+            }
+        }
+        Assert.assertTrue("survived " + survived, survived >= 45);
+    }
+}
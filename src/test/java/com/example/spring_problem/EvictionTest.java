@@ -0,0 +1,194 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.EvictionMetrics;
+import com.example.spring_problem.database.EvictionPolicy;
+import com.example.spring_problem.exception.MissedDataException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+@RunWith(Parameterized.class)
+public class EvictionTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Object[] policies() {
+        return new Object[] {EvictionPolicy.LRU, EvictionPolicy.SAMPLED_LRU, EvictionPolicy.W_TINY_LFU};
+    }
+
+    @Parameterized.Parameter
+    public EvictionPolicy policy;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    private Database database;
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что число записей не превышает заданную ёмкость, а вытесненные записи учитываются
+     */
+    @Test
+    public void sizeShouldStayWithinMaxEntries() {
+        database = new Database(TestDatabaseProperties.eviction(policy, 100L, 0L), clock::get);
+
+        for (int i = 0; i < 1000; i++) {
+            database.put(i, "data " + i);
+            Assert.assertTrue(database.size() <= 100);
+        }
+        EvictionMetrics metrics = database.getEvictionMetrics();
+        Assert.assertEquals(100, database.size());
+        Assert.assertEquals(100L, metrics.getEntries());
+        Assert.assertEquals(900L, metrics.getEvictions());
+    }
+
+    /**
+     * Тест проверяет, что оценочный объём записей не превышает заданный
+     */
+    @Test
+    public void weightShouldStayWithinMaxBytes() {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            data.append('x');
+        }
+        database = new Database(TestDatabaseProperties.eviction(policy, 0L, 10_000L), clock::get);
+
+        for (int i = 0; i < 1000; i++) {
+            database.put(i, data.toString());
+        }
+        EvictionMetrics metrics = database.getEvictionMetrics();
+        Assert.assertTrue(metrics.getWeightedBytes() <= 10_000L);
+        Assert.assertTrue(database.size() > 0);
+        Assert.assertEquals(1000L - database.size(), metrics.getEvictions());
+    }
+
+    /**
+     * Тест проверяет, что удалённые и истекшие записи не занимают ёмкость политики
+     */
+    @Test
+    public void removedEntriesShouldReleaseCapacity() {
+        database = new Database(TestDatabaseProperties.eviction(policy, 10L, 0L), clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            database.put(i, "data", 1000L);
+        }
+        database.remove(0);
+        clock.addAndGet(1000L);
+        database.update();
+        for (int i = 10; i < 20; i++) {
+            database.put(i, "data");
+        }
+        Assert.assertEquals(0L, database.getEvictionMetrics().getEvictions());
+        Assert.assertEquals(10, database.size());
+    }
+
+    /**
+     * Тест проверяет, что вытеснение, выбравшее ключ, не удаляет запись, конкурентно вставленную по
+     * этому ключу заново: после каждой серии вставок политика учитывает ровно те записи, что остались
+     * в хранилище
+     */
+    @Test
+    public void concurrentPutsShouldNotLoseRewrittenEntries() throws Exception {
+        database = new Database(TestDatabaseProperties.eviction(policy, 8L, 0L), clock::get);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            for (int round = 0; round < 500; round++) {
+                CyclicBarrier barrier = new CyclicBarrier(4);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        for (int i = 0; i < 64; i++) {
+                            database.put(i % 16, "data " + i);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                database.update();
+
+                Assert.assertTrue(database.size() <= 8);
+                Assert.assertEquals(database.size(), database.getEvictionMetrics().getEntries());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Тест проверяет, что удаление ключа, применённое политикой после его повторной вставки, не
+     * исключает из политики живую запись: после каждой серии вставок и удалений политика учитывает
+     * ровно те записи, что остались в хранилище
+     */
+    @Test
+    public void concurrentRemovalsShouldNotDropLiveEntries() throws Exception {
+        database = new Database(TestDatabaseProperties.eviction(policy, 8L, 0L), clock::get);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            for (int round = 0; round < 500; round++) {
+                CyclicBarrier barrier = new CyclicBarrier(4);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    boolean remover = t % 2 == 0;
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        for (int i = 0; i < 64; i++) {
+                            if (remover) {
+                                database.removeIfPresent(i % 4);
+                            } else {
+                                database.put(i % 4, "data " + i);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                database.update();
+
+                Assert.assertEquals(database.size(), database.getEvictionMetrics().getEntries());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Тест проверяет подсчёт попаданий и промахов чтения
+     */
+    @Test
+    public void hitRatioShouldCountHitsAndMisses() {
+        database = new Database(TestDatabaseProperties.eviction(policy, 10L, 0L), clock::get);
+
+        database.put(1, "data");
+        database.get(1);
+        try {
+            database.get(2);
+            Assert.fail();
+        } catch (MissedDataException e) {
+            EvictionMetrics metrics = database.getEvictionMetrics();
+            Assert.assertEquals(1L, metrics.getHits());
+            Assert.assertEquals(1L, metrics.getMisses());
+            Assert.assertEquals(0.5, metrics.getHitRatio(), 0.0);
+        }
+    }
+}
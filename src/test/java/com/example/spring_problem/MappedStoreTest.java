@@ -0,0 +1,204 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public class MappedStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AtomicLong clock;
+
+    private DatabaseProperties properties;
+
+    private Database database;
+
+    @Before
+    public void createDatabase() {
+        clock = new AtomicLong(1_000_000L);
+        properties = new DatabaseProperties();
+        properties.setEngine(StorageEngine.MAPPED);
+        properties.setShards(2);
+        properties.getMapped().setDirectory(folder.getRoot().getPath());
+        properties.getMapped().setSegmentSize(4096);
+        database = new Database(properties, clock::get);
+    }
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что после перезапуска доступны последние версии записей с прежними сроками жизни,
+     * а удалённые и истекшие за время остановки записи отсутствуют
+     */
+    @Test
+    public void reopenShouldRestoreLiveRecords() {
+        for (int i = 0; i < 1000; i++) {
+            database.put(i, "data " + i, 10_000L);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            database.put(i, "changed data " + i, 10_000L);
+        }
+        for (int i = 1; i < 1000; i += 10) {
+            database.remove(i);
+        }
+        database.put(-1, "short", 1000L);
+
+        reopen(5000L);
+
+        Assert.assertEquals("changed data 0", database.get(0));
+        Assert.assertEquals("data 2", database.get(2));
+        Assert.assertNull(database.getIfPresent(1));
+        Assert.assertNull(database.getIfPresent(-1));
+        Assert.assertEquals(900, database.size());
+
+        clock.addAndGet(5000L);
+        Assert.assertNull(database.getIfPresent(2));
+    }
+
+    /**
+     * Тест проверяет, что уплотнение удаляет сегменты с устаревшими версиями и не теряет живые записи,
+     * в том числе после перезапуска
+     */
+    @Test
+    public void compactionShouldReclaimSegments() throws IOException {
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 100; i++) {
+                database.put(i, "data " + i + " round " + round);
+            }
+        }
+        int before = segments().size();
+        for (int i = 0; i < before; i++) {
+            database.update();
+        }
+
+        Assert.assertTrue(segments().size() < before / 2);
+        Assert.assertEquals("data 42 round 49", database.get(42));
+
+        reopen(0L);
+        Assert.assertEquals(100, database.size());
+        Assert.assertEquals("data 42 round 49", database.get(42));
+    }
+
+    /**
+     * Тест проверяет, что повреждённая при сбое последняя запись сегмента отбрасывается, а предыдущие
+     * записи восстанавливаются и в сегмент можно продолжать писать
+     */
+    @Test
+    public void tornRecordShouldBeDropped() throws IOException {
+        properties.setShards(1);
+        properties.getMapped().setDirectory(folder.newFolder().getPath());
+        reopen(0L);
+        database.put(1, "data");
+        database.put(2, "another data");
+        database.put(3, "torn record");
+        database.shutdown();
+
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        byte[] marker = "torn record".getBytes(StandardCharsets.UTF_8);
+        int offset = indexOf(bytes, marker);
+        Assert.assertTrue(offset > 0);
+        bytes[offset + 2] ^= 1;
+        Files.write(segment, bytes);
+
+        database = new Database(properties, clock::get);
+        Assert.assertEquals("another data", database.get(2));
+        Assert.assertNull(database.getIfPresent(3));
+        database.put(4, "new data");
+
+        reopen(0L);
+        Assert.assertEquals("data", database.get(1));
+        Assert.assertEquals("new data", database.get(4));
+    }
+
+    /**
+     * Тест проверяет, что продление жизни записи со временем простоя сохраняется в сегменте
+     */
+    @Test
+    public void idleTouchShouldSurviveRestart() {
+        database.putIdle(1, "session", 1000L);
+        clock.addAndGet(600L);
+        Assert.assertEquals("session", database.get(1));
+        database.update();
+
+        reopen(600L);
+        Assert.assertEquals("session", database.get(1));
+    }
+
+    /**
+     * Тест проверяет, что загрузка с заменой содержимого сохраняется после перезапуска, а сегменты
+     * прежнего поколения удаляются
+     */
+    @Test
+    public void replacedContentShouldSurviveRestart() throws IOException {
+        database.put(1, "data");
+        Database.Staging staging = database.stage();
+        staging.accept(2, "loaded data", 10_000L);
+        staging.commit();
+
+        reopen(0L);
+        Assert.assertNull(database.getIfPresent(1));
+        Assert.assertEquals("loaded data", database.get(2));
+        try (Stream<Path> generations = Files.list(folder.getRoot().toPath())) {
+            Assert.assertEquals(1, generations.filter(Files::isDirectory).count());
+        }
+    }
+
+    /**
+     * Тест проверяет, что сегменты, записанные другим числом шардов, не открываются
+     */
+    @Test(expected = IllegalStateException.class)
+    public void shardCountChangeShouldBeRejected() {
+        database.put(1, "data");
+        database.shutdown();
+        properties.setShards(3);
+        database = new Database(properties, clock::get);
+    }
+
+    private void reopen(long pause) {
+        database.shutdown();
+        clock.addAndGet(pause);
+        database = new Database(properties, clock::get);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.walk(Paths.get(properties.getMapped().getDirectory()))) {
+            return files.filter(file -> file.toString().endsWith(".seg")).collect(Collectors.toList());
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] marker) {
+        for (int i = 0; i + marker.length <= bytes.length; i++) {
+            int matched = 0;
+            while (matched < marker.length && bytes[i + matched] == marker[matched]) {
+                matched++;
+            }
+            if (matched == marker.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.MutationListener;
+import com.example.spring_problem.protocol.MemcachedServer;
+import com.example.spring_problem.service.DataServiceImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class MemcachedServerTest {
+
+    private AtomicLong clock;
+
+    private Database database;
+
+    private MemcachedServer server;
+
+    private Socket socket;
+
+    private OutputStream out;
+
+    private BufferedReader in;
+
+    @Before
+    public void startServer() throws IOException {
+        clock = new AtomicLong(1_000_000L);
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setShards(4);
+        properties.getTcp().setPort(0);
+        properties.getTcp().setWorkers(2);
+        properties.getTcp().setMaxValueSize(1024);
+        database = new Database(properties, clock::get);
+        server = new MemcachedServer(new DataServiceImpl(new DataDAOImpl(database, properties)), properties);
+        server.start();
+
+        socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(10_000);
+        out = socket.getOutputStream();
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        socket.close();
+        server.stop();
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет запись, чтение и удаление по протоколу memcached
+     */
+    @Test
+    public void setGetDeleteShouldWork() throws IOException {
+        send("set 1 0 0 4\r\ndata\r\n");
+        Assert.assertEquals("STORED", in.readLine());
+        Assert.assertEquals("data", database.get(1));
+
+        send("get 1\r\n");
+        Assert.assertEquals("VALUE 1 0 4", in.readLine());
+        Assert.assertEquals("data", in.readLine());
+        Assert.assertEquals("END", in.readLine());
+
+        send("delete 1\r\ndelete 1\r\nget 1\r\n");
+        Assert.assertEquals("DELETED", in.readLine());
+        Assert.assertEquals("NOT_FOUND", in.readLine());
+        Assert.assertEquals("END", in.readLine());
+    }
+
+    /**
+     * Тест проверяет, что чтение нескольких ключей пропускает отсутствующие и сохраняет порядок, а данные
+     * передаются в байтах UTF-8
+     */
+    @Test
+    public void multiGetShouldSkipMisses() throws IOException {
+        database.put(1, "один");
+        database.put(3, "три");
+
+        send("get 3 2 1\r\n");
+
+        Assert.assertEquals("VALUE 3 0 6", in.readLine());
+        Assert.assertEquals("три", in.readLine());
+        Assert.assertEquals("VALUE 1 0 8", in.readLine());
+        Assert.assertEquals("один", in.readLine());
+        Assert.assertEquals("END", in.readLine());
+    }
+
+    /**
+     * Тест проверяет, что команды, отправленные одной записью без ожидания ответов, выполняются по порядку
+     */
+    @Test
+    public void pipelinedCommandsShouldBeAnsweredInOrder() throws IOException {
+        StringBuilder commands = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String data = "data " + i;
+            commands.append("set ").append(i).append(" 0 0 ").append(data.length()).append("\r\n")
+                    .append(data).append("\r\n")
+                    .append("get ").append(i).append("\r\n");
+        }
+        send(commands.toString());
+
+        for (int i = 0; i < 1000; i++) {
+            String data = "data " + i;
+            Assert.assertEquals("STORED", in.readLine());
+            Assert.assertEquals("VALUE " + i + " 0 " + data.length(), in.readLine());
+            Assert.assertEquals(data, in.readLine());
+            Assert.assertEquals("END", in.readLine());
+        }
+        Assert.assertEquals(1000, database.size());
+    }
+
+    /**
+     * Тест проверяет, что команда, пришедшая по одному байту, выполняется после получения последнего байта
+     */
+    @Test
+    public void fragmentedCommandShouldBeAssembled() throws IOException, InterruptedException {
+        byte[] command = "set 7 0 0 11\r\nhello world\r\nget 7\r\n".getBytes(StandardCharsets.US_ASCII);
+        for (byte b : command) {
+            out.write(b);
+            out.flush();
+            Thread.sleep(1);
+        }
+
+        Assert.assertEquals("STORED", in.readLine());
+        Assert.assertEquals("VALUE 7 0 11", in.readLine());
+        Assert.assertEquals("hello world", in.readLine());
+        Assert.assertEquals("END", in.readLine());
+    }
+
+    /**
+     * Тест проверяет время жизни в секундах, отрицательное время жизни, удаляющее ключ, и ответ noreply
+     */
+    @Test
+    public void exptimeShouldApplyTtl() throws IOException {
+        send("set 1 0 2 4 noreply\r\ndata\r\nset 2 0 0 4\r\ndata\r\n");
+        Assert.assertEquals("STORED", in.readLine());
+
+        send("set 2 0 -1 4\r\ndata\r\n");
+        Assert.assertEquals("STORED", in.readLine());
+        Assert.assertNull(database.getIfPresent(2));
+
+        clock.addAndGet(1000L);
+        Assert.assertEquals("data", database.get(1));
+        clock.addAndGet(1000L);
+        Assert.assertNull(database.getIfPresent(1));
+    }
+
+    /**
+     * Тест проверяет ответы на неизвестную команду и нечисловой ключ, после ошибки клиента соединение закрывается
+     */
+    @Test
+    public void errorsShouldBeReported() throws IOException {
+        send("incr 1 1\r\n");
+        Assert.assertEquals("ERROR", in.readLine());
+
+        send("get key\r\n");
+        Assert.assertEquals("CLIENT_ERROR bad key format", in.readLine());
+        Assert.assertNull(in.readLine());
+    }
+
+    /**
+     * Тест проверяет, что лишнее слово команды, отличное от noreply, не отключает ответ, а считается ошибкой клиента
+     */
+    @Test
+    public void unknownLastTokenShouldBeRejected() throws IOException {
+        send("set 1 0 0 4 reply\r\ndata\r\n");
+        Assert.assertEquals("CLIENT_ERROR bad command line format", in.readLine());
+        Assert.assertNull(in.readLine());
+        Assert.assertEquals(0, database.size());
+
+        socket.close();
+        socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(10_000);
+        out = socket.getOutputStream();
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        database.put(1, "data");
+        send("delete 1 quietly\r\n");
+        Assert.assertEquals("CLIENT_ERROR bad command line format", in.readLine());
+        Assert.assertEquals("data", database.get(1));
+    }
+
+    /**
+     * Тест проверяет, что при неверном числе слов команды set соединение закрывается, а её данные не
+     * выполняются как команды
+     */
+    @Test
+    public void malformedSetShouldNotExecuteData() throws IOException {
+        database.put(2, "data");
+        send("set 2 0 8\r\ndelete 2\r\n");
+
+        Assert.assertEquals("CLIENT_ERROR bad command line format", in.readLine());
+        Assert.assertNull(in.readLine());
+        Assert.assertEquals("data", database.get(2));
+    }
+
+    /**
+     * Тест проверяет, что при конвейере команд, ответы на которые превышают размер выходного буфера, все
+     * ответы отправляются по порядку
+     */
+    @Test
+    public void pipelinedResponsesShouldAllBeSent() throws IOException {
+        String data = "x".repeat(1000);
+        database.put(1, data);
+        database.put(2, "last");
+        send("get 1\r\n".repeat(2000) + "get 2\r\n");
+
+        for (int i = 0; i < 2000; i++) {
+            Assert.assertEquals("VALUE 1 0 1000", in.readLine());
+            Assert.assertEquals(data, in.readLine());
+            Assert.assertEquals("END", in.readLine());
+        }
+        Assert.assertEquals("VALUE 2 0 4", in.readLine());
+        Assert.assertEquals("last", in.readLine());
+        Assert.assertEquals("END", in.readLine());
+    }
+
+    /**
+     * Тест проверяет, что данные больше database.tcp.max-value-size отклоняются и соединение закрывается
+     */
+    @Test
+    public void tooLargeValueShouldBeRejected() throws IOException {
+        send("set 1 0 0 2048\r\n");
+
+        Assert.assertEquals("SERVER_ERROR object too large for cache", in.readLine());
+        Assert.assertNull(in.readLine());
+        Assert.assertEquals(0, database.size());
+    }
+
+    /**
+     * Тест проверяет, что ошибка хранилища возвращается одной строкой SERVER_ERROR без сообщения исключения
+     * и следующие команды выполняются
+     */
+    @Test
+    public void storageFailureShouldBeReportedOnOneLine() throws IOException {
+        database.setMutationListener(new MutationListener() {
+            @Override
+            public void mutated(byte op, int key, long deadline, String data) {
+                throw new IllegalStateException("Сбой\r\nEND");
+            }
+
+            @Override
+            public void reset() {
+            }
+        });
+        send("set 1 0 0 4\r\ndata\r\nversion\r\n");
+
+        Assert.assertEquals("SERVER_ERROR IllegalStateException", in.readLine());
+        Assert.assertTrue(in.readLine().startsWith("VERSION "));
+    }
+
+    private void send(String commands) throws IOException {
+        out.write(commands.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.controller.DataControllers;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.EvictionPolicy;
+import com.example.spring_problem.exception.DatabaseExceptionHandler;
+import com.example.spring_problem.service.DataServiceImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+public class MissPathTest {
+
+    private Database database;
+
+    private DataServiceImpl dataService;
+
+    private DataControllers controller;
+
+    @Before
+    public void createController() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setShards(2);
+        properties.getEviction().setPolicy(EvictionPolicy.LRU);
+        properties.getEviction().setMaxEntries(100);
+        database = new Database(properties);
+        dataService = new DataServiceImpl(new DataDAOImpl(database, properties));
+        controller = new DataControllers(dataService);
+    }
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что промах чтения и удаления возвращает один и тот же заранее созданный ответ 404,
+     * а не выбрасывает исключение, и учитывается в счётчиках
+     */
+    @Test
+    public void missShouldReturnPreallocatedResponse() {
+        Assert.assertNull(dataService.getIfPresent(1));
+        Assert.assertNull(dataService.removeIfPresent(1));
+
+        ResponseEntity<?> get = controller.getData(1);
+        ResponseEntity<?> remove = controller.removeData(1);
+
+        Assert.assertSame(DatabaseExceptionHandler.MISSED_DATA, get);
+        Assert.assertSame(DatabaseExceptionHandler.MISSED_DATA, remove);
+        Assert.assertEquals(2, database.getEvictionMetrics().getMisses());
+    }
+
+    /**
+     * Тест проверяет, что попадание возвращает данные со статусом 200, а удалённый ключ затем отсутствует
+     */
+    @Test
+    public void hitShouldReturnData() {
+        dataService.put(1, "data");
+
+        Assert.assertEquals("data", controller.getData(1).getBody());
+        Assert.assertEquals(HttpStatus.OK, controller.removeData(1).getStatusCode());
+        Assert.assertNull(dataService.getIfPresent(1));
+    }
+
+    /**
+     * Тест проверяет, что клиент получает при промахе то же тело JSON, что и прежде выдавал обработчик исключения
+     */
+    @Test
+    public void missBodyShouldMatchExceptionHandler() throws Exception {
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new DatabaseExceptionHandler())
+                .build();
+        dataService.put(2, "data");
+
+        mvc.perform(get("/database/1"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("{\"message\":\"There is no such key in database\"}", true));
+        mvc.perform(delete("/database/1"))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/database/2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("data"));
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.controller.DataControllers;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import com.example.spring_problem.exception.IndexDisabledException;
+import com.example.spring_problem.service.DataServiceImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class RangeScanTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    private Database database;
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что обход возвращает ключи диапазона из всех шардов по возрастанию, а страницы,
+     * связанные курсором, проходят диапазон целиком ровно по одному разу
+     */
+    @Test
+    public void scanShouldMergeShardsInKeyOrder() {
+        database = new Database(TestDatabaseProperties.indexed(StorageEngine.MAP), clock::get);
+        List<Integer> keys = new ArrayList<>();
+        for (int i = -5000; i < 5000; i++) {
+            keys.add(i);
+        }
+        Collections.shuffle(keys, new Random(1));
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int key : keys) {
+            database.put(key, "data " + key);
+            expected.add(key);
+        }
+        for (int key = -5000; key < 5000; key += 3) {
+            database.remove(key);
+            expected.remove(key);
+        }
+
+        List<Integer> range = new ArrayList<>();
+        Assert.assertEquals(Long.MAX_VALUE, database.scan(-100, 100, 1000, (key, data, ttl) -> {
+            Assert.assertEquals("data " + key, data);
+            range.add(key);
+        }));
+        Assert.assertEquals(new ArrayList<>(expected.subSet(-100, true, 100, true)), range);
+
+        List<Integer> pages = new ArrayList<>();
+        long next = Integer.MIN_VALUE;
+        while (next != Long.MAX_VALUE) {
+            next = database.scan((int) next, Integer.MAX_VALUE, 37, (key, data, ttl) -> pages.add(key));
+        }
+        Assert.assertEquals(new ArrayList<>(expected), pages);
+    }
+
+    /**
+     * Тест проверяет, что обход пропускает записи с истекшим временем жизни, а удалённые циклом удаления
+     * записи исчезают из индекса, на движке с хранением вне кучи
+     */
+    @Test
+    public void scanShouldSkipExpiredEntries() {
+        database = new Database(TestDatabaseProperties.indexed(StorageEngine.OFF_HEAP), clock::get);
+        for (int key = 0; key < 1000; key++) {
+            database.put(key, "data " + key, key % 2 == 0 ? 1000L : 60_000L);
+        }
+        clock.addAndGet(1500L);
+
+        List<Integer> odd = new ArrayList<>();
+        database.scan(0, 999, 1000, (key, data, ttl) -> {
+            Assert.assertTrue(ttl > 0);
+            odd.add(key);
+        });
+        Assert.assertEquals(500, odd.size());
+        for (int i = 0; i < odd.size(); i++) {
+            Assert.assertEquals(2 * i + 1, (int) odd.get(i));
+        }
+
+        database.update();
+        List<Integer> page = new ArrayList<>();
+        Assert.assertEquals(21L, database.scan(0, 999, 10, (key, data, ttl) -> page.add(key)));
+        Assert.assertEquals(List.of(1, 3, 5, 7, 9, 11, 13, 15, 17, 19), page);
+    }
+
+    /**
+     * Тест проверяет, что после удаления целого диапазона ключей опустевшие листы индекса удаляются,
+     * а ключи, снова вставленные в этот диапазон, находятся обходом
+     */
+    @Test
+    public void scanShouldSurviveRemovedRanges() {
+        DatabaseProperties properties = TestDatabaseProperties.indexed(StorageEngine.MAP);
+        properties.setShards(1);
+        database = new Database(properties, clock::get);
+        for (int key = 0; key < 10_000; key++) {
+            database.put(key, "data " + key);
+        }
+        for (int key = 1000; key < 9000; key++) {
+            database.remove(key);
+        }
+        database.put(5000, "again");
+
+        List<Integer> keys = new ArrayList<>();
+        database.scan(500, 9500, 10_000, (key, data, ttl) -> keys.add(key));
+        Assert.assertEquals(1002, keys.size());
+        Assert.assertEquals(999, (int) keys.get(499));
+        Assert.assertEquals(5000, (int) keys.get(500));
+        Assert.assertEquals(9000, (int) keys.get(501));
+    }
+
+    /**
+     * Тест проверяет, что индекс остаётся согласованным с хранилищем при одновременных вставках, удалениях
+     * и обходах, которые делят и удаляют листы индекса
+     */
+    @Test
+    public void indexShouldStayConsistentUnderConcurrentWrites() throws Exception {
+        database = new Database(TestDatabaseProperties.indexed(StorageEngine.INT_HASH), clock::get);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < 4; thread++) {
+            int seed = thread;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 50_000; i++) {
+                    int key = random.nextInt(20_000);
+                    if (random.nextInt(3) == 0) {
+                        database.removeIfPresent(key);
+                    } else {
+                        database.put(key, "data " + key);
+                    }
+                    if (i % 5000 == 0) {
+                        long[] previous = {Long.MIN_VALUE};
+                        database.scan(0, 20_000, 500, (key1, data, ttl) -> {
+                            Assert.assertTrue(key1 > previous[0]);
+                            previous[0] = key1;
+                        });
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        database.dump((key, data, ttl) -> expected.add(key));
+        List<Integer> scanned = new ArrayList<>();
+        long next = 0;
+        while (next != Long.MAX_VALUE) {
+            next = database.scan((int) next, Integer.MAX_VALUE, 1000, (key, data, ttl) -> scanned.add(key));
+        }
+        Assert.assertEquals(new ArrayList<>(expected), scanned);
+    }
+
+    /**
+     * Тест проверяет JSON ответа обхода: записи, курсор следующей страницы и отсутствие курсора на последней
+     * странице, а также ошибку при выключенном индексе
+     */
+    @Test
+    public void scanEndpointShouldStreamPages() throws IOException {
+        DatabaseProperties properties = TestDatabaseProperties.indexed(StorageEngine.MAP);
+        database = new Database(properties, clock::get);
+        DataControllers controller = new DataControllers(new DataServiceImpl(new DataDAOImpl(database, properties)));
+        for (int key = 10; key < 20; key++) {
+            database.put(key, "data " + key, 10_000L);
+        }
+
+        JsonNode first = page(controller, 12, 17, 4, null);
+        Assert.assertEquals(4, first.get("entries").size());
+        Assert.assertEquals(12, first.get("entries").get(0).get("key").asInt());
+        Assert.assertEquals("data 12", first.get("entries").get(0).get("data").asText());
+        Assert.assertEquals(10_000L, first.get("entries").get(0).get("ttl").asLong());
+        Assert.assertEquals(16, first.get("next").asInt());
+
+        JsonNode second = page(controller, 12, 17, 4, first.get("next").asInt());
+        Assert.assertEquals(2, second.get("entries").size());
+        Assert.assertEquals(17, second.get("entries").get(1).get("key").asInt());
+        Assert.assertFalse(second.has("next"));
+
+        Database plain = new Database(new DatabaseProperties(), clock::get);
+        try {
+            new DataControllers(new DataServiceImpl(new DataDAOImpl(plain))).scan(0, 1, 1, null);
+            Assert.fail("Scan must require the index");
+        } catch (IndexDisabledException e) {
+            Assert.assertTrue(e.getMessage().contains("database.index.enabled"));
+        } finally {
+            plain.shutdown();
+        }
+    }
+
+    private static JsonNode page(DataControllers controller, int from, int to, int limit, Integer cursor)
+            throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        controller.scan(from, to, limit, cursor).getBody().writeTo(body);
+        return new ObjectMapper().readTree(body.toByteArray());
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.controller.ReactiveDataControllers;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.entity.DataObject;
+import com.example.spring_problem.exception.DatabaseExceptionHandler;
+import com.example.spring_problem.service.DataServiceImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class ReactiveEndpointTest {
+
+    private Database database;
+
+    private ReactiveDataControllers controller;
+
+    private WebTestClient client;
+
+    @Before
+    public void createClient() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setShards(4);
+        database = new Database(properties);
+        controller = new ReactiveDataControllers(new DataServiceImpl(new DataDAOImpl(database, properties)), properties);
+        client = WebTestClient.bindToController(controller)
+                .controllerAdvice(new DatabaseExceptionHandler())
+                .build();
+    }
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет запись, чтение и удаление, а также ответы 404 и 400 реактивных контроллеров
+     */
+    @Test
+    public void singleKeyEndpointsShouldWork() {
+        client.put().uri("/database/1").bodyValue(new DataObject(1, "data", 0L))
+                .exchange().expectStatus().isOk();
+        client.get().uri("/database/1")
+                .exchange().expectStatus().isOk().expectBody(String.class).isEqualTo("data");
+        client.delete().uri("/database/1")
+                .exchange().expectStatus().isOk().expectBody(String.class).isEqualTo("data");
+        client.get().uri("/database/1")
+                .exchange().expectStatus().isNotFound();
+        client.put().uri("/database/2/-1").bodyValue(new DataObject(2, "data", 0L))
+                .exchange().expectStatus().isBadRequest();
+    }
+
+    /**
+     * Тест проверяет, что выгруженное хранилище загружается обратно потоковым телом запроса
+     */
+    @Test
+    public void dumpShouldLoadBack() {
+        for (int i = 0; i < 10_000; i++) {
+            database.put(i, "data " + i);
+        }
+        byte[] dump = client.get().uri("/database/dump")
+                .exchange().expectStatus().isOk().expectBody(byte[].class).returnResult().getResponseBody();
+        database.clear();
+
+        client.post().uri("/database/load").contentType(MediaType.APPLICATION_OCTET_STREAM).bodyValue(dump)
+                .exchange().expectStatus().isOk();
+
+        Assert.assertEquals(10_000, database.size());
+        Assert.assertEquals("data 42", database.get(42));
+    }
+
+    /**
+     * Тест проверяет обратное давление выгрузки: пока подписчик не запросил следующую часть, она не
+     * передаётся, а после отмены подписки поток выгрузки освобождается и следующая выгрузка проходит целиком
+     */
+    @Test
+    public void dumpShouldRespectDemand() throws InterruptedException {
+        for (int i = 0; i < 100_000; i++) {
+            database.put(i, "data " + i);
+        }
+        AtomicInteger received = new AtomicInteger();
+        CountDownLatch first = new CountDownLatch(1);
+        BaseSubscriber<DataBuffer> slow = new BaseSubscriber<DataBuffer>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(DataBuffer buffer) {
+                DataBufferUtils.release(buffer);
+                received.incrementAndGet();
+                first.countDown();
+            }
+        };
+        controller.dumpFile(false, false).getBody().subscribe(slow);
+
+        Assert.assertTrue(first.await(10, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        Assert.assertEquals(1, received.get());
+        slow.cancel();
+
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        controller.dumpFile(false, false).getBody()
+                .doOnNext(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    all.write(bytes, 0, bytes.length);
+                })
+                .blockLast();
+        Assert.assertTrue(all.size() > 64 * 1024);
+    }
+}
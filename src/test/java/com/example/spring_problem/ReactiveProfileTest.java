@@ -0,0 +1,45 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.controller.ReactiveDataControllers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+public class ReactiveProfileTest {
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private WebTestClient client;
+
+    /**
+     * Тест проверяет, что профиль reactive запускает приложение на сервере Netty с реактивными
+     * контроллерами вместо сервлетных
+     */
+    @Test
+    public void reactiveProfileShouldServeDatabaseApi() {
+        Assert.assertTrue(context instanceof ReactiveWebServerApplicationContext);
+        Assert.assertTrue(((ReactiveWebServerApplicationContext) context).getWebServer() instanceof NettyWebServer);
+        Assert.assertEquals(1, context.getBeanNamesForType(ReactiveDataControllers.class).length);
+        Assert.assertEquals(0, context.getBeanNamesForType(com.example.spring_problem.controller.DataControllers.class).length);
+
+        client.put().uri("/database/-100").bodyValue("{\"data\":\"reactive\"}")
+                .header("Content-Type", "application/json")
+                .exchange().expectStatus().isOk();
+        client.get().uri("/database/-100")
+                .exchange().expectStatus().isOk().expectBody(String.class).isEqualTo("reactive");
+    }
+}
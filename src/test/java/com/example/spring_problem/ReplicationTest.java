@@ -0,0 +1,162 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.dao.DataDAOImpl;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.ReplicationRole;
+import com.example.spring_problem.exception.ReadOnlyReplicaException;
+import com.example.spring_problem.replication.ReplicationFollower;
+import com.example.spring_problem.replication.ReplicationLeader;
+import com.example.spring_problem.replication.ReplicationStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+
+public class ReplicationTest {
+
+    private Database leaderDatabase;
+
+    private ReplicationLeader leader;
+
+    private final List<Database> followerDatabases = new ArrayList<>();
+
+    private final List<ReplicationFollower> followers = new ArrayList<>();
+
+    @Before
+    public void startLeader() throws IOException {
+        DatabaseProperties properties = TestDatabaseProperties.replication(ReplicationRole.LEADER, 0);
+        leaderDatabase = new Database(properties);
+        leader = new ReplicationLeader(leaderDatabase, properties);
+        leader.start();
+    }
+
+    @After
+    public void stopAll() {
+        followers.forEach(ReplicationFollower::stop);
+        followerDatabases.forEach(Database::shutdown);
+        leader.stop();
+        leaderDatabase.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что ведомые получают записи, сделанные до их подключения, снимком, а последующие
+     * вставки и удаления - потоком изменений, и догоняют ведущего
+     */
+    @Test
+    public void followersShouldBootstrapAndTailLeader() throws Exception {
+        for (int key = 0; key < 1000; key++) {
+            leaderDatabase.put(key, "before-" + key);
+        }
+        startFollower();
+        startFollower();
+        awaitCaughtUp(1000);
+
+        for (int key = 0; key < 500; key++) {
+            leaderDatabase.removeIfPresent(key);
+        }
+        for (int key = 1000; key < 2000; key++) {
+            leaderDatabase.put(key, "after-" + key, 60_000L);
+        }
+        leaderDatabase.putIdle(5000, "idle", 60_000L);
+        awaitCaughtUp(2501);
+
+        for (Database follower : followerDatabases) {
+            Assert.assertEquals(leaderDatabase.size(), follower.size());
+            Assert.assertNull(follower.getIfPresent(0));
+            Assert.assertEquals("before-500", follower.getIfPresent(500));
+            Assert.assertEquals("after-1999", follower.getIfPresent(1999));
+            Assert.assertEquals("idle", follower.getIfPresent(5000));
+        }
+        ReplicationStatus status = leader.getStatus();
+        Assert.assertEquals(2, status.getFollowers().size());
+        Assert.assertEquals(0, status.getLagRecords());
+    }
+
+    /**
+     * Тест проверяет, что ведомый отклоняет изменения, кроме полученных от ведущего
+     */
+    @Test(expected = ReadOnlyReplicaException.class)
+    public void followerShouldRejectWrites() throws Exception {
+        startFollower();
+        awaitCaughtUp(0);
+
+        followerDatabases.get(0).put(1, "data");
+    }
+
+    /**
+     * Тест проверяет, что после замены содержимого ведущего загрузкой ведомые заново получают снимок
+     */
+    @Test
+    public void followersShouldResyncAfterLoad() throws Exception {
+        leaderDatabase.put(1, "old");
+        startFollower();
+        awaitCaughtUp(1);
+
+        Database source = new Database();
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        try {
+            source.put(2, "loaded");
+            new DataDAOImpl(source, new DatabaseProperties()).dump(snapshot);
+        } finally {
+            source.shutdown();
+        }
+        new DataDAOImpl(leaderDatabase, TestDatabaseProperties.replication(ReplicationRole.LEADER, 0))
+                .load(new ByteArrayInputStream(snapshot.toByteArray()));
+
+        ReplicationFollower follower = followers.get(0);
+        await(() -> follower.getStatus().getBootstraps() == 2 && follower.getStatus().isConnected());
+        Assert.assertNull(followerDatabases.get(0).getIfPresent(1));
+        Assert.assertEquals("loaded", followerDatabases.get(0).getIfPresent(2));
+    }
+
+    /**
+     * Тест проверяет, что ведомый, не подтвердивший загрузку снимка, считается отстающим
+     */
+    @Test
+    public void followerShouldLagUntilSnapshotIsAcknowledged() throws Exception {
+        leaderDatabase.put(1, "data");
+        try (Socket silent = new Socket(InetAddress.getLoopbackAddress(), leader.getPort())) {
+            await(() -> leader.getStatus().getFollowers().size() == 1);
+
+            ReplicationStatus status = leader.getStatus();
+            Assert.assertEquals(-1L, status.getFollowers().get(0).getAcknowledged());
+            Assert.assertEquals(status.getSequence() + 1, status.getLagRecords());
+        }
+    }
+
+    private void startFollower() {
+        DatabaseProperties properties = TestDatabaseProperties.replication(ReplicationRole.FOLLOWER, leader.getPort());
+        Database database = new Database(properties);
+        ReplicationFollower follower = new ReplicationFollower(database, properties);
+        followerDatabases.add(database);
+        followers.add(follower);
+        follower.start();
+    }
+
+    private void awaitCaughtUp(long sequence) throws InterruptedException {
+        await(() -> leader.getStatus().getSequence() == sequence
+                && followers.stream().allMatch(follower -> follower.getStatus().isConnected()
+                        && follower.getStatus().getSequence() == sequence)
+                && leader.getStatus().getFollowers().size() == followers.size()
+                && leader.getStatus().getLagRecords() == 0);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("Replication did not catch up", System.currentTimeMillis() < deadline);
+            Thread.sleep(10L);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.EvictionPolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class ShardedDatabaseTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    private Database database;
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что записи, распределённые по шардам, читаются, удаляются и сохраняются целиком
+     */
+    @Test
+    public void entriesShouldBeSpreadAcrossShards() {
+        database = new Database(TestDatabaseProperties.sharded(8), clock::get);
+
+        for (int i = -5000; i < 5000; i++) {
+            database.put(i, "data " + i);
+        }
+        Assert.assertEquals(10_000, database.size());
+        Assert.assertEquals(10_000, database.dump().size());
+        for (int i = -5000; i < 5000; i++) {
+            Assert.assertEquals("data " + i, database.get(i));
+        }
+        for (int i = -5000; i < 0; i++) {
+            Assert.assertEquals("data " + i, database.remove(i));
+        }
+        Assert.assertEquals(5000, database.size());
+    }
+
+    /**
+     * Тест проверяет, что цикл удаления хранилища удаляет истекшие записи во всех шардах
+     */
+    @Test
+    public void updateShouldReapEveryShard() {
+        database = new Database(TestDatabaseProperties.sharded(8), clock::get);
+
+        for (int i = 0; i < 1000; i++) {
+            database.put(i, "data", i % 2 == 0 ? 1000L : 5000L);
+        }
+        clock.addAndGet(1500L);
+
+        Assert.assertEquals(500, database.update());
+        Assert.assertEquals(500, database.size());
+    }
+
+    /**
+     * Тест проверяет, что циклы удаления шардов запускаются пулом потоков без явного вызова update()
+     */
+    @Test
+    public void workersShouldReapShardsInBackground() throws InterruptedException {
+        DatabaseProperties properties = TestDatabaseProperties.sharded(8);
+        properties.getExpiry().setPeriod(10L);
+        database = new Database(properties, clock::get);
+
+        for (int i = 0; i < 1000; i++) {
+            database.put(i, "data", 100L);
+        }
+        clock.addAndGet(200L);
+
+        for (int attempt = 0; attempt < 200 && database.size() > 0; attempt++) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(0, database.size());
+    }
+
+    /**
+     * Тест проверяет, что ёмкость делится между шардами и суммарно не превышается
+     */
+    @Test
+    public void capacityShouldBeSharedBetweenShards() {
+        DatabaseProperties properties = TestDatabaseProperties.sharded(8);
+        properties.getEviction().setPolicy(EvictionPolicy.LRU);
+        properties.getEviction().setMaxEntries(100L);
+        database = new Database(properties, clock::get);
+
+        for (int i = 0; i < 10_000; i++) {
+            database.put(i, "data " + i);
+        }
+        Assert.assertEquals(100, database.size());
+        Assert.assertEquals(9900L, database.getEvictionMetrics().getEvictions());
+    }
+
+    /**
+     * Тест проверяет, что конкурентные вставки в разные шарды не теряются
+     */
+    @Test
+    public void concurrentPutsShouldNotLoseEntries() throws Exception {
+        database = new Database(TestDatabaseProperties.sharded(4), clock::get);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            int offset = t * 10_000;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    database.put(offset + i, "data");
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(80_000, database.size());
+    }
+}
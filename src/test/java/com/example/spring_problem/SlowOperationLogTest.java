@@ -0,0 +1,114 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.SlowOperation;
+import com.example.spring_problem.database.SlowOperationLog;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class SlowOperationLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Тест проверяет, что журнал хранит только операции не быстрее порога, вытесняет самые старые при
+     * заполнении и отдаёт операции начиная с самой долгой
+     */
+    @Test
+    public void slowLogShouldKeepLatestSlowOperations() {
+        SlowOperationLog log = new SlowOperationLog(1000, 2);
+
+        log.record("DUMP", "first", TimeUnit.MILLISECONDS.toNanos(2));
+        log.record("DUMP", "fast", TimeUnit.MICROSECONDS.toNanos(500));
+        log.record("LOAD", "second", TimeUnit.MILLISECONDS.toNanos(5));
+        log.record("SWEEP", "third", TimeUnit.MILLISECONDS.toNanos(3));
+
+        List<SlowOperation> slowest = log.getSlowest();
+        Assert.assertEquals(2, slowest.size());
+        Assert.assertEquals("second", slowest.get(0).getDetail());
+        Assert.assertEquals(5000, slowest.get(0).getDurationMicros());
+        Assert.assertEquals("third", slowest.get(1).getDetail());
+    }
+
+    /**
+     * Тест проверяет, что с нулевым порогом журнал отключён и ничего не записывает
+     */
+    @Test
+    public void disabledSlowLogShouldStayEmpty() {
+        SlowOperationLog log = new SlowOperationLog(0, 16);
+
+        log.record("DUMP", "detail", TimeUnit.SECONDS.toNanos(1));
+
+        Assert.assertFalse(log.isEnabled());
+        Assert.assertTrue(log.getSlowest().isEmpty());
+    }
+
+    /**
+     * Тест проверяет, что во время записи JFR хранилище отправляет события об операциях и циклах удаления
+     * записей с истекшим временем жизни
+     */
+    @Test
+    public void databaseShouldEmitFlightRecorderEvents() throws Exception {
+        AtomicLong clock = new AtomicLong(1_000_000L);
+        Database database = new Database(new DatabaseProperties(), clock::get);
+        Path file = folder.getRoot().toPath().resolve("database.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.spring_problem.Operation").withThreshold(Duration.ZERO);
+            recording.enable("com.example.spring_problem.ExpirySweep").withThreshold(Duration.ZERO);
+            recording.start();
+            database.put(7, "data", 1000L);
+            clock.addAndGet(TimeUnit.HOURS.toMillis(1));
+            Assert.assertEquals(1, database.update());
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            database.shutdown();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Assert.assertTrue(events.stream().anyMatch(event ->
+                event.getEventType().getName().equals("com.example.spring_problem.Operation")
+                        && event.getString("operation").equals("PUT") && event.getInt("key") == 7));
+        Assert.assertTrue(events.stream().anyMatch(event ->
+                event.getEventType().getName().equals("com.example.spring_problem.ExpirySweep")
+                        && event.getLong("keysRemoved") == 1));
+    }
+
+    /**
+     * Тест проверяет, что чтение данных в хранимом виде отправляет событие JFR, даже если данных по ключу нет
+     */
+    @Test
+    public void compressedMissShouldEmitFlightRecorderEvent() throws Exception {
+        Database database = new Database(new DatabaseProperties(), new AtomicLong(1_000_000L)::get);
+        Path file = folder.getRoot().toPath().resolve("compressed.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.spring_problem.Operation").withThreshold(Duration.ZERO);
+            recording.start();
+            Assert.assertNull(database.getStoredIfPresent(9));
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            database.shutdown();
+        }
+
+        Assert.assertTrue(RecordingFile.readAllEvents(file).stream().anyMatch(event ->
+                event.getEventType().getName().equals("com.example.spring_problem.Operation")
+                        && event.getString("operation").equals("GET") && event.getInt("key") == 9));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.exception.SnapshotFormatException;
+import com.example.spring_problem.snapshot.SnapshotReader;
+import com.example.spring_problem.snapshot.SnapshotWriter;
+import com.example.spring_problem.snapshot.Snapshots;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+public class SnapshotTest {
+
+    /**
+     * Тест проверяет, что записанные записи, в том числе пустые, многобайтовые и не помещающиеся в
+     * один блок значения, читаются без изменений
+     */
+    @Test
+    public void writtenRecordsShouldBeReadBack() throws IOException {
+        Map<Integer,String> expected = new HashMap<>();
+        Map<Integer,Long> ttls = new HashMap<>();
+        StringBuilder huge = new StringBuilder();
+        while (huge.length() < 200_000) {
+            huge.append("значение ");
+        }
+        expected.put(Integer.MIN_VALUE, "");
+        expected.put(-1, "данные");
+        expected.put(0, huge.toString());
+        for (int i = 1; i < 20_000; i++) {
+            expected.put(i, "data " + i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(out, true)) {
+            for (Map.Entry<Integer,String> entry : expected.entrySet()) {
+                long ttl = entry.getKey() & 0xFFFFFL;
+                ttls.put(entry.getKey(), ttl);
+                writer.write(entry.getKey(), entry.getValue(), ttl);
+            }
+        }
+
+        Map<Integer,String> actual = new HashMap<>();
+        long records = new SnapshotReader(new ByteArrayInputStream(out.toByteArray())).read((key, data, ttl) -> {
+            Assert.assertEquals(ttls.get(key).longValue(), ttl);
+            actual.put(key, data);
+        });
+        Assert.assertEquals(expected.size(), records);
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * Тест проверяет, что повреждение одного байта содержимого блока обнаруживается контрольной суммой
+     */
+    @Test(expected = SnapshotFormatException.class)
+    public void corruptedBlockShouldBeRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(out, false)) {
+            for (int i = 0; i < 100; i++) {
+                writer.write(i, "data " + i, 1000L);
+            }
+        }
+        byte[] bytes = out.toByteArray();
+        bytes[100] ^= 1;
+
+        new SnapshotReader(new ByteArrayInputStream(bytes)).read((key, data, ttl) -> { });
+    }
+
+    /**
+     * Тест проверяет, что обрезанный поток не принимается за целое хранилище
+     */
+    @Test(expected = SnapshotFormatException.class)
+    public void truncatedSnapshotShouldBeRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(out, false)) {
+            writer.write(1, "data", 1000L);
+        }
+        byte[] bytes = out.toByteArray();
+
+        new SnapshotReader(new ByteArrayInputStream(bytes, 0, bytes.length - 4)).read((key, data, ttl) -> { });
+    }
+
+    /**
+     * Тест проверяет, что индекс содержит смещения всех блоков и с них можно начать чтение блока
+     */
+    @Test
+    public void indexShouldPointToBlocks() throws IOException {
+        Path file = Files.createTempFile("snapshot", ".dat");
+        try {
+            try (SnapshotWriter writer = new SnapshotWriter(Files.newOutputStream(file), true)) {
+                for (int i = 0; i < 50_000; i++) {
+                    writer.write(i, "data " + i, 1000L);
+                }
+            }
+
+            Set<Integer> keys = new HashSet<>();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long[] offsets = SnapshotReader.readIndex(channel);
+                Assert.assertNotNull(offsets);
+                Assert.assertTrue(offsets.length > 1);
+
+                for (long offset : offsets) {
+                    channel.position(offset);
+                    SnapshotReader reader = new SnapshotReader(java.nio.channels.Channels.newInputStream(channel));
+                    Assert.assertTrue(reader.readBlock((key, data, ttl) -> keys.add(key)) > 0);
+                }
+            }
+            Assert.assertEquals(50_000, keys.size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Тест проверяет, что хранилище, сохранённое прежним способом, читается и преобразуется в новый формат
+     */
+    @Test
+    public void legacySnapshotShouldBeConverted() throws IOException {
+        Database database = new Database(() -> 1_000_000L);
+        try {
+            database.put(1, "data", 5000L);
+            database.put(2, "another data", 7000L);
+
+            ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(legacy)) {
+                oos.writeObject(database.dump());
+            }
+            ByteArrayOutputStream converted = new ByteArrayOutputStream();
+            Assert.assertEquals(2L, Snapshots.convert(new ByteArrayInputStream(legacy.toByteArray()), converted));
+
+            Map<Integer,String> actual = new HashMap<>();
+            Snapshots.read(new ByteArrayInputStream(converted.toByteArray()), (key, data, ttl) -> {
+                Assert.assertEquals(key == 1 ? 5000L : 7000L, ttl);
+                actual.put(key, data);
+            });
+            Assert.assertEquals("data", actual.get(1));
+            Assert.assertEquals("another data", actual.get(2));
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    /**
+     * Тест проверяет, что поток сериализации Java с посторонними классами отвергается, а не десериализуется
+     */
+    @Test(expected = SnapshotFormatException.class)
+    public void legacySnapshotWithForeignClassesShouldBeRejected() throws IOException {
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(legacy)) {
+            oos.writeObject(new java.util.ArrayList<>(java.util.List.of("data")));
+        }
+
+        Snapshots.read(new ByteArrayInputStream(legacy.toByteArray()), (key, data, ttl) -> { });
+    }
+}
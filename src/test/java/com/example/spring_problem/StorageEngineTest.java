@@ -0,0 +1,161 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.StorageEngine;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+
+@RunWith(Parameterized.class)
+public class StorageEngineTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Object[] engines() {
+        return StorageEngine.values();
+    }
+
+    @Parameterized.Parameter
+    public StorageEngine engine;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Database database;
+
+    @Before
+    public void createDatabase() {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(engine);
+        properties.getMapped().setDirectory(folder.getRoot().getPath());
+        properties.getMapped().setSegmentSize(64 * 1024);
+        properties.getOffHeap().setSlabSize(4096);
+        properties.getOffHeap().setDefragmentThreshold(0.0);
+        database = new Database(properties);
+    }
+
+    @After
+    public void shutdownDatabase() {
+        database.shutdown();
+    }
+
+    /**
+     * Тест проверяет, что случайная последовательность вставок и удалений по пересекающимся ключам,
+     * в том числе отрицательным и нулевому, даёт тот же результат, что и обычная HashMap
+     */
+    @Test
+    public void randomOperationsShouldMatchHashMap() {
+        Random random = new Random(42);
+        Map<Integer,String> expected = new HashMap<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(20_000) - 10_000;
+            if (random.nextInt(3) == 0) {
+                String removed = expected.remove(key);
+                Assert.assertEquals(removed, database.removeIfPresent(key));
+            } else {
+                String data = "data" + i;
+                expected.put(key, data);
+                database.put(key, data);
+            }
+        }
+
+        Assert.assertEquals(expected.size(), database.size());
+        for (int key = -10_000; key < 10_000; key++) {
+            Assert.assertEquals(expected.get(key), database.getIfPresent(key));
+        }
+
+        Map<Integer,String> dumped = new HashMap<>();
+        for (Map.Entry<Database.Key,String> entry : database.dump().entrySet()) {
+            dumped.put(entry.getKey().getKey(), entry.getValue());
+        }
+        Assert.assertEquals(expected, dumped);
+    }
+
+    /**
+     * Тест проверяет, что при конкурентных вставках из нескольких потоков, каждый из которых
+     * пишет свой диапазон ключей, ни одна запись не теряется
+     */
+    @Test
+    public void concurrentPutsShouldNotLoseEntries() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        Map<Integer,String> readErrors = new ConcurrentHashMap<>();
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t * perThread;
+            futures.add(executor.submit(() -> {
+                for (int i = offset; i < offset + perThread; i++) {
+                    database.put(i, "data" + i);
+                    if (!("data" + i).equals(database.getIfPresent(i))) {
+                        readErrors.put(i, String.valueOf(database.getIfPresent(i)));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        Assert.assertTrue(readErrors.toString(), readErrors.isEmpty());
+        Assert.assertEquals(threads * perThread, database.size());
+        for (int i = 0; i < threads * perThread; i++) {
+            Assert.assertEquals("data" + i, database.get(i));
+        }
+    }
+
+    /**
+     * Тест проверяет, что данные разного размера, включая не помещающиеся в слэб арены и
+     * содержащие не ASCII символы, сохраняются без искажений после удалений, перезаписи и дефрагментации
+     */
+    @Test
+    public void valuesShouldSurviveRemovalsAndDefragmentation() {
+        Map<Integer,String> expected = new HashMap<>();
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 6000) {
+            builder.append(builder.length() % 2 == 0 ? "данные" : "data");
+        }
+
+        for (int key = 0; key < 2000; key++) {
+            String data = builder.substring(0, (key * 37) % 6000);
+            expected.put(key, data);
+            database.put(key, data);
+        }
+        for (int key = 0; key < 2000; key += 2) {
+            Assert.assertEquals(expected.remove(key), database.remove(key));
+        }
+        for (int key = 1; key < 2000; key += 4) {
+            String data = "новые данные " + key;
+            expected.put(key, data);
+            database.put(key, data);
+        }
+
+        database.update();
+
+        Assert.assertEquals(expected.size(), database.size());
+        for (Map.Entry<Integer,String> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getValue(), database.get(entry.getKey()));
+        }
+    }
+}
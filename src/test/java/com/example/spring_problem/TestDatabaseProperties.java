@@ -0,0 +1,90 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.EvictionPolicy;
+import com.example.spring_problem.database.ReplicationRole;
+import com.example.spring_problem.database.StorageEngine;
+
+/**
+ * Настройки хранилища, общие для тестов
+ */
+final class TestDatabaseProperties {
+
+    private TestDatabaseProperties() {
+    }
+
+    /**
+     * @param shards число шардов
+     * @return настройки по умолчанию с заданным числом шардов
+     */
+    static DatabaseProperties sharded(int shards) {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setShards(shards);
+        return properties;
+    }
+
+    /**
+     * @param policy политика вытеснения
+     * @param maxEntries максимальное число записей, 0 - без ограничения
+     * @param maxBytes максимальный объём данных в байтах, 0 - без ограничения
+     * @return настройки одного шарда с вытеснением
+     */
+    static DatabaseProperties eviction(EvictionPolicy policy, long maxEntries, long maxBytes) {
+        DatabaseProperties properties = sharded(1);
+        properties.getEviction().setPolicy(policy);
+        properties.getEviction().setMaxEntries(maxEntries);
+        properties.getEviction().setMaxBytes(maxBytes);
+        return properties;
+    }
+
+    /**
+     * @param engine движок хранения
+     * @return настройки четырёх шардов со сжатием данных от 256 байт
+     */
+    static DatabaseProperties compression(StorageEngine engine) {
+        DatabaseProperties properties = sharded(4);
+        properties.setEngine(engine);
+        properties.getCompression().setEnabled(true);
+        properties.getCompression().setThreshold(256);
+        return properties;
+    }
+
+    /**
+     * @param engine движок хранения
+     * @return настройки восьми шардов с упорядоченным индексом ключей
+     */
+    static DatabaseProperties indexed(StorageEngine engine) {
+        DatabaseProperties properties = sharded(8);
+        properties.setEngine(engine);
+        properties.getIndex().setEnabled(true);
+        return properties;
+    }
+
+    /**
+     * @param engine движок хранения
+     * @param directory каталог сегментов движка {@link StorageEngine#MAPPED}
+     * @return настройки с сегментами по 64 КБ
+     */
+    static DatabaseProperties mapped(StorageEngine engine, String directory) {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setEngine(engine);
+        properties.getMapped().setDirectory(directory);
+        properties.getMapped().setSegmentSize(64 * 1024);
+        return properties;
+    }
+
+    /**
+     * @param role роль экземпляра
+     * @param leaderPort порт ведущего для ведомого
+     * @return настройки репликации на случайном порту с частыми сердцебиениями и переподключениями
+     */
+    static DatabaseProperties replication(ReplicationRole role, int leaderPort) {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.getReplication().setRole(role);
+        properties.getReplication().setPort(0);
+        properties.getReplication().setLeaderPort(leaderPort);
+        properties.getReplication().setHeartbeatInterval(100L);
+        properties.getReplication().setReconnectDelay(50L);
+        return properties;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.spring_problem;
+
+import com.example.spring_problem.config.DatabaseProperties;
+import com.example.spring_problem.database.Database;
+import com.example.spring_problem.database.FsyncPolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class WriteAheadLogTest {
+
+    private Path directory;
+
+    private Path log;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("wal");
+        log = directory.resolve("data.wal");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Тест проверяет, что после перезапуска восстанавливаются вставки и удаления, а записи с истекшим
+     * временем жизни пропускаются. Время простоя записей без обращений отсчитывается заново
+     */
+    @Test
+    public void logShouldBeReplayedOnStartup() {
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            Database database = open(policy);
+            database.clear();
+            database.put(1, "data");
+            database.put(2, "short lived", 1000L);
+            database.put(3, "removed");
+            database.remove(3);
+            database.put(1, "updated data");
+            database.putIdle(4, "session", 1000L);
+            database.shutdown();
+
+            clock.addAndGet(2000L);
+            Database restarted = open(policy);
+            try {
+                Assert.assertEquals(policy.name(), "updated data", restarted.get(1));
+                Assert.assertNull(policy.name(), restarted.getIfPresent(2));
+                Assert.assertNull(policy.name(), restarted.getIfPresent(3));
+                Assert.assertEquals(policy.name(), "session", restarted.get(4));
+                Assert.assertEquals(policy.name(), 2, restarted.size());
+            } finally {
+                restarted.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Тест проверяет, что недописанная при сбое запись отрезается, а новые изменения дописываются после целых
+     */
+    @Test
+    public void tornTailShouldBeTruncated() throws IOException {
+        Database database = open(FsyncPolicy.ALWAYS);
+        database.put(1, "data");
+        database.shutdown();
+        Files.write(log, new byte[] {0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        database = open(FsyncPolicy.ALWAYS);
+        Assert.assertEquals("data", database.get(1));
+        database.put(2, "another data");
+        database.shutdown();
+
+        database = open(FsyncPolicy.ALWAYS);
+        try {
+            Assert.assertEquals("data", database.get(1));
+            Assert.assertEquals("another data", database.get(2));
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    /**
+     * Тест проверяет, что после замены содержимого хранилища и при росте журнала он перезаписывается
+     * текущим содержимым
+     */
+    @Test
+    public void logShouldBeRewritten() throws IOException {
+        Database database = open(FsyncPolicy.OS);
+        database.put(-1, "old data");
+        ConcurrentHashMap<Database.Key,String> loaded = new ConcurrentHashMap<>();
+        loaded.put(new Database.Key(1, 60_000L), "data");
+        database.load(loaded);
+        for (int i = 0; i < 20_000; i++) {
+            database.put(2, "value " + i);
+        }
+        database.shutdown();
+
+        Assert.assertTrue(Files.size(log) < 64 * 1024);
+        database = open(FsyncPolicy.OS);
+        try {
+            Assert.assertNull(database.getIfPresent(-1));
+            Assert.assertEquals("data", database.get(1));
+            Assert.assertEquals("value 19999", database.get(2));
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    /**
+     * Тест проверяет, что изменения, записанные в журнал во время его перезаписи, переносятся в новый журнал
+     */
+    @Test
+    public void changesDuringRewriteShouldBeKept() {
+        Database database = open(FsyncPolicy.OS);
+        for (int i = 0; i < 20_000; i++) {
+            database.put(i, "value " + i);
+        }
+        database.shutdown();
+
+        database = open(FsyncPolicy.OS);
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                Assert.assertEquals("value " + i, database.get(i));
+            }
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    /**
+     * Тест проверяет, что после ошибки записи журнала изменения отклоняются до применения к хранилищу
+     */
+    @Test
+    public void changesShouldBeRejectedAfterLogFailure() {
+        Path full = Paths.get("/dev/full");
+        Assume.assumeTrue(Files.isWritable(full));
+        log = full;
+        Database database = open(FsyncPolicy.ALWAYS);
+        try {
+            assertRejected(() -> database.put(1, "data"));
+            assertRejected(() -> database.put(2, "data"));
+            assertRejected(() -> database.putAll(new int[]{3}, new String[]{"data"}, new long[1], new long[1]));
+            Assert.assertNull(database.getIfPresent(2));
+            Assert.assertNull(database.getIfPresent(3));
+            assertRejected(() -> database.remove(1));
+            Assert.assertEquals("data", database.getIfPresent(1));
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    private static void assertRejected(Runnable change) {
+        try {
+            change.run();
+            Assert.fail("Change accepted after the write-ahead log failed");
+        } catch (UncheckedIOException e) {
+            Assert.assertEquals("Write-ahead log failed", e.getMessage());
+        }
+    }
+
+    private Database open(FsyncPolicy policy) {
+        DatabaseProperties properties = new DatabaseProperties();
+        properties.setShards(2);
+        properties.getWal().setEnabled(true);
+        properties.getWal().setPath(log.toString());
+        properties.getWal().setFsync(policy);
+        properties.getWal().setFsyncInterval(10L);
+        properties.getWal().setRewriteMinSize(16 * 1024);
+        return new Database(properties, clock::get);
+    }
+}